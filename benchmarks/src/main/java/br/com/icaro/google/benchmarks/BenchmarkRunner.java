@@ -0,0 +1,27 @@
+package br.com.icaro.google.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author icaroafonso
+ *
+ *  Ponto de entrada do jar de benchmarks. Aceita as mesmas opes da linha de comando do JMH, e sempre liga o
+ *  {@link GCProfiler}, para que cada resultado traga a taxa de alocao (gc.alloc.rate.norm) junto da vazo.
+ *
+ *  Uso: java -jar benchmarks/target/benchmarks.jar [regex] [opes do JMH]
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder()
+				.parent(cmd)
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
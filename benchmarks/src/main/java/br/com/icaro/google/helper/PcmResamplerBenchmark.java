@@ -0,0 +1,69 @@
+package br.com.icaro.google.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author icaroafonso
+ *
+ *  Converso de 60 segundos de PCM estreo para LINEAR16 mono 16 kHz com {@link PcmResampler}. O tempo de cada
+ *  operao, comparado aos 60 segundos de udio, d quantas vezes o tempo real a converso roda em um ncleo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PcmResamplerBenchmark {
+
+	private static final int SECONDS = 60;
+
+	@Param({ "16000", "44100", "48000" })
+	public int sourceRate;
+
+	private byte[] pcm;
+	private PcmFormat format;
+	private final byte[] buf = new byte[65536];
+
+	@Setup
+	public void createAudio() {
+		Random random = new Random(42);
+		ByteBuffer data = ByteBuffer.allocate(sourceRate * SECONDS * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < sourceRate * SECONDS; i++) {
+			short value = (short) (Math.sin(2 * Math.PI * 220 * i / sourceRate) * 8000 + random.nextGaussian() * 500);
+			data.putShort(value).putShort(value);
+		}
+		pcm = data.array();
+		format = PcmFormat.linear16(sourceRate, 2);
+	}
+
+	@Benchmark
+	public long resample() throws IOException {
+		long total = 0;
+		try (InputStream in = new PcmResampler(new ByteArrayInputStream(pcm), format, 16000)) {
+			int len;
+			while ((len = in.read(buf)) != -1) {
+				total += len;
+			}
+		}
+		return total;
+	}
+}
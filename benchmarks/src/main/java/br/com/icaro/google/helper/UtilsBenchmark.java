@@ -0,0 +1,86 @@
+package br.com.icaro.google.helper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * @author icaroafonso
+ *
+ *  Leitura de streams com {@link Utils#getBytes(InputStream)} para vrios tamanhos e tipos de stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UtilsBenchmark {
+
+	@Param({ "4096", "1048576", "16777216" })
+	public int size;
+
+	@Param({ "bytearray", "buffered", "file" })
+	public String streamType;
+
+	private byte[] data;
+	private File file;
+	private InputStream in;
+
+	@Setup(Level.Trial)
+	public void createData() throws IOException {
+		data = new byte[size];
+		new Random(42).nextBytes(data);
+		file = File.createTempFile("utils-benchmark-", ".bin");
+		Files.write(file.toPath(), data);
+	}
+
+	@Setup(Level.Invocation)
+	public void openStream() throws IOException {
+		switch (streamType) {
+		case "bytearray":
+			in = new ByteArrayInputStream(data);
+			break;
+		case "buffered":
+			in = new BufferedInputStream(new ByteArrayInputStream(data));
+			break;
+		default:
+			in = new FileInputStream(file);
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeStream() throws IOException {
+		in.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteData() {
+		file.delete();
+	}
+
+	@Benchmark
+	public byte[] getBytes() throws IOException {
+		return Utils.getBytes(in);
+	}
+}
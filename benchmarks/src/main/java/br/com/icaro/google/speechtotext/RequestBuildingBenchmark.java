@@ -0,0 +1,90 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.cloud.speech.v1.RecognitionAudio;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+import com.google.cloud.speech.v1.RecognizeRequest;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * @author icaroafonso
+ *
+ *  Montagem da requisio de reconhecimento (configurao, udio e {@link RecognizeRequest}) para clipes de 1 MB a
+ *  100 MB, comparando a leitura do arquivo com cpia ({@link ByteString#copyFrom(byte[])}) e sem cpia
+ *  ({@link Recognizer#fileAudio(String)}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RequestBuildingBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int megabytes;
+
+	private File file;
+	private byte[] data;
+
+	@Setup(Level.Trial)
+	public void createClip() throws IOException {
+		data = new byte[megabytes * 1024 * 1024];
+		new Random(42).nextBytes(data);
+		file = File.createTempFile("request-benchmark-", ".raw");
+		Files.write(file.toPath(), data);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteClip() {
+		file.delete();
+	}
+
+	@Benchmark
+	public RecognizeRequest readCopyAndBuild() throws IOException {
+		ByteString content = ByteString.copyFrom(Files.readAllBytes(file.toPath()));
+		return request(RecognitionAudio.newBuilder().setContent(content).build());
+	}
+
+	@Benchmark
+	public RecognizeRequest readMappedAndBuild() throws IOException {
+		return request(Recognizer.fileAudio(file.getPath()));
+	}
+
+	@Benchmark
+	public RecognizeRequest wrapInMemory() {
+		return request(RecognitionAudio.newBuilder().setContent(UnsafeByteOperations.unsafeWrap(data)).build());
+	}
+
+	@Benchmark
+	public RecognizeRequest copyInMemory() {
+		return request(RecognitionAudio.newBuilder().setContent(ByteString.copyFrom(data)).build());
+	}
+
+	private static RecognizeRequest request(RecognitionAudio audio) {
+		return RecognizeRequest.newBuilder()
+				.setConfig(Recognizer.buildConfig("pt-BR", AudioEncoding.LINEAR16, 16000, false, true))
+				.setAudio(audio)
+				.build();
+	}
+}
@@ -0,0 +1,103 @@
+package br.com.icaro.google.speechtotext;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
+import com.google.cloud.speech.v1.RecognizeResponse;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.protobuf.Duration;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * @author icaroafonso
+ *
+ *  Converso das respostas da API em texto, {@link ItemAudio} e {@link WordTimeline}. As respostas so gravadas em bytes
+ *  no incio do teste (como chegariam pela rede) e decodificadas a cada iterao, para medir tambm o custo do protobuf.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultMappingBenchmark {
+
+	private static final String[] WORDS = { "o", "audio", "de", "teste", "foi", "transcrito", "pela", "api", "do", "google" };
+
+	/** Palavras na resposta; 150 por minuto de fala. */
+	@Param({ "150", "9000" })
+	public int words;
+
+	private byte[] recognizeResponse;
+	private byte[] longRunningResponse;
+
+	@Setup(Level.Trial)
+	public void recordResponses() {
+		Random random = new Random(42);
+		RecognizeResponse.Builder sync = RecognizeResponse.newBuilder();
+		LongRunningRecognizeResponse.Builder async = LongRunningRecognizeResponse.newBuilder();
+		long nanos = 0;
+		// um resultado a cada 30 palavras, como a API faz em pausas da fala
+		for (int start = 0; start < words; start += 30) {
+			SpeechRecognitionAlternative.Builder alternative = SpeechRecognitionAlternative.newBuilder().setConfidence(0.9f);
+			StringBuilder transcript = new StringBuilder();
+			for (int i = start; i < Math.min(words, start + 30); i++) {
+				String word = WORDS[random.nextInt(WORDS.length)];
+				transcript.append(word).append(' ');
+				long end = nanos + 400000000L;
+				alternative.addWords(WordInfo.newBuilder()
+						.setWord(word)
+						.setStartTime(duration(nanos))
+						.setEndTime(duration(end)));
+				nanos = end;
+			}
+			alternative.setTranscript(transcript.toString().trim());
+			SpeechRecognitionResult result = SpeechRecognitionResult.newBuilder().addAlternatives(alternative).build();
+			sync.addResults(result);
+			async.addResults(result);
+		}
+		recognizeResponse = sync.build().toByteArray();
+		longRunningResponse = async.build().toByteArray();
+	}
+
+	@Benchmark
+	public String recognizeTranscript() throws InvalidProtocolBufferException {
+		return Recognizer.toTranscript(RecognizeResponse.parseFrom(recognizeResponse).getResultsList());
+	}
+
+	@Benchmark
+	public List<ItemAudio> recognizeItems() throws InvalidProtocolBufferException {
+		return Recognizer.toItems(RecognizeResponse.parseFrom(recognizeResponse).getResultsList());
+	}
+
+	@Benchmark
+	public List<ItemAudio> longRunningItems() throws InvalidProtocolBufferException {
+		return Recognizer.toItems(LongRunningRecognizeResponse.parseFrom(longRunningResponse).getResultsList());
+	}
+
+	@Benchmark
+	public WordTimeline longRunningTimeline() throws InvalidProtocolBufferException {
+		return Recognizer.toTimeline(LongRunningRecognizeResponse.parseFrom(longRunningResponse).getResultsList());
+	}
+
+	private static Duration duration(long nanos) {
+		return Duration.newBuilder().setSeconds(nanos / 1000000000L).setNanos((int) (nanos % 1000000000L)).build();
+	}
+}
@@ -0,0 +1,97 @@
+package br.com.icaro.google.helper;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+/**
+ * @author icaroafonso
+ * Formato de um arquivo de udio, lido do cabealho por {@link AudioProbe#probe(String)}.
+ */
+public class AudioInfo {
+
+	/** Menor taxa de amostragem aceita pela API. */
+	public static final int MIN_SAMPLE_RATE_HERTZ = 8000;
+
+	/** Maior taxa de amostragem aceita pela API. */
+	public static final int MAX_SAMPLE_RATE_HERTZ = 48000;
+
+	/**
+	 * Formato do arquivo.
+	 */
+	public enum Container {
+		WAV, FLAC, MP3, UNKNOWN
+	}
+
+	static final AudioInfo UNKNOWN = new AudioInfo(Container.UNKNOWN, null, 0, 0, 0, -1);
+
+	private final Container container;
+	private final AudioEncoding encoding;
+	private final int sampleRateHertz;
+	private final int channels;
+	private final int bitsPerSample;
+	private final long durationMillis;
+
+	AudioInfo(Container container, AudioEncoding encoding, int sampleRateHertz, int channels, int bitsPerSample, long durationMillis) {
+		this.container = container;
+		this.encoding = encoding;
+		this.sampleRateHertz = sampleRateHertz;
+		this.channels = channels;
+		this.bitsPerSample = bitsPerSample;
+		this.durationMillis = durationMillis;
+	}
+
+	public Container getContainer() {
+		return container;
+	}
+
+	/**
+	 * @return a codificao a declarar na configurao do reconhecimento, ou null se a API no aceitar o formato
+	 */
+	public AudioEncoding getEncoding() {
+		return encoding;
+	}
+
+	public int getSampleRateHertz() {
+		return sampleRateHertz;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @return bits por amostra, ou 0 em formatos comprimidos com perda (MP3)
+	 */
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+
+	/**
+	 * @return durao do udio, ou -1 se no puder ser obtida do cabealho
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return se o arquivo pode ser enviado para a API como est, sem converso: FLAC, WAV LINEAR16 ou MULAW, mono e
+	 *         com taxa de amostragem aceita
+	 */
+	public boolean isRecognizable() {
+		return encoding != null && channels == 1 && sampleRateHertz >= MIN_SAMPLE_RATE_HERTZ && sampleRateHertz <= MAX_SAMPLE_RATE_HERTZ;
+	}
+
+	/**
+	 * @return se o arquivo j est no formato que a converso informada produziria (apenas FLAC; a sada LINEAR16 da
+	 *         converso no tem cabealho)
+	 */
+	public boolean matches(ConversionSettings settings) {
+		return container == Container.FLAC && settings.getEncoding() == AudioEncoding.FLAC
+				&& sampleRateHertz == settings.getSampleRateHertz() && channels == settings.getChannels();
+	}
+
+	@Override
+	public String toString() {
+		return "AudioInfo [container=" + container + ", encoding=" + encoding + ", sampleRateHertz=" + sampleRateHertz
+				+ ", channels=" + channels + ", bitsPerSample=" + bitsPerSample + ", durationMillis=" + durationMillis + "]";
+	}
+}
@@ -0,0 +1,161 @@
+package br.com.icaro.google.helper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+import br.com.icaro.google.helper.AudioInfo.Container;
+
+/**
+ * @author icaroafonso
+ * Identifica o formato de um arquivo de udio (WAV, FLAC ou MP3) pelo cabealho, lendo apenas os primeiros KB com
+ * leituras posicionais, sem carregar o arquivo. O resultado permite montar a configurao do reconhecimento e decidir
+ * se a converso  necessria.
+ */
+public class AudioProbe {
+
+	/** Quantidade de bytes lidos do incio do arquivo. */
+	static final int PROBE_BYTES = 8192;
+
+	private static final int[][] MP3_BITRATES = {
+			{ 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 }, // MPEG 1, layer III
+			{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 } }; // MPEG 2 e 2.5, layer III
+	private static final int[] MP3_SAMPLE_RATES = { 44100, 48000, 32000 };
+
+	/**
+	 * @param inputFilePath - arquivo de udio
+	 * @return o formato do arquivo; {@link Container#UNKNOWN} se no for reconhecido
+	 */
+	public static AudioInfo probe(String inputFilePath) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFilePath), StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer head = read(channel, 0, PROBE_BYTES);
+			if (head.remaining() >= 12 && head.getInt(0) == 0x46464952 && head.getInt(8) == 0x45564157) { // "RIFF" ... "WAVE"
+				return wav(channel);
+			}
+			long start = 0;
+			if (head.remaining() >= 10 && head.get(0) == 'I' && head.get(1) == 'D' && head.get(2) == '3') {
+				start = 10 + syncSafe(head, 6) + ((head.get(5) & 0x10) != 0 ? 10 : 0);
+				head = read(channel, start, PROBE_BYTES);
+			}
+			if (head.remaining() >= 4 && head.getInt(0) == 0x43614C66) { // "fLaC"
+				return flac(channel, start + 4);
+			}
+			return mp3(head.order(ByteOrder.BIG_ENDIAN), start, size);
+		}
+	}
+
+	private static AudioInfo wav(FileChannel channel) throws IOException {
+		PcmFormat.WavHeader header = PcmFormat.readWavHeader(channel);
+		if (header == null || header.dataOffset < 0) {
+			return AudioInfo.UNKNOWN;
+		}
+		PcmFormat format = header.toPcmFormat();
+		AudioEncoding encoding = format != null && format.getBitsPerSample() == 16 && !format.isFloating() ? AudioEncoding.LINEAR16
+				: header.isMulaw() ? AudioEncoding.MULAW : null;
+		long bytesPerSecond = (long) header.sampleRateHertz * header.channels * Math.max(1, header.bitsPerSample / 8);
+		return new AudioInfo(Container.WAV, encoding, header.sampleRateHertz, header.channels, header.bitsPerSample,
+				bytesPerSecond > 0 ? header.dataLength * 1000 / bytesPerSecond : -1);
+	}
+
+	/**
+	 * L o bloco STREAMINFO, que  sempre o primeiro bloco de metadados.
+	 */
+	private static AudioInfo flac(FileChannel channel, long pos) throws IOException {
+		ByteBuffer block = read(channel, pos, 4 + 18).order(ByteOrder.BIG_ENDIAN);
+		if (block.remaining() < 22 || (block.get(0) & 0x7F) != 0) {
+			return AudioInfo.UNKNOWN;
+		}
+		long info = block.getLong(4 + 10); // taxa (20 bits), canais - 1 (3), bits - 1 (5), total de amostras (36)
+		int sampleRate = (int) (info >>> 44);
+		int channels = (int) (info >>> 41 & 0x7) + 1;
+		int bits = (int) (info >>> 36 & 0x1F) + 1;
+		long samples = info & 0xFFFFFFFFFL;
+		return new AudioInfo(Container.FLAC, AudioEncoding.FLAC, sampleRate, channels, bits,
+				samples > 0 && sampleRate > 0 ? samples * 1000 / sampleRate : -1);
+	}
+
+	/**
+	 * Procura o primeiro cabealho de quadro MPEG layer III vlido (confirmado pelo quadro seguinte) e usa o cabealho
+	 * Xing/Info ou VBRI, se houver, para a durao; sem eles, estima pela taxa de bits constante.
+	 */
+	private static AudioInfo mp3(ByteBuffer head, long start, long size) {
+		for (int i = 0; i + 4 <= head.remaining(); i++) {
+			int header = head.getInt(i);
+			int frameLength = mp3FrameLength(header);
+			if (frameLength <= 0) {
+				continue;
+			}
+			if (i + frameLength + 4 <= head.remaining() && mp3FrameLength(head.getInt(i + frameLength)) <= 0) {
+				continue;
+			}
+			boolean mpeg1 = (header >>> 19 & 0x3) == 3;
+			int sampleRate = mp3SampleRate(header);
+			int channels = (header >>> 6 & 0x3) == 3 ? 1 : 2;
+			int samplesPerFrame = mpeg1 ? 1152 : 576;
+			int sideInfo = mpeg1 ? (channels == 1 ? 17 : 32) : (channels == 1 ? 9 : 17);
+			long frames = -1;
+			int xing = i + 4 + sideInfo;
+			if (xing + 12 <= head.remaining() && (head.getInt(xing) == 0x58696E67 || head.getInt(xing) == 0x496E666F) // "Xing", "Info"
+					&& (head.getInt(xing + 4) & 1) != 0) {
+				frames = head.getInt(xing + 8) & 0xFFFFFFFFL;
+			} else if (i + 36 + 18 <= head.remaining() && head.getInt(i + 36) == 0x56425249) { // "VBRI"
+				frames = head.getInt(i + 36 + 14) & 0xFFFFFFFFL;
+			}
+			long duration;
+			if (frames >= 0) {
+				duration = frames * samplesPerFrame * 1000 / sampleRate;
+			} else {
+				int bitrate = MP3_BITRATES[mpeg1 ? 0 : 1][header >>> 12 & 0xF];
+				duration = (size - start - i) * 8 / bitrate;
+			}
+			return new AudioInfo(Container.MP3, null, sampleRate, channels, 0, duration);
+		}
+		return AudioInfo.UNKNOWN;
+	}
+
+	/**
+	 * @return tamanho do quadro MPEG layer III com este cabealho, ou 0 se o cabealho for invlido
+	 */
+	private static int mp3FrameLength(int header) {
+		int version = header >>> 19 & 0x3;
+		int bitrateIndex = header >>> 12 & 0xF;
+		if ((header >>> 21 & 0x7FF) != 0x7FF || version == 1 || (header >>> 17 & 0x3) != 1
+				|| bitrateIndex == 0 || bitrateIndex == 15 || (header >>> 10 & 0x3) == 3) {
+			return 0;
+		}
+		boolean mpeg1 = version == 3;
+		int bitrate = MP3_BITRATES[mpeg1 ? 0 : 1][bitrateIndex] * 1000;
+		int padding = header >>> 9 & 1;
+		return (mpeg1 ? 144 : 72) * bitrate / mp3SampleRate(header) + padding;
+	}
+
+	private static int mp3SampleRate(int header) {
+		int version = header >>> 19 & 0x3;
+		int rate = MP3_SAMPLE_RATES[header >>> 10 & 0x3];
+		return version == 3 ? rate : version == 2 ? rate / 2 : rate / 4;
+	}
+
+	private static int syncSafe(ByteBuffer buf, int pos) {
+		return (buf.get(pos) & 0x7F) << 21 | (buf.get(pos + 1) & 0x7F) << 14 | (buf.get(pos + 2) & 0x7F) << 7 | buf.get(pos + 3) & 0x7F;
+	}
+
+	/**
+	 * L at {@code length} bytes a partir da posio informada; retorna menos no fim do arquivo.
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0) {
+				break;
+			}
+		}
+		buf.flip();
+		return buf.order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
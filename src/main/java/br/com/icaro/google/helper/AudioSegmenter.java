@@ -0,0 +1,100 @@
+package br.com.icaro.google.helper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * @author icaroafonso
+ * Divide udio PCM LINEAR16 mono (little-endian) em trechos menores que um limite de durao, cortando preferencialmente
+ * no trecho de menor energia (silncio) prximo do limite, para no partir uma palavra ao meio.
+ */
+public class AudioSegmenter {
+
+	/** Durao de cada janela usada para medir a energia. */
+	static final int FRAME_MILLIS = 20;
+
+	/**
+	 * Identifica onde esto as amostras de um udio LINEAR16 mono: o contedo inteiro, se no houver cabealho RIFF, ou
+	 * o chunk "data" de um arquivo WAV, sem os chunks que vierem depois dele.
+	 *
+	 * @param audio - contedo do arquivo
+	 * @param sampleRateHertz - taxa de amostragem esperada
+	 * @throws IllegalArgumentException se o WAV no for PCM 16 bits mono na taxa informada
+	 */
+	public static PcmFormat pcmFormat(ByteString audio, int sampleRateHertz) {
+		PcmFormat.WavHeader header = PcmFormat.readWavHeader(audio);
+		if (header == null) {
+			return PcmFormat.linear16(sampleRateHertz, 1);
+		}
+		PcmFormat format = header.toPcmFormat();
+		if (format == null || !format.isLinear16Mono(sampleRateHertz)) {
+			throw new IllegalArgumentException("Expected a LINEAR16 mono WAV at " + sampleRateHertz + " Hz, got "
+					+ (format != null ? format : "an unsupported WAV encoding"));
+		}
+		return format;
+	}
+
+	/**
+	 * @return as amostras de um udio LINEAR16 mono, cru ou WAV (ver {@link #pcmFormat(ByteString, int)})
+	 */
+	public static ByteString pcmData(ByteString audio, int sampleRateHertz) {
+		return pcmData(audio, pcmFormat(audio, sampleRateHertz));
+	}
+
+	static ByteString pcmData(ByteString audio, PcmFormat format) {
+		int offset = (int) format.getDataOffset();
+		return format.getDataLength() < 0 ? audio.substring(offset) : audio.substring(offset, offset + (int) format.getDataLength());
+	}
+
+	/**
+	 * Calcula os pontos de corte de um udio PCM LINEAR16 mono.
+	 *
+	 * @param pcm - amostras de 16 bits little-endian
+	 * @param sampleRateHertz - taxa de amostragem
+	 * @param maxSegmentMillis - durao mxima de cada trecho
+	 * @param searchWindowMillis - quanto antes do limite procurar pelo silncio
+	 * @return posies (em bytes, relativas a {@code pcm}) onde cada trecho comea; o primeiro  sempre 0
+	 */
+	public static int[] splitPoints(ByteString pcm, int sampleRateHertz, int maxSegmentMillis, int searchWindowMillis) {
+		if (searchWindowMillis >= maxSegmentMillis) {
+			throw new IllegalArgumentException("searchWindowMillis must be smaller than maxSegmentMillis");
+		}
+		ByteBuffer buf = pcm.asReadOnlyByteBuffer().slice().order(ByteOrder.LITTLE_ENDIAN);
+		int total = buf.remaining() & ~1;
+		long bytesPerSecond = 2L * sampleRateHertz;
+		int maxBytes = (int) (bytesPerSecond * maxSegmentMillis / 1000) & ~1;
+		int windowBytes = (int) (bytesPerSecond * searchWindowMillis / 1000) & ~1;
+		int frameBytes = Math.max(2, (int) (bytesPerSecond * FRAME_MILLIS / 1000) & ~1);
+
+		List<Integer> points = new ArrayList<Integer>();
+		points.add(0);
+		int start = 0;
+		while (total - start > maxBytes) {
+			int limit = start + maxBytes;
+			int cut = limit;
+			long best = Long.MAX_VALUE;
+			for (int frame = limit - frameBytes; frame >= limit - windowBytes && frame > start; frame -= frameBytes) {
+				long energy = 0;
+				for (int i = frame; i < frame + frameBytes; i += 2) {
+					int sample = buf.getShort(i);
+					energy += sample * sample;
+				}
+				if (energy < best) {
+					best = energy;
+					cut = frame + frameBytes / 2 & ~1;
+				}
+			}
+			points.add(cut);
+			start = cut;
+		}
+		int[] result = new int[points.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = points.get(i);
+		}
+		return result;
+	}
+}
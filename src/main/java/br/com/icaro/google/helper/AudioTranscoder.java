@@ -0,0 +1,241 @@
+package br.com.icaro.google.helper;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+/**
+ * @author icaroafonso
+ *
+ *  Converso de udio em streaming. O ffmpeg  iniciado com a sada em pipe, e o udio convertido  lido diretamente
+ *  do processo como um {@link InputStream}, sem arquivo temporrio. O stream pode ser entregue ao upload
+ *  ({@code StorageActions.uploadStream}), ao reconhecimento contnuo ou ao sncrono enquanto a converso ainda ocorre.
+ */
+public class AudioTranscoder {
+
+	/** Quantidade de bytes finais da sada de erro do ffmpeg mantidos para diagnstico. */
+	private static final int STDERR_TAIL = 4096;
+
+	/**
+	 * Inicia a converso de um arquivo local.
+	 *
+	 * @param inputFilePath - arquivo de udio em qualquer formato suportado pelo ffmpeg
+	 * @param settings - formato de sada
+	 * @return stream com o udio convertido; deve ser fechado pelo chamador
+	 * @throws IOException se o ffmpeg no puder ser iniciado
+	 */
+	public static TranscodedStream open(String inputFilePath, ConversionSettings settings) throws IOException {
+		if (!new File(inputFilePath).isFile()) {
+			throw new IOException("Input file not found: " + inputFilePath);
+		}
+		return start(inputFilePath, settings, null);
+	}
+
+	/**
+	 * Inicia a converso de um udio lido de um {@link InputStream}, copiado para o ffmpeg por uma thread auxiliar.
+	 *
+	 * @param input - udio de entrada;  fechado ao final da cpia
+	 * @param settings - formato de sada
+	 * @return stream com o udio convertido; deve ser fechado pelo chamador
+	 */
+	public static TranscodedStream open(InputStream input, ConversionSettings settings) throws IOException {
+		return start("pipe:0", settings, input);
+	}
+
+	/**
+	 * Como {@link #open(String, ConversionSettings)}, mas quando a entrada  um WAV PCM e a sada  LINEAR16 mono a
+	 * converso  feita na prpria JVM pelo {@link PcmResampler}, sem iniciar o ffmpeg.
+	 *
+	 * @return stream com o udio convertido; deve ser fechado pelo chamador
+	 */
+	public static InputStream openConverted(String inputFilePath, ConversionSettings settings) throws IOException {
+		PcmFormat format = pcmInput(inputFilePath, settings);
+		if (format != null) {
+			return PcmResampler.open(inputFilePath, format, settings.getSampleRateHertz());
+		}
+		return open(inputFilePath, settings);
+	}
+
+	/**
+	 * @return o formato da entrada, se a converso puder ser feita pelo {@link PcmResampler}; null caso contrrio
+	 */
+	static PcmFormat pcmInput(String inputFilePath, ConversionSettings settings) throws IOException {
+		if (settings.getEncoding() != AudioEncoding.LINEAR16 || settings.getChannels() != 1 || !new File(inputFilePath).isFile()) {
+			return null;
+		}
+		return PcmFormat.readWav(inputFilePath);
+	}
+
+	/**
+	 * Monta a linha de comando do ffmpeg.
+	 */
+	static List<String> command(String input, ConversionSettings settings, String output) {
+		List<String> command = new ArrayList<String>();
+		command.add(FfmpegLocator.executable());
+		command.add("-hide_banner");
+		command.add("-loglevel");
+		command.add("error");
+		command.add("-y");
+		command.add("-i");
+		command.add(input);
+		command.add("-vn");
+		command.add("-ac");
+		command.add(String.valueOf(settings.getChannels()));
+		command.add("-ar");
+		command.add(String.valueOf(settings.getSampleRateHertz()));
+		if (settings.getEncoding() == AudioEncoding.FLAC) {
+			command.add("-acodec");
+			command.add("flac");
+			command.add("-f");
+			command.add("flac");
+		} else {
+			command.add("-acodec");
+			command.add("pcm_s16le");
+			command.add("-f");
+			command.add("s16le");
+		}
+		command.add(output);
+		return command;
+	}
+
+	private static TranscodedStream start(String input, ConversionSettings settings, final InputStream source) throws IOException {
+		ProcessBuilder builder = new ProcessBuilder(command(input, settings, "pipe:1"));
+		if (source == null) {
+			builder.redirectInput(ProcessBuilder.Redirect.from(nullFile()));
+		}
+		final Process process = builder.start();
+		final TranscodedStream stream = new TranscodedStream(process);
+		daemon("ffmpeg-stderr", () -> stream.drainErrors());
+		if (source != null) {
+			daemon("ffmpeg-stdin", () -> {
+				try (InputStream in = source; OutputStream out = process.getOutputStream()) {
+					byte[] buf = new byte[8192];
+					int len;
+					while ((len = in.read(buf)) != -1) {
+						out.write(buf, 0, len);
+					}
+				} catch (IOException e) {
+					// o processo terminou antes de consumir toda a entrada; o erro aparece no cdigo de sada
+				}
+			});
+		}
+		return stream;
+	}
+
+	private static File nullFile() {
+		return new File(System.getProperty("os.name").toLowerCase().startsWith("windows") ? "NUL" : "/dev/null");
+	}
+
+	private static void daemon(String name, Runnable task) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Sada do ffmpeg. Ao chegar ao fim do stream verifica o cdigo de sada do processo e lana {@link IOException}
+	 * com a mensagem de erro do ffmpeg em caso de falha. Fechar o stream antes do fim encerra o processo.
+	 */
+	public static class TranscodedStream extends FilterInputStream {
+		private final Process process;
+		private final byte[] errors = new byte[STDERR_TAIL];
+		private int errorsLength;
+		private boolean checked;
+
+		TranscodedStream(Process process) {
+			super(process.getInputStream());
+			this.process = process;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b == -1) {
+				checkExit();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n == -1) {
+				checkExit();
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (process.isAlive()) {
+					process.destroyForcibly();
+				}
+			}
+		}
+
+		/**
+		 * @return o processo ffmpeg, para controle de tempo limite pelo chamador
+		 */
+		public Process getProcess() {
+			return process;
+		}
+
+		private void checkExit() throws IOException {
+			if (checked) {
+				return;
+			}
+			checked = true;
+			int exit;
+			try {
+				exit = process.waitFor();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for ffmpeg", e);
+			}
+			if (exit != 0) {
+				throw new IOException("ffmpeg exited with code " + exit + ": " + errorMessage());
+			}
+		}
+
+		/**
+		 * @return as ltimas linhas escritas pelo ffmpeg na sada de erro
+		 */
+		public synchronized String errorMessage() {
+			return new String(errors, 0, errorsLength, StandardCharsets.UTF_8).trim();
+		}
+
+		void drainErrors() {
+			byte[] buf = new byte[1024];
+			try (InputStream err = process.getErrorStream()) {
+				int len;
+				while ((len = err.read(buf)) != -1) {
+					appendError(buf, len);
+				}
+			} catch (IOException e) {
+				// processo encerrado
+			}
+		}
+
+		private synchronized void appendError(byte[] buf, int len) {
+			if (len >= errors.length) {
+				System.arraycopy(buf, len - errors.length, errors, 0, errors.length);
+				errorsLength = errors.length;
+				return;
+			}
+			int keep = Math.min(errorsLength, errors.length - len);
+			System.arraycopy(errors, errorsLength - keep, errors, 0, keep);
+			System.arraycopy(buf, 0, errors, keep, len);
+			errorsLength = keep + len;
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package br.com.icaro.google.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+/**
+ * @author icaroafonso
+ *
+ *  Cache em disco de udios convertidos, endereado pelo contedo. A chave  o hash SHA-256 do arquivo de origem mais
+ *  o formato de sada ({@link ConversionSettings}); arquivos iguais com nomes diferentes compartilham a converso e
+ *  arquivos diferentes com o mesmo nome no colidem. O diretrio  limitado em bytes e descarta os arquivos menos
+ *  usados; a data de modificao de cada entrada marca o ltimo uso, de modo que a ordem sobrevive a reincios.
+ *
+ *  Pedidos simultneos para a mesma chave so agrupados: apenas um executa a converso e os demais aguardam o resultado.
+ *  Os arquivos retornados pertencem ao cache e no devem ser alterados nem removidos pelo chamador.
+ */
+public class ConversionCache {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/** Hashes j calculados, por caminho, tamanho e data de modificao da origem. */
+	private static final int MAX_REMEMBERED_HASHES = 10000;
+
+	/**
+	 * Executa a converso gravando o resultado no arquivo informado.
+	 */
+	public interface Encoder {
+		void encode(File target) throws IOException;
+	}
+
+	private final File directory;
+	private final long maxBytes;
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final ConcurrentMap<String, CompletableFuture<File>> loading = new ConcurrentHashMap<String, CompletableFuture<File>>();
+	private final Map<String, String> hashes = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MAX_REMEMBERED_HASHES;
+		}
+	});
+
+	/**
+	 * @param directory - diretrio das converses; criado se no existir
+	 * @param maxBytes - tamanho mximo do diretrio
+	 * @throws IOException se o diretrio no puder ser criado
+	 */
+	public ConversionCache(File directory, long maxBytes) throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		Files.createDirectories(directory.toPath());
+		File[] temps = directory.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+		if (temps != null) {
+			// converses interrompidas por uma execuo anterior
+			for (File temp : temps) {
+				temp.delete();
+			}
+		}
+		for (File file : listEntries()) {
+			bytes.addAndGet(file.length());
+		}
+	}
+
+	/**
+	 * Monta a chave de uma converso: hash do contedo da origem mais o formato de sada.
+	 */
+	public String key(File source, ConversionSettings settings) throws IOException {
+		return hash(source) + "-" + settings.getEncoding().name().toLowerCase() + "-" + settings.getSampleRateHertz() + "-" + settings.getChannels();
+	}
+
+	/**
+	 * Retorna a converso em cache ou a executa na thread chamadora. Chamadas simultneas com a mesma chave aguardam a
+	 * mesma converso.
+	 *
+	 * @param source - arquivo de origem
+	 * @param settings - formato de sada
+	 * @param encoder - executa a converso quando ela no est em cache
+	 * @return o arquivo convertido, dentro do diretrio do cache
+	 */
+	public File get(File source, ConversionSettings settings, Encoder encoder) throws IOException {
+		String key = key(source, settings);
+		File file = new File(directory, key + (settings.getEncoding() == AudioEncoding.FLAC ? ".flac" : ".raw"));
+		if (touch(file)) {
+			hits.incrementAndGet();
+			return file;
+		}
+		CompletableFuture<File> mine = new CompletableFuture<File>();
+		CompletableFuture<File> existing = loading.putIfAbsent(key, mine);
+		if (existing != null) {
+			try {
+				File converted = existing.get();
+				hits.incrementAndGet();
+				return converted;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted waiting for conversion of " + source, e);
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+			}
+		}
+		try {
+			if (touch(file)) {
+				// concluda por outro pedido entre a primeira verificao e o registro deste
+				hits.incrementAndGet();
+			} else {
+				misses.incrementAndGet();
+				File temp = File.createTempFile("conversion-", TEMP_SUFFIX, directory);
+				long previous;
+				try {
+					encoder.encode(temp);
+					previous = file.isFile() ? file.length() : 0;
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} finally {
+					temp.delete();
+				}
+				if (bytes.addAndGet(file.length() - previous) > maxBytes) {
+					evict(file);
+				}
+			}
+			mine.complete(file);
+			return file;
+		} catch (IOException | RuntimeException e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Como {@link #get(File, ConversionSettings, Encoder)}, entregando a converso no arquivo informado (por link quando
+	 * possvel, seno por cpia). O arquivo entregue pode ser removido pelo chamador.
+	 *
+	 * @return {@code target}
+	 */
+	public File get(File source, ConversionSettings settings, File target, Encoder encoder) throws IOException {
+		for (int attempt = 0; ; attempt++) {
+			File cached = get(source, settings, encoder);
+			try {
+				Files.deleteIfExists(target.toPath());
+				try {
+					Files.createLink(target.toPath(), cached.toPath());
+				} catch (IOException | UnsupportedOperationException e) {
+					if (e instanceof NoSuchFileException) {
+						throw (NoSuchFileException) e;
+					}
+					Files.copy(cached.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				return target;
+			} catch (NoSuchFileException e) {
+				// descartada por uma eviction antes da entrega: converte de novo uma nica vez
+				if (attempt > 0) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return bytes ocupados pelas converses em cache
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * @return pedidos atendidos sem executar a converso
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return converses executadas
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Marca a entrada como usada agora.
+	 *
+	 * @return se a entrada existe
+	 */
+	private static boolean touch(File file) {
+		return file.isFile() && file.setLastModified(System.currentTimeMillis());
+	}
+
+	/**
+	 * Remove as entradas menos usadas at o diretrio voltar ao limite, preservando a que acabou de ser gravada.
+	 */
+	private synchronized void evict(File keep) {
+		File[] files = listEntries();
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files) {
+			if (bytes.get() <= maxBytes) {
+				break;
+			}
+			if (file.equals(keep)) {
+				continue;
+			}
+			long length = file.length();
+			if (file.delete()) {
+				bytes.addAndGet(-length);
+			}
+		}
+	}
+
+	private File[] listEntries() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".flac") || name.endsWith(".raw"));
+		return files == null ? new File[0] : files;
+	}
+
+	/**
+	 * Hash SHA-256 do contedo, lembrado enquanto o caminho, o tamanho e a data de modificao no mudarem.
+	 */
+	private String hash(File source) throws IOException {
+		String id = source.getCanonicalPath() + ":" + source.length() + ":" + source.lastModified();
+		String hash = hashes.get(id);
+		if (hash != null) {
+			return hash;
+		}
+		MessageDigest digest = Digests.sha256();
+		try (InputStream in = Files.newInputStream(source.toPath())) {
+			byte[] buf = new byte[65536];
+			int len;
+			while ((len = in.read(buf)) != -1) {
+				digest.update(buf, 0, len);
+			}
+		}
+		hash = Digests.hex(digest.digest());
+		hashes.put(id, hash);
+		return hash;
+	}
+}
@@ -0,0 +1,52 @@
+package br.com.icaro.google.helper;
+
+import java.io.IOException;
+
+/**
+ * @author icaroafonso
+ * Falha em uma converso de udio, com o motivo identificado em {@link #getReason()}.
+ */
+public class ConversionException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Motivos de falha de uma converso.
+	 */
+	public enum Reason {
+		/** O arquivo de entrada no existe ou no pode ser lido. */
+		INPUT_NOT_FOUND,
+		/** O ffmpeg no terminou dentro do tempo limite e foi encerrado. */
+		TIMEOUT,
+		/** O ffmpeg terminou com erro (formato invlido, codec ausente etc.). */
+		ENCODER_FAILED,
+		/** A converso foi cancelada ou a thread foi interrompida. */
+		CANCELLED
+	}
+
+	private final Reason reason;
+	private final String source;
+
+	public ConversionException(Reason reason, String source, String message) {
+		super(reason + " converting " + source + (message != null && !message.isEmpty() ? ": " + message : ""));
+		this.reason = reason;
+		this.source = source;
+	}
+
+	public ConversionException(Reason reason, String source, Throwable cause) {
+		super(reason + " converting " + source + ": " + cause, cause);
+		this.reason = reason;
+		this.source = source;
+	}
+
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return o arquivo de entrada da converso que falhou
+	 */
+	public String getSource() {
+		return source;
+	}
+}
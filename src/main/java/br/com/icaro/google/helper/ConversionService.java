@@ -0,0 +1,277 @@
+package br.com.icaro.google.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+import br.com.icaro.google.metrics.Metrics;
+import br.com.icaro.google.metrics.Stage;
+
+/**
+ * @author icaroafonso
+ *
+ *  Servio de converso de udio em paralelo. Um nmero fixo de workers (por padro, um por ncleo) executa o ffmpeg,
+ *  e uma fila limitada aplica contrapresso: {@link #submit(String, File, ConversionSettings)} bloqueia o produtor
+ *  enquanto a fila estiver cheia. Cada converso tem um tempo limite, aps o qual o processo ffmpeg  encerrado.
+ *
+ *  Arquivos WAV PCM convertidos para LINEAR16 mono no passam pelo ffmpeg: so convertidos na prpria JVM pelo
+ *  {@link PcmResampler}.
+ *
+ *  As falhas so entregues como {@link ConversionException} no {@link CompletableFuture} de cada converso.
+ */
+public class ConversionService implements AutoCloseable {
+
+	/** Tempo limite padro de uma converso. */
+	public static final long DEFAULT_TIMEOUT_MINUTES = 10;
+
+	/** Intervalo para verificar cancelamento enquanto o ffmpeg executa. */
+	private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+	private final ExecutorService executor;
+	private final Semaphore capacity;
+	private final long timeoutNanos;
+	private volatile ConversionCache cache;
+
+	/**
+	 * Cria um servio com um worker por ncleo, fila de quatro converses por worker e tempo limite de
+	 * {@value #DEFAULT_TIMEOUT_MINUTES} minutos.
+	 */
+	public ConversionService() {
+		this(Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors(), DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * @param workers - converses executadas ao mesmo tempo
+	 * @param queueCapacity - converses aguardando um worker antes de bloquear os produtores
+	 * @param timeout - tempo limite de cada converso
+	 * @param unit - unidade do tempo limite
+	 */
+	public ConversionService(int workers, int queueCapacity, long timeout, TimeUnit unit) {
+		this.capacity = new Semaphore(workers + queueCapacity);
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "audio-conversion-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Agenda a converso de um arquivo, gravando o resultado ao lado da origem com o nome completo dela seguido da
+	 * taxa e da extenso do formato de sada (ex.: a.mp3 vira a.mp3.16000hz.flac), para que a sada nunca coincida
+	 * com a origem nem com a de outra origem de mesmo nome base.
+	 */
+	public CompletableFuture<File> submit(String inputFilePath, ConversionSettings settings) throws InterruptedException {
+		return submit(inputFilePath, defaultTarget(new File(inputFilePath), settings), settings);
+	}
+
+	/**
+	 * Agenda a converso de um arquivo. Bloqueia enquanto a fila estiver cheia.
+	 *
+	 * @param inputFilePath - arquivo de entrada
+	 * @param target - arquivo de sada (sobrescrito se existir; nunca o prprio arquivo de entrada)
+	 * @param settings - formato de sada
+	 * @return {@link CompletableFuture} com o arquivo convertido, ou com uma {@link ConversionException}
+	 * @throws IllegalArgumentException se {@code target} for o arquivo de entrada
+	 * @throws InterruptedException se a thread for interrompida aguardando espao na fila
+	 */
+	public CompletableFuture<File> submit(final String inputFilePath, final File target, final ConversionSettings settings) throws InterruptedException {
+		if (sameFile(new File(inputFilePath), target)) {
+			throw new IllegalArgumentException("target is the input file: " + inputFilePath);
+		}
+		capacity.acquire();
+		final CompletableFuture<File> result = new CompletableFuture<File>();
+		try {
+			executor.execute(() -> {
+				try {
+					if (!result.isDone()) {
+						result.complete(convert(inputFilePath, target, settings, result));
+					}
+				} catch (ConversionException e) {
+					result.completeExceptionally(e);
+				} catch (Throwable t) {
+					result.completeExceptionally(new ConversionException(ConversionException.Reason.ENCODER_FAILED, inputFilePath, t));
+				} finally {
+					capacity.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			capacity.release();
+			throw e;
+		}
+		return result;
+	}
+
+	/**
+	 * @return converses em andamento ou aguardando na fila
+	 */
+	public int getPending() {
+		return ((ThreadPoolExecutor) executor).getActiveCount() + ((ThreadPoolExecutor) executor).getQueue().size();
+	}
+
+	/**
+	 * Para de aceitar converses; as j agendadas so concludas.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Ativa (ou, com null, desativa) o cache de converses. Com o cache, uma origem j convertida para o mesmo formato
+	 * no passa de novo pelo ffmpeg: a converso guardada  entregue no arquivo de sada.
+	 */
+	public void setCache(ConversionCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * @return o cache de converses em uso, ou null
+	 */
+	public ConversionCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Executa uma converso na thread atual, respeitando o tempo limite do servio. O processo tambm  encerrado
+	 * se {@code result} for cancelado pelo chamador.
+	 */
+	File convert(final String inputFilePath, File target, final ConversionSettings settings, final CompletableFuture<File> result) throws ConversionException {
+		File source = new File(inputFilePath);
+		if (!source.isFile() || !source.canRead()) {
+			throw new ConversionException(ConversionException.Reason.INPUT_NOT_FOUND, inputFilePath, (String) null);
+		}
+		ConversionCache cache = this.cache;
+		if (cache == null) {
+			return encode(inputFilePath, target, settings, result);
+		}
+		try {
+			return cache.get(source, settings, target, out -> encode(inputFilePath, out, settings, result));
+		} catch (ConversionException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new ConversionException(ConversionException.Reason.ENCODER_FAILED, inputFilePath, e);
+		}
+	}
+
+	private File encode(String inputFilePath, File target, ConversionSettings settings, CompletableFuture<File> result) throws ConversionException {
+		File log = null;
+		Process process = null;
+		long start = Metrics.start();
+		// s apaga a sada de uma falha se foi esta converso que a criou
+		boolean created = !target.exists();
+		try {
+			PcmFormat format = AudioTranscoder.pcmInput(inputFilePath, settings);
+			if (format != null) {
+				convertPcm(inputFilePath, format, target, created, settings, result);
+				Metrics.stage(Stage.CONVERSION, start);
+				return target;
+			}
+			log = File.createTempFile("ffmpeg-", ".log");
+			ProcessBuilder builder = new ProcessBuilder(AudioTranscoder.command(inputFilePath, settings, target.getPath()))
+					.redirectErrorStream(true)
+					.redirectOutput(log);
+			process = builder.start();
+			long deadline = System.nanoTime() + timeoutNanos;
+			while (!process.waitFor(Math.min(POLL_NANOS, Math.max(0, deadline - System.nanoTime())), TimeUnit.NANOSECONDS)) {
+				if (result.isCancelled()) {
+					process.destroyForcibly();
+					discard(target, created);
+					throw new ConversionException(ConversionException.Reason.CANCELLED, inputFilePath, (String) null);
+				}
+				if (System.nanoTime() - deadline >= 0) {
+					process.destroyForcibly();
+					discard(target, created);
+					throw new ConversionException(ConversionException.Reason.TIMEOUT, inputFilePath,
+							"no result after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+				}
+			}
+			if (process.exitValue() != 0) {
+				discard(target, created);
+				throw new ConversionException(ConversionException.Reason.ENCODER_FAILED, inputFilePath,
+						new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8).trim());
+			}
+			Metrics.stage(Stage.CONVERSION, start);
+			return target;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ConversionException(ConversionException.Reason.CANCELLED, inputFilePath, e);
+		} catch (ConversionException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new ConversionException(ConversionException.Reason.ENCODER_FAILED, inputFilePath, e);
+		} finally {
+			if (process != null && process.isAlive()) {
+				process.destroyForcibly();
+			}
+			if (log != null) {
+				log.delete();
+			}
+		}
+	}
+
+	/**
+	 * Converte um WAV PCM para LINEAR16 mono na prpria JVM, verificando o cancelamento e o tempo limite a cada bloco.
+	 */
+	private void convertPcm(String inputFilePath, PcmFormat format, File target, boolean created, ConversionSettings settings, CompletableFuture<File> result) throws IOException, ConversionException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		boolean completed = false;
+		try (InputStream in = PcmResampler.open(inputFilePath, format, settings.getSampleRateHertz());
+				OutputStream out = Files.newOutputStream(target.toPath())) {
+			byte[] buf = new byte[65536];
+			int len;
+			while ((len = in.read(buf)) != -1) {
+				out.write(buf, 0, len);
+				if (result.isCancelled()) {
+					throw new ConversionException(ConversionException.Reason.CANCELLED, inputFilePath, (String) null);
+				}
+				if (System.nanoTime() - deadline >= 0) {
+					throw new ConversionException(ConversionException.Reason.TIMEOUT, inputFilePath,
+							"no result after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+				}
+			}
+			completed = true;
+		} finally {
+			if (!completed) {
+				discard(target, created);
+			}
+		}
+	}
+
+	private static void discard(File target, boolean created) {
+		if (created) {
+			target.delete();
+		}
+	}
+
+	static boolean sameFile(File a, File b) {
+		try {
+			return a.getCanonicalFile().equals(b.getCanonicalFile());
+		} catch (IOException e) {
+			return a.getAbsoluteFile().equals(b.getAbsoluteFile());
+		}
+	}
+
+	static File defaultTarget(File source, ConversionSettings settings) {
+		String extension = settings.getEncoding() == AudioEncoding.FLAC ? ".flac" : ".raw";
+		return new File(source.getAbsoluteFile().getParentFile(), source.getName() + "." + settings.getSampleRateHertz() + "hz" + extension);
+	}
+}
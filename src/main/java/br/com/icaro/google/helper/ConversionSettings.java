@@ -0,0 +1,69 @@
+package br.com.icaro.google.helper;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+/**
+ * @author icaroafonso
+ * Formato de sada de uma converso de udio: codificao (FLAC ou LINEAR16), taxa de amostragem e quantidade de canais.
+ */
+public class ConversionSettings {
+
+	/** Taxa de amostragem ideal para o reconhecimento. */
+	public static final int RECOMMENDED_SAMPLE_RATE_HERTZ = 16000;
+
+	private final AudioEncoding encoding;
+	private final int sampleRateHertz;
+	private final int channels;
+
+	/**
+	 * @param encoding - {@link AudioEncoding#FLAC} ou {@link AudioEncoding#LINEAR16}
+	 * @param sampleRateHertz - taxa de amostragem de sada. 16000  timo para o reconhecimento.
+	 * @param channels - quantidade de canais de sada
+	 */
+	public ConversionSettings(AudioEncoding encoding, int sampleRateHertz, int channels) {
+		if (encoding != AudioEncoding.FLAC && encoding != AudioEncoding.LINEAR16) {
+			throw new IllegalArgumentException("Unsupported target encoding: " + encoding);
+		}
+		this.encoding = encoding;
+		this.sampleRateHertz = sampleRateHertz;
+		this.channels = channels;
+	}
+
+	/**
+	 * @return FLAC mono na taxa informada
+	 */
+	public static ConversionSettings flac(int sampleRateHertz) {
+		return new ConversionSettings(AudioEncoding.FLAC, sampleRateHertz, 1);
+	}
+
+	/**
+	 * @return LINEAR16 (PCM 16 bits little-endian, sem cabealho) mono na taxa informada
+	 */
+	public static ConversionSettings linear16(int sampleRateHertz) {
+		return new ConversionSettings(AudioEncoding.LINEAR16, sampleRateHertz, 1);
+	}
+
+	public AudioEncoding getEncoding() {
+		return encoding;
+	}
+
+	public int getSampleRateHertz() {
+		return sampleRateHertz;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @return o MIME type da sada, para upload no Storage
+	 */
+	public String getContentType() {
+		return encoding == AudioEncoding.FLAC ? "audio/flac" : "audio/l16";
+	}
+
+	@Override
+	public String toString() {
+		return "ConversionSettings [encoding=" + encoding + ", sampleRateHertz=" + sampleRateHertz + ", channels=" + channels + "]";
+	}
+}
@@ -0,0 +1,33 @@
+package br.com.icaro.google.helper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * @author icaroafonso
+ * Hashes usados como chaves de cache e de dirio: SHA-256 em hexadecimal minsculo, seguro para nomes de arquivos.
+ */
+public class Digests {
+
+	/**
+	 * @return um novo {@link MessageDigest} SHA-256, algoritmo que toda JVM  obrigada a oferecer
+	 */
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return os bytes em hexadecimal minsculo, dois dgitos por byte
+	 */
+	public static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,35 @@
+package br.com.icaro.google.helper;
+
+import java.lang.reflect.Method;
+
+import ws.schild.jave.DefaultFFMPEGLocator;
+
+/**
+ * @author icaroafonso
+ * Expe o caminho do executvel ffmpeg distribudo com o JAVE, para que o processo possa ser iniciado diretamente
+ * (com a sada em pipe) em vez de pelo {@link ws.schild.jave.Encoder}, que sempre grava em arquivo.
+ */
+class FfmpegLocator {
+
+	private static String executable = null;
+
+	/**
+	 * O {@link DefaultFFMPEGLocator} extrai o binrio nativo na primeira instncia, procurando o recurso relativo 
+	 * prpria classe; por isso ele  instanciado diretamente e o caminho, protegido,  lido por reflexo.
+	 *
+	 * @return o caminho do executvel ffmpeg
+	 */
+	static synchronized String executable() {
+		if (executable == null) {
+			try {
+				DefaultFFMPEGLocator locator = new DefaultFFMPEGLocator();
+				Method method = DefaultFFMPEGLocator.class.getDeclaredMethod("getFFMPEGExecutablePath");
+				method.setAccessible(true);
+				executable = (String) method.invoke(locator);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Unable to locate the ffmpeg executable bundled with JAVE", e);
+			}
+		}
+		return executable;
+	}
+}
@@ -0,0 +1,249 @@
+package br.com.icaro.google.helper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * @author icaroafonso
+ * Formato de um udio PCM no comprimido: taxa de amostragem, canais e tamanho das amostras (8, 16, 24 ou 32 bits
+ * inteiros little-endian, ou 32 bits em ponto flutuante), e onde as amostras comeam e terminam no arquivo.
+ */
+public class PcmFormat {
+	private static final int RIFF = 0x46464952;
+	private static final int WAVE = 0x45564157;
+	private static final int FMT = 0x20746d66;
+	private static final int DATA = 0x61746164;
+	private static final int FORMAT_PCM = 1;
+	private static final int FORMAT_FLOAT = 3;
+	private static final int FORMAT_MULAW = 7;
+	private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+	private final int sampleRateHertz;
+	private final int channels;
+	private final int bitsPerSample;
+	private final boolean floating;
+	private final long dataOffset;
+	private final long dataLength;
+
+	/**
+	 * @param sampleRateHertz - taxa de amostragem
+	 * @param channels - quantidade de canais intercalados
+	 * @param bitsPerSample - 8, 16, 24 ou 32
+	 * @param floating - se as amostras de 32 bits so em ponto flutuante
+	 * @param dataOffset - posio, em bytes, da primeira amostra no arquivo
+	 * @param dataLength - tamanho, em bytes, das amostras, ou -1 para ler at o fim
+	 */
+	public PcmFormat(int sampleRateHertz, int channels, int bitsPerSample, boolean floating, long dataOffset, long dataLength) {
+		if (sampleRateHertz <= 0 || channels <= 0) {
+			throw new IllegalArgumentException("Invalid PCM format: " + sampleRateHertz + " Hz, " + channels + " channels");
+		}
+		if (floating ? bitsPerSample != 32 : bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 24 && bitsPerSample != 32) {
+			throw new IllegalArgumentException("Unsupported sample size: " + bitsPerSample + (floating ? " bits float" : " bits"));
+		}
+		this.sampleRateHertz = sampleRateHertz;
+		this.channels = channels;
+		this.bitsPerSample = bitsPerSample;
+		this.floating = floating;
+		this.dataOffset = dataOffset;
+		this.dataLength = dataLength;
+	}
+
+	/**
+	 * @return formato de um arquivo LINEAR16 cru (PCM 16 bits little-endian, sem cabealho), como o audio.raw dos testes
+	 */
+	public static PcmFormat linear16(int sampleRateHertz, int channels) {
+		return new PcmFormat(sampleRateHertz, channels, 16, false, 0, -1);
+	}
+
+	/**
+	 * L o cabealho de um arquivo WAV, sem ler as amostras.
+	 *
+	 * @param inputFilePath - arquivo a verificar
+	 * @return o formato das amostras, ou null se o arquivo no for um WAV PCM suportado
+	 */
+	public static PcmFormat readWav(String inputFilePath) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFilePath), StandardOpenOption.READ)) {
+			WavHeader header = readWavHeader(channel);
+			return header == null ? null : header.toPcmFormat();
+		}
+	}
+
+	/**
+	 * L o cabealho de um WAV com leituras posicionais, sem alterar a posio do canal.
+	 *
+	 * @return o cabealho, ou null se o arquivo no comear com "RIFF" ... "WAVE"
+	 */
+	static WavHeader readWavHeader(final FileChannel channel) throws IOException {
+		return readWavHeader(channel.size(), (buf, position) -> {
+			while (buf.hasRemaining()) {
+				if (channel.read(buf, position + buf.position()) < 0) {
+					throw new EOFException("Truncated WAV header");
+				}
+			}
+		});
+	}
+
+	/**
+	 * L o cabealho de um WAV j carregado em memria.
+	 *
+	 * @return o cabealho, ou null se o contedo no comear com "RIFF" ... "WAVE"
+	 * @throws IllegalArgumentException se o cabealho estiver truncado
+	 */
+	static WavHeader readWavHeader(final ByteString audio) {
+		try {
+			return readWavHeader(audio.size(), (buf, position) -> {
+				if (position + buf.remaining() > audio.size()) {
+					throw new EOFException("Truncated WAV header");
+				}
+				audio.substring((int) position, (int) position + buf.remaining()).copyTo(buf);
+			});
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Percorre os chunks RIFF at o "data". Os tamanhos so lidos sem sinal, e o tamanho do "data"  respeitado, exceto
+	 * quando  0 ou 0xFFFFFFFF (gravao em andamento) ou passa do fim do arquivo, casos em que as amostras vo at o fim.
+	 */
+	private static WavHeader readWavHeader(long size, HeaderReader reader) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+		if (size < 12) {
+			return null;
+		}
+		read(reader, buf, 0, 12);
+		if (buf.getInt(0) != RIFF || buf.getInt(8) != WAVE) {
+			return null;
+		}
+		int format = -1;
+		int channels = 0;
+		int sampleRate = 0;
+		int bits = 0;
+		long pos = 12;
+		while (pos + 8 <= size) {
+			read(reader, buf, pos, 8);
+			int id = buf.getInt(0);
+			long chunkSize = buf.getInt(4) & 0xFFFFFFFFL;
+			if (id == FMT && chunkSize >= 16) {
+				read(reader, buf, pos + 8, (int) Math.min(chunkSize, 40));
+				format = buf.getShort(0) & 0xFFFF;
+				channels = buf.getShort(2) & 0xFFFF;
+				sampleRate = buf.getInt(4);
+				bits = buf.getShort(14) & 0xFFFF;
+				if (format == FORMAT_EXTENSIBLE && chunkSize >= 26) {
+					format = buf.getShort(24) & 0xFFFF;
+				}
+			} else if (id == DATA) {
+				long length = chunkSize == 0 || chunkSize == 0xFFFFFFFFL || pos + 8 + chunkSize > size ? size - pos - 8 : chunkSize;
+				return new WavHeader(format, channels, sampleRate, bits, pos + 8, length);
+			}
+			pos += 8 + chunkSize + (chunkSize & 1);
+		}
+		return new WavHeader(format, channels, sampleRate, bits, -1, 0);
+	}
+
+	private static void read(HeaderReader reader, ByteBuffer buf, long position, int length) throws IOException {
+		buf.clear().limit(length);
+		reader.read(buf, position);
+	}
+
+	public int getSampleRateHertz() {
+		return sampleRateHertz;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+
+	public boolean isFloating() {
+		return floating;
+	}
+
+	/**
+	 * @return tamanho, em bytes, de um quadro (uma amostra de cada canal)
+	 */
+	public int getFrameSize() {
+		return channels * bitsPerSample / 8;
+	}
+
+	public long getDataOffset() {
+		return dataOffset;
+	}
+
+	/**
+	 * @return tamanho, em bytes, das amostras, ou -1 se for at o fim do arquivo
+	 */
+	public long getDataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * @return se o udio j est em LINEAR16 mono na taxa informada, dispensando qualquer converso
+	 */
+	public boolean isLinear16Mono(int sampleRateHertz) {
+		return this.sampleRateHertz == sampleRateHertz && channels == 1 && bitsPerSample == 16 && !floating;
+	}
+
+	@Override
+	public String toString() {
+		return "PcmFormat [" + sampleRateHertz + " Hz, " + channels + " ch, " + bitsPerSample + (floating ? " bits float" : " bits")
+				+ ", data=" + dataOffset + "+" + dataLength + "]";
+	}
+
+	/**
+	 * Leitura posicional que preenche o buffer at o limite, ou falha com {@link EOFException}.
+	 */
+	private interface HeaderReader {
+		void read(ByteBuffer buf, long position) throws IOException;
+	}
+
+	/**
+	 * Campos do cabealho WAV como esto no arquivo, antes de verificar se o formato  suportado. Inclui codificaes
+	 * que {@link PcmFormat} no representa, como mu-law.
+	 */
+	static final class WavHeader {
+		final int formatTag;
+		final int channels;
+		final int sampleRateHertz;
+		final int bitsPerSample;
+		/** posio das amostras, ou -1 se o arquivo no tiver chunk "data" */
+		final long dataOffset;
+		final long dataLength;
+
+		WavHeader(int formatTag, int channels, int sampleRateHertz, int bitsPerSample, long dataOffset, long dataLength) {
+			this.formatTag = formatTag;
+			this.channels = channels;
+			this.sampleRateHertz = sampleRateHertz;
+			this.bitsPerSample = bitsPerSample;
+			this.dataOffset = dataOffset;
+			this.dataLength = dataLength;
+		}
+
+		boolean isMulaw() {
+			return formatTag == FORMAT_MULAW && bitsPerSample == 8;
+		}
+
+		/**
+		 * @return o formato das amostras, ou null se no for PCM inteiro ou ponto flutuante suportado
+		 */
+		PcmFormat toPcmFormat() {
+			boolean supported = formatTag == FORMAT_PCM && (bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 24 || bitsPerSample == 32)
+					|| formatTag == FORMAT_FLOAT && bitsPerSample == 32;
+			if (!supported || dataOffset < 0 || channels == 0 || sampleRateHertz <= 0) {
+				return null;
+			}
+			return new PcmFormat(sampleRateHertz, channels, bitsPerSample, formatTag == FORMAT_FLOAT, dataOffset, dataLength);
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package br.com.icaro.google.helper;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * @author icaroafonso
+ *
+ *  Converso de udio PCM (WAV ou cru) para LINEAR16 mono na prpria JVM, sem iniciar o ffmpeg. Os canais so
+ *  misturados pela mdia e a taxa de amostragem  convertida por um filtro polifsico (sinc janelado) na razo
+ *  racional entre as taxas, o que tambm remove as frequncias acima da nova banda antes de reduzir a taxa.
+ *
+ *  A converso  feita em streaming, em buffers de tamanho fixo alocados uma nica vez, e o resultado  lido como um
+ *  {@link InputStream} de amostras de 16 bits little-endian, sem cabealho.
+ */
+public class PcmResampler extends InputStream {
+
+	/** Quadros de entrada lidos por vez. */
+	static final int BLOCK_FRAMES = 4096;
+
+	/** Coeficientes por fase do filtro quando a taxa no  reduzida; cresce com a razo de reduo. */
+	static final int TAPS_PER_PHASE = 32;
+
+	private static final int MAX_TAPS_PER_PHASE = 256;
+
+	/** Filtros j calculados, por razo de converso, compartilhados por todas as instncias. */
+	private static final ConcurrentMap<Long, float[]> FILTERS = new ConcurrentHashMap<Long, float[]>();
+
+	private final InputStream source;
+	private final PcmFormat format;
+	private final int up;
+	private final int down;
+	private final int taps;
+	private final float[] filter;
+	private final long delay;
+
+	private final byte[] input;
+	private int inputLength;
+	private final float[] samples;
+	private long samplesStart;
+	private int samplesLength;
+	private long framesRead;
+	private boolean eof;
+
+	private final byte[] output;
+	private int outputPos;
+	private int outputLength;
+	private long produced;
+
+	/**
+	 * @param source - amostras no formato informado, a partir da primeira (sem cabealho)
+	 * @param format - formato das amostras de entrada
+	 * @param sampleRateHertz - taxa de amostragem de sada
+	 */
+	public PcmResampler(InputStream source, PcmFormat format, int sampleRateHertz) {
+		if (sampleRateHertz <= 0) {
+			throw new IllegalArgumentException("Invalid sample rate: " + sampleRateHertz);
+		}
+		this.source = source;
+		this.format = format;
+		int gcd = gcd(format.getSampleRateHertz(), sampleRateHertz);
+		this.up = sampleRateHertz / gcd;
+		this.down = format.getSampleRateHertz() / gcd;
+		this.taps = up == down ? 1 : Math.min(MAX_TAPS_PER_PHASE, TAPS_PER_PHASE * Math.max(1, (down + up - 1) / up));
+		this.filter = filter(up, down, taps);
+		this.delay = ((long) up * taps - 1) / 2;
+		this.input = new byte[BLOCK_FRAMES * format.getFrameSize()];
+		this.samples = new float[taps + BLOCK_FRAMES];
+		this.samplesStart = -(taps - 1);
+		this.samplesLength = taps - 1;
+		this.output = new byte[2 * (int) ((long) BLOCK_FRAMES * up / down + 2)];
+	}
+
+	/**
+	 * Abre um arquivo WAV PCM para converso.
+	 *
+	 * @param inputFilePath - arquivo WAV (ver {@link PcmFormat#readWav(String)})
+	 * @param sampleRateHertz - taxa de amostragem de sada
+	 * @return stream com o udio em LINEAR16 mono; deve ser fechado pelo chamador
+	 * @throws IOException se o arquivo no for um WAV PCM suportado
+	 */
+	public static PcmResampler open(String inputFilePath, int sampleRateHertz) throws IOException {
+		PcmFormat format = PcmFormat.readWav(inputFilePath);
+		if (format == null) {
+			throw new IOException("Not a supported PCM WAV file: " + inputFilePath);
+		}
+		return open(inputFilePath, format, sampleRateHertz);
+	}
+
+	/**
+	 * Abre um arquivo PCM de formato conhecido (por exemplo LINEAR16 cru, ver {@link PcmFormat#linear16(int, int)}).
+	 */
+	public static PcmResampler open(String inputFilePath, PcmFormat format, int sampleRateHertz) throws IOException {
+		InputStream in = Files.newInputStream(Paths.get(inputFilePath));
+		try {
+			ByteStreams.skipFully(in, format.getDataOffset());
+			if (format.getDataLength() >= 0) {
+				in = ByteStreams.limit(in, format.getDataLength());
+			}
+			return new PcmResampler(new BufferedInputStream(in, 65536), format, sampleRateHertz);
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (outputPos == outputLength && !fill()) {
+			return -1;
+		}
+		return output[outputPos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (outputPos == outputLength && !fill()) {
+			return -1;
+		}
+		int n = Math.min(len, outputLength - outputPos);
+		System.arraycopy(output, outputPos, b, off, n);
+		outputPos += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return outputLength - outputPos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+	/**
+	 * @return quantidade de quadros de sada correspondente ao udio de entrada
+	 */
+	private long expectedOutput() {
+		return (framesRead * up + down - 1) / down;
+	}
+
+	/**
+	 * Produz o prximo bloco de sada.
+	 *
+	 * @return false quando a entrada terminou e toda a sada j foi entregue
+	 */
+	private boolean fill() throws IOException {
+		outputPos = 0;
+		outputLength = 0;
+		while (outputLength == 0) {
+			if (eof && produced >= expectedOutput()) {
+				return false;
+			}
+			readBlock();
+			long limit = eof ? expectedOutput() : Long.MAX_VALUE;
+			long available = samplesStart + samplesLength;
+			while (produced < limit && outputLength + 2 <= output.length) {
+				long t = produced * down + delay;
+				long index = t / up;
+				if (index >= available) {
+					break;
+				}
+				int phase = (int) (t - index * up);
+				int base = (int) (index - samplesStart);
+				int coefficient = phase * taps;
+				float sum = 0;
+				for (int k = 0; k < taps; k++) {
+					sum += filter[coefficient + k] * samples[base - k];
+				}
+				int value = Math.round(sum * 32768f);
+				value = value > Short.MAX_VALUE ? Short.MAX_VALUE : value < Short.MIN_VALUE ? Short.MIN_VALUE : value;
+				output[outputLength++] = (byte) value;
+				output[outputLength++] = (byte) (value >> 8);
+				produced++;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Descarta as amostras que no sero mais usadas e completa o buffer com o prximo bloco da entrada, misturado em
+	 * mono; depois do fim da entrada completa com silncio, para esvaziar o filtro.
+	 */
+	private void readBlock() throws IOException {
+		long next = (produced * down + delay) / up - (taps - 1);
+		int discard = (int) Math.max(0, Math.min(samplesLength, next - samplesStart));
+		if (discard > 0) {
+			System.arraycopy(samples, discard, samples, 0, samplesLength - discard);
+			samplesLength -= discard;
+			samplesStart += discard;
+		}
+		int room = samples.length - samplesLength;
+		if (room == 0) {
+			return;
+		}
+		if (eof) {
+			Arrays.fill(samples, samplesLength, samples.length, 0f);
+			samplesLength = samples.length;
+			return;
+		}
+		int frameSize = format.getFrameSize();
+		int wanted = Math.min(room, BLOCK_FRAMES) * frameSize;
+		while (inputLength < frameSize) {
+			int n = source.read(input, inputLength, wanted - inputLength);
+			if (n < 0) {
+				eof = true;
+				inputLength = 0;
+				return;
+			}
+			inputLength += n;
+		}
+		int frames = inputLength / frameSize;
+		downmix(frames);
+		int used = frames * frameSize;
+		System.arraycopy(input, used, input, 0, inputLength - used);
+		inputLength -= used;
+		samplesLength += frames;
+		framesRead += frames;
+	}
+
+	private void downmix(int frames) {
+		int channels = format.getChannels();
+		int bytes = format.getBitsPerSample() / 8;
+		boolean floating = format.isFloating();
+		float scale = 1f / channels;
+		int pos = 0;
+		for (int frame = 0; frame < frames; frame++) {
+			float sum = 0;
+			for (int c = 0; c < channels; c++, pos += bytes) {
+				switch (bytes) {
+				case 1:
+					sum += ((input[pos] & 0xFF) - 128) / 128f;
+					break;
+				case 2:
+					sum += (short) (input[pos] & 0xFF | input[pos + 1] << 8) / 32768f;
+					break;
+				case 3:
+					sum += (input[pos] & 0xFF | (input[pos + 1] & 0xFF) << 8 | input[pos + 2] << 16) / 8388608f;
+					break;
+				default:
+					int bits = input[pos] & 0xFF | (input[pos + 1] & 0xFF) << 8 | (input[pos + 2] & 0xFF) << 16 | input[pos + 3] << 24;
+					sum += floating ? Float.intBitsToFloat(bits) : bits / 2147483648f;
+				}
+			}
+			samples[samplesLength + frame] = sum * scale;
+		}
+	}
+
+	/**
+	 * Filtro passa-baixa (sinc com janela de Blackman) na taxa intermediria {@code up} vezes a de entrada, com corte
+	 * abaixo da menor das duas metades de banda, organizado por fase: os coeficientes da fase p ficam em
+	 * {@code [p * taps, (p + 1) * taps)}, j multiplicados por {@code up} para compensar a interpolao.
+	 */
+	static float[] filter(int up, int down, int taps) {
+		long key = (long) up << 32 | down;
+		float[] cached = FILTERS.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		float[] phases = new float[up * taps];
+		if (up == down) {
+			phases[0] = 1f;
+		} else {
+			int length = up * taps;
+			double cutoff = 0.45 / Math.max(up, down);
+			double center = (length - 1) / 2.0;
+			for (int j = 0; j < length; j++) {
+				double x = j - center;
+				double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+				double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * j / (length - 1)) + 0.08 * Math.cos(4 * Math.PI * j / (length - 1));
+				phases[j % up * taps + j / up] = (float) (sinc * window * up);
+			}
+		}
+		float[] previous = FILTERS.putIfAbsent(key, phases);
+		return previous != null ? previous : phases;
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+}
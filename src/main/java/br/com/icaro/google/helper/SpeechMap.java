@@ -0,0 +1,125 @@
+package br.com.icaro.google.helper;
+
+import java.util.Arrays;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * @author icaroafonso
+ * Mapa dos trechos com fala encontrados pelo {@link VoiceActivityDetector} dentro de um udio PCM LINEAR16 mono.
+ * Permite montar o udio s com a fala ({@link #trim(ByteString)}) e traduzir um tempo desse udio reduzido, como o
+ * incio de uma palavra reconhecida, de volta para a posio no udio original ({@link #toOriginalNanos(long)}).
+ */
+public class SpeechMap {
+	private final int[] starts;
+	private final int[] ends;
+	private final long[] trimmedStarts;
+	private final int totalBytes;
+	private final long bytesPerSecond;
+
+	/**
+	 * @param starts - incio (em bytes, relativo s amostras) de cada trecho com fala, em ordem crescente
+	 * @param ends - fim (exclusivo) de cada trecho
+	 * @param totalBytes - tamanho das amostras originais
+	 * @param sampleRateHertz - taxa de amostragem
+	 */
+	SpeechMap(int[] starts, int[] ends, int totalBytes, int sampleRateHertz) {
+		this.starts = starts;
+		this.ends = ends;
+		this.totalBytes = totalBytes;
+		this.bytesPerSecond = 2L * sampleRateHertz;
+		this.trimmedStarts = new long[starts.length];
+		long position = 0;
+		for (int i = 0; i < starts.length; i++) {
+			trimmedStarts[i] = position;
+			position += ends[i] - starts[i];
+		}
+	}
+
+	/**
+	 * @return nmero de trechos com fala
+	 */
+	public int size() {
+		return starts.length;
+	}
+
+	/**
+	 * @return incio, em bytes nas amostras originais, do trecho informado
+	 */
+	public int getStart(int segment) {
+		return starts[segment];
+	}
+
+	/**
+	 * @return fim (exclusivo), em bytes nas amostras originais, do trecho informado
+	 */
+	public int getEnd(int segment) {
+		return ends[segment];
+	}
+
+	/**
+	 * @return tamanho, em bytes, das amostras originais
+	 */
+	public int getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return tamanho, em bytes, do udio s com a fala
+	 */
+	public int getSpeechBytes() {
+		return starts.length == 0 ? 0 : (int) (trimmedStarts[starts.length - 1] + ends[starts.length - 1] - starts[starts.length - 1]);
+	}
+
+	/**
+	 * @return frao do udio original que  fala (de 0 a 1)
+	 */
+	public double getSpeechRatio() {
+		return totalBytes == 0 ? 0 : (double) getSpeechBytes() / totalBytes;
+	}
+
+	/**
+	 * Junta os trechos com fala, sem copiar as amostras.
+	 *
+	 * @param pcm - as mesmas amostras analisadas pelo detector
+	 * @return udio s com a fala
+	 */
+	public ByteString trim(ByteString pcm) {
+		ByteString trimmed = ByteString.EMPTY;
+		for (int i = 0; i < starts.length; i++) {
+			trimmed = trimmed.concat(pcm.substring(starts[i], ends[i]));
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Traduz um tempo do udio reduzido para o udio original. Tempos dentro de um trecho so deslocados pelo silncio
+	 * removido antes dele; um tempo exatamente na emenda de dois trechos corresponde ao incio do segundo.
+	 *
+	 * @param trimmedNanos - tempo, em nanossegundos, no udio retornado por {@link #trim(ByteString)}
+	 * @return tempo, em nanossegundos, no udio original
+	 */
+	public long toOriginalNanos(long trimmedNanos) {
+		if (starts.length == 0) {
+			return trimmedNanos;
+		}
+		long bytes = trimmedNanos * bytesPerSecond / 1000000000L & ~1L;
+		int segment = Arrays.binarySearch(trimmedStarts, bytes);
+		if (segment < 0) {
+			segment = Math.max(0, -segment - 2);
+		}
+		return trimmedNanos + (starts[segment] - trimmedStarts[segment]) * 1000000000L / bytesPerSecond;
+	}
+
+	/**
+	 * Como {@link #toOriginalNanos(long)}, em milissegundos.
+	 */
+	public long toOriginalMillis(long trimmedMillis) {
+		return toOriginalNanos(trimmedMillis * 1000000L) / 1000000L;
+	}
+
+	@Override
+	public String toString() {
+		return "SpeechMap [segments=" + starts.length + ", speechBytes=" + getSpeechBytes() + ", totalBytes=" + totalBytes + "]";
+	}
+}
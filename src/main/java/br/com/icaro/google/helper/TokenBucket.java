@@ -0,0 +1,72 @@
+package br.com.icaro.google.helper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author icaroafonso
+ * Limitador de taxa do tipo token bucket. Os tokens so repostos continuamente at a capacidade mxima, permitindo
+ * rajadas curtas sem ultrapassar a taxa mdia configurada (por exemplo, a cota de requisies por minuto de uma API).
+ */
+public class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param permits - quantidade de tokens repostos a cada {@code period}
+	 * @param period - durao do perodo
+	 * @param unit - unidade do perodo
+	 * @param capacity - mximo de tokens acumulados (tamanho da rajada)
+	 */
+	public TokenBucket(int permits, long period, TimeUnit unit, int capacity) {
+		if (permits <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException("permits and capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.tokensPerNano = (double) permits / unit.toNanos(period);
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Cria um limitador de {@code requestsPerMinute} requisies por minuto, com rajada de at um segundo de cota.
+	 */
+	public static TokenBucket perMinute(int requestsPerMinute) {
+		return new TokenBucket(requestsPerMinute, 1, TimeUnit.MINUTES, Math.max(1, requestsPerMinute / 60));
+	}
+
+	/**
+	 * Bloqueia at haver um token disponvel e o consome.
+	 */
+	public void acquire() throws InterruptedException {
+		long waitNanos;
+		while ((waitNanos = tryAcquireOrWait()) > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	/**
+	 * Consome um token se houver um disponvel.
+	 *
+	 * @return true se o token foi consumido
+	 */
+	public boolean tryAcquire() {
+		return tryAcquireOrWait() == 0;
+	}
+
+	/**
+	 * @return 0 se o token foi consumido, ou o tempo estimado em nanossegundos at o prximo token
+	 */
+	private synchronized long tryAcquireOrWait() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+	}
+}
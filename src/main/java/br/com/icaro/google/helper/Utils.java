@@ -5,17 +5,34 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
 import ws.schild.jave.AudioAttributes;
 import ws.schild.jave.Encoder;
+import ws.schild.jave.EncoderException;
 import ws.schild.jave.EncodingAttributes;
 import ws.schild.jave.MultimediaObject;
 
+import br.com.icaro.google.metrics.Metrics;
+import br.com.icaro.google.metrics.Stage;
+
 /**
  * @author icaroafonso
  * 
  */
 public class Utils {
+
+	/** Formato gerado por {@link #convertAudioToFlac(String)}. */
+	private static final ConversionSettings FLAC_SETTINGS = ConversionSettings.flac(44100);
+
+	private static volatile ConversionCache conversionCache = null;
 	
 	 
 	/**
@@ -27,13 +44,18 @@ public class Utils {
 	public static byte[] getBytes(InputStream is) throws IOException {
 
 		    int len;
-		    int size = 1024;
+		    int size = 8192;
 		    byte[] buf;
 
 		    if (is instanceof ByteArrayInputStream) {
+		      // available()  exato para ByteArrayInputStream, mas read() pode devolver menos bytes que o pedido
 		      size = is.available();
 		      buf = new byte[size];
-		      len = is.read(buf, 0, size);
+		      int off = 0;
+		      while (off < size && (len = is.read(buf, off, size - off)) != -1)
+		        off += len;
+		      if (off < size)
+		        buf = Arrays.copyOf(buf, off);
 		    } else {
 		      ByteArrayOutputStream bos = new ByteArrayOutputStream();
 		      buf = new byte[size];
@@ -43,8 +65,52 @@ public class Utils {
 		    }
 		    return buf;
 	}
+
+	/**
+	 * L um arquivo de udio inteiro com uma nica leitura NIO para um array do tamanho exato do arquivo, e o
+	 * embrulha em um {@link ByteString} sem nova cpia. O array no deve ser alterado depois disso.
+	 *
+	 * @param fileName - caminho do arquivo local
+	 * @return {@link ByteString} com o contedo do arquivo, pronto para {@code RecognitionAudio.setContent}
+	 * @throws IOException
+	 */
+	public static ByteString readAudio(String fileName) throws IOException {
+		long start = Metrics.start();
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large to load in memory: " + fileName);
+			}
+			byte[] data = new byte[(int) size];
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) == -1) {
+					break;
+				}
+			}
+			return UnsafeByteOperations.unsafeWrap(data, 0, buffer.position());
+		} finally {
+			Metrics.stage(Stage.AUDIO_READ, start);
+		}
+	}
 	
 	
+	/**
+	 * Ativa (ou, com null, desativa) o cache usado por {@link #convertAudioToFlac(String)}. Com o cache, a sada 
+	 * reaproveitada entre chamadas e execues para origens de mesmo contedo. O arquivo retornado continua sendo do
+	 * chamador: recebe um link ou uma cpia da converso guardada, e pode ser removido sem afetar o cache.
+	 */
+	public static void setConversionCache(ConversionCache cache) {
+		conversionCache = cache;
+	}
+
+	/**
+	 * @return o cache de converses em uso, ou null
+	 */
+	public static ConversionCache getConversionCache() {
+		return conversionCache;
+	}
+
 	/**
 	 * Converte um arquivo de audio no formato FLAC - Free Lossless Audio Codec
 	 * que  o formato aceito pelo gCloud para a transcrio de audios
@@ -55,26 +121,15 @@ public class Utils {
 	public static File convertAudioToFlac(String inputFilePath) {
 		try {                             
 			
-			 File source = new File(inputFilePath);		                 
+			 final File source = new File(inputFilePath);		                 
 			 File target = new File(source.getPath().substring(0, source.getPath().indexOf(source.getName())) +source.getName().substring(0, source.getName().indexOf("."))+".flac");                         
 			                                                             
 			 target.deleteOnExit();
-			 
-			     //Audio Attributes                                       
-			 AudioAttributes audio = new AudioAttributes();              
-			 audio.setCodec("flac");                               
-			 audio.setBitRate(16000);                                   
-			 audio.setChannels(1);                                       
-			 audio.setSamplingRate(44100);                               
-			                                                             
-			 //Encoding attributes                                       
-			 EncodingAttributes attrs = new EncodingAttributes();        
-			 attrs.setFormat("flac");                                     
-			 attrs.setAudioAttributes(audio);                            
-			                                                             
-			 //Encode                                                    
-			 Encoder encoder = new Encoder();                            
-			 encoder.encode(new MultimediaObject(source), target, attrs);
+			 ConversionCache cache = conversionCache;
+			 if (cache != null) {
+				 return cache.get(source, FLAC_SETTINGS, target, out -> encodeFlac(source, out));
+			 }
+			 encodeFlac(source, target);
 			 return target;
 			                                                              
 			} catch (Exception ex) {                                      
@@ -82,4 +137,28 @@ public class Utils {
 			 return null;			                                          
 			}              
 	}
+
+	private static void encodeFlac(File source, File target) throws IOException {
+		     //Audio Attributes                                       
+		 AudioAttributes audio = new AudioAttributes();              
+		 audio.setCodec("flac");                               
+		 audio.setBitRate(16000);                                   
+		 audio.setChannels(FLAC_SETTINGS.getChannels());                                       
+		 audio.setSamplingRate(FLAC_SETTINGS.getSampleRateHertz());                               
+		                                                             
+		 //Encoding attributes                                       
+		 EncodingAttributes attrs = new EncodingAttributes();        
+		 attrs.setFormat("flac");                                     
+		 attrs.setAudioAttributes(audio);                            
+		                                                             
+		 //Encode                                                    
+		 Encoder encoder = new Encoder();                            
+		 long start = Metrics.start();
+		 try {
+			 encoder.encode(new MultimediaObject(source), target, attrs);
+		 } catch (EncoderException e) {
+			 throw new IOException(e);
+		 }
+		 Metrics.stage(Stage.CONVERSION, start);
+	}
 }
@@ -0,0 +1,241 @@
+package br.com.icaro.google.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * @author icaroafonso
+ * Detecta os trechos com fala de um udio PCM LINEAR16 mono (little-endian) pela energia e pela taxa de cruzamentos
+ * por zero de janelas curtas, para que silncio e rudo no sejam convertidos, enviados e reconhecidos.
+ *
+ * Uma janela  considerada fala quando sua energia passa de um limiar relativo ao rudo de fundo do prprio udio
+ * (estimado pelas janelas mais silenciosas) e sua taxa de cruzamentos por zero no  tpica de chiado. Pausas curtas
+ * dentro da fala so mantidas, rajadas muito curtas so descartadas e cada trecho ganha uma margem nas pontas.
+ * As amostras so lidas diretamente do buffer, sem alocao por janela.
+ */
+public class VoiceActivityDetector {
+
+	/** Durao de cada janela analisada. */
+	public static final int DEFAULT_FRAME_MILLIS = 20;
+
+	/** Pausas menores que isto no separam trechos de fala. */
+	public static final int DEFAULT_MIN_SILENCE_MILLIS = 500;
+
+	/** Rajadas de energia menores que isto so descartadas. */
+	public static final int DEFAULT_MIN_SPEECH_MILLIS = 100;
+
+	/** Margem mantida antes e depois de cada trecho, para no cortar o incio e o fim das palavras. */
+	public static final int DEFAULT_PADDING_MILLIS = 150;
+
+	/** Quantas vezes a energia da janela deve superar o rudo de fundo. */
+	public static final double DEFAULT_ENERGY_RATIO = 4.0;
+
+	/** Energia mdia mnima (quadrado da amplitude) de uma janela com fala, para udios sem rudo de fundo. */
+	public static final long DEFAULT_MIN_ENERGY = 200L * 200L;
+
+	/** Taxa de cruzamentos por zero (por amostra) acima da qual a janela  tratada como chiado. */
+	public static final double DEFAULT_MAX_ZERO_CROSSING_RATE = 0.5;
+
+	/** Percentil das energias das janelas usado como estimativa do rudo de fundo. */
+	static final int NOISE_PERCENTILE = 10;
+
+	private int frameMillis = DEFAULT_FRAME_MILLIS;
+	private int minSilenceMillis = DEFAULT_MIN_SILENCE_MILLIS;
+	private int minSpeechMillis = DEFAULT_MIN_SPEECH_MILLIS;
+	private int paddingMillis = DEFAULT_PADDING_MILLIS;
+	private double energyRatio = DEFAULT_ENERGY_RATIO;
+	private long minEnergy = DEFAULT_MIN_ENERGY;
+	private double maxZeroCrossingRate = DEFAULT_MAX_ZERO_CROSSING_RATE;
+
+	/**
+	 * Altera as duraes usadas para formar os trechos.
+	 *
+	 * @param minSilenceMillis - pausa mnima que separa dois trechos
+	 * @param minSpeechMillis - durao mnima de um trecho
+	 * @param paddingMillis - margem em cada ponta dos trechos
+	 * @return este detector
+	 */
+	public VoiceActivityDetector setDurations(int minSilenceMillis, int minSpeechMillis, int paddingMillis) {
+		this.minSilenceMillis = minSilenceMillis;
+		this.minSpeechMillis = minSpeechMillis;
+		this.paddingMillis = paddingMillis;
+		return this;
+	}
+
+	/**
+	 * Altera os limiares de classificao das janelas.
+	 *
+	 * @param energyRatio - quantas vezes a energia deve superar o rudo de fundo
+	 * @param minEnergy - energia mdia mnima de uma janela com fala
+	 * @param maxZeroCrossingRate - taxa de cruzamentos por zero acima da qual a janela  chiado
+	 * @return este detector
+	 */
+	public VoiceActivityDetector setThresholds(double energyRatio, long minEnergy, double maxZeroCrossingRate) {
+		this.energyRatio = energyRatio;
+		this.minEnergy = minEnergy;
+		this.maxZeroCrossingRate = maxZeroCrossingRate;
+		return this;
+	}
+
+	/**
+	 * @param frameMillis - durao de cada janela analisada
+	 * @return este detector
+	 */
+	public VoiceActivityDetector setFrameMillis(int frameMillis) {
+		this.frameMillis = frameMillis;
+		return this;
+	}
+
+	/**
+	 * Encontra os trechos com fala.
+	 *
+	 * @param pcm - amostras de 16 bits little-endian, sem cabealho (ver {@link AudioSegmenter#pcmData(ByteString, int)})
+	 * @param sampleRateHertz - taxa de amostragem
+	 * @return o mapa dos trechos com fala
+	 */
+	public SpeechMap detect(ByteString pcm, int sampleRateHertz) {
+		ByteBuffer buf = pcm.asReadOnlyByteBuffer().slice().order(ByteOrder.LITTLE_ENDIAN);
+		int total = buf.remaining() & ~1;
+		int frameBytes = Math.max(2, (int) (2L * sampleRateHertz * frameMillis / 1000) & ~1);
+		int frames = (total + frameBytes - 1) / frameBytes;
+		if (frames == 0) {
+			return new SpeechMap(new int[0], new int[0], total, sampleRateHertz);
+		}
+
+		long[] energies = new long[frames];
+		boolean[] speech = new boolean[frames];
+		int[] crossings = new int[frames];
+		for (int frame = 0; frame < frames; frame++) {
+			int from = frame * frameBytes;
+			int to = Math.min(total, from + frameBytes);
+			long energy = 0;
+			int zeroCrossings = 0;
+			int previous = buf.getShort(from);
+			for (int i = from; i < to; i += 2) {
+				int sample = buf.getShort(i);
+				energy += sample * sample;
+				if ((sample ^ previous) < 0) {
+					zeroCrossings++;
+				}
+				previous = sample;
+			}
+			energies[frame] = energy / ((to - from) / 2);
+			crossings[frame] = zeroCrossings;
+		}
+
+		long[] sorted = energies.clone();
+		Arrays.sort(sorted);
+		long threshold = Math.max(minEnergy, (long) (sorted[(frames - 1) * NOISE_PERCENTILE / 100] * energyRatio));
+		for (int frame = 0; frame < frames; frame++) {
+			int samples = (Math.min(total, (frame + 1) * frameBytes) - frame * frameBytes) / 2;
+			speech[frame] = energies[frame] >= threshold && crossings[frame] <= maxZeroCrossingRate * samples;
+		}
+
+		int minSilenceFrames = Math.max(1, minSilenceMillis / frameMillis);
+		int minSpeechFrames = Math.max(1, minSpeechMillis / frameMillis);
+		fillGaps(speech, minSilenceFrames);
+		dropBursts(speech, minSpeechFrames);
+		return toMap(speech, frameBytes, (int) (2L * sampleRateHertz * paddingMillis / 1000) & ~1, total, sampleRateHertz);
+	}
+
+	/**
+	 * L um arquivo WAV (ou LINEAR16 cru), remove o que no  fala e grava o resultado em outro arquivo, com o mesmo
+	 * cabealho e os tamanhos corrigidos. O arquivo gerado pode ento ser convertido e enviado como de costume.
+	 *
+	 * @param inputFilePath - udio original
+	 * @param outputFilePath - onde gravar o udio s com a fala
+	 * @param sampleRateHertz - taxa de amostragem
+	 * @return o mapa dos trechos mantidos, para traduzir os tempos reconhecidos de volta ao arquivo original
+	 * @throws IllegalArgumentException se o WAV no for LINEAR16 mono na taxa informada
+	 */
+	public SpeechMap trimFile(String inputFilePath, String outputFilePath, int sampleRateHertz) throws IOException {
+		ByteString audio = Utils.readAudio(inputFilePath);
+		PcmFormat format = AudioSegmenter.pcmFormat(audio, sampleRateHertz);
+		int offset = (int) format.getDataOffset();
+		ByteString pcm = AudioSegmenter.pcmData(audio, format);
+		SpeechMap map = detect(pcm, sampleRateHertz);
+		ByteString trimmed = map.trim(pcm);
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(outputFilePath)))) {
+			if (offset > 0) {
+				ByteBuffer header = ByteBuffer.wrap(audio.substring(0, offset).toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(4, offset - 8 + trimmed.size());
+				header.putInt(offset - 4, trimmed.size());
+				out.write(header.array());
+			}
+			trimmed.writeTo(out);
+		}
+		return map;
+	}
+
+	/**
+	 * Marca como fala as pausas menores que {@code minFrames} entre duas janelas com fala.
+	 */
+	private static void fillGaps(boolean[] speech, int minFrames) {
+		int lastSpeech = -1;
+		for (int frame = 0; frame < speech.length; frame++) {
+			if (speech[frame]) {
+				if (lastSpeech >= 0 && frame - lastSpeech - 1 < minFrames) {
+					Arrays.fill(speech, lastSpeech + 1, frame, true);
+				}
+				lastSpeech = frame;
+			}
+		}
+	}
+
+	/**
+	 * Desmarca as sequncias de fala menores que {@code minFrames}.
+	 */
+	private static void dropBursts(boolean[] speech, int minFrames) {
+		int frame = 0;
+		while (frame < speech.length) {
+			if (!speech[frame]) {
+				frame++;
+				continue;
+			}
+			int end = frame;
+			while (end < speech.length && speech[end]) {
+				end++;
+			}
+			if (end - frame < minFrames) {
+				Arrays.fill(speech, frame, end, false);
+			}
+			frame = end;
+		}
+	}
+
+	private static SpeechMap toMap(boolean[] speech, int frameBytes, int paddingBytes, int total, int sampleRateHertz) {
+		int[] starts = new int[speech.length];
+		int[] ends = new int[speech.length];
+		int count = 0;
+		int frame = 0;
+		while (frame < speech.length) {
+			if (!speech[frame]) {
+				frame++;
+				continue;
+			}
+			int end = frame;
+			while (end < speech.length && speech[end]) {
+				end++;
+			}
+			int from = Math.max(0, frame * frameBytes - paddingBytes);
+			int to = Math.min(total, end * frameBytes + paddingBytes);
+			if (count > 0 && from <= ends[count - 1]) {
+				ends[count - 1] = to;
+			} else {
+				starts[count] = from;
+				ends[count] = to;
+				count++;
+			}
+			frame = end;
+		}
+		return new SpeechMap(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), total, sampleRateHertz);
+	}
+}
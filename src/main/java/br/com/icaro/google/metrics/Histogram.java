@@ -0,0 +1,118 @@
+package br.com.icaro.google.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author icaroafonso
+ * Histograma de duraes em nanossegundos, sem bloqueio. Cada potncia de dois  dividida em quatro faixas, ento os
+ * percentis tm erro de no mximo 25%, com memria fixa independente do nmero de amostras.
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKETS = 4;
+	private static final int BUCKETS = 62 * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos - durao a registrar; valores negativos contam como zero
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+		}
+	}
+
+	/**
+	 * @return quantidade de amostras
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return soma das duraes, em nanossegundos
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return maior durao registrada, em nanossegundos
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return durao mdia em milissegundos, ou 0 sem amostras
+	 */
+	public double getMeanMillis() {
+		long samples = getCount();
+		return samples == 0 ? 0 : getSum() / 1e6 / samples;
+	}
+
+	/**
+	 * @param percentile - entre 0 e 100
+	 * @return limite superior da faixa que contm o percentil, em nanossegundos, ou 0 sem amostras
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Zera o histograma. Amostras registradas durante a chamada podem ser perdidas.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+		return (exponent - 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + 1;
+		long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - 2);
+		return lower + (1L << (exponent - 2)) - 1;
+	}
+}
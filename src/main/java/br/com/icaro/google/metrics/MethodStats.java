@@ -0,0 +1,54 @@
+package br.com.icaro.google.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author icaroafonso
+ * Contadores de um mtodo da API: chamadas, erros, bytes enviados e latncia.
+ */
+public class MethodStats {
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final Histogram latency = new Histogram();
+
+	void record(long nanos, long sentBytes, boolean failed) {
+		calls.increment();
+		if (failed) {
+			errors.increment();
+		}
+		if (sentBytes > 0) {
+			bytes.add(sentBytes);
+		}
+		latency.record(nanos);
+	}
+
+	/**
+	 * @return chamadas feitas, com ou sem erro
+	 */
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	/**
+	 * @return chamadas que terminaram com erro
+	 */
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * @return bytes enviados
+	 */
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	/**
+	 * @return latncia das chamadas
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+}
@@ -0,0 +1,270 @@
+package br.com.icaro.google.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * @author icaroafonso
+ * Medies de tempo por etapa ({@link Stage}) e contadores por mtodo da API, consultveis por JMX
+ * ({@link #registerMBean()}) ou repassadas a um {@link MetricsSink}.
+ *
+ * Desativado por padro (ou ative com a propriedade de sistema {@code googleWrapper.metrics=true}). Desativado, cada
+ * ponto de medio custa apenas a leitura de um campo volatile: {@link #start()} devolve 0 sem consultar o relgio e
+ * os mtodos de registro ignoram esse valor.
+ *
+ * Uso nos pontos instrumentados:
+ * <pre>
+ * long start = Metrics.start();
+ * boolean failed = true;
+ * try {
+ *     ...
+ *     failed = false;
+ * } finally {
+ *     Metrics.call("recognize", start, bytes, failed);
+ * }
+ * </pre>
+ */
+public final class Metrics {
+
+	/** Nome do MBean registrado por {@link #registerMBean()}. */
+	public static final String OBJECT_NAME = "br.com.icaro.google:type=Metrics";
+
+	private static volatile boolean enabled = Boolean.getBoolean("googleWrapper.metrics");
+	private static final Map<Stage, Histogram> stages = new EnumMap<Stage, Histogram>(Stage.class);
+	private static final ConcurrentMap<String, MethodStats> methods = new ConcurrentHashMap<String, MethodStats>();
+	private static final CopyOnWriteArrayList<MetricsSink> sinks = new CopyOnWriteArrayList<MetricsSink>();
+
+	static {
+		for (Stage stage : Stage.values()) {
+			stages.put(stage, new Histogram());
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Liga ou desliga as medies. Medies iniciadas antes de ligar so ignoradas.
+	 */
+	public static void setEnabled(boolean value) {
+		enabled = value;
+	}
+
+	/**
+	 * @return true se as medies esto ligadas
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return o instante inicial de uma medio, ou 0 se as medies estiverem desligadas
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Registra a durao de uma etapa iniciada em {@code start}.
+	 *
+	 * @param stage - etapa medida
+	 * @param start - valor devolvido por {@link #start()}
+	 */
+	public static void stage(Stage stage, long start) {
+		if (start == 0L) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		stages.get(stage).record(nanos);
+		for (MetricsSink sink : sinks) {
+			sink.stage(stage, nanos);
+		}
+	}
+
+	/**
+	 * Registra uma chamada a um mtodo da API iniciada em {@code start}.
+	 *
+	 * @param method - nome do mtodo
+	 * @param start - valor devolvido por {@link #start()}
+	 * @param bytes - bytes enviados, ou 0
+	 * @param failed - true se a chamada terminou com erro
+	 */
+	public static void call(String method, long start, long bytes, boolean failed) {
+		if (start == 0L) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		MethodStats stats = methods.get(method);
+		if (stats == null) {
+			MethodStats created = new MethodStats();
+			stats = methods.putIfAbsent(method, created);
+			if (stats == null) {
+				stats = created;
+			}
+		}
+		stats.record(nanos, bytes, failed);
+		for (MetricsSink sink : sinks) {
+			sink.call(method, nanos, bytes, failed);
+		}
+	}
+
+	/**
+	 * @return o histograma da etapa
+	 */
+	public static Histogram getHistogram(Stage stage) {
+		return stages.get(stage);
+	}
+
+	/**
+	 * @return os contadores do mtodo, ou null se ele ainda no foi chamado com as medies ligadas
+	 */
+	public static MethodStats getMethodStats(String method) {
+		return methods.get(method);
+	}
+
+	/**
+	 * @return os contadores de todos os mtodos chamados, ordenados pelo nome
+	 */
+	public static Map<String, MethodStats> getMethods() {
+		return new TreeMap<String, MethodStats>(methods);
+	}
+
+	public static void addSink(MetricsSink sink) {
+		sinks.add(sink);
+	}
+
+	public static void removeSink(MetricsSink sink) {
+		sinks.remove(sink);
+	}
+
+	/**
+	 * Zera todas as medies. Os destinos registrados so mantidos.
+	 */
+	public static void reset() {
+		for (Histogram histogram : stages.values()) {
+			histogram.reset();
+		}
+		methods.clear();
+	}
+
+	/**
+	 * Registra o {@link MetricsMXBean} no servidor de MBeans da plataforma com o nome {@link #OBJECT_NAME}, se
+	 * ainda no estiver registrado.
+	 *
+	 * @return o nome do MBean
+	 * @throws JMException
+	 */
+	public static synchronized ObjectName registerMBean() throws JMException {
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (!server.isRegistered(name)) {
+			server.registerMBean(new MXBean(), name);
+		}
+		return name;
+	}
+
+	/**
+	 * Remove o MBean registrado por {@link #registerMBean()}, se houver.
+	 *
+	 * @throws JMException
+	 */
+	public static synchronized void unregisterMBean() throws JMException {
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	private static Map<String, Long> stageLongs(ToLongFunction<Histogram> value) {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		for (Map.Entry<Stage, Histogram> entry : stages.entrySet()) {
+			result.put(entry.getKey().name(), value.applyAsLong(entry.getValue()));
+		}
+		return result;
+	}
+
+	private static Map<String, Double> stageDoubles(ToDoubleFunction<Histogram> value) {
+		Map<String, Double> result = new TreeMap<String, Double>();
+		for (Map.Entry<Stage, Histogram> entry : stages.entrySet()) {
+			result.put(entry.getKey().name(), value.applyAsDouble(entry.getValue()));
+		}
+		return result;
+	}
+
+	private static Map<String, Long> methodLongs(ToLongFunction<MethodStats> value) {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+			result.put(entry.getKey(), value.applyAsLong(entry.getValue()));
+		}
+		return result;
+	}
+
+	private static class MXBean implements MetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return Metrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			Metrics.setEnabled(enabled);
+		}
+
+		@Override
+		public Map<String, Long> getStageCounts() {
+			return stageLongs(Histogram::getCount);
+		}
+
+		@Override
+		public Map<String, Double> getStageMeanMillis() {
+			return stageDoubles(Histogram::getMeanMillis);
+		}
+
+		@Override
+		public Map<String, Double> getStageP99Millis() {
+			return stageDoubles(histogram -> histogram.getPercentile(99) / 1e6);
+		}
+
+		@Override
+		public Map<String, Long> getCalls() {
+			return methodLongs(MethodStats::getCalls);
+		}
+
+		@Override
+		public Map<String, Long> getErrors() {
+			return methodLongs(MethodStats::getErrors);
+		}
+
+		@Override
+		public Map<String, Long> getBytes() {
+			return methodLongs(MethodStats::getBytes);
+		}
+
+		@Override
+		public Map<String, Double> getCallP99Millis() {
+			Map<String, Double> result = new TreeMap<String, Double>();
+			for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().getLatency().getPercentile(99) / 1e6);
+			}
+			return result;
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+	}
+}
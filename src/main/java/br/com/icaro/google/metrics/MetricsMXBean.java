@@ -0,0 +1,34 @@
+package br.com.icaro.google.metrics;
+
+import java.util.Map;
+
+/**
+ * @author icaroafonso
+ * Viso JMX de {@link Metrics}, registrada por {@link Metrics#registerMBean()}. Os mapas so indexados pelo nome da
+ * {@link Stage} ou do mtodo.
+ */
+public interface MetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	Map<String, Long> getStageCounts();
+
+	Map<String, Double> getStageMeanMillis();
+
+	Map<String, Double> getStageP99Millis();
+
+	Map<String, Long> getCalls();
+
+	Map<String, Long> getErrors();
+
+	Map<String, Long> getBytes();
+
+	Map<String, Double> getCallP99Millis();
+
+	/**
+	 * Zera todas as medies.
+	 */
+	void reset();
+}
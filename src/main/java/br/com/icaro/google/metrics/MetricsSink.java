@@ -0,0 +1,23 @@
+package br.com.icaro.google.metrics;
+
+/**
+ * @author icaroafonso
+ * Destino das medies, para repass-las a um sistema de mtricas externo (Prometheus, StatsD, logs...).
+ * Os mtodos so chamados na thread que fez a medio e devem retornar rapidamente.
+ */
+public interface MetricsSink {
+
+	/**
+	 * @param stage - etapa medida
+	 * @param nanos - durao da etapa
+	 */
+	void stage(Stage stage, long nanos);
+
+	/**
+	 * @param method - nome do mtodo da API chamado, ex.: "recognize" ou "uploadFile"
+	 * @param nanos - durao da chamada
+	 * @param bytes - bytes de udio ou de objeto enviados, ou 0
+	 * @param failed - true se a chamada terminou com erro
+	 */
+	void call(String method, long nanos, long bytes, boolean failed);
+}
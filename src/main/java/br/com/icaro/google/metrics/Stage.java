@@ -0,0 +1,24 @@
+package br.com.icaro.google.metrics;
+
+/**
+ * @author icaroafonso
+ * Etapas de uma transcrio cujo tempo  medido por {@link Metrics}.
+ */
+public enum Stage {
+	/** Leitura e escopo do arquivo de credenciais. */
+	CREDENTIAL_LOAD,
+	/** Construo de um cliente (Speech ou Storage). */
+	CLIENT_CREATION,
+	/** Leitura do udio local para a memria. */
+	AUDIO_READ,
+	/** Envio de um objeto ao Storage. */
+	UPLOAD,
+	/** Chamada sncrona de reconhecimento. */
+	RECOGNIZE_RPC,
+	/** Espera de uma operao de longa durao, do incio at a resposta final. */
+	LRO_WAIT,
+	/** Converso da resposta da API em texto, palavras ou linha do tempo. */
+	RESULT_MAPPING,
+	/** Converso de formato do udio pelo ffmpeg. */
+	CONVERSION
+}
@@ -0,0 +1,171 @@
+package br.com.icaro.google.speechtotext;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.google.cloud.speech.v1.RecognitionConfig;
+
+import br.com.icaro.google.helper.TokenBucket;
+
+/**
+ * @author icaroafonso
+ *
+ *  Reconhecimento em lote. Recebe caminhos locais (reconhecidos pelo mtodo sncrono, portanto com menos de um minuto)
+ *  e URIs gs:// (reconhecidas pelo mtodo de longa durao), todos com a mesma {@link RecognitionConfig}, e os agenda
+ *  respeitando um limite de requisies simultneas e uma cota de requisies por minuto.
+ *
+ *  Os resultados so entregues conforme ficam prontos, fora de ordem, e a falha de um item no afeta os demais.
+ */
+public class BatchRecognizer implements AutoCloseable {
+
+	private final Recognizer recognizer;
+	private final RecognitionConfig config;
+	private final Semaphore inFlight;
+	private final TokenBucket rateLimiter;
+	private final ExecutorService executor;
+
+	/**
+	 * @param recognizer - reconhecedor cujo cliente ser usado
+	 * @param config - configurao aplicada a todos os itens
+	 * @param concurrency - mximo de reconhecimentos em andamento ao mesmo tempo
+	 * @param requestsPerMinute - cota de requisies por minuto
+	 */
+	public BatchRecognizer(Recognizer recognizer, RecognitionConfig config, int concurrency, int requestsPerMinute) {
+		this.recognizer = recognizer;
+		this.config = config;
+		this.inFlight = new Semaphore(concurrency);
+		this.rateLimiter = TokenBucket.perMinute(requestsPerMinute);
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "batch-recognizer-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Agenda todos os itens e chama {@code callback} a cada resultado. Bloqueia a thread chamadora apenas enquanto
+	 * a concorrncia ou a cota estiverem esgotadas, e retorna quando todos os itens tiverem terminado.
+	 *
+	 * @param sources - caminhos locais e URIs gs://
+	 * @param callback - recebe cada {@link BatchResult}; chamado por threads internas
+	 * @return quantidade de itens processados
+	 */
+	public int recognize(Iterable<String> sources, Consumer<BatchResult> callback) throws InterruptedException {
+		Semaphore completed = new Semaphore(0);
+		int submitted = 0;
+		for (String source : sources) {
+			submit(source, callback, completed);
+			submitted++;
+		}
+		completed.acquire(submitted);
+		return submitted;
+	}
+
+	/**
+	 * Agenda todos os itens em segundo plano e retorna um {@link Iterator} que entrega os resultados conforme terminam.
+	 *
+	 * @param sources - caminhos locais e URIs gs://
+	 * @return iterador bloqueante sobre os resultados
+	 */
+	public Iterator<BatchResult> recognize(final Iterable<String> sources) {
+		final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+		final Object end = new Object();
+		executor.execute(() -> {
+			try {
+				recognize(sources, queue::add);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				queue.add(end);
+			}
+		});
+		return new Iterator<BatchResult>() {
+			private Object next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = queue.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException(e);
+					}
+				}
+				return next != end;
+			}
+
+			@Override
+			public BatchResult next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				BatchResult result = (BatchResult) next;
+				next = null;
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Encerra as threads internas. O {@link Recognizer} no  fechado.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	private void submit(final String source, final Consumer<BatchResult> callback, final Semaphore completed) throws InterruptedException {
+		inFlight.acquire();
+		try {
+			rateLimiter.acquire();
+		} catch (InterruptedException e) {
+			inFlight.release();
+			throw e;
+		}
+		CompletableFuture<BatchResult> future;
+		if (source.startsWith("gs://")) {
+			future = recognizer.longRunningRecognize(config, Recognizer.uriAudio(source))
+					.thenApply(response -> new BatchResult(source, response.getResultsList(), null));
+		} else {
+			future = CompletableFuture.supplyAsync(() -> {
+				try {
+					return new BatchResult(source, recognizer.recognize(config, Recognizer.fileAudio(source)).getResultsList(), null);
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}, executor);
+		}
+		future.whenComplete((result, t) -> {
+			try {
+				callback.accept(result != null ? result : new BatchResult(source, null, unwrap(t)));
+			} finally {
+				inFlight.release();
+				completed.release();
+			}
+		});
+	}
+
+	private static Throwable unwrap(Throwable t) {
+		while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+			t = t.getCause();
+		}
+		return t;
+	}
+}
@@ -0,0 +1,71 @@
+package br.com.icaro.google.speechtotext;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+
+/**
+ * @author icaroafonso
+ * Resultado do reconhecimento de um item de um lote ({@link BatchRecognizer}). Cada item tem sucesso ou falha
+ * independentemente dos demais.
+ */
+public class BatchResult {
+
+	private final String source;
+	private final List<SpeechRecognitionResult> results;
+	private final Throwable error;
+
+	BatchResult(String source, List<SpeechRecognitionResult> results, Throwable error) {
+		this.source = source;
+		this.results = results;
+		this.error = error;
+	}
+
+	/**
+	 * @return o caminho local ou a URI gs:// informada para este item
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return true se o item foi reconhecido com sucesso
+	 */
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * @return a falha deste item, ou null em caso de sucesso
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return os resultados retornados pela API (vazio em caso de falha)
+	 */
+	public List<SpeechRecognitionResult> getResults() {
+		return results == null ? Collections.<SpeechRecognitionResult>emptyList() : results;
+	}
+
+	/**
+	 * @return Texto lido no audio.
+	 */
+	public String getTranscript() {
+		return Recognizer.toTranscript(getResults());
+	}
+
+	/**
+	 * @return Lista com as palavras lidas no audio (requer o tempo das palavras habilitado na configurao).
+	 */
+	public List<ItemAudio> getWords() {
+		return Recognizer.toItems(getResults());
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult [source=" + source + ", success=" + isSuccess() + (error != null ? ", error=" + error : "") + "]";
+	}
+}
@@ -0,0 +1,103 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.WordInfo;
+
+/**
+ * @author icaroafonso
+ *
+ *  Escreve as palavras reconhecidas em JSON Lines, um objeto por linha:
+ *  <pre>{"word":"ol","start":1.2,"end":1.5,"confidence":0.93}</pre>
+ *  Os tempos so em segundos desde o comeo do udio; a confiana  a da alternativa  qual a palavra pertence.
+ *  Requer o tempo das palavras habilitado na configurao.
+ */
+public class JsonLinesSink implements ResultSink {
+	private final Writer out;
+
+	public JsonLinesSink(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Escreve em UTF-8 no stream informado.
+	 */
+	public JsonLinesSink(OutputStream out) {
+		this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+	}
+
+	@Override
+	public void write(SpeechRecognitionResult result, long offsetNanos) throws IOException {
+		if (result.getAlternativesCount() == 0) {
+			return;
+		}
+		SpeechRecognitionAlternative alternative = result.getAlternatives(0);
+		long offsetMillis = offsetNanos / 1000000L;
+		for (WordInfo wordInfo : alternative.getWordsList()) {
+			out.write("{\"word\":");
+			quote(wordInfo.getWord());
+			out.write(",\"start\":");
+			out.write(seconds(offsetMillis + Recognizer.toMillis(wordInfo.getStartTime())));
+			out.write(",\"end\":");
+			out.write(seconds(offsetMillis + Recognizer.toMillis(wordInfo.getEndTime())));
+			out.write(",\"confidence\":");
+			out.write(Float.toString(alternative.getConfidence()));
+			out.write("}\n");
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		out.flush();
+	}
+
+	private static String seconds(long millis) {
+		long fraction = millis % 1000;
+		if (fraction == 0) {
+			return Long.toString(millis / 1000);
+		}
+		String digits = Long.toString(1000 + fraction).substring(1);
+		while (digits.endsWith("0")) {
+			digits = digits.substring(0, digits.length() - 1);
+		}
+		return millis / 1000 + "." + digits;
+	}
+
+	private void quote(String value) throws IOException {
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.write(String.format("\\u%04x", (int) c));
+				} else {
+					out.write(c);
+				}
+			}
+		}
+		out.write('"');
+	}
+}
@@ -0,0 +1,262 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * @author icaroafonso
+ * Dirio local, somente de acrscimo, das operaes de reconhecimento de longa durao enviadas  API. Cada envio
+ * grava o nome da operao, a origem do udio e a configurao; cada trmino grava uma linha de concluso.
+ *
+ * Ao reabrir o dirio aps um reincio, as operaes sem concluso podem ser retomadas pelo nome
+ * ({@link Recognizer#resumeJournal()}) em vez de reenviadas, e uma nova chamada para o mesmo udio e configurao
+ * reaproveita a operao pendente. As entradas concludas so descartadas por {@link #compact()}, chamado tambm
+ * automaticamente quando elas passam a ocupar a maior parte do arquivo.
+ *
+ * Uma linha incompleta no fim do arquivo (gravao interrompida por uma queda)  descartada ao abrir.
+ */
+public class OperationJournal implements Closeable {
+
+	private static final String SUBMITTED = "S";
+	private static final String DONE = "D";
+	private static final String FAILED = "F";
+	/** Linhas concludas toleradas antes da compactao automtica. */
+	private static final int COMPACT_THRESHOLD = 1000;
+
+	private final File file;
+	private final boolean sync;
+	private final Map<String, Entry> pending = new LinkedHashMap<String, Entry>();
+	private final Map<String, Entry> pendingByKey = new LinkedHashMap<String, Entry>();
+	private FileChannel channel;
+	private int finishedLines;
+
+	/**
+	 * Operao enviada e ainda no concluda.
+	 */
+	public static class Entry {
+		private final String key;
+		private final String operationName;
+		private final String source;
+		private final RecognitionConfig config;
+		private final long submittedAtMillis;
+
+		Entry(String key, String operationName, String source, RecognitionConfig config, long submittedAtMillis) {
+			this.key = key;
+			this.operationName = operationName;
+			this.source = source;
+			this.config = config;
+			this.submittedAtMillis = submittedAtMillis;
+		}
+
+		/**
+		 * @return a chave do udio e da configurao (ver {@link TranscriptCache#key(RecognitionConfig, String, String)})
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		public String getOperationName() {
+			return operationName;
+		}
+
+		/**
+		 * @return a URI gs:// do udio, ou "content" para udio enviado no corpo da requisio
+		 */
+		public String getSource() {
+			return source;
+		}
+
+		public RecognitionConfig getConfig() {
+			return config;
+		}
+
+		public long getSubmittedAtMillis() {
+			return submittedAtMillis;
+		}
+	}
+
+	/**
+	 * Abre (ou cria) o dirio, gravando cada linha no disco antes de retornar.
+	 */
+	public OperationJournal(File file) throws IOException {
+		this(file, true);
+	}
+
+	/**
+	 * @param file - arquivo do dirio
+	 * @param sync - se verdadeiro, fora cada linha para o disco ({@link FileChannel#force(boolean)}); sem isso uma
+	 * queda do sistema operacional pode perder as ltimas linhas, mas no uma queda apenas da JVM
+	 */
+	public OperationJournal(File file, boolean sync) throws IOException {
+		this.file = file;
+		this.sync = sync;
+		long valid = replay();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		if (channel.size() > valid) {
+			channel.truncate(valid);
+		}
+		channel.position(valid);
+	}
+
+	/**
+	 * Registra uma operao enviada.
+	 *
+	 * @param key - chave do udio e da configurao, usada por {@link #findPending(String)}
+	 * @param operationName - nome retornado pela API
+	 * @param source - URI gs:// do udio, ou "content"
+	 * @param config - configurao enviada
+	 */
+	public synchronized void submitted(String key, String operationName, String source, RecognitionConfig config) throws IOException {
+		Entry entry = new Entry(key, operationName, source, config, System.currentTimeMillis());
+		append(SUBMITTED + " " + key + " " + operationName + " " + entry.submittedAtMillis + " " + encode(source.getBytes(StandardCharsets.UTF_8))
+				+ " " + encode(config.toByteArray()));
+		add(entry);
+	}
+
+	/**
+	 * Registra a concluso com sucesso de uma operao.
+	 */
+	public void completed(String operationName) throws IOException {
+		finish(DONE, operationName);
+	}
+
+	/**
+	 * Registra a falha de uma operao, que deixa de ser retomada.
+	 */
+	public void failed(String operationName) throws IOException {
+		finish(FAILED, operationName);
+	}
+
+	/**
+	 * @return a operao pendente para a chave informada, ou null
+	 */
+	public synchronized Entry findPending(String key) {
+		return pendingByKey.get(key);
+	}
+
+	/**
+	 * @return as operaes pendentes, na ordem de envio
+	 */
+	public synchronized List<Entry> getPending() {
+		return new ArrayList<Entry>(pending.values());
+	}
+
+	/**
+	 * Reescreve o arquivo apenas com as operaes pendentes. A troca  atmica: uma queda durante a compactao deixa
+	 * o arquivo antigo intacto.
+	 */
+	public synchronized void compact() throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			for (Entry entry : pending.values()) {
+				write(out, SUBMITTED + " " + entry.key + " " + entry.operationName + " " + entry.submittedAtMillis + " "
+						+ encode(entry.source.getBytes(StandardCharsets.UTF_8)) + " " + encode(entry.config.toByteArray()));
+			}
+			out.force(true);
+		}
+		channel.close();
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		finishedLines = 0;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	private synchronized void finish(String state, String operationName) throws IOException {
+		if (!pending.containsKey(operationName)) {
+			return;
+		}
+		append(state + " " + operationName);
+		remove(operationName);
+		finishedLines++;
+		if (finishedLines >= COMPACT_THRESHOLD && finishedLines > pending.size()) {
+			compact();
+		}
+	}
+
+	private void append(String line) throws IOException {
+		write(channel, line);
+		if (sync) {
+			channel.force(false);
+		}
+	}
+
+	private static void write(FileChannel out, String line) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/**
+	 * L o arquivo existente.
+	 *
+	 * @return o tamanho da parte vlida, at a ltima linha completa
+	 */
+	private long replay() throws IOException {
+		if (!file.exists()) {
+			return 0;
+		}
+		byte[] data = Files.readAllBytes(file.toPath());
+		int start = 0;
+		for (int i = 0; i < data.length; i++) {
+			if (data[i] != '\n') {
+				continue;
+			}
+			String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+			start = i + 1;
+			String[] fields = line.split(" ");
+			if (SUBMITTED.equals(fields[0]) && fields.length == 6) {
+				try {
+					add(new Entry(fields[1], fields[2], new String(decode(fields[4]), StandardCharsets.UTF_8),
+							RecognitionConfig.parseFrom(decode(fields[5])), Long.parseLong(fields[3])));
+				} catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+					// linha corrompida: a operao no  retomada
+				}
+			} else if ((DONE.equals(fields[0]) || FAILED.equals(fields[0])) && fields.length == 2) {
+				remove(fields[1]);
+				finishedLines++;
+			}
+		}
+		return start;
+	}
+
+	private void add(Entry entry) {
+		pending.put(entry.operationName, entry);
+		pendingByKey.put(entry.key, entry);
+	}
+
+	private void remove(String operationName) {
+		Entry entry = pending.remove(operationName);
+		if (entry != null && pendingByKey.get(entry.key) == entry) {
+			pendingByKey.remove(entry.key);
+		}
+	}
+
+	private static String encode(byte[] data) {
+		return Base64.getEncoder().encodeToString(data);
+	}
+
+	private static byte[] decode(String data) {
+		return Base64.getDecoder().decode(data);
+	}
+}
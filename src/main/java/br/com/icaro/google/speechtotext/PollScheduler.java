@@ -0,0 +1,492 @@
+package br.com.icaro.google.speechtotext;
+
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.speech.v1.LongRunningRecognizeMetadata;
+import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
+import com.google.longrunning.CancelOperationRequest;
+import com.google.longrunning.GetOperationRequest;
+import com.google.longrunning.Operation;
+import com.google.protobuf.Empty;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import br.com.icaro.google.helper.TokenBucket;
+
+/**
+ * @author icaroafonso
+ * Acompanha muitas operaes de reconhecimento de longa durao a partir de uma nica thread.
+ *
+ * Em vez de consultar cada operao em intervalo fixo, o agendador prev o trmino de cada uma: pelo
+ * {@code progressPercent} informado pela API quando j houver progresso, ou pela durao do udio antes disso. A
+ * prxima consulta acontece na metade do tempo restante previsto, e depois do prazo previsto o intervalo cresce
+ * exponencialmente. As consultas so assncronas, sofrem uma pequena variao aleatria para no coincidirem e
+ * respeitam um limite de consultas por segundo; operaes acompanhadas mais de uma vez compartilham a mesma consulta,
+ * mas cada chamador recebe o prprio futuro.
+ */
+public class PollScheduler implements AutoCloseable {
+
+	public static final long DEFAULT_MIN_DELAY_MILLIS = 1000;
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 60000;
+	public static final int DEFAULT_MAX_POLLS_PER_SECOND = 20;
+
+	/** Tempo de processamento esperado por tempo de udio, usado enquanto a operao no informa progresso. */
+	static final double PROCESSING_RATIO = 0.5;
+	static final double BACKOFF_MULTIPLIER = 1.5;
+	static final int MAX_POLL_FAILURES = 5;
+
+	private final UnaryCallable<GetOperationRequest, Operation> getOperation;
+	private final UnaryCallable<CancelOperationRequest, Empty> cancelOperation;
+	private final long minDelayNanos;
+	private final long maxDelayNanos;
+	private final TokenBucket budget;
+	private final long budgetRetryNanos;
+	private final ScheduledExecutorService timer;
+	private final PriorityQueue<Tracked> queue = new PriorityQueue<Tracked>();
+	private final ConcurrentMap<String, Tracked> tracked = new ConcurrentHashMap<String, Tracked>();
+	private final AtomicLong polls = new AtomicLong();
+	private ScheduledFuture<?> wakeup;
+	private long wakeupAt;
+	private boolean closed;
+
+	/**
+	 * Operao acompanhada. Os campos de agendamento so protegidos pelo monitor do agendador; os de inscrio, pelo
+	 * monitor da prpria operao.
+	 */
+	private static final class Tracked implements Comparable<Tracked> {
+		final String name;
+		final long expectedNanos;
+		final long trackedAt = System.nanoTime();
+		final CompletableFuture<LongRunningRecognizeResponse> result = new CompletableFuture<LongRunningRecognizeResponse>();
+		long nextPollAt;
+		long backoffNanos;
+		int failures;
+		int subscribers;
+		boolean abandoned;
+		volatile int progress;
+		volatile long startedAtMillis;
+		volatile long etaNanos = -1;
+
+		Tracked(String name, long expectedNanos) {
+			this.name = name;
+			this.expectedNanos = expectedNanos;
+		}
+
+		@Override
+		public int compareTo(Tracked other) {
+			return Long.compare(nextPollAt - other.nextPollAt, 0);
+		}
+	}
+
+	/**
+	 * @param getOperation - chamada de consulta de operaes, ex.: {@code speech.getOperationsClient().getOperationCallable()}
+	 * @param minDelayMillis - menor intervalo entre duas consultas da mesma operao
+	 * @param maxDelayMillis - maior intervalo entre duas consultas da mesma operao
+	 * @param maxPollsPerSecond - consultas por segundo somando todas as operaes
+	 */
+	public PollScheduler(UnaryCallable<GetOperationRequest, Operation> getOperation, long minDelayMillis, long maxDelayMillis, int maxPollsPerSecond) {
+		this(getOperation, null, minDelayMillis, maxDelayMillis, maxPollsPerSecond);
+	}
+
+	/**
+	 * Como {@link #PollScheduler(UnaryCallable, long, long, int)}, cancelando no servidor as operaes cujo futuro for
+	 * cancelado.
+	 *
+	 * @param cancelOperation - chamada de cancelamento, ex.: {@code speech.getOperationsClient().cancelOperationCallable()}
+	 */
+	public PollScheduler(UnaryCallable<GetOperationRequest, Operation> getOperation, UnaryCallable<CancelOperationRequest, Empty> cancelOperation,
+			long minDelayMillis, long maxDelayMillis, int maxPollsPerSecond) {
+		if (minDelayMillis <= 0 || maxDelayMillis < minDelayMillis || maxPollsPerSecond <= 0) {
+			throw new IllegalArgumentException("invalid poll delays or rate");
+		}
+		this.getOperation = getOperation;
+		this.cancelOperation = cancelOperation;
+		this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.budget = new TokenBucket(maxPollsPerSecond, 1, TimeUnit.SECONDS, maxPollsPerSecond);
+		this.budgetRetryNanos = TimeUnit.SECONDS.toNanos(1) / maxPollsPerSecond;
+		this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "operation-poller");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Passa a acompanhar uma operao j iniciada. Se a operao j estiver sendo acompanhada, a consulta em andamento 
+	 * reaproveitada, mas o chamador recebe um futuro prprio.
+	 *
+	 * @param operation - operao retornada por {@code LongRunningRecognize} (pode j estar concluda)
+	 * @param audioMillis - durao estimada do udio, ou 0 se desconhecida
+	 * @return {@link CompletableFuture} completado com a resposta. Cancel-lo afeta apenas este chamador; quando todos os
+	 * que acompanham a operao cancelarem, ela deixa de ser consultada e, se houver a chamada de cancelamento, 
+	 * cancelada no servidor.
+	 */
+	public CompletableFuture<LongRunningRecognizeResponse> track(Operation operation, long audioMillis) {
+		while (true) {
+			Tracked existing = tracked.get(operation.getName());
+			if (existing != null) {
+				CompletableFuture<LongRunningRecognizeResponse> subscription = subscribe(existing);
+				if (subscription != null) {
+					return subscription;
+				}
+				// todos os chamadores cancelaram: a entrada est saindo e a operao recomea a ser acompanhada
+				tracked.remove(operation.getName(), existing);
+				continue;
+			}
+			Tracked created = new Tracked(operation.getName(),
+					(long) (TimeUnit.MILLISECONDS.toNanos(audioMillis) * PROCESSING_RATIO));
+			if (tracked.putIfAbsent(operation.getName(), created) != null) {
+				continue;
+			}
+			CompletableFuture<LongRunningRecognizeResponse> subscription = subscribe(created);
+			start(created, operation);
+			return subscription;
+		}
+	}
+
+	private void start(final Tracked created, Operation operation) {
+		created.result.whenComplete((value, t) -> {
+			forget(created);
+			if (created.result.isCancelled()) {
+				cancelOnServer(created);
+			}
+		});
+		if (operation.getDone()) {
+			complete(created, operation);
+			return;
+		}
+		update(created, operation);
+		synchronized (this) {
+			if (closed) {
+				created.result.completeExceptionally(new CancellationException("PollScheduler is closed"));
+				return;
+			}
+			long now = System.nanoTime();
+			created.backoffNanos = minDelayNanos;
+			created.nextPollAt = now + jitter(nextDelay(created, now));
+			queue.add(created);
+			wakeUpBy(created.nextPollAt, now);
+		}
+	}
+
+	/**
+	 * Cria o futuro de mais um chamador, completado com o mesmo resultado da operao. Cancel-lo s cancela a operao
+	 * quando no restar nenhum outro chamador.
+	 *
+	 * @return o futuro do chamador, ou null se todos os chamadores anteriores j tiverem cancelado
+	 */
+	private CompletableFuture<LongRunningRecognizeResponse> subscribe(final Tracked t) {
+		synchronized (t) {
+			if (t.abandoned) {
+				return null;
+			}
+			t.subscribers++;
+		}
+		final CompletableFuture<LongRunningRecognizeResponse> subscription = new CompletableFuture<LongRunningRecognizeResponse>();
+		subscription.whenComplete((value, error) -> {
+			if (subscription.isCancelled()) {
+				unsubscribe(t);
+			}
+		});
+		t.result.whenComplete((value, error) -> {
+			if (error == null) {
+				subscription.complete(value);
+			} else {
+				subscription.completeExceptionally(error);
+			}
+		});
+		return subscription;
+	}
+
+	private void unsubscribe(Tracked t) {
+		synchronized (t) {
+			if (--t.subscribers > 0 || t.result.isDone()) {
+				return;
+			}
+			t.abandoned = true;
+		}
+		t.result.cancel(false);
+	}
+
+	/**
+	 * Como {@link #track(Operation, long)}, a partir apenas do nome da operao.
+	 */
+	public CompletableFuture<LongRunningRecognizeResponse> track(String operationName, long audioMillis) {
+		return track(Operation.newBuilder().setName(operationName).build(), audioMillis);
+	}
+
+	/**
+	 * @return operaes acompanhadas ainda no concludas
+	 */
+	public int getInFlight() {
+		return tracked.size();
+	}
+
+	/**
+	 * @return consultas feitas desde a criao
+	 */
+	public long getPolls() {
+		return polls.get();
+	}
+
+	/**
+	 * @return tempo restante previsto, em milissegundos, ou -1 se a operao no estiver sendo acompanhada ou ainda
+	 * no houver previso
+	 */
+	public long getEtaMillis(String operationName) {
+		Tracked t = tracked.get(operationName);
+		if (t == null || t.etaNanos < 0) {
+			return -1;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(t.etaNanos - System.nanoTime()));
+	}
+
+	/**
+	 * @return o tempo restante previsto de cada operao acompanhada, pelo nome
+	 */
+	public Map<String, Long> getEtas() {
+		Map<String, Long> etas = new TreeMap<String, Long>();
+		for (String name : tracked.keySet()) {
+			etas.put(name, getEtaMillis(name));
+		}
+		return etas;
+	}
+
+	/**
+	 * @return o progresso informado pela API (0 a 100), ou -1 se a operao no estiver sendo acompanhada
+	 */
+	public int getProgress(String operationName) {
+		Tracked t = tracked.get(operationName);
+		return t == null ? -1 : t.progress;
+	}
+
+	/**
+	 * Para de consultar. Os futuros ainda pendentes so cancelados; as operaes continuam no servidor e podem ser
+	 * retomadas pelo nome.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			queue.clear();
+		}
+		timer.shutdownNow();
+		for (Tracked t : tracked.values()) {
+			t.result.cancel(false);
+		}
+	}
+
+	/**
+	 * Consulta as operaes vencidas, dentro do limite de consultas, e agenda o prximo despertar.
+	 */
+	private void tick() {
+		synchronized (this) {
+			wakeup = null;
+			if (closed) {
+				return;
+			}
+			long now = System.nanoTime();
+			Tracked next;
+			while ((next = queue.peek()) != null && next.nextPollAt - now <= 0) {
+				if (next.result.isDone()) {
+					queue.poll();
+					continue;
+				}
+				if (!budget.tryAcquire()) {
+					wakeUpBy(now + budgetRetryNanos, now);
+					return;
+				}
+				queue.poll();
+				poll(next);
+			}
+			if (next != null) {
+				wakeUpBy(next.nextPollAt, now);
+			}
+		}
+	}
+
+	private void poll(final Tracked t) {
+		polls.incrementAndGet();
+		Recognizer.toCompletableFuture(getOperation.futureCall(GetOperationRequest.newBuilder().setName(t.name).build()))
+				.whenComplete((operation, error) -> onPolled(t, operation, error));
+	}
+
+	private void onPolled(Tracked t, Operation operation, Throwable error) {
+		if (t.result.isDone()) {
+			return;
+		}
+		if (error == null && operation.getDone()) {
+			complete(t, operation);
+			return;
+		}
+		if (error == null) {
+			update(t, operation);
+		}
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			long now = System.nanoTime();
+			if (error != null) {
+				if (++t.failures > MAX_POLL_FAILURES || isPermanent(error)) {
+					t.result.completeExceptionally(error);
+					return;
+				}
+				t.backoffNanos = Math.min(maxDelayNanos, (long) (t.backoffNanos * BACKOFF_MULTIPLIER));
+				t.nextPollAt = now + jitter(t.backoffNanos);
+			} else {
+				t.failures = 0;
+				t.nextPollAt = now + jitter(nextDelay(t, now));
+			}
+			queue.add(t);
+			wakeUpBy(t.nextPollAt, now);
+		}
+	}
+
+	/**
+	 * Registra o progresso e o incio informados nos metadados da operao e atualiza a previso de trmino.
+	 */
+	private void update(Tracked t, Operation operation) {
+		if (!operation.hasMetadata()) {
+			return;
+		}
+		try {
+			LongRunningRecognizeMetadata metadata = operation.getMetadata().unpack(LongRunningRecognizeMetadata.class);
+			if (metadata.getProgressPercent() != t.progress) {
+				synchronized (this) {
+					t.backoffNanos = minDelayNanos;
+				}
+			}
+			t.progress = metadata.getProgressPercent();
+			if (metadata.hasStartTime()) {
+				t.startedAtMillis = toMillis(metadata.getStartTime());
+			}
+		} catch (InvalidProtocolBufferException e) {
+			// metadados de outro tipo: segue sem previso por progresso
+		}
+	}
+
+	/**
+	 * Intervalo at a prxima consulta: metade do tempo restante previsto, ou recuo exponencial depois do prazo.
+	 */
+	private long nextDelay(Tracked t, long now) {
+		long remaining = remainingNanos(t, now);
+		t.etaNanos = remaining >= 0 ? now + remaining : -1;
+		long delay;
+		if (remaining > 2 * minDelayNanos) {
+			delay = remaining / 2;
+		} else {
+			delay = t.backoffNanos;
+			t.backoffNanos = Math.min(maxDelayNanos, (long) (t.backoffNanos * BACKOFF_MULTIPLIER));
+		}
+		return Math.max(minDelayNanos, Math.min(maxDelayNanos, delay));
+	}
+
+	/**
+	 * @return tempo restante previsto, ou -1 se no houver base para prever
+	 */
+	private static long remainingNanos(Tracked t, long now) {
+		int progress = t.progress;
+		if (progress > 0 && progress < 100) {
+			long elapsed = t.startedAtMillis > 0
+					? TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - t.startedAtMillis))
+					: now - t.trackedAt;
+			return elapsed * (100 - progress) / progress;
+		}
+		if (t.expectedNanos > 0) {
+			return Math.max(0, t.trackedAt + t.expectedNanos - now);
+		}
+		return -1;
+	}
+
+	/**
+	 * Erros que no mudam com novas tentativas, como uma operao que no existe mais.
+	 */
+	private static boolean isPermanent(Throwable error) {
+		switch (Status.fromThrowable(error).getCode()) {
+		case NOT_FOUND:
+		case INVALID_ARGUMENT:
+		case PERMISSION_DENIED:
+		case UNAUTHENTICATED:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private void complete(Tracked t, Operation operation) {
+		if (operation.getResultCase() == Operation.ResultCase.ERROR) {
+			t.result.completeExceptionally(new StatusRuntimeException(
+					Status.fromCodeValue(operation.getError().getCode()).withDescription(operation.getError().getMessage())));
+			return;
+		}
+		try {
+			t.progress = 100;
+			t.result.complete(operation.getResponse().unpack(LongRunningRecognizeResponse.class));
+		} catch (InvalidProtocolBufferException e) {
+			t.result.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Remove a operao concluda ou cancelada. Uma entrada que ainda estiver na fila  descartada quando vencer.
+	 */
+	private void forget(Tracked t) {
+		tracked.remove(t.name, t);
+	}
+
+	/**
+	 * Pede ao servidor que cancele a operao cujo futuro foi cancelado. No encerramento do agendador as operaes so
+	 * mantidas, para poderem ser retomadas. Falhas so ignoradas: a operao apenas termina normalmente no servidor.
+	 */
+	private void cancelOnServer(Tracked t) {
+		synchronized (this) {
+			if (closed || cancelOperation == null) {
+				return;
+			}
+		}
+		cancelOperation.futureCall(CancelOperationRequest.newBuilder().setName(t.name).build());
+	}
+
+	/**
+	 * Garante que o agendador acorde at {@code at}, antecipando o despertar j agendado se necessrio.
+	 */
+	private void wakeUpBy(long at, long now) {
+		if (wakeup != null) {
+			if (wakeupAt - at <= 0) {
+				return;
+			}
+			wakeup.cancel(false);
+		}
+		wakeupAt = at;
+		wakeup = timer.schedule(this::tick, Math.max(0, at - now), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Varia o intervalo em at 10% para mais ou para menos, espalhando as consultas de operaes iniciadas juntas.
+	 */
+	private static long jitter(long delayNanos) {
+		return (long) (delayNanos * (0.9 + 0.2 * ThreadLocalRandom.current().nextDouble()));
+	}
+
+	private static long toMillis(Timestamp timestamp) {
+		return timestamp.getSeconds() * 1000 + timestamp.getNanos() / 1000000;
+	}
+}
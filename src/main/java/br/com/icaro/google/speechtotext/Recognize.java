@@ -1,34 +1,26 @@
 package br.com.icaro.google.speechtotext;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
-import com.google.api.gax.core.FixedCredentialsProvider;
-import com.google.api.gax.rpc.OperationFuture;
-import com.google.auth.oauth2.GoogleCredentials;
-import com.google.cloud.speech.v1.LongRunningRecognizeMetadata;
-import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
-import com.google.cloud.speech.v1.RecognitionAudio;
 import com.google.cloud.speech.v1.RecognitionConfig;
 import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
-import com.google.cloud.speech.v1.RecognizeResponse;
-import com.google.cloud.speech.v1.SpeechClient;
-import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
-import com.google.cloud.speech.v1.SpeechRecognitionResult;
-import com.google.cloud.speech.v1.SpeechSettings;
-import com.google.cloud.speech.v1.WordInfo;
-import com.google.longrunning.Operation;
-import com.google.protobuf.ByteString;
 
-import br.com.icaro.google.helper.Utils;
+import br.com.icaro.google.helper.AudioProbe;
+import br.com.icaro.google.helper.ConversionSettings;
+import br.com.icaro.google.storage.StorageFactory;
 
 /**
  * @author icaroafonso
  *
  *  Classe que contm os mtodos para fazer o Speech to Text utilizando a API do Google Cloud
+ *
+ *  Os mtodos reutilizam um {@link Recognizer} por arquivo de credenciais (ver {@link SpeechFactory}); o cliente
+ *  permanece aberto entre chamadas e deve ser liberado com {@link SpeechFactory#shutdown()} ao encerrar a aplicao.
  */
 public class Recognize {
 
@@ -49,41 +41,34 @@ public class Recognize {
 	 */
 
 	public static String syncRecognizeFile(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws Exception, IOException {
+		return SpeechFactory.getRecognizer(credentialsFilePath).syncRecognizeFile(fileName, language, audioEncoding, sampleRateHertz, profanityFilter);
+	}
 
-		SpeechSettings speechSettings = 
-				SpeechSettings.newBuilder()
-					.setCredentialsProvider(FixedCredentialsProvider.create(GoogleCredentials.fromStream(new FileInputStream(credentialsFilePath))))
-					.build();		
-
-		SpeechClient speech = SpeechClient.create(speechSettings);	
-		 
-		
-		File file = new File(fileName); 
-		byte[] sendBuf = Utils.getBytes(new FileInputStream(file));     
-		ByteString audioBytes = ByteString.copyFrom(sendBuf);
-
-
-		RecognitionConfig config = RecognitionConfig.newBuilder()
-				.setEncoding(audioEncoding)
-				.setLanguageCode(language)
-				.setSampleRateHertz(sampleRateHertz)
-				.setProfanityFilter(profanityFilter)
-				.build();
-		RecognitionAudio audio = RecognitionAudio.newBuilder()
-				.setContent(audioBytes)
-				.build();
-
-
-		RecognizeResponse response = speech.recognize(config, audio);
-		List<SpeechRecognitionResult> results = response.getResultsList();
-		String returnString = new String();
-		for (SpeechRecognitionResult result: results) {
+	/**
+	 * Como {@link #syncRecognizeFile(String, String, AudioEncoding, int, Boolean, String)}, mas a codificao e a taxa de
+	 * amostragem so lidas do cabealho do arquivo ({@link AudioProbe}). Arquivos FLAC, WAV LINEAR16 ou WAV MULAW mono
+	 * so enviados como esto; os demais (mp3, estreo etc.) so convertidos para LINEAR16 mono 16 kHz antes do envio.
+	 * Apenas udios com menos de um minuto pode ser lidos sincronamente.
+	 *
+	 * @param  fileName - o caminho para um arquivo de udio local para transcrever.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return String - Texto lido no audio.
+	 */
+	public static String syncRecognizeFile(String fileName, String language, Boolean profanityFilter, String credentialsFilePath) throws IOException {
+		return SpeechFactory.getRecognizer(credentialsFilePath).syncRecognizeFile(fileName, language, profanityFilter);
+	}
 
-			SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
-			returnString = alternative.getTranscript();
-		}
-		speech.close();
-		return returnString;
+	/**
+	 * Como {@link #syncRecognizeFile(String, String, AudioEncoding, int, Boolean, String)}, mas escreve cada resultado no
+	 * {@link ResultSink}  medida que  mapeado (texto puro, legendas SRT/WebVTT ou JSON Lines), em vez de montar a
+	 * transcrio em memria. O tempo das palavras  sempre solicitado.
+	 *
+	 * @param  sink - destino dos resultados;  finalizado, mas no fechado, ao fim do reconhecimento.
+	 */
+	public static void syncRecognizeFile(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter, ResultSink sink, String credentialsFilePath) throws IOException {
+		SpeechFactory.getRecognizer(credentialsFilePath).syncRecognizeFile(fileName, language, audioEncoding, sampleRateHertz, profanityFilter, sink);
 	}
 
 	/**
@@ -102,46 +87,7 @@ public class Recognize {
 	 * @throws IOException
 	 */
 	public static List<ItemAudio> syncRecognizeFileWords(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws Exception, IOException {
-
-		SpeechSettings speechSettings = 
-				SpeechSettings.newBuilder()
-					.setCredentialsProvider(FixedCredentialsProvider.create(GoogleCredentials.fromStream(new FileInputStream(credentialsFilePath))))
-					.build();		
-
-		SpeechClient speech = SpeechClient.create(speechSettings);	
-		
-		File file = new File(fileName);
-		byte[] sendBuf = Utils.getBytes(new FileInputStream(file));     
-		ByteString audioBytes = ByteString.copyFrom(sendBuf);
-
-
-		RecognitionConfig config = RecognitionConfig.newBuilder()
-				.setEncoding(audioEncoding)
-				.setLanguageCode(language)
-				.setSampleRateHertz(sampleRateHertz)
-				.setEnableWordTimeOffsets(true)
-				.setProfanityFilter(profanityFilter)
-				.build();
-		RecognitionAudio audio = RecognitionAudio.newBuilder()
-				.setContent(audioBytes)
-				.build();
-
-		// Use blocking call to get audio transcript
-		RecognizeResponse response = speech.recognize(config, audio);
-		List<SpeechRecognitionResult> results = response.getResultsList();
-		List<ItemAudio> returnList = new ArrayList<ItemAudio>();
-		for (SpeechRecognitionResult result: results) {
-			SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
-			for (WordInfo wordInfo: alternative.getWordsList()) {
-				ItemAudio item = new ItemAudio();
-				item.setPalavra(wordInfo.getWord()); 
-				item.setInicio(wordInfo.getStartTime().getSeconds()+"."+ wordInfo.getStartTime().getNanos() / 100000000);
-				item.setFim(wordInfo.getEndTime().getSeconds()+"."+ wordInfo.getEndTime().getNanos() / 100000000);
-				returnList.add(item);
-			}
-		}
-		speech.close();
-		return returnList;
+		return SpeechFactory.getRecognizer(credentialsFilePath).syncRecognizeFileWords(fileName, language, audioEncoding, sampleRateHertz, profanityFilter);
 	}
 
 
@@ -160,34 +106,7 @@ public class Recognize {
 	 * @return String - Texto lido no audio.
 	 */
 	public static String syncRecognizeGcs(String gcsUri,String language,AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws Exception, IOException {
-		
-		SpeechSettings speechSettings = 
-				SpeechSettings.newBuilder()
-					.setCredentialsProvider(FixedCredentialsProvider.create(GoogleCredentials.fromStream(new FileInputStream(credentialsFilePath))))
-					.build();		
-
-		SpeechClient speech = SpeechClient.create(speechSettings);	
-
-		RecognitionConfig config = RecognitionConfig.newBuilder()
-				.setEncoding(audioEncoding)
-				.setLanguageCode(language)
-				.setSampleRateHertz(sampleRateHertz)
-				.setProfanityFilter(profanityFilter)
-				.build();
-		RecognitionAudio audio = RecognitionAudio.newBuilder()
-				.setUri(gcsUri)
-				.build();
-
-		RecognizeResponse response = speech.recognize(config, audio);
-		List<SpeechRecognitionResult> results = response.getResultsList();
-		String returnString = "";
-		for (SpeechRecognitionResult result: results) {
-			// 
-			SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
-			returnString = alternative.getTranscript();
-		}
-		speech.close();
-		return returnString;
+		return SpeechFactory.getRecognizer(credentialsFilePath).syncRecognizeGcs(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter);
 	}
 
 
@@ -206,50 +125,7 @@ public class Recognize {
 	 * @return List {@link ItemAudio} - Lista com as palavras lidas no audio, e quando ela foi dita do mesmo (inicio e fim).
 	 */
 	public static List<ItemAudio> asyncRecognizeWords(String gcsUri,String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws Exception, IOException {
-
-		SpeechSettings speechSettings = 
-				SpeechSettings.newBuilder()
-					.setCredentialsProvider(FixedCredentialsProvider.create(GoogleCredentials.fromStream(new FileInputStream(credentialsFilePath))))
-					.build();		
-
-		SpeechClient speech = SpeechClient.create(speechSettings);	
-		
-		RecognitionConfig config = RecognitionConfig.newBuilder()
-				.setEncoding(audioEncoding)
-				.setLanguageCode(language)
-				.setSampleRateHertz(sampleRateHertz)
-				.setEnableWordTimeOffsets(true)
-				.setProfanityFilter(profanityFilter)
-				.build();
-		RecognitionAudio audio = RecognitionAudio.newBuilder()
-				.setUri(gcsUri)
-				.build();
-
-		OperationFuture<LongRunningRecognizeResponse, LongRunningRecognizeMetadata,
-		Operation> response =
-		speech.longRunningRecognizeAsync(config, audio);
-		while (!response.isDone()) {
-			
-		}
-
-		List<SpeechRecognitionResult> results = response.get().getResultsList();
-		List<ItemAudio> returnList = new ArrayList<ItemAudio>();
-		for (SpeechRecognitionResult result: results) {
-			// There can be several alternative transcripts for a given chunk of speech. Just use the
-			// first (most likely) one here.
-			SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
-
-			for (WordInfo wordInfo: alternative.getWordsList()) {
-
-				ItemAudio item = new ItemAudio();
-				item.setPalavra(wordInfo.getWord()); 
-				item.setInicio(wordInfo.getStartTime().getSeconds()+"."+ wordInfo.getStartTime().getNanos() / 100000000);
-				item.setFim(wordInfo.getEndTime().getSeconds()+"."+ wordInfo.getEndTime().getNanos() / 100000000);
-				returnList.add(item);
-			}
-		}
-		speech.close();
-		return returnList;
+		return SpeechFactory.getRecognizer(credentialsFilePath).asyncRecognizeWords(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter);
 	}
 
 	/**
@@ -267,41 +143,197 @@ public class Recognize {
 	 * @return String - Texto lido no audio.
 	 */
 	public static String asyncRecognizeGcs(String gcsUri,String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws Exception, IOException {
+		return SpeechFactory.getRecognizer(credentialsFilePath).asyncRecognizeGcs(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter);
+	}
+
+	/**
+	 * Como {@link #asyncRecognizeGcs(String, String, AudioEncoding, int, Boolean, String)}, mas escreve cada resultado no
+	 * {@link ResultSink}  medida que  mapeado. O tempo das palavras  sempre solicitado.
+	 *
+	 * @param  sink - destino dos resultados;  finalizado, mas no fechado, ao fim do reconhecimento.
+	 */
+	public static void asyncRecognizeGcs(String gcsUri,String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter, ResultSink sink, String credentialsFilePath) throws Exception {
+		SpeechFactory.getRecognizer(credentialsFilePath).asyncRecognizeGcsFuture(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter, sink).get();
+	}
+
+	/**
+	 * Verso no bloqueante de {@link #asyncRecognizeWords(String, String, AudioEncoding, int, Boolean, String)}.
+	 * Nenhuma thread fica presa aguardando a operao; o futuro  completado quando o Google termina a transcrio.
+	 *
+	 * @param  gcsUri o caminho para o arquivo de udio FLAC remoto para transcrever, no formato gs://INTERVALO_CRIADO/nome_do_arquivo_de_audio.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  audioEncoding - Codificao de dados de udio enviados nas mensagens de reconhecimento de udio.
+	 * @param  sampleRateHertz - Taxa de amostragem em Hertz dos dados de udio enviados. Valores vlidos so: 8000-48000. 16000  timo.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 *
+	 * @return {@link CompletableFuture} com a lista de {@link ItemAudio} lidas no audio.
+	 */
+	public static CompletableFuture<List<ItemAudio>> asyncRecognizeWordsFuture(String gcsUri,String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws IOException {
+		return SpeechFactory.getRecognizer(credentialsFilePath).asyncRecognizeWordsFuture(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter);
+	}
 
-		SpeechSettings speechSettings = 
-				SpeechSettings.newBuilder()
-					.setCredentialsProvider(FixedCredentialsProvider.create(GoogleCredentials.fromStream(new FileInputStream(credentialsFilePath))))
-					.build();		
+	/**
+	 * Verso no bloqueante de {@link #asyncRecognizeGcs(String, String, AudioEncoding, int, Boolean, String)}.
+	 *
+	 * @param  gcsUri o caminho para o arquivo de udio FLAC remoto para transcrever, no formato gs://INTERVALO_CRIADO/nome_do_arquivo_de_audio.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  audioEncoding - Codificao de dados de udio enviados nas mensagens de reconhecimento de udio.
+	 * @param  sampleRateHertz - Taxa de amostragem em Hertz dos dados de udio enviados. Valores vlidos so: 8000-48000. 16000  timo.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 *
+	 * @return {@link CompletableFuture} com o texto lido no audio.
+	 */
+	public static CompletableFuture<String> asyncRecognizeGcsFuture(String gcsUri,String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws IOException {
+		return SpeechFactory.getRecognizer(credentialsFilePath).asyncRecognizeGcsFuture(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter);
+	}
+
+	/**
+	 * Executa o reconhecimento contnuo de um udio ao vivo (ou de qualquer {@link InputStream}), entregando as palavras
+	 * ao {@link StreamingListener}  medida que so reconhecidas. Retorna quando o stream chega ao fim e todos os
+	 * resultados foram entregues. Se o reconhecimento falhar, o erro  entregue ao listener e tambm lanado como
+	 * IOException.
+	 *
+	 * @param  in - stream com o udio bruto (sem cabealho) na codificao informada.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  audioEncoding - Codificao de dados de udio enviados nas mensagens de reconhecimento de udio.
+	 * @param  sampleRateHertz - Taxa de amostragem em Hertz dos dados de udio enviados. Valores vlidos so: 8000-48000. 16000  timo.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  interimResults - se verdadeiro, entrega tambm os resultados parciais.
+	 * @param  listener - destino dos resultados.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 */
+	public static void streamingRecognize(InputStream in, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter, boolean interimResults, StreamingListener listener, String credentialsFilePath) throws IOException, InterruptedException {
+		Recognizer recognizer = SpeechFactory.getRecognizer(credentialsFilePath);
+		RecognitionConfig config = Recognizer.buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		recognizer.streamingRecognizer(config, interimResults, listener).transcribe(in);
+	}
 
-		SpeechClient speech = SpeechClient.create(speechSettings);	
-		
-		RecognitionConfig config = RecognitionConfig.newBuilder()
-				.setEncoding(audioEncoding)
-				.setLanguageCode(language)
-				.setSampleRateHertz(sampleRateHertz)
-				.setEnableWordTimeOffsets(true)
-				.setProfanityFilter(profanityFilter)
-				.build();
-		RecognitionAudio audio = RecognitionAudio.newBuilder()
-				.setUri(gcsUri)
-				.build();
-		OperationFuture<LongRunningRecognizeResponse, LongRunningRecognizeMetadata,
-		Operation> response =
-		speech.longRunningRecognizeAsync(config, audio);
-		while (!response.isDone()) {
-			
+	/**
+	 * Executa o reconhecimento de um udio local de qualquer durao pelo caminho sncrono, sem upload para o Storage.
+	 * O udio (LINEAR16 mono, cru ou WAV)  dividido em trechos de menos de um minuto, cortados em silncio, que so
+	 * reconhecidos em paralelo e reunidos em ordem.
+	 *
+	 * @param  fileName - o caminho para um arquivo de udio local para transcrever.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  sampleRateHertz - Taxa de amostragem em Hertz dos dados de udio enviados. Valores vlidos so: 8000-48000. 16000  timo.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  parallelism - nmero mximo de trechos reconhecidos ao mesmo tempo.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return String - Texto lido no audio.
+	 */
+	public static String syncRecognizeLongFile(String fileName, String language, int sampleRateHertz, Boolean profanityFilter, int parallelism, String credentialsFilePath) throws Exception {
+		try (SegmentedRecognizer segmented = new SegmentedRecognizer(SpeechFactory.getRecognizer(credentialsFilePath), parallelism)) {
+			return segmented.recognizeFile(fileName, language, sampleRateHertz, profanityFilter);
 		}
+	}
 
-		List<SpeechRecognitionResult> results = response.get().getResultsList();
-		String retorno = new String();
-		for (SpeechRecognitionResult result: results) {
+	/**
+	 * Como {@link #syncRecognizeLongFile(String, String, int, Boolean, int, String)}, mas escreve os resultados no
+	 * {@link ResultSink}, com os tempos relativos ao comeo do arquivo, assim que cada trecho fica pronto.
+	 *
+	 * @param  sink - destino dos resultados;  finalizado, mas no fechado, ao fim do reconhecimento.
+	 */
+	public static void syncRecognizeLongFile(String fileName, String language, int sampleRateHertz, Boolean profanityFilter, int parallelism, ResultSink sink, String credentialsFilePath) throws Exception {
+		try (SegmentedRecognizer segmented = new SegmentedRecognizer(SpeechFactory.getRecognizer(credentialsFilePath), parallelism)) {
+			segmented.recognizeFile(fileName, language, sampleRateHertz, profanityFilter, sink);
+		}
+	}
 
-			SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
-			retorno = alternative.getTranscript();
+	/**
+	 * Como {@link #syncRecognizeLongFile(String, String, int, Boolean, int, String)}, mas retorna as palavras lidas com
+	 * incio e fim relativos ao comeo do arquivo.
+	 *
+	 * @return List {@link ItemAudio} - Lista com as palavras lidas no audio, e quando ela foi dita do mesmo (inicio e fim).
+	 */
+	public static List<ItemAudio> syncRecognizeLongFileWords(String fileName, String language, int sampleRateHertz, Boolean profanityFilter, int parallelism, String credentialsFilePath) throws Exception {
+		try (SegmentedRecognizer segmented = new SegmentedRecognizer(SpeechFactory.getRecognizer(credentialsFilePath), parallelism)) {
+			return segmented.recognizeFileWords(fileName, language, sampleRateHertz, profanityFilter);
 		}
-		speech.close();
-		return retorno;
 	}
 
+	/**
+	 * Cria um reconhecedor em lote para caminhos locais e URIs gs://, com concorrncia e cota de requisies limitadas.
+	 * O {@link BatchRecognizer} deve ser fechado ao final.
+	 *
+	 * @param  config - configurao aplicada a todos os itens do lote.
+	 * @param  concurrency - mximo de reconhecimentos em andamento ao mesmo tempo.
+	 * @param  requestsPerMinute - cota de requisies por minuto do projeto.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return {@link BatchRecognizer} pronto para uso
+	 */
+	public static BatchRecognizer batchRecognizer(RecognitionConfig config, int concurrency, int requestsPerMinute, String credentialsFilePath) throws IOException {
+		return new BatchRecognizer(SpeechFactory.getRecognizer(credentialsFilePath), config, concurrency, requestsPerMinute);
+	}
+
+	/**
+	 * Como {@link #syncRecognizeFileWords(String, String, AudioEncoding, int, Boolean, String)}, mas retorna as palavras
+	 * em uma {@link WordTimeline} compacta, com tempos em milissegundos e busca por instante.
+	 *
+	 * @param  fileName - o caminho para um arquivo de udio local para transcrever.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  audioEncoding - Codificao de dados de udio enviados nas mensagens de reconhecimento de udio.
+	 * @param  sampleRateHertz - Taxa de amostragem em Hertz dos dados de udio enviados. Valores vlidos so: 8000-48000. 16000  timo.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return {@link WordTimeline} com as palavras lidas no audio.
+	 */
+	public static WordTimeline syncRecognizeFileTimeline(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws IOException {
+		return SpeechFactory.getRecognizer(credentialsFilePath).syncRecognizeFileTimeline(fileName, language, audioEncoding, sampleRateHertz, profanityFilter);
+	}
+
+	/**
+	 * Como {@link #asyncRecognizeWords(String, String, AudioEncoding, int, Boolean, String)}, mas retorna as palavras
+	 * em uma {@link WordTimeline} compacta, com tempos em milissegundos e busca por instante.
+	 *
+	 * @param  gcsUri o caminho para o arquivo de udio FLAC remoto para transcrever, no formato gs://INTERVALO_CRIADO/nome_do_arquivo_de_audio.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  audioEncoding - Codificao de dados de udio enviados nas mensagens de reconhecimento de udio.
+	 * @param  sampleRateHertz - Taxa de amostragem em Hertz dos dados de udio enviados. Valores vlidos so: 8000-48000. 16000  timo.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return {@link WordTimeline} com as palavras lidas no audio.
+	 */
+	public static WordTimeline asyncRecognizeTimeline(String gcsUri,String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws Exception {
+		return SpeechFactory.getRecognizer(credentialsFilePath).asyncRecognizeTimeline(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter);
+	}
+
+	/**
+	 * Converte um udio local em qualquer formato (mp3, wav etc.) para LINEAR16 mono e o reconhece sincronamente, sem
+	 * gravar o arquivo convertido em disco: a sada do ffmpeg  lida diretamente para a requisio. Arquivos WAV PCM
+	 * so convertidos na prpria JVM, sem iniciar o ffmpeg.
+	 * Apenas udios com menos de um minuto pode ser lidos sincronamente.
+	 *
+	 * @param  fileName - o caminho para um arquivo de udio local para transcrever.
+	 * @param  language - A lingua em que est o udio. Usar no formato "pt-BR" "en-US" etc.
+	 * @param  sampleRateHertz - Taxa de amostragem da converso. 16000  timo.
+	 * @param  profanityFilter - filtro anti-palavres. verdadeiro - ativa o filtro.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return String - Texto lido no audio.
+	 */
+	public static String syncRecognizeConvertedFile(String fileName, String language, int sampleRateHertz, Boolean profanityFilter,String credentialsFilePath) throws IOException {
+		return SpeechFactory.getRecognizer(credentialsFilePath).syncRecognizeConvertedFile(fileName, language, ConversionSettings.linear16(sampleRateHertz), profanityFilter);
+	}
+
+	/**
+	 * Cria um pipeline que converte, envia ao Storage, reconhece e remove os intermedirios de cada arquivo, com os
+	 * estgios trabalhando ao mesmo tempo sobre arquivos diferentes. O {@link TranscriptionPipeline} deve ser fechado ao final.
+	 *
+	 * @param  applicationName - nome da aplicao/projeto no google cloud.
+	 * @param  bucketName - intervalo usado para os objetos temporrios.
+	 * @param  language - idioma do udio, ex.: "pt-BR"
+	 * @param  sampleRateHertz - taxa de amostragem da converso.
+	 * @param  profanityFilter - Filtrar palavres
+	 * @param  callback - recebe o resultado de cada arquivo.
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return {@link TranscriptionPipeline} pronto para uso
+	 */
+	public static TranscriptionPipeline transcriptionPipeline(String applicationName, String bucketName, String language, int sampleRateHertz,
+			Boolean profanityFilter, Consumer<BatchResult> callback, String credentialsFilePath) throws IOException, GeneralSecurityException {
+		int processors = Runtime.getRuntime().availableProcessors();
+		return new TranscriptionPipeline(SpeechFactory.getRecognizer(credentialsFilePath), StorageFactory.getService(applicationName, credentialsFilePath),
+				bucketName, language, ConversionSettings.flac(sampleRateHertz), profanityFilter, processors, 4, 16, 2 * processors, callback);
+	}
 
 }
@@ -0,0 +1,889 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.FixedChannelProvider;
+import com.google.api.gax.grpc.GrpcTransportProvider;
+import com.google.api.gax.grpc.OperationTimedPollAlgorithm;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.speech.v1.LongRunningRecognizeRequest;
+import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
+import com.google.cloud.speech.v1.RecognitionAudio;
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+import com.google.cloud.speech.v1.RecognizeResponse;
+import com.google.cloud.speech.v1.SpeechClient;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.SpeechSettings;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.longrunning.Operation;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Duration;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+
+import br.com.icaro.google.helper.AudioInfo;
+import br.com.icaro.google.helper.AudioProbe;
+import br.com.icaro.google.helper.AudioTranscoder;
+import br.com.icaro.google.helper.ConversionSettings;
+import br.com.icaro.google.helper.SpeechMap;
+import br.com.icaro.google.helper.Utils;
+import br.com.icaro.google.metrics.Metrics;
+import br.com.icaro.google.metrics.Stage;
+
+/**
+ * @author icaroafonso
+ *
+ *  Reconhecedor de longa durao. Mantm um nico {@link SpeechClient} (e portanto um nico canal gRPC e
+ *  as mesmas credenciais, com o token OAuth em cache) aberto entre as chamadas, evitando o custo de
+ *  handshake TLS e de obteno de token a cada udio transcrito.
+ *
+ *  Instncias so thread-safe e devem ser reaproveitadas. Use {@link SpeechFactory} para obter uma instncia
+ *  compartilhada por arquivo de credenciais, e {@link #close()} para liberar os recursos.
+ */
+public class Recognizer implements AutoCloseable {
+
+	/** Prefixo de endereo para servidores gRPC no mesmo processo (ver {@link #createForEndpoint(String)}). */
+	public static final String IN_PROCESS_PREFIX = "inprocess:";
+
+	private final SpeechClient speech;
+	private final ManagedChannel channel;
+	private final long pollMinDelayMillis;
+	private volatile TranscriptCache cache;
+	private volatile OperationJournal journal;
+	private PollScheduler poller;
+
+	/**
+	 * @param speech - cliente j configurado. O reconhecedor passa a ser dono do cliente e o fecha em {@link #close()}.
+	 */
+	public Recognizer(SpeechClient speech) {
+		this(speech, null, PollScheduler.DEFAULT_MIN_DELAY_MILLIS);
+	}
+
+	private Recognizer(SpeechClient speech, ManagedChannel channel, long pollMinDelayMillis) {
+		this.speech = speech;
+		this.channel = channel;
+		this.pollMinDelayMillis = pollMinDelayMillis;
+	}
+
+	/**
+	 * Cria um reconhecedor lendo as credenciais do arquivo informado uma nica vez.
+	 *
+	 * @param  credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return um novo {@link Recognizer}
+	 * @throws IOException
+	 */
+	public static Recognizer create(String credentialsFilePath) throws IOException {
+		SpeechSettings speechSettings =
+				SpeechSettings.newBuilder()
+					.setCredentialsProvider(FixedCredentialsProvider.create(loadCredentials(credentialsFilePath)))
+					.build();
+		long start = Metrics.start();
+		Recognizer recognizer = new Recognizer(SpeechClient.create(speechSettings));
+		Metrics.stage(Stage.CLIENT_CREATION, start);
+		return recognizer;
+	}
+
+	/**
+	 * Cria um reconhecedor para um endereo alternativo da API, sem TLS e sem credenciais, como um emulador local ou
+	 * um servio falso de testes de carga.
+	 *
+	 * @param  endpoint - "host:porta", ou {@link #IN_PROCESS_PREFIX} seguido do nome de um servidor gRPC no mesmo processo
+	 * @return um novo {@link Recognizer}, dono do canal aberto
+	 * @throws IOException
+	 */
+	public static Recognizer createForEndpoint(String endpoint) throws IOException {
+		ManagedChannel channel = endpoint.startsWith(IN_PROCESS_PREFIX)
+				? InProcessChannelBuilder.forName(endpoint.substring(IN_PROCESS_PREFIX.length())).usePlaintext(true).build()
+				: ManagedChannelBuilder.forTarget(endpoint).usePlaintext(true).build();
+		SpeechSettings.Builder builder =
+				SpeechSettings.newBuilder()
+					.setTransportProvider(GrpcTransportProvider.newBuilder()
+							.setChannelProvider(FixedChannelProvider.create(channel))
+							.build())
+					.setCredentialsProvider(new NoCredentialsProvider());
+		// a primeira consulta padro s acontece aps 20s; emuladores respondem em milissegundos
+		builder.longRunningRecognizeSettings().setPollingAlgorithm(OperationTimedPollAlgorithm.create(RetrySettings.newBuilder()
+				.setInitialRetryDelay(org.threeten.bp.Duration.ofMillis(50))
+				.setRetryDelayMultiplier(1.5)
+				.setMaxRetryDelay(org.threeten.bp.Duration.ofSeconds(5))
+				.setInitialRpcTimeout(org.threeten.bp.Duration.ZERO)
+				.setRpcTimeoutMultiplier(1.0)
+				.setMaxRpcTimeout(org.threeten.bp.Duration.ZERO)
+				.setTotalTimeout(org.threeten.bp.Duration.ofHours(24))
+				.build()));
+		SpeechSettings speechSettings = builder.build();
+		long start = Metrics.start();
+		try {
+			Recognizer recognizer = new Recognizer(SpeechClient.create(speechSettings), channel, 50);
+			Metrics.stage(Stage.CLIENT_CREATION, start);
+			return recognizer;
+		} catch (IOException | RuntimeException e) {
+			channel.shutdownNow();
+			throw e;
+		}
+	}
+
+	/**
+	 * L e escopa as credenciais. A mesma instncia de {@link GoogleCredentials} guarda o token de acesso
+	 * e s o renova quando est perto de expirar.
+	 */
+	static GoogleCredentials loadCredentials(String credentialsFilePath) throws IOException {
+		long start = Metrics.start();
+		GoogleCredentials credentials;
+		try (InputStream in = new FileInputStream(credentialsFilePath)) {
+			credentials = GoogleCredentials.fromStream(in);
+		}
+		if (credentials.createScopedRequired()) {
+			credentials = credentials.createScoped(SpeechSettings.getDefaultServiceScopes());
+		}
+		Metrics.stage(Stage.CREDENTIAL_LOAD, start);
+		return credentials;
+	}
+
+	/**
+	 * @return o {@link PollScheduler} que acompanha as operaes de longa durao iniciadas por este reconhecedor,
+	 * criado na primeira chamada.
+	 */
+	public synchronized PollScheduler getPollScheduler() {
+		if (poller == null) {
+			poller = new PollScheduler(speech.getOperationsClient().getOperationCallable(),
+					speech.getOperationsClient().cancelOperationCallable(), pollMinDelayMillis, PollScheduler.DEFAULT_MAX_DELAY_MILLIS, PollScheduler.DEFAULT_MAX_POLLS_PER_SECOND);
+		}
+		return poller;
+	}
+
+	/**
+	 * @return o {@link SpeechClient} compartilhado por este reconhecedor.
+	 */
+	public SpeechClient getClient() {
+		return speech;
+	}
+
+	/**
+	 * Executa uma chamada de reconhecimento sncrona com a configurao e o udio j montados.
+	 *
+	 * @param config - configurao do reconhecimento
+	 * @param audio - udio (contedo ou URI gs://)
+	 * @return {@link RecognizeResponse} retornado pela API
+	 */
+	public RecognizeResponse recognize(final RecognitionConfig config, final RecognitionAudio audio) {
+		TranscriptCache cache = this.cache;
+		String key = cache != null ? TranscriptCache.key(config, audio) : null;
+		if (key == null) {
+			return rpc(config, audio);
+		}
+		try {
+			return cache.get(key, () -> rpc(config, audio));
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private RecognizeResponse rpc(RecognitionConfig config, RecognitionAudio audio) {
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			RecognizeResponse response = speech.recognize(config, audio);
+			failed = false;
+			return response;
+		} finally {
+			Metrics.stage(Stage.RECOGNIZE_RPC, start);
+			Metrics.call("recognize", start, audio.getContent().size(), failed);
+		}
+	}
+
+	/**
+	 * Ativa (ou, com null, desativa) o cache de transcries consultado antes de cada chamada  API.
+	 */
+	public void setCache(TranscriptCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * @return o cache de transcries em uso, ou null
+	 */
+	public TranscriptCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Ver {@link Recognize#syncRecognizeFile(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public String syncRecognizeFile(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) throws IOException {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, false);
+		RecognizeResponse response = recognize(config, fileAudio(fileName));
+		return toTranscript(response.getResultsList());
+	}
+
+	/**
+	 * Ver {@link Recognize#syncRecognizeFile(String, String, AudioEncoding, int, Boolean, ResultSink, String)}.
+	 */
+	public void syncRecognizeFile(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter, ResultSink sink) throws IOException {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		writeResults(recognize(config, fileAudio(fileName)).getResultsList(), 0, sink);
+		sink.finish();
+	}
+
+	/**
+	 * Ver {@link Recognize#syncRecognizeFile(String, String, Boolean, String)}.
+	 */
+	public String syncRecognizeFile(String fileName, String language, Boolean profanityFilter) throws IOException {
+		AudioInfo info = AudioProbe.probe(fileName);
+		if (info.isRecognizable()) {
+			return syncRecognizeFile(fileName, language, info.getEncoding(), info.getSampleRateHertz(), profanityFilter);
+		}
+		return syncRecognizeConvertedFile(fileName, language, ConversionSettings.linear16(ConversionSettings.RECOMMENDED_SAMPLE_RATE_HERTZ), profanityFilter);
+	}
+
+	/**
+	 * Ver {@link Recognize#syncRecognizeFileWords(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public List<ItemAudio> syncRecognizeFileWords(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) throws IOException {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		RecognizeResponse response = recognize(config, fileAudio(fileName));
+		return toItems(response.getResultsList());
+	}
+
+	/**
+	 * Ver {@link Recognize#syncRecognizeConvertedFile(String, String, int, Boolean, String)}.
+	 */
+	public String syncRecognizeConvertedFile(String fileName, String language, ConversionSettings settings, Boolean profanityFilter) throws IOException {
+		RecognitionConfig config = buildConfig(language, settings.getEncoding(), settings.getSampleRateHertz(), profanityFilter, false);
+		RecognitionAudio audio;
+		try (InputStream in = AudioTranscoder.openConverted(fileName, settings)) {
+			audio = streamAudio(in);
+		}
+		return toTranscript(recognize(config, audio).getResultsList());
+	}
+
+	/**
+	 * Ver {@link Recognize#syncRecognizeGcs(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public String syncRecognizeGcs(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, false);
+		RecognizeResponse response = recognize(config, uriAudio(gcsUri));
+		return toTranscript(response.getResultsList());
+	}
+
+	/**
+	 * Como {@link #syncRecognizeGcs(String, String, AudioEncoding, int, Boolean)}, entregando os resultados ao {@link ResultSink}.
+	 */
+	public void syncRecognizeGcs(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter, ResultSink sink) throws IOException {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		writeResults(recognize(config, uriAudio(gcsUri)).getResultsList(), 0, sink);
+		sink.finish();
+	}
+
+	/**
+	 * Inicia um reconhecimento de longa durao sem bloquear a thread chamadora. A consulta do estado da operao
+	 *  feita pelo {@link PollScheduler} do reconhecedor, compartilhado por todas as operaes em andamento.
+	 *
+	 * Cancelar o futuro cancela tambm a operao no servidor, exceto quando o resultado vem do cache de transcries,
+	 * em que a mesma operao pode estar atendendo outras chamadas.
+	 *
+	 * @param config - configurao do reconhecimento
+	 * @param audio - udio remoto (URI gs://)
+	 * @return {@link CompletableFuture} completado com a resposta quando a operao terminar
+	 */
+	public CompletableFuture<LongRunningRecognizeResponse> longRunningRecognize(final RecognitionConfig config, final RecognitionAudio audio) {
+		TranscriptCache cache = this.cache;
+		String key = cache != null ? TranscriptCache.key(config, audio) : null;
+		long audioMillis = audioMillis(config, audio);
+		if (key == null) {
+			return startLongRunning(config, audio, null, audioMillis);
+		}
+		return cached(cache, key, config, audio, null, audioMillis);
+	}
+
+	/**
+	 * Como {@link #longRunningRecognize(RecognitionConfig, RecognitionAudio)} para um objeto do Storage, usando a verso
+	 * do objeto (gerao ou MD5) como chave do cache de transcries, se houver um.
+	 *
+	 * @param config - configurao do reconhecimento
+	 * @param gcsUri - URI gs:// do udio
+	 * @param objectVersion - gerao ou hash MD5 atual do objeto
+	 */
+	public CompletableFuture<LongRunningRecognizeResponse> longRunningRecognize(RecognitionConfig config, String gcsUri, String objectVersion) {
+		return longRunningRecognize(config, gcsUri, objectVersion, 0);
+	}
+
+	/**
+	 * Como {@link #longRunningRecognize(RecognitionConfig, String, String)}, informando a durao do udio, que o
+	 * {@link PollScheduler} usa para prever o trmino enquanto a operao no informa progresso. A durao de um udio
+	 * remoto no  conhecida localmente; quem enviou o arquivo pode obt-la com {@link AudioProbe}.
+	 *
+	 * @param audioMillis - durao do udio, ou 0 se desconhecida
+	 */
+	public CompletableFuture<LongRunningRecognizeResponse> longRunningRecognize(RecognitionConfig config, String gcsUri, String objectVersion, long audioMillis) {
+		TranscriptCache cache = this.cache;
+		if (cache == null) {
+			return startLongRunning(config, uriAudio(gcsUri), objectVersion, audioMillis);
+		}
+		return cached(cache, TranscriptCache.key(config, gcsUri, objectVersion), config, uriAudio(gcsUri), objectVersion, audioMillis);
+	}
+
+	private CompletableFuture<LongRunningRecognizeResponse> cached(TranscriptCache cache, String key, final RecognitionConfig config, final RecognitionAudio audio,
+			final String objectVersion, final long audioMillis) {
+		return cache.getAsync(key, () -> startLongRunning(config, audio, objectVersion, audioMillis)
+					.thenApply(response -> RecognizeResponse.newBuilder().addAllResults(response.getResultsList()).build()))
+				.thenApply(response -> LongRunningRecognizeResponse.newBuilder().addAllResults(response.getResultsList()).build());
+	}
+
+	private CompletableFuture<LongRunningRecognizeResponse> startLongRunning(RecognitionConfig config, RecognitionAudio audio, String objectVersion,
+			final long audioMillis) {
+		final long start = Metrics.start();
+		final long bytes = audio.getContent().size();
+		OperationJournal journal = this.journal;
+		CompletableFuture<LongRunningRecognizeResponse> result = journal == null
+				? composeCancellable(submit(config, audio), operation -> getPollScheduler().track(operation, audioMillis))
+				: journaled(journal, config, audio, objectVersion, audioMillis);
+		if (start != 0L) {
+			result.whenComplete((value, t) -> {
+				Metrics.stage(Stage.LRO_WAIT, start);
+				Metrics.call("longRunningRecognize", start, bytes, t != null);
+			});
+		}
+		return result;
+	}
+
+	private CompletableFuture<Operation> submit(RecognitionConfig config, RecognitionAudio audio) {
+		return toCompletableFuture(speech.longRunningRecognizeCallable()
+				.futureCall(LongRunningRecognizeRequest.newBuilder().setConfig(config).setAudio(audio).build()));
+	}
+
+	/**
+	 * Reaproveita a operao pendente no dirio para o mesmo udio e configurao, se houver; seno envia uma nova e a
+	 * registra. Se a operao pendente no existir mais no servidor, o udio  reenviado.
+	 */
+	private CompletableFuture<LongRunningRecognizeResponse> journaled(final OperationJournal journal, final RecognitionConfig config,
+			final RecognitionAudio audio, String objectVersion, final long audioMillis) {
+		final String key = audio.getAudioSourceCase() == RecognitionAudio.AudioSourceCase.URI
+				? TranscriptCache.key(config, audio.getUri(), objectVersion == null ? "" : objectVersion)
+				: TranscriptCache.key(config, audio);
+		OperationJournal.Entry entry = journal.findPending(key);
+		if (entry == null) {
+			return submitJournaled(journal, key, config, audio, audioMillis);
+		}
+		CompletableFuture<LongRunningRecognizeResponse> attached = reattach(journal, entry);
+		return cancelling(composeCancellable(attached.handle((response, t) -> {
+			if (t == null) {
+				return CompletableFuture.completedFuture(response);
+			}
+			if (Status.fromThrowable(t).getCode() == Status.Code.NOT_FOUND) {
+				return submitJournaled(journal, key, config, audio, audioMillis);
+			}
+			CompletableFuture<LongRunningRecognizeResponse> failed = new CompletableFuture<LongRunningRecognizeResponse>();
+			failed.completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+			return failed;
+		}), future -> future), attached);
+	}
+
+	private CompletableFuture<LongRunningRecognizeResponse> submitJournaled(final OperationJournal journal, final String key,
+			final RecognitionConfig config, final RecognitionAudio audio, final long audioMillis) {
+		final String source = audio.getAudioSourceCase() == RecognitionAudio.AudioSourceCase.URI ? audio.getUri() : "content";
+		return composeCancellable(submit(config, audio), operation -> {
+			try {
+				journal.submitted(key, operation.getName(), source, config);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return record(journal, operation.getName(), getPollScheduler().track(operation, audioMillis));
+		});
+	}
+
+	private CompletableFuture<LongRunningRecognizeResponse> reattach(OperationJournal journal, OperationJournal.Entry entry) {
+		return record(journal, entry.getOperationName(), getPollScheduler().track(entry.getOperationName(), 0));
+	}
+
+	/**
+	 * Grava o trmino da operao no dirio. Um cancelamento local (por exemplo no encerramento da aplicao) no 
+	 * gravado, para que a operao seja retomada depois.
+	 */
+	private static CompletableFuture<LongRunningRecognizeResponse> record(final OperationJournal journal, final String operationName,
+			CompletableFuture<LongRunningRecognizeResponse> result) {
+		return cancelling(result.whenComplete((response, t) -> {
+			try {
+				if (t == null) {
+					journal.completed(operationName);
+				} else if (!(t instanceof CancellationException)) {
+					journal.failed(operationName);
+				}
+			} catch (IOException e) {
+				// sem a linha de concluso a operao  apenas consultada de novo, j concluda, na prxima retomada
+			}
+		}), result);
+	}
+
+	/**
+	 * Ativa (ou, com null, desativa) o dirio de operaes de longa durao. O dirio continua pertencendo ao chamador,
+	 * que deve fech-lo.
+	 */
+	public void setJournal(OperationJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * @return o dirio de operaes em uso, ou null
+	 */
+	public OperationJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Volta a acompanhar, pelo nome, as operaes pendentes no dirio, sem reenviar o udio. Deve ser chamado ao iniciar a
+	 * aplicao, depois de {@link #setJournal(OperationJournal)}.
+	 *
+	 * @return o futuro de cada operao retomada, pelo nome da operao
+	 */
+	public Map<String, CompletableFuture<LongRunningRecognizeResponse>> resumeJournal() {
+		OperationJournal journal = this.journal;
+		if (journal == null) {
+			throw new IllegalStateException("no OperationJournal set");
+		}
+		Map<String, CompletableFuture<LongRunningRecognizeResponse>> resumed = new LinkedHashMap<String, CompletableFuture<LongRunningRecognizeResponse>>();
+		for (OperationJournal.Entry entry : journal.getPending()) {
+			resumed.put(entry.getOperationName(), reattach(journal, entry));
+		}
+		return resumed;
+	}
+
+	/**
+	 * Ver {@link Recognize#asyncRecognizeWordsFuture(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public CompletableFuture<List<ItemAudio>> asyncRecognizeWordsFuture(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		CompletableFuture<LongRunningRecognizeResponse> operation = longRunningRecognize(config, uriAudio(gcsUri));
+		return cancelling(operation.thenApply(response -> toItems(response.getResultsList())), operation);
+	}
+
+	/**
+	 * Ver {@link Recognize#asyncRecognizeGcsFuture(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public CompletableFuture<String> asyncRecognizeGcsFuture(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		CompletableFuture<LongRunningRecognizeResponse> operation = longRunningRecognize(config, uriAudio(gcsUri));
+		return cancelling(operation.thenApply(response -> toTranscript(response.getResultsList())), operation);
+	}
+
+	/**
+	 * Ver {@link Recognize#asyncRecognizeGcs(String, String, AudioEncoding, int, Boolean, ResultSink, String)}.
+	 * O futuro  completado depois que todos os resultados foram entregues ao {@link ResultSink} e ele foi finalizado.
+	 */
+	public CompletableFuture<Void> asyncRecognizeGcsFuture(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter, final ResultSink sink) {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		CompletableFuture<LongRunningRecognizeResponse> operation = longRunningRecognize(config, uriAudio(gcsUri));
+		return cancelling(operation.thenApply(response -> {
+			try {
+				writeResults(response.getResultsList(), 0, sink);
+				sink.finish();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+			return null;
+		}), operation);
+	}
+
+	/**
+	 * Ver {@link Recognize#asyncRecognizeWords(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public List<ItemAudio> asyncRecognizeWords(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) throws Exception {
+		return asyncRecognizeWordsFuture(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter).get();
+	}
+
+	/**
+	 * Ver {@link Recognize#asyncRecognizeGcs(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public String asyncRecognizeGcs(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) throws Exception {
+		return asyncRecognizeGcsFuture(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter).get();
+	}
+
+	/**
+	 * Ver {@link Recognize#syncRecognizeFileTimeline(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public WordTimeline syncRecognizeFileTimeline(String fileName, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) throws IOException {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		RecognizeResponse response = recognize(config, fileAudio(fileName));
+		return toTimeline(response.getResultsList());
+	}
+
+	/**
+	 * Verso no bloqueante de {@link #asyncRecognizeTimeline(String, String, AudioEncoding, int, Boolean)}.
+	 */
+	public CompletableFuture<WordTimeline> asyncRecognizeTimelineFuture(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) {
+		RecognitionConfig config = buildConfig(language, audioEncoding, sampleRateHertz, profanityFilter, true);
+		CompletableFuture<LongRunningRecognizeResponse> operation = longRunningRecognize(config, uriAudio(gcsUri));
+		return cancelling(operation.thenApply(response -> toTimeline(response.getResultsList())), operation);
+	}
+
+	/**
+	 * Ver {@link Recognize#asyncRecognizeTimeline(String, String, AudioEncoding, int, Boolean, String)}.
+	 */
+	public WordTimeline asyncRecognizeTimeline(String gcsUri, String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter) throws Exception {
+		return asyncRecognizeTimelineFuture(gcsUri, language, audioEncoding, sampleRateHertz, profanityFilter).get();
+	}
+
+	/**
+	 * Cria uma sesso de reconhecimento contnuo usando o cliente deste reconhecedor.
+	 *
+	 * @param config - configurao do reconhecimento
+	 * @param interimResults - se verdadeiro, entrega tambm os resultados parciais
+	 * @param listener - destino dos eventos
+	 * @return um {@link StreamingRecognizer} pronto para receber udio
+	 */
+	public StreamingRecognizer streamingRecognizer(RecognitionConfig config, boolean interimResults, StreamingListener listener) {
+		return new StreamingRecognizer(this, config, interimResults, listener);
+	}
+
+	/**
+	 * @return true se o cliente j foi encerrado.
+	 */
+	public boolean isShutdown() {
+		return speech.isShutdown();
+	}
+
+	/**
+	 * Encerra o cliente, aguardando as chamadas em andamento terminarem pelo tempo informado. Como em {@link #close()},
+	 * as operaes de longa durao acompanhadas so canceladas localmente, mas continuam no servidor.
+	 *
+	 * @return true se o cliente terminou dentro do prazo
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		synchronized (this) {
+			if (poller != null) {
+				poller.close();
+			}
+		}
+		speech.shutdown();
+		if (channel != null) {
+			channel.shutdown();
+			return speech.awaitTermination(timeout, unit) && channel.awaitTermination(timeout, unit);
+		}
+		return speech.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Fecha o canal gRPC e libera os recursos do cliente. Operaes de longa durao ainda acompanhadas so canceladas
+	 * localmente, mas continuam no servidor.
+	 *
+	 * @throws IOException se o cliente no puder ser fechado
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (poller != null) {
+				poller.close();
+			}
+		}
+		try {
+			speech.close();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Failed to close the speech client", e);
+		} finally {
+			if (channel != null) {
+				channel.shutdown();
+			}
+		}
+	}
+
+
+	/**
+	 * Converte um {@link ApiFuture} em {@link CompletableFuture} via listener, sem threads bloqueadas.
+	 * O cancelamento do {@link CompletableFuture}  repassado ao futuro original.
+	 */
+	static <V> CompletableFuture<V> toCompletableFuture(final ApiFuture<V> future) {
+		final CompletableFuture<V> result = new CompletableFuture<V>();
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				// o OperationFuture do gax pode avisar os listeners antes de isDone() ser verdadeiro, e
+				// ApiFutures.addCallback descarta o resultado nesse caso; o listener  registrado de novo em vez de
+				// bloquear uma thread em get()
+				if (future.isDone()) {
+					complete(future, result);
+				} else {
+					future.addListener(this, Runnable::run);
+				}
+			}
+		}, Runnable::run);
+		result.whenComplete((value, t) -> {
+			if (result.isCancelled()) {
+				future.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Como {@code first.thenCompose(next)}, mas o cancelamento do resultado  repassado ao futuro em andamento: o
+	 * primeiro ou, depois que ele terminar, o devolvido por {@code next}.
+	 */
+	static <T, U> CompletableFuture<U> composeCancellable(final CompletableFuture<T> first, final Function<T, CompletableFuture<U>> next) {
+		final CompletableFuture<U> result = new CompletableFuture<U>();
+		final AtomicReference<CompletableFuture<U>> second = new AtomicReference<CompletableFuture<U>>();
+		first.whenComplete((value, t) -> {
+			if (t != null) {
+				result.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+				return;
+			}
+			CompletableFuture<U> future;
+			try {
+				future = next.apply(value);
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+				return;
+			}
+			second.set(future);
+			if (result.isCancelled()) {
+				future.cancel(true);
+				return;
+			}
+			future.whenComplete((response, error) -> {
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(response);
+				}
+			});
+		});
+		result.whenComplete((value, t) -> {
+			if (result.isCancelled()) {
+				first.cancel(true);
+				CompletableFuture<U> future = second.get();
+				if (future != null) {
+					future.cancel(true);
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Repassa a {@code source} o cancelamento de {@code derived}, obtido dele por thenApply, whenComplete e similares.
+	 */
+	static <T> CompletableFuture<T> cancelling(final CompletableFuture<T> derived, final Future<?> source) {
+		derived.whenComplete((value, t) -> {
+			if (derived.isCancelled()) {
+				source.cancel(true);
+			}
+		});
+		return derived;
+	}
+
+	private static <V> void complete(ApiFuture<V> future, CompletableFuture<V> result) {
+		try {
+			result.complete(future.get());
+		} catch (ExecutionException e) {
+			result.completeExceptionally(e.getCause());
+		} catch (CancellationException e) {
+			result.cancel(false);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.completeExceptionally(e);
+		}
+	}
+
+	static RecognitionConfig buildConfig(String language, AudioEncoding audioEncoding, int sampleRateHertz, Boolean profanityFilter, boolean wordTimeOffsets) {
+		return RecognitionConfig.newBuilder()
+				.setEncoding(audioEncoding)
+				.setLanguageCode(language)
+				.setSampleRateHertz(sampleRateHertz)
+				.setEnableWordTimeOffsets(wordTimeOffsets)
+				.setProfanityFilter(profanityFilter)
+				.build();
+	}
+
+	static RecognitionAudio fileAudio(String fileName) throws IOException {
+		return RecognitionAudio.newBuilder()
+				.setContent(Utils.readAudio(fileName))
+				.build();
+	}
+
+	/**
+	 * L o stream at o fim. {@link ByteString#readFrom(InputStream)} guarda os blocos lidos sem concaten-los, evitando
+	 * uma cpia final do udio.
+	 */
+	static RecognitionAudio streamAudio(InputStream in) throws IOException {
+		long start = Metrics.start();
+		ByteString content = ByteString.readFrom(in);
+		Metrics.stage(Stage.AUDIO_READ, start);
+		return RecognitionAudio.newBuilder()
+				.setContent(content)
+				.build();
+	}
+
+	/**
+	 * Durao do udio enviado no corpo da requisio, calculvel apenas para LINEAR16; 0 nos demais casos.
+	 */
+	static long audioMillis(RecognitionConfig config, RecognitionAudio audio) {
+		if (config.getEncoding() != AudioEncoding.LINEAR16 || config.getSampleRateHertz() <= 0) {
+			return 0;
+		}
+		return audio.getContent().size() * 1000L / (2L * config.getSampleRateHertz());
+	}
+
+	static RecognitionAudio uriAudio(String gcsUri) {
+		return RecognitionAudio.newBuilder()
+				.setUri(gcsUri)
+				.build();
+	}
+
+	/**
+	 * Usa sempre a primeira alternativa (a mais provvel) de cada resultado.
+	 */
+	static String toTranscript(List<SpeechRecognitionResult> results) {
+		long start = Metrics.start();
+		StringBuilder transcript = new StringBuilder();
+		for (SpeechRecognitionResult result: results) {
+			String text = result.getAlternativesList().get(0).getTranscript().trim();
+			if (!text.isEmpty()) {
+				if (transcript.length() > 0) {
+					transcript.append(' ');
+				}
+				transcript.append(text);
+			}
+		}
+		Metrics.stage(Stage.RESULT_MAPPING, start);
+		return transcript.toString();
+	}
+
+	/**
+	 * Entrega os resultados ao {@link ResultSink}, na ordem em que a API os retornou.
+	 *
+	 * @param offsetNanos - posio, em nanossegundos, do incio do trecho reconhecido dentro do udio completo
+	 */
+	static void writeResults(List<SpeechRecognitionResult> results, long offsetNanos, ResultSink sink) throws IOException {
+		long start = Metrics.start();
+		try {
+			for (SpeechRecognitionResult result: results) {
+				sink.write(result, offsetNanos);
+			}
+		} finally {
+			Metrics.stage(Stage.RESULT_MAPPING, start);
+		}
+	}
+
+	static List<ItemAudio> toItems(List<SpeechRecognitionResult> results) {
+		long start = Metrics.start();
+		List<ItemAudio> returnList = new ArrayList<ItemAudio>();
+		for (SpeechRecognitionResult result: results) {
+			SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
+			for (WordInfo wordInfo: alternative.getWordsList()) {
+				returnList.add(toItem(wordInfo, 0));
+			}
+		}
+		Metrics.stage(Stage.RESULT_MAPPING, start);
+		return returnList;
+	}
+
+	/**
+	 * Monta a {@link WordTimeline} dos resultados, usando a confiana da alternativa para cada uma de suas palavras.
+	 */
+	static WordTimeline toTimeline(List<SpeechRecognitionResult> results) {
+		long start = Metrics.start();
+		WordTimeline.Builder builder = new WordTimeline.Builder();
+		for (SpeechRecognitionResult result: results) {
+			SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
+			for (WordInfo wordInfo: alternative.getWordsList()) {
+				builder.add(wordInfo.getWord(), toMillis(wordInfo.getStartTime()), toMillis(wordInfo.getEndTime()), alternative.getConfidence());
+			}
+		}
+		WordTimeline timeline = builder.build();
+		Metrics.stage(Stage.RESULT_MAPPING, start);
+		return timeline;
+	}
+
+	/**
+	 * Traduz os tempos das palavras reconhecidas em um udio reduzido pelo
+	 * {@link br.com.icaro.google.helper.VoiceActivityDetector} para posies no udio original.
+	 *
+	 * @param results - resultados retornados pela API para o udio reduzido (ou um trecho dele)
+	 * @param offsetNanos - posio, em nanossegundos, do incio do trecho reconhecido dentro do udio reduzido
+	 * @param speechMap - mapa retornado pelo detector
+	 * @return os resultados com os tempos relativos ao comeo do udio original
+	 */
+	public static List<SpeechRecognitionResult> toOriginalTimes(List<SpeechRecognitionResult> results, long offsetNanos, SpeechMap speechMap) {
+		List<SpeechRecognitionResult> returnList = new ArrayList<SpeechRecognitionResult>(results.size());
+		for (SpeechRecognitionResult result: results) {
+			if (result.getAlternativesCount() == 0) {
+				returnList.add(result);
+				continue;
+			}
+			SpeechRecognitionAlternative.Builder alternative = result.getAlternatives(0).toBuilder();
+			for (int i = 0; i < alternative.getWordsCount(); i++) {
+				WordInfo wordInfo = alternative.getWords(i);
+				alternative.setWords(i, wordInfo.toBuilder()
+						.setStartTime(toDuration(speechMap.toOriginalNanos(offsetNanos + toNanos(wordInfo.getStartTime()))))
+						.setEndTime(toDuration(speechMap.toOriginalNanos(offsetNanos + toNanos(wordInfo.getEndTime())))));
+			}
+			returnList.add(result.toBuilder().setAlternatives(0, alternative).build());
+		}
+		return returnList;
+	}
+
+	private static long toNanos(Duration time) {
+		return time.getSeconds() * 1000000000L + time.getNanos();
+	}
+
+	private static Duration toDuration(long nanos) {
+		return Duration.newBuilder()
+				.setSeconds(nanos / 1000000000L)
+				.setNanos((int) (nanos % 1000000000L))
+				.build();
+	}
+
+	static int toMillis(Duration time) {
+		return (int) (time.getSeconds() * 1000 + time.getNanos() / 1000000);
+	}
+
+	/**
+	 * Converte uma palavra reconhecida em {@link ItemAudio}, deslocando seus tempos pelo valor informado.
+	 *
+	 * @param wordInfo - palavra retornada pela API
+	 * @param offsetNanos - posio, em nanossegundos, do incio do trecho reconhecido dentro do udio completo
+	 */
+	static ItemAudio toItem(WordInfo wordInfo, long offsetNanos) {
+		ItemAudio item = new ItemAudio();
+		item.setPalavra(wordInfo.getWord());
+		item.setInicio(formatSeconds(wordInfo.getStartTime(), offsetNanos));
+		item.setFim(formatSeconds(wordInfo.getEndTime(), offsetNanos));
+		return item;
+	}
+
+	private static String formatSeconds(Duration time, long offsetNanos) {
+		long seconds = time.getSeconds() + offsetNanos / 1000000000L;
+		long nanos = time.getNanos() + offsetNanos % 1000000000L;
+		if (nanos >= 1000000000L) {
+			seconds++;
+			nanos -= 1000000000L;
+		}
+		return seconds+"."+ nanos / 100000000;
+	}
+}
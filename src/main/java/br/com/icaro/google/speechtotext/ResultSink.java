@@ -0,0 +1,28 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.IOException;
+
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+
+/**
+ * @author icaroafonso
+ *
+ *  Destino dos resultados de um reconhecimento. Cada resultado  entregue assim que  mapeado, na ordem do udio,
+ *  e pode ser codificado direto em um {@link java.io.Writer} sem montar a transcrio inteira em memria.
+ *  Ver {@link TextSink}, {@link SubtitleSink} e {@link JsonLinesSink}.
+ */
+public interface ResultSink {
+
+	/**
+	 * Recebe um resultado. Usa-se sempre a primeira alternativa (a mais provvel).
+	 *
+	 * @param result - resultado retornado pela API
+	 * @param offsetNanos - posio, em nanossegundos, do incio do trecho reconhecido dentro do udio completo
+	 */
+	void write(SpeechRecognitionResult result, long offsetNanos) throws IOException;
+
+	/**
+	 * Chamado depois do ltimo resultado. Escreve o que estiver pendente e descarrega o destino, sem fech-lo.
+	 */
+	void finish() throws IOException;
+}
@@ -0,0 +1,183 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.cloud.speech.v1.RecognitionAudio;
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+import com.google.cloud.speech.v1.RecognizeResponse;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.protobuf.ByteString;
+
+import br.com.icaro.google.helper.AudioSegmenter;
+import br.com.icaro.google.helper.SpeechMap;
+import br.com.icaro.google.helper.Utils;
+import br.com.icaro.google.helper.VoiceActivityDetector;
+
+/**
+ * @author icaroafonso
+ *
+ *  Reconhece udios locais longos (LINEAR16 mono, cru ou WAV) pelo caminho sncrono, sem upload para o Storage.
+ *  O udio  dividido em trechos menores que um minuto, cortados em silncio, que so reconhecidos em paralelo;
+ *  os resultados so reunidos em ordem, com o tempo de cada palavra deslocado pelo incio do seu trecho.
+ */
+public class SegmentedRecognizer implements AutoCloseable {
+
+	/** Durao mxima de cada trecho, abaixo do limite de um minuto do reconhecimento sncrono. */
+	public static final int DEFAULT_SEGMENT_MILLIS = 55000;
+
+	/** Quanto antes do fim do trecho procurar pelo ponto de silncio. */
+	public static final int DEFAULT_SEARCH_WINDOW_MILLIS = 5000;
+
+	private final Recognizer recognizer;
+	private final ExecutorService executor;
+	private int segmentMillis = DEFAULT_SEGMENT_MILLIS;
+	private int searchWindowMillis = DEFAULT_SEARCH_WINDOW_MILLIS;
+	private VoiceActivityDetector voiceActivityDetector;
+
+	/**
+	 * @param recognizer - reconhecedor cujo cliente ser usado
+	 * @param parallelism - nmero mximo de trechos reconhecidos ao mesmo tempo
+	 */
+	public SegmentedRecognizer(Recognizer recognizer, int parallelism) {
+		this.recognizer = recognizer;
+		this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "segmented-recognizer-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Altera a durao mxima dos trechos e a janela de busca do silncio.
+	 */
+	public void setSegmentation(int segmentMillis, int searchWindowMillis) {
+		this.segmentMillis = segmentMillis;
+		this.searchWindowMillis = searchWindowMillis;
+	}
+
+	/**
+	 * Ativa (ou, com null, desativa) a remoo do que no  fala antes da diviso em trechos. Apenas a fala  enviada
+	 * para a API; os tempos das palavras continuam relativos ao arquivo original.
+	 */
+	public void setVoiceActivityDetector(VoiceActivityDetector voiceActivityDetector) {
+		this.voiceActivityDetector = voiceActivityDetector;
+	}
+
+	/**
+	 * Reconhece o arquivo e retorna o texto completo, com os trechos na ordem do udio.
+	 */
+	public String recognizeFile(String fileName, String language, int sampleRateHertz, Boolean profanityFilter) throws IOException, InterruptedException, ExecutionException {
+		final StringBuilder transcript = new StringBuilder();
+		recognizeSegments(fileName, buildConfig(language, sampleRateHertz, profanityFilter, false), (results, offsetNanos) -> {
+			String text = Recognizer.toTranscript(results);
+			if (!text.isEmpty()) {
+				if (transcript.length() > 0) {
+					transcript.append(' ');
+				}
+				transcript.append(text);
+			}
+		});
+		return transcript.toString();
+	}
+
+	/**
+	 * Reconhece o arquivo e retorna as palavras lidas, com incio e fim relativos ao comeo do arquivo.
+	 */
+	public List<ItemAudio> recognizeFileWords(String fileName, String language, int sampleRateHertz, Boolean profanityFilter) throws IOException, InterruptedException, ExecutionException {
+		final List<ItemAudio> returnList = new ArrayList<ItemAudio>();
+		recognizeSegments(fileName, buildConfig(language, sampleRateHertz, profanityFilter, true), (results, offsetNanos) -> {
+			for (SpeechRecognitionResult result : results) {
+				SpeechRecognitionAlternative alternative = result.getAlternativesList().get(0);
+				for (WordInfo wordInfo : alternative.getWordsList()) {
+					returnList.add(Recognizer.toItem(wordInfo, offsetNanos));
+				}
+			}
+		});
+		return returnList;
+	}
+
+	/**
+	 * Reconhece o arquivo entregando os resultados ao {@link ResultSink}, com os tempos relativos ao comeo do arquivo.
+	 * Cada trecho  entregue assim que ele e todos os anteriores terminam, sem esperar pelo udio inteiro.
+	 */
+	public void recognizeFile(String fileName, String language, int sampleRateHertz, Boolean profanityFilter, final ResultSink sink) throws IOException, InterruptedException, ExecutionException {
+		recognizeSegments(fileName, buildConfig(language, sampleRateHertz, profanityFilter, true),
+				(results, offsetNanos) -> Recognizer.writeResults(results, offsetNanos, sink));
+		sink.finish();
+	}
+
+	/**
+	 * Encerra as threads de trabalho. O {@link Recognizer} no  fechado.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	private void recognizeSegments(String fileName, final RecognitionConfig config, SegmentConsumer consumer) throws IOException, InterruptedException, ExecutionException {
+		ByteString audio = Utils.readAudio(fileName);
+		ByteString pcm = AudioSegmenter.pcmData(audio, config.getSampleRateHertz());
+		VoiceActivityDetector detector = this.voiceActivityDetector;
+		SpeechMap speechMap = null;
+		if (detector != null) {
+			speechMap = detector.detect(pcm, config.getSampleRateHertz());
+			pcm = speechMap.trim(pcm);
+			if (pcm.isEmpty()) {
+				return;
+			}
+		}
+		int[] points = AudioSegmenter.splitPoints(pcm, config.getSampleRateHertz(), segmentMillis, searchWindowMillis);
+		long bytesPerSecond = 2L * config.getSampleRateHertz();
+
+		List<Future<RecognizeResponse>> futures = new ArrayList<Future<RecognizeResponse>>(points.length);
+		try {
+			for (int i = 0; i < points.length; i++) {
+				int end = i + 1 < points.length ? points[i + 1] : pcm.size();
+				final RecognitionAudio chunk = RecognitionAudio.newBuilder()
+						.setContent(pcm.substring(points[i], end))
+						.build();
+				futures.add(executor.submit(() -> recognizer.recognize(config, chunk)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				List<SpeechRecognitionResult> results = futures.get(i).get().getResultsList();
+				long offsetNanos = points[i] * 1000000000L / bytesPerSecond;
+				if (speechMap != null) {
+					consumer.accept(Recognizer.toOriginalTimes(results, offsetNanos, speechMap), 0);
+				} else {
+					consumer.accept(results, offsetNanos);
+				}
+				futures.set(i, null);
+			}
+		} finally {
+			for (Future<RecognizeResponse> future : futures) {
+				if (future != null) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
+	private static RecognitionConfig buildConfig(String language, int sampleRateHertz, Boolean profanityFilter, boolean wordTimeOffsets) {
+		return Recognizer.buildConfig(language, AudioEncoding.LINEAR16, sampleRateHertz, profanityFilter, wordTimeOffsets);
+	}
+
+	private interface SegmentConsumer {
+		void accept(List<SpeechRecognitionResult> results, long offsetNanos) throws IOException;
+	}
+}
@@ -0,0 +1,92 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author icaroafonso
+ * Registro dos {@link Recognizer} compartilhados, um por arquivo de credenciais.
+ * As credenciais so lidas e o canal gRPC  aberto apenas na primeira chamada; as demais reutilizam o cliente aquecido.
+ */
+public class SpeechFactory {
+	private static final ConcurrentMap<String, Recognizer> instances = new ConcurrentHashMap<String, Recognizer>();
+	private static volatile String endpoint = null;
+
+	/**
+	 * Direciona os reconhecedores criados a partir de agora para um endereo alternativo (emulador ou servio falso),
+	 * sem TLS e sem ler as credenciais. Use null para voltar ao endereo padro da API.
+	 *
+	 * @param speechEndpoint - ver {@link Recognizer#createForEndpoint(String)}
+	 */
+	public static void setEndpoint(String speechEndpoint) {
+		endpoint = speechEndpoint;
+	}
+
+	/**
+	 * @return o endereo alternativo em uso, ou null
+	 */
+	public static String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return o {@link Recognizer} compartilhado para estas credenciais
+	 * @throws IOException
+	 */
+	public static Recognizer getRecognizer(String credentialsFilePath) throws IOException {
+		String override = endpoint;
+		String key = override == null ? keyOf(credentialsFilePath) : "endpoint=" + override;
+		Recognizer recognizer = instances.get(key);
+		if (recognizer != null && !recognizer.isShutdown()) {
+			return recognizer;
+		}
+		synchronized (SpeechFactory.class) {
+			recognizer = instances.get(key);
+			if (recognizer == null || recognizer.isShutdown()) {
+				recognizer = override == null ? Recognizer.create(credentialsFilePath) : Recognizer.createForEndpoint(override);
+				instances.put(key, recognizer);
+			}
+			return recognizer;
+		}
+	}
+
+	/**
+	 * Remove e fecha o reconhecedor associado s credenciais informadas, se existir.
+	 *
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 */
+	public static void release(String credentialsFilePath) throws Exception {
+		Recognizer recognizer = instances.remove(keyOf(credentialsFilePath));
+		if (recognizer != null) {
+			recognizer.close();
+		}
+	}
+
+	/**
+	 * Fecha todos os reconhecedores registrados. Chamadas posteriores a {@link #getRecognizer(String)} criam novos clientes.
+	 */
+	public static synchronized void shutdown() throws Exception {
+		List<Recognizer> recognizers = new ArrayList<Recognizer>(instances.values());
+		instances.clear();
+		Exception failure = null;
+		for (Recognizer recognizer : recognizers) {
+			try {
+				recognizer.close();
+			} catch (Exception e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static String keyOf(String credentialsFilePath) throws IOException {
+		return new File(credentialsFilePath).getCanonicalPath();
+	}
+}
@@ -0,0 +1,41 @@
+package br.com.icaro.google.speechtotext;
+
+/**
+ * @author icaroafonso
+ * Recebe os eventos produzidos por um {@link StreamingRecognizer}. Os mtodos so chamados pelas threads do gRPC,
+ * portanto devem retornar rapidamente.
+ */
+public interface StreamingListener {
+
+	/**
+	 * Resultado parcial, que ainda pode mudar. Resultados parciais no trazem o tempo das palavras.
+	 *
+	 * @param transcript - texto reconhecido at o momento
+	 * @param stability - estimativa (0 a 1) de quanto o texto ainda pode mudar
+	 */
+	void onInterim(String transcript, float stability);
+
+	/**
+	 * Palavra de um resultado final, com incio e fim relativos ao comeo do udio enviado (e no ao da sesso atual).
+	 *
+	 * @param item - a palavra reconhecida
+	 */
+	void onWord(ItemAudio item);
+
+	/**
+	 * Texto de um resultado final, entregue depois de todas as suas palavras.
+	 *
+	 * @param transcript - texto reconhecido
+	 */
+	void onFinal(String transcript);
+
+	/**
+	 * Falha no reconhecimento. Nenhum outro evento  entregue depois deste.
+	 */
+	void onError(Throwable t);
+
+	/**
+	 * Fim do udio: todos os resultados j foram entregues.
+	 */
+	void onCompleted();
+}
@@ -0,0 +1,308 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.api.gax.rpc.ApiStreamObserver;
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.StreamingRecognitionConfig;
+import com.google.cloud.speech.v1.StreamingRecognitionResult;
+import com.google.cloud.speech.v1.StreamingRecognizeRequest;
+import com.google.cloud.speech.v1.StreamingRecognizeResponse;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.protobuf.ByteString;
+
+import br.com.icaro.google.metrics.Metrics;
+
+/**
+ * @author icaroafonso
+ *
+ *  Reconhecimento contnuo (StreamingRecognize) para udio ao vivo. O udio pode ser empurrado em blocos com
+ *  {@link #send(byte[], int, int)} ou lido de um {@link InputStream} com {@link #transcribe(InputStream)}, e os
+ *  resultados parciais e finais so entregues a um {@link StreamingListener} assim que chegam.
+ *
+ *  A API encerra cada sesso de streaming aps alguns minutos. Antes desse limite a sesso  reaberta
+ *  automaticamente e o udio ainda no coberto por um resultado final  reenviado, de forma que nenhuma palavra
+ *  se perde e os tempos das palavras continuam relativos ao incio do udio (o reenvio se limita  ltima sesso de
+ *  udio: o que for mais antigo e ainda no tiver resultado final  descartado). Isso s  possvel para LINEAR16 e
+ *  MULAW, em que a durao de cada bloco  conhecida; para outros formatos no h como saber qual udio j foi
+ *  coberto, ento a sesso no  reaberta e fica sujeita ao limite da API.
+ */
+public class StreamingRecognizer implements AutoCloseable {
+
+	/** Limite padro de durao de uma sesso, um pouco abaixo do limite da API. */
+	public static final long DEFAULT_STREAM_LIMIT_MILLIS = 290000;
+
+	/** Tamanho mximo do udio em uma nica mensagem de streaming. */
+	static final int MAX_CHUNK_BYTES = 16 * 1024;
+
+	private final Recognizer recognizer;
+	private final StreamingRecognitionConfig streamingConfig;
+	private final StreamingListener listener;
+	private final long bytesPerSecond;
+	private final CountDownLatch finished = new CountDownLatch(1);
+	private volatile Throwable failure;
+
+	private long streamLimitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_STREAM_LIMIT_MILLIS);
+
+	// estado protegido por "this"
+	private final Deque<Chunk> pending = new ArrayDeque<Chunk>();
+	private ApiStreamObserver<StreamingRecognizeRequest> requests;
+	private ResponseObserver current;
+	private long streamStartedAt;
+	private long sentNanos;
+	private long finalizedNanos;
+	private long metricsStart;
+	private long sentBytes;
+	private boolean closed;
+
+	/**
+	 * @param recognizer - reconhecedor cujo cliente ser usado
+	 * @param config - configurao do reconhecimento. O tempo das palavras  sempre habilitado.
+	 * @param interimResults - se verdadeiro, entrega tambm os resultados parciais
+	 * @param listener - destino dos eventos
+	 */
+	public StreamingRecognizer(Recognizer recognizer, RecognitionConfig config, boolean interimResults, StreamingListener listener) {
+		this.recognizer = recognizer;
+		this.listener = listener;
+		this.streamingConfig = StreamingRecognitionConfig.newBuilder()
+				.setConfig(config.toBuilder().setEnableWordTimeOffsets(true))
+				.setInterimResults(interimResults)
+				.build();
+		this.bytesPerSecond = bytesPerSecond(config);
+	}
+
+	/**
+	 * Altera a durao mxima de cada sesso antes da reabertura automtica.
+	 */
+	public void setStreamLimit(long duration, TimeUnit unit) {
+		this.streamLimitNanos = unit.toNanos(duration);
+	}
+
+	/**
+	 * Envia um bloco de udio. Os bytes so copiados, e o buffer pode ser reutilizado pelo chamador.
+	 */
+	public synchronized void send(byte[] data, int offset, int length) {
+		if (closed) {
+			throw new IllegalStateException("StreamingRecognizer is closed");
+		}
+		while (length > 0) {
+			int size = Math.min(length, MAX_CHUNK_BYTES);
+			sendChunk(ByteString.copyFrom(data, offset, size));
+			offset += size;
+			length -= size;
+		}
+	}
+
+	/**
+	 * L o {@link InputStream} at o fim enviando o udio conforme chega, fecha a sesso e aguarda os ltimos resultados.
+	 *
+	 * @throws IOException se a leitura falhar ou se o reconhecimento terminar com erro
+	 */
+	public void transcribe(InputStream in) throws IOException, InterruptedException {
+		int chunkSize = bytesPerSecond > 0 ? (int) Math.min(MAX_CHUNK_BYTES, Math.max(bytesPerSecond / 10, 1)) : MAX_CHUNK_BYTES;
+		byte[] buf = new byte[chunkSize];
+		int len;
+		while (failure == null && (len = in.read(buf, 0, chunkSize)) != -1) {
+			if (len > 0) {
+				send(buf, 0, len);
+			}
+		}
+		close();
+		awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		Throwable t = failure;
+		if (t != null) {
+			throw t instanceof IOException ? (IOException) t : new IOException("Streaming recognition failed", t);
+		}
+	}
+
+	/**
+	 * Indica o fim do udio. Os resultados restantes continuam sendo entregues at {@link StreamingListener#onCompleted()}.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (requests != null) {
+			requests.onCompleted();
+		} else {
+			listener.onCompleted();
+			finished.countDown();
+		}
+	}
+
+	/**
+	 * Aguarda o trmino do reconhecimento (sucesso ou erro). O evento final j ter sido entregue ao
+	 * {@link StreamingListener} quando este mtodo retornar.
+	 *
+	 * @return true se terminou dentro do prazo
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return finished.await(timeout, unit);
+	}
+
+	private void sendChunk(ByteString data) {
+		long duration = bytesPerSecond > 0 ? data.size() * 1000000000L / bytesPerSecond : -1;
+		Chunk chunk = new Chunk(data, sentNanos, duration);
+		if (duration > 0) {
+			sentNanos += duration;
+		}
+		if (requests == null) {
+			openStream(chunk.startNanos);
+		} else if (bytesPerSecond > 0 && System.nanoTime() - streamStartedAt >= streamLimitNanos) {
+			restartStream(chunk.startNanos);
+		}
+		if (bytesPerSecond > 0) {
+			pending.addLast(chunk);
+			trimPending(chunk.startNanos + chunk.durationNanos);
+		}
+		sentBytes += data.size();
+		requests.onNext(StreamingRecognizeRequest.newBuilder().setAudioContent(chunk.data).build());
+	}
+
+	private void openStream(long baseNanos) {
+		if (metricsStart == 0L) {
+			metricsStart = Metrics.start();
+		}
+		current = new ResponseObserver(baseNanos);
+		requests = recognizer.getClient().streamingRecognizeCallable().bidiStreamingCall(current);
+		requests.onNext(StreamingRecognizeRequest.newBuilder().setStreamingConfig(streamingConfig).build());
+		streamStartedAt = System.nanoTime();
+	}
+
+	/**
+	 * Fecha a sesso atual (ignorando o que ela ainda responder) e reenvia o udio pendente em uma nova sesso. S 
+	 * usado quando a taxa de bytes  conhecida.
+	 */
+	private void restartStream(long nextChunkNanos) {
+		current.stale = true;
+		requests.onCompleted();
+		openStream(pending.isEmpty() ? nextChunkNanos : pending.peekFirst().startNanos);
+		for (Chunk chunk : pending) {
+			requests.onNext(StreamingRecognizeRequest.newBuilder().setAudioContent(chunk.data).build());
+		}
+	}
+
+	/**
+	 * Sem resultados finais (ex.: msica ou silncio longo) o udio pendente cresceria sem limite e seria todo reenviado
+	 * a cada reabertura. Mantm no mximo uma sesso de udio, descartando os blocos mais antigos.
+	 */
+	private void trimPending(long endNanos) {
+		while (pending.size() > 1 && endNanos - pending.peekFirst().startNanos > streamLimitNanos) {
+			pending.removeFirst();
+		}
+	}
+
+	private synchronized boolean onFinalResult(ResponseObserver source, long endNanos) {
+		if (source.stale) {
+			return false;
+		}
+		long absoluteEnd = source.baseNanos + endNanos;
+		if (absoluteEnd > finalizedNanos) {
+			finalizedNanos = absoluteEnd;
+		}
+		while (!pending.isEmpty() && pending.peekFirst().startNanos + pending.peekFirst().durationNanos <= finalizedNanos) {
+			pending.removeFirst();
+		}
+		return true;
+	}
+
+	/**
+	 * Conta a sesso inteira, incluindo as reaberturas, como uma nica chamada.
+	 */
+	private synchronized void recordCall(boolean failed) {
+		Metrics.call("streamingRecognize", metricsStart, sentBytes, failed);
+	}
+
+	private synchronized boolean isCurrent(ResponseObserver source) {
+		return !source.stale;
+	}
+
+	private static long bytesPerSecond(RecognitionConfig config) {
+		if (config.getEncoding() == AudioEncoding.LINEAR16) {
+			return 2L * config.getSampleRateHertz();
+		}
+		if (config.getEncoding() == AudioEncoding.MULAW) {
+			return config.getSampleRateHertz();
+		}
+		return -1;
+	}
+
+	private static long toNanos(com.google.protobuf.Duration d) {
+		return d.getSeconds() * 1000000000L + d.getNanos();
+	}
+
+	private static final class Chunk {
+		final ByteString data;
+		final long startNanos;
+		final long durationNanos;
+
+		Chunk(ByteString data, long startNanos, long durationNanos) {
+			this.data = data;
+			this.startNanos = startNanos;
+			this.durationNanos = durationNanos;
+		}
+	}
+
+	private final class ResponseObserver implements ApiStreamObserver<StreamingRecognizeResponse> {
+		final long baseNanos;
+		volatile boolean stale;
+
+		ResponseObserver(long baseNanos) {
+			this.baseNanos = baseNanos;
+		}
+
+		@Override
+		public void onNext(StreamingRecognizeResponse response) {
+			for (StreamingRecognitionResult result : response.getResultsList()) {
+				if (result.getAlternativesCount() == 0) {
+					continue;
+				}
+				SpeechRecognitionAlternative alternative = result.getAlternatives(0);
+				if (!result.getIsFinal()) {
+					if (isCurrent(this)) {
+						listener.onInterim(alternative.getTranscript(), result.getStability());
+					}
+					continue;
+				}
+				List<WordInfo> words = alternative.getWordsList();
+				long end = words.isEmpty() ? 0 : toNanos(words.get(words.size() - 1).getEndTime());
+				if (!onFinalResult(this, end)) {
+					continue;
+				}
+				for (WordInfo word : words) {
+					listener.onWord(Recognizer.toItem(word, baseNanos));
+				}
+				listener.onFinal(alternative.getTranscript());
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			if (isCurrent(this)) {
+				recordCall(true);
+				failure = t;
+				listener.onError(t);
+				finished.countDown();
+			}
+		}
+
+		@Override
+		public void onCompleted() {
+			if (isCurrent(this)) {
+				recordCall(false);
+				listener.onCompleted();
+				finished.countDown();
+			}
+		}
+	}
+}
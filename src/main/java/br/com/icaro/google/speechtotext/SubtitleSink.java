@@ -0,0 +1,163 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.WordInfo;
+
+/**
+ * @author icaroafonso
+ *
+ *  Escreve legendas SRT ou WebVTT a partir das palavras reconhecidas (requer o tempo das palavras habilitado na
+ *  configurao). As palavras so agrupadas em legendas que no atravessam resultados, no passam da durao e do
+ *  nmero de caracteres mximos e so quebradas em pausas longas. Cada legenda  escrita assim que fica completa.
+ */
+public class SubtitleSink implements ResultSink {
+
+	/** Durao mxima de uma legenda. */
+	public static final int DEFAULT_MAX_CUE_MILLIS = 5000;
+
+	/** Nmero mximo de caracteres de uma legenda (duas linhas de 42). */
+	public static final int DEFAULT_MAX_CUE_CHARS = 84;
+
+	/** Pausa entre duas palavras a partir da qual uma nova legenda  iniciada. */
+	public static final int DEFAULT_MAX_GAP_MILLIS = 1000;
+
+	private final Writer out;
+	private final boolean webVtt;
+	private int maxCueMillis = DEFAULT_MAX_CUE_MILLIS;
+	private int maxCueChars = DEFAULT_MAX_CUE_CHARS;
+	private int maxGapMillis = DEFAULT_MAX_GAP_MILLIS;
+
+	private final StringBuilder cue = new StringBuilder();
+	private long cueStart;
+	private long cueEnd;
+	private int cues;
+	private boolean started;
+
+	private SubtitleSink(Writer out, boolean webVtt) {
+		this.out = out;
+		this.webVtt = webVtt;
+	}
+
+	/**
+	 * @return sink que escreve legendas no formato SubRip (.srt)
+	 */
+	public static SubtitleSink srt(Writer out) {
+		return new SubtitleSink(out, false);
+	}
+
+	/**
+	 * Como {@link #srt(Writer)}, escrevendo em UTF-8 no stream informado.
+	 */
+	public static SubtitleSink srt(OutputStream out) {
+		return srt(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @return sink que escreve legendas no formato WebVTT (.vtt)
+	 */
+	public static SubtitleSink webVtt(Writer out) {
+		return new SubtitleSink(out, true);
+	}
+
+	/**
+	 * Como {@link #webVtt(Writer)}, escrevendo em UTF-8 no stream informado.
+	 */
+	public static SubtitleSink webVtt(OutputStream out) {
+		return webVtt(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Altera os limites usados para agrupar as palavras em legendas.
+	 *
+	 * @param maxCueMillis - durao mxima de uma legenda
+	 * @param maxCueChars - nmero mximo de caracteres de uma legenda
+	 * @param maxGapMillis - pausa entre palavras que encerra a legenda atual
+	 * @return este sink
+	 */
+	public SubtitleSink setLimits(int maxCueMillis, int maxCueChars, int maxGapMillis) {
+		this.maxCueMillis = maxCueMillis;
+		this.maxCueChars = maxCueChars;
+		this.maxGapMillis = maxGapMillis;
+		return this;
+	}
+
+	@Override
+	public void write(SpeechRecognitionResult result, long offsetNanos) throws IOException {
+		header();
+		if (result.getAlternativesCount() == 0) {
+			return;
+		}
+		SpeechRecognitionAlternative alternative = result.getAlternatives(0);
+		long offsetMillis = offsetNanos / 1000000L;
+		for (WordInfo wordInfo : alternative.getWordsList()) {
+			String word = wordInfo.getWord().trim();
+			if (word.isEmpty()) {
+				continue;
+			}
+			long start = offsetMillis + Recognizer.toMillis(wordInfo.getStartTime());
+			long end = Math.max(start, offsetMillis + Recognizer.toMillis(wordInfo.getEndTime()));
+			if (cue.length() > 0 && (end - cueStart > maxCueMillis
+					|| cue.length() + 1 + word.length() > maxCueChars
+					|| start - cueEnd > maxGapMillis)) {
+				flushCue();
+			}
+			if (cue.length() == 0) {
+				cueStart = start;
+			} else {
+				cue.append(' ');
+			}
+			cue.append(word);
+			cueEnd = end;
+		}
+		flushCue();
+	}
+
+	@Override
+	public void finish() throws IOException {
+		header();
+		flushCue();
+		out.flush();
+	}
+
+	private void header() throws IOException {
+		if (!started) {
+			started = true;
+			if (webVtt) {
+				out.write("WEBVTT\n\n");
+			}
+		}
+	}
+
+	private void flushCue() throws IOException {
+		if (cue.length() == 0) {
+			return;
+		}
+		cues++;
+		if (!webVtt) {
+			out.write(Integer.toString(cues));
+			out.write('\n');
+		}
+		out.write(timestamp(cueStart));
+		out.write(" --> ");
+		out.write(timestamp(cueEnd));
+		out.write('\n');
+		out.write(cue.toString());
+		out.write("\n\n");
+		cue.setLength(0);
+	}
+
+	private String timestamp(long millis) {
+		long hours = millis / 3600000L;
+		long minutes = millis / 60000L % 60;
+		long seconds = millis / 1000L % 60;
+		return String.format("%02d:%02d:%02d%c%03d", hours, minutes, seconds, webVtt ? '.' : ',', millis % 1000);
+	}
+}
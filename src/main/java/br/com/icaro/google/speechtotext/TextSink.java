@@ -0,0 +1,65 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+
+/**
+ * @author icaroafonso
+ *
+ *  Escreve a transcrio em texto puro: o texto de cada resultado, sem espaos nas pontas, separado do anterior.
+ */
+public class TextSink implements ResultSink {
+	private final Writer out;
+	private final String separator;
+	private boolean first = true;
+
+	/**
+	 * Separa os resultados com um espao, como {@link Recognize#syncRecognizeFile(String, String, com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding, int, Boolean, String)}.
+	 */
+	public TextSink(Writer out) {
+		this(out, " ");
+	}
+
+	/**
+	 * @param out - destino do texto
+	 * @param separator - texto escrito entre dois resultados (por exemplo "\n" para um resultado por linha)
+	 */
+	public TextSink(Writer out, String separator) {
+		this.out = out;
+		this.separator = separator;
+	}
+
+	/**
+	 * Escreve em UTF-8 no stream informado.
+	 */
+	public TextSink(OutputStream out) {
+		this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+	}
+
+	@Override
+	public void write(SpeechRecognitionResult result, long offsetNanos) throws IOException {
+		if (result.getAlternativesCount() == 0) {
+			return;
+		}
+		String text = result.getAlternatives(0).getTranscript().trim();
+		if (text.isEmpty()) {
+			return;
+		}
+		if (!first) {
+			out.write(separator);
+		}
+		out.write(text);
+		first = false;
+	}
+
+	@Override
+	public void finish() throws IOException {
+		out.flush();
+	}
+}
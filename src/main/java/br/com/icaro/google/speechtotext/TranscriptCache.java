@@ -0,0 +1,310 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.cloud.speech.v1.RecognitionAudio;
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.cloud.speech.v1.RecognizeResponse;
+
+import br.com.icaro.google.helper.Digests;
+
+/**
+ * @author icaroafonso
+ *
+ *  Cache de transcries endereado pelo contedo. A chave  o hash SHA-256 do udio (ou a verso do objeto no
+ *  Storage) mais a {@link RecognitionConfig} inteira, serializada. Possui um nvel em memria (LRU por quantidade de
+ *  entradas) e um nvel opcional em disco, limitado em bytes, que descarta os arquivos menos usados.
+ *
+ *  Pedidos simultneos para a mesma chave so agrupados: apenas um chega  API e os demais aguardam o seu resultado.
+ */
+public class TranscriptCache {
+
+	private static final String SUFFIX = ".pb";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Map<String, RecognizeResponse> memory;
+	private final File directory;
+	private final long maxDiskBytes;
+	private final AtomicLong diskBytes = new AtomicLong();
+	private final ConcurrentMap<String, CompletableFuture<RecognizeResponse>> loading = new ConcurrentHashMap<String, CompletableFuture<RecognizeResponse>>();
+
+	/**
+	 * Cria um cache apenas em memria.
+	 *
+	 * @param memoryEntries - mximo de transcries mantidas em memria
+	 */
+	public TranscriptCache(int memoryEntries) {
+		this.memory = newLru(memoryEntries);
+		this.directory = null;
+		this.maxDiskBytes = 0;
+	}
+
+	/**
+	 * @param memoryEntries - mximo de transcries mantidas em memria
+	 * @param directory - diretrio do nvel em disco
+	 * @param maxDiskBytes - tamanho mximo do nvel em disco
+	 * @throws IOException se o diretrio no puder ser criado
+	 */
+	public TranscriptCache(int memoryEntries, File directory, long maxDiskBytes) throws IOException {
+		this.memory = newLru(memoryEntries);
+		this.directory = directory;
+		this.maxDiskBytes = maxDiskBytes;
+		Files.createDirectories(directory.toPath());
+		File[] temps = directory.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+		if (temps != null) {
+			// gravaes interrompidas por uma execuo anterior
+			for (File temp : temps) {
+				temp.delete();
+			}
+		}
+		for (File file : listEntries()) {
+			diskBytes.addAndGet(file.length());
+		}
+	}
+
+	private static Map<String, RecognizeResponse> newLru(final int maxEntries) {
+		return new LinkedHashMap<String, RecognizeResponse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, RecognizeResponse> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Monta a chave de um pedido. Para udio enviado no contedo a chave usa o hash dos bytes; para URIs gs:// 
+	 * preciso usar {@link #key(RecognitionConfig, String, String)} informando a verso do objeto.
+	 *
+	 * @return a chave, ou null se o udio for uma URI (que no pode ser identificada pelo contedo)
+	 */
+	public static String key(RecognitionConfig config, RecognitionAudio audio) {
+		if (audio.getAudioSourceCase() != RecognitionAudio.AudioSourceCase.CONTENT) {
+			return null;
+		}
+		MessageDigest digest = Digests.sha256();
+		for (ByteBuffer buffer : audio.getContent().asReadOnlyByteBufferList()) {
+			digest.update(buffer);
+		}
+		return key(config, "content:" + Digests.hex(digest.digest()));
+	}
+
+	/**
+	 * Monta a chave de um objeto do Storage.
+	 *
+	 * @param gcsUri - URI gs:// do objeto
+	 * @param objectVersion - gerao ou hash MD5 do objeto, que muda sempre que o contedo muda
+	 */
+	public static String key(RecognitionConfig config, String gcsUri, String objectVersion) {
+		return key(config, "object:" + gcsUri + "#" + objectVersion);
+	}
+
+	/**
+	 * A configurao entra inteira (serializada), para que qualquer campo que altere o resultado, como as dicas de
+	 * frases, gere uma chave diferente.
+	 */
+	private static String key(RecognitionConfig config, String audioId) {
+		MessageDigest digest = Digests.sha256();
+		digest.update(audioId.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		for (ByteBuffer buffer : config.toByteString().asReadOnlyByteBufferList()) {
+			digest.update(buffer);
+		}
+		return Digests.hex(digest.digest());
+	}
+
+	/**
+	 * @return a transcrio em cache, ou null
+	 */
+	public RecognizeResponse get(String key) {
+		synchronized (memory) {
+			RecognizeResponse response = memory.get(key);
+			if (response != null) {
+				return response;
+			}
+		}
+		RecognizeResponse response = readDisk(key);
+		if (response != null) {
+			synchronized (memory) {
+				memory.put(key, response);
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Armazena uma transcrio nos dois nveis.
+	 */
+	public void put(String key, RecognizeResponse response) {
+		synchronized (memory) {
+			memory.put(key, response);
+		}
+		writeDisk(key, response);
+	}
+
+	/**
+	 * Retorna a transcrio em cache ou a calcula na thread chamadora. Chamadas simultneas com a mesma chave aguardam
+	 * o mesmo clculo.
+	 */
+	public RecognizeResponse get(String key, Callable<RecognizeResponse> loader) throws Exception {
+		RecognizeResponse cached = get(key);
+		if (cached != null) {
+			return cached;
+		}
+		CompletableFuture<RecognizeResponse> mine = new CompletableFuture<RecognizeResponse>();
+		CompletableFuture<RecognizeResponse> existing = loading.putIfAbsent(key, mine);
+		if (existing != null) {
+			try {
+				return existing.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+		try {
+			RecognizeResponse response = loader.call();
+			put(key, response);
+			mine.complete(response);
+			return response;
+		} catch (Throwable t) {
+			// inclusive Errors: quem aguarda este clculo no pode ficar bloqueado para sempre
+			mine.completeExceptionally(t);
+			throw t;
+		} finally {
+			loading.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Verso assncrona de {@link #get(String, Callable)}: o clculo s  iniciado se a chave no estiver em cache nem
+	 * sendo calculada por outro pedido.
+	 */
+	public CompletableFuture<RecognizeResponse> getAsync(final String key, Supplier<CompletableFuture<RecognizeResponse>> loader) {
+		RecognizeResponse cached = get(key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		CompletableFuture<RecognizeResponse> mine = new CompletableFuture<RecognizeResponse>();
+		CompletableFuture<RecognizeResponse> existing = loading.putIfAbsent(key, mine);
+		if (existing != null) {
+			return existing;
+		}
+		CompletableFuture<RecognizeResponse> loaded;
+		try {
+			loaded = loader.get();
+		} catch (RuntimeException e) {
+			mine.completeExceptionally(e);
+			loading.remove(key, mine);
+			return mine;
+		}
+		loaded.whenComplete((response, t) -> {
+			if (t == null) {
+				put(key, response);
+				mine.complete(response);
+			} else {
+				mine.completeExceptionally(t);
+			}
+			loading.remove(key, mine);
+		});
+		return mine;
+	}
+
+	/**
+	 * @return bytes ocupados pelo nvel em disco
+	 */
+	public long getDiskBytes() {
+		return diskBytes.get();
+	}
+
+	private File fileOf(String key) {
+		return new File(directory, key + SUFFIX);
+	}
+
+	private RecognizeResponse readDisk(String key) {
+		if (directory == null) {
+			return null;
+		}
+		File file = fileOf(key);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (InputStream in = new FileInputStream(file)) {
+			RecognizeResponse response = RecognizeResponse.parseFrom(in);
+			file.setLastModified(System.currentTimeMillis());
+			return response;
+		} catch (IOException e) {
+			// entrada corrompida ou removida por outra eviction: trata como ausente
+			return null;
+		}
+	}
+
+	private void writeDisk(String key, RecognizeResponse response) {
+		if (directory == null) {
+			return;
+		}
+		File target = fileOf(key);
+		File temp = null;
+		boolean moved = false;
+		try {
+			temp = File.createTempFile("entry-", TEMP_SUFFIX, directory);
+			try (OutputStream out = new FileOutputStream(temp)) {
+				response.writeTo(out);
+			}
+			long previous = target.isFile() ? target.length() : 0;
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+			if (diskBytes.addAndGet(target.length() - previous) > maxDiskBytes) {
+				evict();
+			}
+		} catch (IOException e) {
+			// o nvel em disco  opcional: uma falha de escrita no deve falhar o reconhecimento
+		} finally {
+			if (temp != null && !moved) {
+				temp.delete();
+			}
+		}
+	}
+
+	private synchronized void evict() {
+		File[] files = listEntries();
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files) {
+			if (diskBytes.get() <= maxDiskBytes) {
+				break;
+			}
+			long length = file.length();
+			if (file.delete()) {
+				diskBytes.addAndGet(-length);
+			}
+		}
+	}
+
+	private File[] listEntries() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		return files == null ? new File[0] : files;
+	}
+}
@@ -0,0 +1,293 @@
+package br.com.icaro.google.speechtotext;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
+import com.google.cloud.speech.v1.RecognitionConfig;
+
+import br.com.icaro.google.helper.AudioProbe;
+import br.com.icaro.google.helper.ConversionService;
+import br.com.icaro.google.helper.ConversionSettings;
+
+/**
+ * @author icaroafonso
+ *
+ *  Transcrio de ponta a ponta em estgios: converso (ffmpeg), envio ao Storage, reconhecimento de longa durao e
+ *  limpeza. Cada estgio tem seus prprios workers e uma fila limitada, de modo que o arquivo N+1  convertido enquanto
+ *  o arquivo N  enviado e o N-1  reconhecido; quando um estgio fica para trs, a fila dele enche e os anteriores
+ *  esperam. O arquivo convertido e o objeto temporrio no Storage so removidos ao final de cada item, com sucesso ou no.
+ *
+ *  Os resultados so entregues como {@link BatchResult}, fora de ordem.
+ */
+public class TranscriptionPipeline implements AutoCloseable {
+
+	/** Prefixo dos objetos temporrios criados no intervalo. */
+	public static final String OBJECT_PREFIX = "pipeline/";
+
+	private final Recognizer recognizer;
+	private final Storage storage;
+	private final String bucketName;
+	private final ConversionSettings settings;
+	private final RecognitionConfig config;
+	private final Consumer<BatchResult> callback;
+
+	private final ConversionService conversion;
+	private final ExecutorService upload;
+	private final ExecutorService recognition;
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * @param recognizer - reconhecedor cujo cliente ser usado
+	 * @param storage - cliente do Storage usado para os objetos temporrios
+	 * @param bucketName - intervalo onde os udios convertidos so enviados
+	 * @param language - idioma do udio, ex.: "pt-BR"
+	 * @param settings - formato da converso (tambm define a codificao e a taxa enviadas  API)
+	 * @param profanityFilter - Filtrar palavres
+	 * @param convertWorkers - converses simultneas (processos ffmpeg)
+	 * @param uploadWorkers - envios simultneos ao Storage
+	 * @param recognizeWorkers - reconhecimentos de longa durao em andamento ao mesmo tempo
+	 * @param queueCapacity - itens aguardando em cada estgio antes de bloquear o anterior
+	 * @param callback - recebe cada {@link BatchResult}; chamado por threads internas
+	 */
+	public TranscriptionPipeline(Recognizer recognizer, Storage storage, String bucketName, String language, ConversionSettings settings,
+			Boolean profanityFilter, int convertWorkers, int uploadWorkers, int recognizeWorkers, int queueCapacity, Consumer<BatchResult> callback) {
+		this.recognizer = recognizer;
+		this.storage = storage;
+		this.bucketName = bucketName;
+		this.settings = settings;
+		this.config = Recognizer.buildConfig(language, settings.getEncoding(), settings.getSampleRateHertz(), profanityFilter, true);
+		this.callback = callback;
+		this.conversion = new ConversionService(convertWorkers, queueCapacity, ConversionService.DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+		this.upload = stage("pipeline-upload", uploadWorkers, queueCapacity);
+		this.recognition = stage("pipeline-recognize", recognizeWorkers, queueCapacity);
+	}
+
+	/**
+	 * Agenda um arquivo. Bloqueia enquanto a fila de converso estiver cheia.
+	 *
+	 * @param fileName - o caminho para um arquivo de udio local, em qualquer formato aceito pelo ffmpeg
+	 */
+	public void submit(final String fileName) throws InterruptedException {
+		if (alreadyConverted(fileName)) {
+			pending.incrementAndGet();
+			try {
+				upload.execute(() -> upload(fileName, new File(fileName), false));
+			} catch (RuntimeException e) {
+				finish(fileName, null, null, null, e);
+				throw e;
+			}
+			return;
+		}
+		final File converted;
+		try {
+			converted = File.createTempFile("pipeline-", settings.getEncoding() == RecognitionConfig.AudioEncoding.FLAC ? ".flac" : ".raw");
+		} catch (IOException e) {
+			pending.incrementAndGet();
+			finish(fileName, null, null, null, e);
+			return;
+		}
+		pending.incrementAndGet();
+		try {
+			conversion.submit(fileName, converted, settings).whenComplete((file, error) -> {
+				if (error != null) {
+					finish(fileName, converted, null, null, error);
+					return;
+				}
+				try {
+					upload.execute(() -> upload(fileName, converted, true));
+				} catch (RejectedExecutionException e) {
+					// estgio de upload encerrado: sem isso o item nunca seria contado como entregue
+					finish(fileName, converted, null, null, e);
+				}
+			});
+		} catch (InterruptedException | RuntimeException e) {
+			finish(fileName, converted, null, null, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Agenda todos os arquivos e espera at que terminem.
+	 *
+	 * @return quantidade de itens processados
+	 */
+	public int process(Iterable<String> fileNames) throws InterruptedException {
+		int submitted = 0;
+		for (String fileName : fileNames) {
+			submit(fileName);
+			submitted++;
+		}
+		awaitCompletion();
+		return submitted;
+	}
+
+	/**
+	 * Espera at que todos os itens agendados tenham sido entregues ao callback.
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		synchronized (pending) {
+			while (pending.get() > 0) {
+				pending.wait();
+			}
+		}
+	}
+
+	/**
+	 * @return itens agendados que ainda no foram entregues ao callback
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * Espera os itens agendados e encerra os estgios. O {@link Recognizer} e o cliente do Storage no so fechados.
+	 * Se a thread for interrompida durante a espera, os estgios so encerrados sem esperar (o que j foi agendado
+	 * ainda termina) e a interrupo  preservada.
+	 */
+	@Override
+	public void close() {
+		try {
+			awaitCompletion();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		conversion.close();
+		upload.shutdown();
+		recognition.shutdown();
+	}
+
+	/**
+	 * @return se o arquivo j est no formato da converso e pode ir direto para o upload
+	 */
+	private boolean alreadyConverted(String fileName) {
+		try {
+			return AudioProbe.probe(fileName).matches(settings);
+		} catch (IOException e) {
+			// arquivo ausente ou ilegvel: a falha  informada pela converso
+			return false;
+		}
+	}
+
+	/**
+	 * @param temporary - se o arquivo  um intermedirio da converso, a ser removido depois do upload
+	 */
+	private void upload(final String fileName, final File converted, boolean temporary) {
+		final String objectName = OBJECT_PREFIX + UUID.randomUUID() + "-" + converted.getName();
+		final StorageObject uploaded;
+		try (InputStream in = new FileInputStream(converted)) {
+			InputStreamContent content = new InputStreamContent(settings.getContentType(), in);
+			content.setLength(converted.length());
+			uploaded = storage.objects().insert(bucketName, new StorageObject().setName(objectName), content).execute();
+		} catch (Throwable t) {
+			finish(fileName, temporary ? converted : null, bucketName, objectName, t);
+			return;
+		}
+		final long audioMillis = audioMillis(converted);
+		if (temporary) {
+			// o arquivo local no  mais necessrio
+			converted.delete();
+		}
+		try {
+			recognition.execute(() -> recognize(fileName, uploaded, audioMillis));
+		} catch (RejectedExecutionException e) {
+			finish(fileName, null, bucketName, objectName, e);
+		}
+	}
+
+	/**
+	 * Durao do udio enviado, para o {@link PollScheduler} prever o trmino da operao; 0 se desconhecida.
+	 */
+	private long audioMillis(File converted) {
+		if (settings.getEncoding() == RecognitionConfig.AudioEncoding.LINEAR16) {
+			// a sada LINEAR16 da converso  crua, sem cabealho
+			return converted.length() * 1000 / (2L * settings.getSampleRateHertz());
+		}
+		try {
+			return Math.max(0, AudioProbe.probe(converted.getPath()).getDurationMillis());
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private void recognize(String fileName, StorageObject uploaded, long audioMillis) {
+		String gcsUri = "gs://" + bucketName + "/" + uploaded.getName();
+		String version = uploaded.getGeneration() == null ? null : uploaded.getGeneration().toString();
+		try {
+			LongRunningRecognizeResponse response = recognizer.longRunningRecognize(config, gcsUri, version, audioMillis).get();
+			finish(fileName, null, bucketName, uploaded.getName(), response);
+		} catch (ExecutionException e) {
+			finish(fileName, null, bucketName, uploaded.getName(), e.getCause());
+		} catch (Throwable t) {
+			if (t instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			finish(fileName, null, bucketName, uploaded.getName(), t);
+		}
+	}
+
+	/**
+	 * Remove os intermedirios e entrega o resultado.
+	 */
+	private void finish(String fileName, File converted, String bucket, String objectName, Object outcome) {
+		if (converted != null) {
+			converted.delete();
+		}
+		if (objectName != null) {
+			try {
+				storage.objects().delete(bucket, objectName).execute();
+			} catch (IOException e) {
+				// objeto no criado, ou j removido
+			}
+		}
+		try {
+			if (outcome instanceof LongRunningRecognizeResponse) {
+				callback.accept(new BatchResult(fileName, ((LongRunningRecognizeResponse) outcome).getResultsList(), null));
+			} else {
+				callback.accept(new BatchResult(fileName, null, (Throwable) outcome));
+			}
+		} finally {
+			synchronized (pending) {
+				if (pending.decrementAndGet() == 0) {
+					pending.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cria um estgio com {@code workers} threads e fila limitada; quem agenda com a fila cheia espera por espao.
+	 */
+	private static ExecutorService stage(final String name, int workers, int queueCapacity) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), r -> {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, (r, executor) -> {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException(name + " is closed");
+			}
+			try {
+				executor.getQueue().put(r);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(e);
+			}
+		});
+	}
+}
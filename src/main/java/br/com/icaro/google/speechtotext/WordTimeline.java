@@ -0,0 +1,233 @@
+package br.com.icaro.google.speechtotext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author icaroafonso
+ *
+ *  Linha do tempo das palavras reconhecidas em formato colunar: incio e fim em milissegundos em arrays de {@code int},
+ *  palavras codificadas em um dicionrio (cada palavra distinta  guardada uma nica vez) e confiana em {@code float}.
+ *  Ocupa cerca de 16 bytes por palavra, contra algumas centenas de bytes de um {@link ItemAudio}, e permite buscas
+ *  por tempo em O(log n).
+ *
+ *  Assume que as palavras esto em ordem cronolgica, como so retornadas pela API. Instncias so imutveis;
+ *  {@link #between(long, long)} devolve uma viso que compartilha os mesmos arrays.
+ */
+public final class WordTimeline {
+
+	private final String[] dictionary;
+	private final int[] wordIds;
+	private final int[] startMillis;
+	private final int[] endMillis;
+	private final float[] confidence;
+	private final int offset;
+	private final int size;
+
+	private WordTimeline(String[] dictionary, int[] wordIds, int[] startMillis, int[] endMillis, float[] confidence, int offset, int size) {
+		this.dictionary = dictionary;
+		this.wordIds = wordIds;
+		this.startMillis = startMillis;
+		this.endMillis = endMillis;
+		this.confidence = confidence;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * @return quantidade de palavras
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a palavra na posio {@code i}
+	 */
+	public String word(int i) {
+		return dictionary[wordIds[index(i)]];
+	}
+
+	/**
+	 * @return incio da palavra na posio {@code i}, em milissegundos
+	 */
+	public int startMillis(int i) {
+		return startMillis[index(i)];
+	}
+
+	/**
+	 * @return fim da palavra na posio {@code i}, em milissegundos
+	 */
+	public int endMillis(int i) {
+		return endMillis[index(i)];
+	}
+
+	/**
+	 * @return confiana (0 a 1) do resultado ao qual a palavra pertence; 0 quando a API no a informa
+	 */
+	public float confidence(int i) {
+		return confidence[index(i)];
+	}
+
+	/**
+	 * @return quantidade de palavras distintas
+	 */
+	public int dictionarySize() {
+		return dictionary.length;
+	}
+
+	/**
+	 * Busca a palavra sendo dita no instante informado.
+	 *
+	 * @param millis - instante, em milissegundos
+	 * @return a posio da palavra, ou -1 se o instante cair entre palavras
+	 */
+	public int indexAt(long millis) {
+		int i = lastStartingAtOrBefore(millis);
+		return i >= 0 && endMillis[offset + i] > millis ? i : -1;
+	}
+
+	/**
+	 * @return as palavras que se sobrepem ao intervalo [{@code fromMillis}, {@code toMillis}), como uma viso sobre esta linha do tempo
+	 */
+	public WordTimeline between(long fromMillis, long toMillis) {
+		int from = firstEndingAfter(fromMillis);
+		int to = lastStartingAtOrBefore(toMillis - 1) + 1;
+		if (to <= from) {
+			return new WordTimeline(dictionary, wordIds, startMillis, endMillis, confidence, offset, 0);
+		}
+		return new WordTimeline(dictionary, wordIds, startMillis, endMillis, confidence, offset + from, to - from);
+	}
+
+	/**
+	 * @return o texto das palavras separadas por espao
+	 */
+	public String text() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append(word(i));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Converte para a representao tradicional, uma instncia de {@link ItemAudio} por palavra.
+	 */
+	public List<ItemAudio> toItems() {
+		List<ItemAudio> items = new ArrayList<ItemAudio>(size);
+		for (int i = 0; i < size; i++) {
+			ItemAudio item = new ItemAudio();
+			item.setPalavra(word(i));
+			item.setInicio(formatMillis(startMillis(i)));
+			item.setFim(formatMillis(endMillis(i)));
+			items.add(item);
+		}
+		return items;
+	}
+
+	@Override
+	public String toString() {
+		return "WordTimeline [size=" + size + ", dictionarySize=" + dictionary.length + "]";
+	}
+
+	private int index(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		}
+		return offset + i;
+	}
+
+	private int lastStartingAtOrBefore(long millis) {
+		int lo = 0;
+		int hi = size - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (startMillis[offset + mid] <= millis) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return hi;
+	}
+
+	private int firstEndingAfter(long millis) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (endMillis[offset + mid] > millis) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+
+	private static String formatMillis(int millis) {
+		return millis / 1000 + "." + millis % 1000 / 100;
+	}
+
+	/**
+	 * Monta uma {@link WordTimeline} palavra a palavra, em ordem cronolgica.
+	 */
+	public static final class Builder {
+		private final Map<String, Integer> ids = new HashMap<String, Integer>();
+		private final List<String> dictionary = new ArrayList<String>();
+		private int[] wordIds;
+		private int[] startMillis;
+		private int[] endMillis;
+		private float[] confidence;
+		private int size;
+
+		public Builder() {
+			this(64);
+		}
+
+		/**
+		 * @param expectedWords - capacidade inicial
+		 */
+		public Builder(int expectedWords) {
+			int capacity = Math.max(expectedWords, 1);
+			wordIds = new int[capacity];
+			startMillis = new int[capacity];
+			endMillis = new int[capacity];
+			confidence = new float[capacity];
+		}
+
+		public Builder add(String word, int start, int end, float wordConfidence) {
+			if (size == wordIds.length) {
+				int capacity = size * 2;
+				wordIds = Arrays.copyOf(wordIds, capacity);
+				startMillis = Arrays.copyOf(startMillis, capacity);
+				endMillis = Arrays.copyOf(endMillis, capacity);
+				confidence = Arrays.copyOf(confidence, capacity);
+			}
+			Integer id = ids.get(word);
+			if (id == null) {
+				id = dictionary.size();
+				ids.put(word, id);
+				dictionary.add(word);
+			}
+			wordIds[size] = id;
+			startMillis[size] = start;
+			endMillis[size] = end;
+			confidence[size] = wordConfidence;
+			size++;
+			return this;
+		}
+
+		public WordTimeline build() {
+			return new WordTimeline(dictionary.toArray(new String[dictionary.size()]),
+					Arrays.copyOf(wordIds, size), Arrays.copyOf(startMillis, size), Arrays.copyOf(endMillis, size),
+					Arrays.copyOf(confidence, size), 0, size);
+		}
+	}
+}
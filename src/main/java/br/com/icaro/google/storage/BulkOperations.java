@@ -0,0 +1,161 @@
+package br.com.icaro.google.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.ObjectAccessControl;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * @author icaroafonso
+ *
+ *  Operaes sobre muitos objetos de um intervalo usando requisies em lote (batch) da API JSON. Os objetos so
+ *  agrupados em lotes de at {@link #MAX_BATCH_SIZE} chamadas, e vrios lotes so enviados ao mesmo tempo; o custo
+ *  passa a ser de uma viagem de rede por lote, e no por objeto.
+ */
+public class BulkOperations {
+
+	/** Mximo de chamadas aceitas pela API em um nico lote. */
+	public static final int MAX_BATCH_SIZE = 100;
+
+	/** Lotes enviados ao mesmo tempo por padro. */
+	public static final int DEFAULT_PARALLELISM = 8;
+
+	/**
+	 * Cria a chamada da API para um objeto.
+	 */
+	private interface RequestFactory<T> {
+		AbstractGoogleJsonClientRequest<T> create(String name) throws IOException;
+	}
+
+	private final Storage client;
+	private final int parallelism;
+
+	/**
+	 * @param client - cliente do Storage
+	 * @param parallelism - lotes enviados ao mesmo tempo
+	 */
+	public BulkOperations(Storage client, int parallelism) {
+		this.client = client;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Remove os objetos informados.
+	 *
+	 * @return um resultado por objeto, na ordem dos nomes
+	 */
+	public List<BulkResult<Void>> delete(final String bucketName, List<String> names) throws IOException {
+		return run(names, name -> client.objects().delete(bucketName, name));
+	}
+
+	/**
+	 * Substitui a lista de controle de acesso (ACL) dos objetos informados.
+	 *
+	 * @return um resultado por objeto, com os metadados atualizados
+	 */
+	public List<BulkResult<StorageObject>> setAcl(final String bucketName, List<String> names, List<ObjectAccessControl> acl) throws IOException {
+		final StorageObject patch = new StorageObject().setAcl(acl);
+		return run(names, name -> client.objects().patch(bucketName, name, patch));
+	}
+
+	/**
+	 * Obtm os metadados dos objetos informados.
+	 *
+	 * @param fields - projeo dos campos retornados, ou nulo para todos
+	 * @return um resultado por objeto, na ordem dos nomes
+	 */
+	public List<BulkResult<StorageObject>> get(final String bucketName, List<String> names, final String fields) throws IOException {
+		return run(names, name -> {
+			Storage.Objects.Get get = client.objects().get(bucketName, name);
+			if (fields != null) {
+				get.setFields(fields);
+			}
+			return get;
+		});
+	}
+
+	private <T> List<BulkResult<T>> run(final List<String> names, final RequestFactory<T> factory) throws IOException {
+		// cada lote preenche apenas as suas posies
+		final List<BulkResult<T>> results = new ArrayList<BulkResult<T>>(Collections.<BulkResult<T>>nCopies(names.size(), null));
+		int batches = (names.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE;
+		if (batches == 0) {
+			return new ArrayList<BulkResult<T>>();
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, batches));
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(batches);
+			for (int start = 0; start < names.size(); start += MAX_BATCH_SIZE) {
+				final int from = start;
+				final int to = Math.min(names.size(), start + MAX_BATCH_SIZE);
+				futures.add(executor.submit(() -> {
+					runBatch(names, from, to, factory, results);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while running bulk operation", e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	private <T> void runBatch(List<String> names, int from, int to, RequestFactory<T> factory, final List<BulkResult<T>> results) throws IOException {
+		BatchRequest batch = client.batch();
+		// o endpoint global de lotes foi desativado; cada API tem o seu
+		batch.setBatchUrl(new GenericUrl(client.getRootUrl() + "batch/storage/v1"));
+		for (int i = from; i < to; i++) {
+			final int index = i;
+			final String name = names.get(i);
+			factory.create(name).queue(batch, new JsonBatchCallback<T>() {
+				@Override
+				public void onSuccess(T value, HttpHeaders responseHeaders) {
+					results.set(index, new BulkResult<T>(name, value, null));
+				}
+
+				@Override
+				public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+					HttpResponseException.Builder builder = new HttpResponseException.Builder(error.getCode(), error.getMessage(), responseHeaders);
+					results.set(index, new BulkResult<T>(name, null, new GoogleJsonResponseException(builder, error)));
+				}
+			});
+		}
+		try {
+			batch.execute();
+		} catch (IOException e) {
+			for (int i = from; i < to; i++) {
+				if (results.get(i) == null) {
+					results.set(i, new BulkResult<T>(names.get(i), null, e));
+				}
+			}
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			if (results.get(i) == null) {
+				results.set(i, new BulkResult<T>(names.get(i), null, new IOException("No response for " + names.get(i))));
+			}
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package br.com.icaro.google.storage;
+
+/**
+ * @author icaroafonso
+ * Resultado de uma operao em lote ({@link BulkOperations}) para um nico objeto. Cada objeto tem sucesso ou falha
+ * independentemente dos demais.
+ *
+ * @param <T> o tipo retornado pela API para o objeto (por exemplo {@link com.google.api.services.storage.model.StorageObject})
+ */
+public class BulkResult<T> {
+
+	private final String name;
+	private final T value;
+	private final Throwable error;
+
+	BulkResult(String name, T value, Throwable error) {
+		this.name = name;
+		this.value = value;
+		this.error = error;
+	}
+
+	/**
+	 * @return o nome do objeto
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return true se a operao teve sucesso para este objeto
+	 */
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * @return o valor retornado pela API, ou null em caso de falha ou de operaes sem retorno (remoo)
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * @return a falha deste objeto, ou null em caso de sucesso
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkResult [name=" + name + ", success=" + isSuccess() + (error != null ? ", error=" + error : "") + "]";
+	}
+}
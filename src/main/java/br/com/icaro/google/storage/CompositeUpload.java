@@ -0,0 +1,124 @@
+package br.com.icaro.google.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.client.util.ByteStreams;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.ComposeRequest;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * @author icaroafonso
+ *
+ *  Upload paralelo de arquivos grandes: o arquivo  dividido em partes, enviadas ao mesmo tempo como objetos
+ *  temporrios, que depois so compostas (compose) no objeto final e removidas. O tempo de envio passa a depender da
+ *  banda disponvel, e no da vazo de uma nica conexo.
+ */
+class CompositeUpload {
+
+	/** Mximo de objetos de origem aceitos por uma operao compose. */
+	static final int MAX_COMPOSE_SOURCES = 32;
+
+	private final Storage client;
+	private final int parallelism;
+	private final long minPartSize;
+
+	/**
+	 * @param client - cliente do Storage
+	 * @param parallelism - partes enviadas ao mesmo tempo
+	 * @param minPartSize - tamanho mnimo de cada parte; aumentado se necessrio para no passar de 32 partes
+	 */
+	CompositeUpload(Storage client, int parallelism, long minPartSize) {
+		this.client = client;
+		this.parallelism = parallelism;
+		this.minPartSize = minPartSize;
+	}
+
+	void upload(final File file, final String bucketName, final String name, final String contentType, Boolean publicAccess) throws IOException {
+		final long length = file.length();
+		final long partSize = Math.max(minPartSize, (length + MAX_COMPOSE_SOURCES - 1) / MAX_COMPOSE_SOURCES);
+		int parts = (int) Math.max(1, (length + partSize - 1) / partSize);
+		String prefix = name + ".part-" + UUID.randomUUID() + "-";
+
+		List<String> partNames = new ArrayList<String>(parts);
+		List<Future<?>> futures = new ArrayList<Future<?>>(parts);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, parts));
+		try {
+			for (int i = 0; i < parts; i++) {
+				final String partName = prefix + i;
+				final long offset = i * partSize;
+				final long size = Math.min(partSize, length - offset);
+				partNames.add(partName);
+				futures.add(executor.submit(() -> {
+					uploadPart(file, offset, size, bucketName, partName, contentType);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+
+			List<ComposeRequest.SourceObjects> sources = new ArrayList<ComposeRequest.SourceObjects>(parts);
+			for (String partName : partNames) {
+				sources.add(new ComposeRequest.SourceObjects().setName(partName));
+			}
+			ComposeRequest compose = new ComposeRequest()
+					.setSourceObjects(sources)
+					.setDestination(new StorageObject().setName(name).setContentType(contentType));
+			Storage.Objects.Compose request = client.objects().compose(bucketName, name, compose);
+			if (publicAccess) {
+				request.setDestinationPredefinedAcl("publicRead");
+			}
+			request.execute();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while uploading " + name, e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} finally {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+			executor.shutdown();
+			deleteParts(bucketName, partNames);
+		}
+	}
+
+	private void uploadPart(File file, long offset, long size, String bucketName, String partName, String contentType) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			channel.position(offset);
+			InputStream in = ByteStreams.limit(Channels.newInputStream(channel), size);
+			InputStreamContent content = new InputStreamContent(contentType, in);
+			content.setLength(size);
+			Storage.Objects.Insert insert = client.objects().insert(bucketName, new StorageObject().setName(partName), content);
+			insert.getMediaHttpUploader().setDirectUploadEnabled(true);
+			insert.execute();
+		}
+	}
+
+	/**
+	 * Remove as partes temporrias. Partes que no chegaram a ser criadas so ignoradas.
+	 */
+	private void deleteParts(String bucketName, List<String> partNames) {
+		for (String partName : partNames) {
+			try {
+				client.objects().delete(bucketName, partName).execute();
+			} catch (IOException e) {
+				// parte no enviada, ou j removida
+			}
+		}
+	}
+}
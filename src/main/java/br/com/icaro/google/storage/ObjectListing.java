@@ -0,0 +1,156 @@
+package br.com.icaro.google.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.Objects;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * @author icaroafonso
+ *
+ *  Listagem preguiosa dos objetos de um intervalo. As pginas so buscadas sob demanda, e a pgina seguinte 
+ *  solicitada em segundo plano enquanto o chamador percorre a atual; no mximo duas pginas ficam em memria,
+ *  independente do tamanho do intervalo.
+ */
+public class ObjectListing implements Iterator<StorageObject>, AutoCloseable {
+
+	/** Campos retornados por padro: apenas o necessrio para identificar e comparar os objetos. */
+	public static final String DEFAULT_FIELDS = "nextPageToken,prefixes,items(name,size,generation,md5Hash)";
+
+	/** Itens por pgina. */
+	public static final long DEFAULT_PAGE_SIZE = 1000;
+
+	private static final ExecutorService prefetcher = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "object-listing-prefetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Storage client;
+	private final String bucketName;
+	private final String prefix;
+	private final String delimiter;
+	private final String fields;
+	private final long pageSize;
+	private final List<String> prefixes = new ArrayList<String>();
+
+	private Iterator<StorageObject> page = Collections.<StorageObject>emptyIterator();
+	private Future<Objects> next;
+	private boolean closed;
+
+	/**
+	 * @param client - cliente do Storage
+	 * @param bucketName - o nome do intervalo para listar.
+	 * @param prefix - lista apenas objetos cujo nome comea com este prefixo; pode ser nulo.
+	 * @param delimiter - agrupa os nomes at este delimitador em {@link #getPrefixes()}; pode ser nulo.
+	 * @param fields - projeo dos campos retornados, ou nulo para todos.
+	 * @param pageSize - itens por pgina.
+	 */
+	public ObjectListing(Storage client, String bucketName, String prefix, String delimiter, String fields, long pageSize) {
+		this.client = client;
+		this.bucketName = bucketName;
+		this.prefix = prefix;
+		this.delimiter = delimiter;
+		this.fields = fields;
+		this.pageSize = pageSize;
+		this.next = prefetch(null);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!page.hasNext()) {
+			if (next == null || closed) {
+				return false;
+			}
+			Objects objects = await(next);
+			String token = objects.getNextPageToken();
+			next = token == null ? null : prefetch(token);
+			if (objects.getPrefixes() != null) {
+				prefixes.addAll(objects.getPrefixes());
+			}
+			page = objects.getItems() == null ? Collections.<StorageObject>emptyIterator() : objects.getItems().iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public StorageObject next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.next();
+	}
+
+	/**
+	 * @return os prefixos comuns (pseudo-diretrios) vistos at agora, quando h delimitador
+	 */
+	public List<String> getPrefixes() {
+		return Collections.unmodifiableList(prefixes);
+	}
+
+	/**
+	 * @return os objetos restantes como {@link Stream}; fechar o stream encerra a listagem
+	 */
+	public Stream<StorageObject> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * Cancela a busca antecipada em andamento.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		page = Collections.<StorageObject>emptyIterator();
+		if (next != null) {
+			next.cancel(true);
+			next = null;
+		}
+	}
+
+	private Future<Objects> prefetch(final String pageToken) {
+		return prefetcher.submit(new Callable<Objects>() {
+			@Override
+			public Objects call() throws IOException {
+				Storage.Objects.List request = client.objects().list(bucketName)
+						.setPrefix(prefix)
+						.setDelimiter(delimiter)
+						.setMaxResults(pageSize)
+						.setPageToken(pageToken);
+				if (fields != null) {
+					request.setFields(fields);
+				}
+				return request.execute();
+			}
+		});
+	}
+
+	private static Objects await(Future<Objects> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new IOException("Interrupted while listing objects", e));
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw new UncheckedIOException(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package br.com.icaro.google.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.util.ByteStreams;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.ObjectAccessControl;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * @author icaroafonso
+ *
+ *  Upload retomvel pelo protocolo de sesses do Storage. A sesso  identificada por uma URI que pode ser guardada
+ *  pelo chamador; aps uma falha (ou o reincio da aplicao) o envio continua a partir do ltimo byte confirmado
+ *  pelo servidor, sem reenviar o que j foi gravado.
+ */
+class ResumableUpload {
+
+	/** Tamanho de cada bloco enviado; deve ser mltiplo de 256 KiB. */
+	static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+	/** Tentativas consecutivas sem progresso antes de desistir. */
+	static final int MAX_ATTEMPTS = 5;
+
+	private static final int RESUME_INCOMPLETE = 308;
+
+	private final Storage client;
+
+	ResumableUpload(Storage client) {
+		this.client = client;
+	}
+
+	/**
+	 * Inicia uma sesso de upload.
+	 *
+	 * @return a URI da sesso, vlida por uma semana
+	 */
+	String start(String bucketName, String name, String contentType, long length, Boolean publicAccess) throws IOException {
+		StorageObject metadata = new StorageObject().setName(name).setContentType(contentType);
+		if (publicAccess) {
+			metadata.setAcl(Arrays.asList(new ObjectAccessControl().setEntity("allUsers").setRole("READER")));
+		}
+		GenericUrl url = new GenericUrl(client.getRootUrl() + "upload/storage/v1/b/" + URLEncoder.encode(bucketName, "UTF-8") + "/o");
+		url.put("uploadType", "resumable");
+		HttpRequest request = client.getRequestFactory().buildPostRequest(url, new JsonHttpContent(client.getJsonFactory(), metadata));
+		request.getHeaders().set("X-Upload-Content-Type", contentType);
+		request.getHeaders().set("X-Upload-Content-Length", length);
+		HttpResponse response = request.execute();
+		try {
+			String location = response.getHeaders().getLocation();
+			if (location == null) {
+				throw new IOException("Upload session was not created for " + name);
+			}
+			return location;
+		} finally {
+			response.disconnect();
+		}
+	}
+
+	/**
+	 * Consulta quantos bytes da sesso j foram gravados.
+	 *
+	 * @return o prximo byte a enviar; igual a {@code length} se o upload j terminou
+	 */
+	long committedOffset(String sessionUri, long length) throws IOException {
+		HttpRequest request = client.getRequestFactory().buildPutRequest(new GenericUrl(sessionUri), new EmptyContent());
+		request.getHeaders().setContentRange("bytes */" + length);
+		request.setThrowExceptionOnExecuteError(false);
+		HttpResponse response = request.execute();
+		try {
+			return offsetOf(response, length);
+		} finally {
+			response.disconnect();
+		}
+	}
+
+	/**
+	 * Envia (ou continua enviando) o arquivo na sesso informada, retomando do ltimo byte confirmado aps falhas.
+	 */
+	void resume(String sessionUri, File file) throws IOException {
+		long length = file.length();
+		long offset = committedOffset(sessionUri, length);
+		int attempts = 0;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (offset < length) {
+				long size = Math.min(CHUNK_SIZE, length - offset);
+				try {
+					long next = sendChunk(sessionUri, channel, offset, size, length);
+					attempts = next > offset ? 0 : attempts + 1;
+					offset = next;
+				} catch (IOException e) {
+					if (++attempts >= MAX_ATTEMPTS) {
+						throw e;
+					}
+					sleep(attempts);
+					offset = committedOffset(sessionUri, length);
+				}
+				if (attempts >= MAX_ATTEMPTS) {
+					throw new IOException("Upload session made no progress at offset " + offset);
+				}
+			}
+		}
+	}
+
+	private long sendChunk(String sessionUri, FileChannel channel, long offset, long size, long length) throws IOException {
+		channel.position(offset);
+		InputStream in = ByteStreams.limit(Channels.newInputStream(channel), size);
+		InputStreamContent content = new InputStreamContent(null, in).setLength(size).setCloseInputStream(false);
+		HttpRequest request = client.getRequestFactory().buildPutRequest(new GenericUrl(sessionUri), content);
+		request.getHeaders().setContentRange("bytes " + offset + "-" + (offset + size - 1) + "/" + length);
+		request.setThrowExceptionOnExecuteError(false);
+		HttpResponse response = request.execute();
+		try {
+			return offsetOf(response, length);
+		} finally {
+			response.disconnect();
+		}
+	}
+
+	private static long offsetOf(HttpResponse response, long length) throws IOException {
+		int status = response.getStatusCode();
+		if (status == 200 || status == 201) {
+			return length;
+		}
+		if (status != RESUME_INCOMPLETE) {
+			throw new IOException("Upload session failed with HTTP " + status + ": " + response.getStatusMessage());
+		}
+		String range = response.getHeaders().getRange();
+		if (range == null) {
+			return 0;
+		}
+		// formato "bytes=0-N"
+		return Long.parseLong(range.substring(range.indexOf('-') + 1)) + 1;
+	}
+
+	private static void sleep(int attempt) throws IOException {
+		try {
+			Thread.sleep(Math.min(30000L, 500L << attempt));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while retrying upload", e);
+		}
+	}
+}
@@ -4,10 +4,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.google.api.client.http.InputStreamContent;
 import com.google.api.services.storage.Storage;
@@ -15,16 +17,20 @@ import com.google.api.services.storage.model.Bucket;
 import com.google.api.services.storage.model.ObjectAccessControl;
 import com.google.api.services.storage.model.Objects;
 import com.google.api.services.storage.model.StorageObject;
-import com.google.auth.Credentials;
-import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.storage.BucketInfo;
-import com.google.cloud.storage.StorageOptions;
+import com.google.common.io.CountingInputStream;
+
+import br.com.icaro.google.metrics.Metrics;
+import br.com.icaro.google.metrics.Stage;
 
 /**
  * @author icaroafonso
  *
  */
 public class StorageActions {
+
+	/** Tamanho mnimo das partes em {@link #uploadLargeFile}. */
+	private static final long MIN_PART_SIZE = 16 * 1024 * 1024;
 	
 	
 	/**
@@ -38,16 +44,15 @@ public class StorageActions {
 	 * @throws GeneralSecurityException 
 	 */
 	public static Boolean createBucket(String projectId,String bucketName, String credentialsFilePath ) throws IOException, GeneralSecurityException {
-		 
-		Credentials credentials = GoogleCredentials.fromStream(new FileInputStream(credentialsFilePath));
-		 com.google.cloud.storage.Storage storage = StorageOptions
-				 .newBuilder()
-				 .setCredentials(credentials)
-				 .setProjectId(projectId)
-				 .build().getService();
-		
-
-	    storage.create(BucketInfo.of(bucketName));
+		com.google.cloud.storage.Storage storage = StorageFactory.getCloudService(projectId, credentialsFilePath);
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			storage.create(BucketInfo.of(bucketName));
+			failed = false;
+		} finally {
+			Metrics.call("createBucket", start, 0, failed);
+		}
 	    return true;
 	}
 
@@ -64,14 +69,20 @@ public class StorageActions {
 	 * @throws GeneralSecurityException 
 	 */
 	public static Boolean deleteBucket(String projectId,String bucketName,String credentialsFilePath ) throws FileNotFoundException, IOException {
-		
-		Credentials credentials = GoogleCredentials.fromStream(new FileInputStream(credentialsFilePath));
-		 com.google.cloud.storage.Storage storage =  StorageOptions
-				 .newBuilder()
-				 .setCredentials(credentials)
-				 .setProjectId(projectId)
-				 .build().getService();
-		storage.delete(bucketName);
+		com.google.cloud.storage.Storage storage;
+		try {
+			storage = StorageFactory.getCloudService(projectId, credentialsFilePath);
+		} catch (GeneralSecurityException e) {
+			throw new IOException(e);
+		}
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			storage.delete(bucketName);
+			failed = false;
+		} finally {
+			Metrics.call("deleteBucket", start, 0, failed);
+		}
 		
 		return true;
 	}
@@ -91,18 +102,55 @@ public class StorageActions {
 		List<StorageObject> results = new ArrayList<StorageObject>();
 
 		Objects objects;
-		do {
-			objects = listRequest.execute();
-			if (objects.getItems() != null)
-				results.addAll(objects.getItems());
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			do {
+				objects = listRequest.execute();
+				if (objects.getItems() != null)
+					results.addAll(objects.getItems());
 
-			listRequest.setPageToken(objects.getNextPageToken());
-		} while (null != objects.getNextPageToken());
+				listRequest.setPageToken(objects.getNextPageToken());
+			} while (null != objects.getNextPageToken());
+			failed = false;
+		} finally {
+			Metrics.call("listBucket", start, 0, failed);
+		}
 
 		return results;
 	}
 
 
+	/**
+	 * Percorre os objetos do intervalo (Bucket) sob demanda, buscando a prxima pgina em segundo plano. Ao contrrio
+	 * de {@link #listBucket(String, String, String)}, o uso de memria no cresce com o tamanho do intervalo.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param bucketName - o nome do intervalo para listar.
+	 * @param prefix - lista apenas objetos cujo nome comea com este prefixo; pode ser nulo.
+	 * @param delimiter - delimitador dos pseudo-diretrios, normalmente "/"; pode ser nulo.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return um {@link ObjectListing} com nome, tamanho, gerao e md5 de cada objeto.
+	 */
+	public static ObjectListing listObjects(String applicationName, String bucketName, String prefix, String delimiter, String credentialsFilePath ) throws IOException, GeneralSecurityException {
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
+		return new ObjectListing(client, bucketName, prefix, delimiter, ObjectListing.DEFAULT_FIELDS, ObjectListing.DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Mesmo que {@link #listObjects(String, String, String, String, String)}, como {@link Stream}.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param bucketName - o nome do intervalo para listar.
+	 * @param prefix - lista apenas objetos cujo nome comea com este prefixo; pode ser nulo.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return os objetos do intervalo; erros de rede so lanados como {@link java.io.UncheckedIOException}.
+	 */
+	public static Stream<StorageObject> streamObjects(String applicationName, String bucketName, String prefix, String credentialsFilePath ) throws IOException, GeneralSecurityException {
+		return listObjects(applicationName, bucketName, prefix, null, credentialsFilePath).stream();
+	}
+
+
 	/**
 	 * Obtm metadados do intervalo (Bucket) fornecido.
 	 *
@@ -117,7 +165,15 @@ public class StorageActions {
 		Storage.Buckets.Get bucketRequest = client.buckets().get(bucketName);
 		// Obtm todas as propriedades do intervalo 
 		bucketRequest.setProjection("full");
-		return bucketRequest.execute();
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			Bucket bucket = bucketRequest.execute();
+			failed = false;
+			return bucket;
+		} finally {
+			Metrics.call("getBucket", start, 0, failed);
+		}
 	}
 	/**
 	 * Envia dados para um objeto em um intervalo {@link Bucket}.
@@ -148,7 +204,120 @@ public class StorageActions {
 		Storage.Objects.Insert insertRequest = client.objects().insert(
 				bucketName, objectMetadata, contentStream);
 
-		insertRequest.execute();
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			insertRequest.execute();
+			failed = false;
+		} finally {
+			Metrics.stage(Stage.UPLOAD, start);
+			Metrics.call("uploadFile", start, file.length(), failed);
+		}
+	}
+
+	/**
+	 * Envia dados de um {@link InputStream} de tamanho desconhecido (por exemplo, a sada de uma converso em andamento)
+	 * para um objeto em um intervalo {@link Bucket}. O envio  feito em partes pelo protocolo de upload retomvel,
+	 * sem gravar o contedo em disco.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param name - Nome do objeto de destino.
+	 * @param contentType - extenso do arquivo (MIME Type).
+	 * @param content - stream com os dados;  lido at o fim, mas no  fechado.
+	 * @param bucketName - Intervalo onde o objeto ser criado.
+	 * @param publicAccess - verdadeiro para permitir leitura por todos os usurios.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 */
+	public static void uploadStream(String applicationName,String name, String contentType, InputStream content, String bucketName, Boolean publicAccess,String credentialsFilePath ) throws IOException, GeneralSecurityException {
+
+		long start = Metrics.start();
+		CountingInputStream counted = start != 0L ? new CountingInputStream(content) : null;
+		InputStreamContent contentStream = new InputStreamContent(contentType, counted != null ? counted : content);
+		contentStream.setCloseInputStream(false);
+
+		StorageObject objectMetadata = new StorageObject().setName(name);
+		if (publicAccess) {
+			objectMetadata.setAcl(Arrays.asList(new ObjectAccessControl().setEntity("allUsers").setRole("READER")));
+		}
+
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath );
+		Storage.Objects.Insert insertRequest = client.objects().insert(
+				bucketName, objectMetadata, contentStream);
+		insertRequest.getMediaHttpUploader().setDirectUploadEnabled(false);
+
+		boolean failed = true;
+		try {
+			insertRequest.execute();
+			failed = false;
+		} finally {
+			Metrics.stage(Stage.UPLOAD, start);
+			Metrics.call("uploadStream", start, counted != null ? counted.getCount() : 0, failed);
+		}
+	}
+
+	/**
+	 * Envia um arquivo grande dividindo-o em partes enviadas em paralelo, que so compostas no objeto final e depois
+	 * removidas. Indicado para gravaes longas, de centenas de MB.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param name - Nome do objeto de destino.
+	 * @param contentType - extenso do arquivo (MIME Type).
+	 * @param file - Arquivo tipo {@link File} para upload.
+	 * @param bucketName - Intervalo onde o objeto ser criado.
+	 * @param publicAccess - verdadeiro para permitir leitura por todos os usurios.
+	 * @param parallelism - partes enviadas ao mesmo tempo.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 */
+	public static void uploadLargeFile(String applicationName,String name, String contentType, File file, String bucketName, Boolean publicAccess, int parallelism, String credentialsFilePath ) throws IOException, GeneralSecurityException {
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			new CompositeUpload(client, parallelism, MIN_PART_SIZE).upload(file, bucketName, name, contentType, publicAccess);
+			failed = false;
+		} finally {
+			Metrics.stage(Stage.UPLOAD, start);
+			Metrics.call("uploadLargeFile", start, file.length(), failed);
+		}
+	}
+
+	/**
+	 * Inicia um upload retomvel e retorna a URI da sesso. A URI pode ser guardada para continuar o envio com
+	 * {@link #resumeUpload(String, String, File, String)} mesmo aps uma falha ou reincio da aplicao.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param name - Nome do objeto de destino.
+	 * @param contentType - extenso do arquivo (MIME Type).
+	 * @param file - Arquivo tipo {@link File} que ser enviado.
+	 * @param bucketName - Intervalo onde o objeto ser criado.
+	 * @param publicAccess - verdadeiro para permitir leitura por todos os usurios.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return a URI da sesso de upload
+	 */
+	public static String startResumableUpload(String applicationName,String name, String contentType, File file, String bucketName, Boolean publicAccess, String credentialsFilePath ) throws IOException, GeneralSecurityException {
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
+		return new ResumableUpload(client).start(bucketName, name, contentType, file.length(), publicAccess);
+	}
+
+	/**
+	 * Envia o arquivo na sesso informada, continuando do ltimo byte gravado pelo servidor.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param sessionUri - URI retornada por {@link #startResumableUpload(String, String, String, File, String, Boolean, String)}.
+	 * @param file - o mesmo arquivo usado ao iniciar a sesso.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 */
+	public static void resumeUpload(String applicationName, String sessionUri, File file, String credentialsFilePath ) throws IOException, GeneralSecurityException {
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			new ResumableUpload(client).resume(sessionUri, file);
+			failed = false;
+		} finally {
+			Metrics.stage(Stage.UPLOAD, start);
+			Metrics.call("resumeUpload", start, file.length(), failed);
+		}
 	}
 
 	/**
@@ -162,7 +331,60 @@ public class StorageActions {
 	public static void deleteObject(String applicationName,String path, String bucketName,String credentialsFilePath )
 			throws IOException, GeneralSecurityException {
 		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
-		client.objects().delete(bucketName, path).execute();
+		long start = Metrics.start();
+		boolean failed = true;
+		try {
+			client.objects().delete(bucketName, path).execute();
+			failed = false;
+		} finally {
+			Metrics.call("deleteObject", start, 0, failed);
+		}
+	}
+
+	/**
+	 * Deleta vrios objetos do intervalo {@link Bucket}, agrupando as chamadas em lotes enviados em paralelo.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param paths - nomes dos objetos a excluir.
+	 * @param bucketName - Intervalo onde esto os objetos.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return o resultado de cada objeto, na ordem dos nomes
+	 */
+	public static List<BulkResult<Void>> deleteObjects(String applicationName, List<String> paths, String bucketName,String credentialsFilePath )
+			throws IOException, GeneralSecurityException {
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
+		return new BulkOperations(client, BulkOperations.DEFAULT_PARALLELISM).delete(bucketName, paths);
+	}
+
+	/**
+	 * Altera o acesso de vrios objetos do intervalo {@link Bucket}.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param paths - nomes dos objetos.
+	 * @param bucketName - Intervalo onde esto os objetos.
+	 * @param acl - nova lista de controle de acesso de cada objeto.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return o resultado de cada objeto, com os metadados atualizados
+	 */
+	public static List<BulkResult<StorageObject>> setObjectsAcl(String applicationName, List<String> paths, String bucketName, List<ObjectAccessControl> acl, String credentialsFilePath )
+			throws IOException, GeneralSecurityException {
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
+		return new BulkOperations(client, BulkOperations.DEFAULT_PARALLELISM).setAcl(bucketName, paths, acl);
+	}
+
+	/**
+	 * Obtm os metadados de vrios objetos do intervalo {@link Bucket}.
+	 *
+	 * @param applicationName - nome da aplicao/projeto no google cloud.
+	 * @param paths - nomes dos objetos.
+	 * @param bucketName - Intervalo onde esto os objetos.
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return o resultado de cada objeto, na ordem dos nomes
+	 */
+	public static List<BulkResult<StorageObject>> getObjects(String applicationName, List<String> paths, String bucketName,String credentialsFilePath )
+			throws IOException, GeneralSecurityException {
+		Storage client = StorageFactory.getService(applicationName,credentialsFilePath);
+		return new BulkOperations(client, BulkOperations.DEFAULT_PARALLELISM).get(bucketName, paths, null);
 	}
 
 }
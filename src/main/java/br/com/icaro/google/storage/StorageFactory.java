@@ -1,62 +1,291 @@
 package br.com.icaro.google.storage;
 
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+import com.google.api.client.googleapis.GoogleUtils;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.storage.Storage;
 import com.google.api.services.storage.StorageScopes;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.StorageOptions;
+
+import br.com.icaro.google.metrics.Metrics;
+import br.com.icaro.google.metrics.Stage;
 
 /**
  * @author icaroafonso
  * Esta classe gerencia os detalhes para criar um servio de armazenamento, incluindo auth.
+ * Os clientes so registrados por arquivo de credenciais (um inquilino por projeto), e todos compartilham o mesmo
+ * transporte HTTP com pool de conexes, de modo que cada chamada reutiliza uma conexo j aberta com o projeto correto.
+ * Inquilinos sem uso por mais de {@link #setIdleTimeout(long, TimeUnit)} so removidos.
  */
 public class StorageFactory {
-  private static Storage instance = null;
-
-  /**
- * @parama ppName - nome do aplictivo a ser criado
- * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
- * @return
- * @throws IOException
- * @throws GeneralSecurityException
- */
-public static synchronized Storage getService(String appName,String credentialsFilePath) throws IOException, GeneralSecurityException {
-    if (instance == null) {
-      instance = buildService(appName,credentialsFilePath);
-    }
-    return instance;
-  }
-
-  /**
- * @param appName - nome do aplictivo a ser criado
- * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
- * @return
- * @throws IOException
- * @throws GeneralSecurityException
- */
-private static Storage buildService(String appName,String credentialsFilePath) throws IOException, GeneralSecurityException {
-    HttpTransport transport = GoogleNetHttpTransport.newTrustedTransport();
-    JsonFactory jsonFactory = new JacksonFactory();
-    FileInputStream credentialsStream = new FileInputStream(credentialsFilePath);
-    
-    GoogleCredential credential = GoogleCredential.fromStream(credentialsStream, transport, jsonFactory);// getApplicationDefault(transport, jsonFactory);
-
-      if (credential.createScopedRequired()) {
-      Collection<String> scopes = StorageScopes.all();
-      credential = credential.createScoped(scopes);
-    }
-
-    return new Storage.Builder(transport, jsonFactory, credential)
-        .setApplicationName(appName)
-        .build();
-  }
+
+	/** Conexes abertas ao mesmo tempo com o mesmo host. */
+	static final int MAX_CONNECTIONS_PER_ROUTE = 32;
+
+	/** Total de conexes abertas pelo transporte compartilhado. */
+	static final int MAX_TOTAL_CONNECTIONS = 128;
+
+	private static final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<String, Tenant>();
+	private static final JsonFactory jsonFactory = new JacksonFactory();
+	private static volatile ApacheHttpTransport transport = null;
+	private static volatile long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(30);
+	private static volatile String rootUrl = null;
+
+	/**
+	 * @param appName - nome do aplictivo a ser criado
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return o cliente da API JSON do Storage para estas credenciais
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 */
+	public static Storage getService(String appName,String credentialsFilePath) throws IOException, GeneralSecurityException {
+		Tenant tenant = getTenant(credentialsFilePath);
+		Storage service = tenant.services.get(appName);
+		if (service == null) {
+			synchronized (tenant) {
+				service = tenant.services.get(appName);
+				if (service == null) {
+					service = buildService(appName, tenant);
+					tenant.services.put(appName, service);
+				}
+			}
+		}
+		return service;
+	}
+
+	/**
+	 * @param projectId - O Id do projeto gCloud
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 * @return o cliente {@link com.google.cloud.storage.Storage} para este projeto e credenciais
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 */
+	public static com.google.cloud.storage.Storage getCloudService(String projectId, String credentialsFilePath) throws IOException, GeneralSecurityException {
+		Tenant tenant = getTenant(credentialsFilePath);
+		com.google.cloud.storage.Storage service = tenant.cloudServices.get(projectId);
+		if (service == null) {
+			synchronized (tenant) {
+				service = tenant.cloudServices.get(projectId);
+				if (service == null) {
+					service = buildCloudService(projectId, tenant);
+					tenant.cloudServices.put(projectId, service);
+				}
+			}
+		}
+		return service;
+	}
+
+	/**
+	 * Define por quanto tempo um inquilino pode ficar sem uso antes de ser removido. O padro  30 minutos.
+	 */
+	public static void setIdleTimeout(long timeout, TimeUnit unit) {
+		idleTimeoutMillis = unit.toMillis(timeout);
+	}
+
+	/**
+	 * Direciona os clientes criados a partir de agora para um endereo alternativo da API JSON (emulador ou servio
+	 * falso), sem ler as credenciais. Use null para voltar ao endereo padro.
+	 *
+	 * @param storageRootUrl - ex.: "http://localhost:8080/"
+	 */
+	public static void setRootUrl(String storageRootUrl) {
+		rootUrl = storageRootUrl == null || storageRootUrl.endsWith("/") ? storageRootUrl : storageRootUrl + "/";
+	}
+
+	/**
+	 * @return o endereo alternativo em uso, ou null
+	 */
+	public static String getRootUrl() {
+		return rootUrl;
+	}
+
+	/**
+	 * Remove os inquilinos sem uso alm do tempo limite e fecha as conexes ociosas do pool.
+	 *
+	 * @return quantos inquilinos foram removidos
+	 */
+	public static int evictIdle() {
+		long limit = System.currentTimeMillis() - idleTimeoutMillis;
+		int evicted = 0;
+		for (Iterator<Tenant> it = tenants.values().iterator(); it.hasNext();) {
+			if (it.next().lastAccess < limit) {
+				it.remove();
+				evicted++;
+			}
+		}
+		ApacheHttpTransport current = transport;
+		if (current != null) {
+			current.getHttpClient().getConnectionManager().closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		return evicted;
+	}
+
+	/**
+	 * Remove os clientes associados s credenciais informadas, se existirem.
+	 *
+	 * @param credentialsFilePath - endereo do arquivo JSON com as credenciais do projeto
+	 */
+	public static void release(String credentialsFilePath) throws IOException {
+		tenants.remove(keyOf(credentialsFilePath));
+	}
+
+	/**
+	 * Remove todos os inquilinos e fecha o transporte compartilhado. Chamadas posteriores criam novos clientes.
+	 */
+	public static synchronized void shutdown() {
+		tenants.clear();
+		if (transport != null) {
+			transport.shutdown();
+			transport = null;
+		}
+	}
+
+	/**
+	 * @return quantos inquilinos esto registrados
+	 */
+	public static int getTenantCount() {
+		return tenants.size();
+	}
+
+	private static Tenant getTenant(String credentialsFilePath) throws IOException, GeneralSecurityException {
+		String override = rootUrl;
+		String key = override == null ? keyOf(credentialsFilePath) : override + "|" + keyOf(credentialsFilePath);
+		Tenant tenant = tenants.get(key);
+		if (tenant == null) {
+			evictIdle();
+			synchronized (StorageFactory.class) {
+				tenant = tenants.get(key);
+				if (tenant == null) {
+					tenant = new Tenant(credentialsFilePath, override);
+					tenants.put(key, tenant);
+				}
+			}
+		}
+		tenant.lastAccess = System.currentTimeMillis();
+		return tenant;
+	}
+
+	/**
+	 * @return o transporte HTTP compartilhado, com pool de conexes persistentes
+	 */
+	static ApacheHttpTransport getTransport() throws IOException, GeneralSecurityException {
+		ApacheHttpTransport current = transport;
+		if (current == null) {
+			synchronized (StorageFactory.class) {
+				if (transport == null) {
+					ApacheHttpTransport.Builder builder = new ApacheHttpTransport.Builder()
+							.trustCertificates(GoogleUtils.getCertificateTrustStore());
+					HttpParams params = builder.getHttpParams();
+					ConnManagerParams.setMaxTotalConnections(params, MAX_TOTAL_CONNECTIONS);
+					ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_ROUTE));
+					HttpConnectionParams.setStaleCheckingEnabled(params, true);
+					HttpConnectionParams.setTcpNoDelay(params, true);
+					transport = builder.build();
+				}
+				current = transport;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @param appName - nome do aplictivo a ser criado
+	 * @param tenant - credenciais do projeto
+	 * @return
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 */
+	private static Storage buildService(String appName, Tenant tenant) throws IOException, GeneralSecurityException {
+		long start = Metrics.start();
+		Storage.Builder builder = new Storage.Builder(getTransport(), jsonFactory, tenant.credential)
+				.setApplicationName(appName);
+		if (tenant.rootUrl != null) {
+			builder.setRootUrl(tenant.rootUrl);
+		}
+		Storage service = builder.build();
+		Metrics.stage(Stage.CLIENT_CREATION, start);
+		return service;
+	}
+
+	private static com.google.cloud.storage.Storage buildCloudService(String projectId, Tenant tenant) throws IOException, GeneralSecurityException {
+		long start = Metrics.start();
+		final ApacheHttpTransport shared = getTransport();
+		StorageOptions.Builder builder = StorageOptions.newBuilder()
+				.setProjectId(projectId)
+				.setTransportOptions(HttpTransportOptions.newBuilder().setHttpTransportFactory(() -> shared).build());
+		if (tenant.rootUrl != null) {
+			builder.setHost(tenant.rootUrl.substring(0, tenant.rootUrl.length() - 1)).setCredentials(NoCredentials.getInstance());
+		} else {
+			builder.setCredentials(tenant.credentials);
+		}
+		com.google.cloud.storage.Storage service = builder.build().getService();
+		Metrics.stage(Stage.CLIENT_CREATION, start);
+		return service;
+	}
+
+	private static String keyOf(String credentialsFilePath) throws IOException {
+		return new File(credentialsFilePath).getCanonicalPath();
+	}
+
+	/**
+	 * Credenciais de um projeto e os clientes j criados com elas.
+	 */
+	private static class Tenant {
+		final GoogleCredential credential;
+		final GoogleCredentials credentials;
+		final ConcurrentMap<String, Storage> services = new ConcurrentHashMap<String, Storage>();
+		final ConcurrentMap<String, com.google.cloud.storage.Storage> cloudServices = new ConcurrentHashMap<String, com.google.cloud.storage.Storage>();
+		final String rootUrl;
+		volatile long lastAccess = System.currentTimeMillis();
+
+		/**
+		 * @param rootUrl - endereo alternativo; quando informado, as credenciais no so lidas
+		 */
+		Tenant(String credentialsFilePath, String rootUrl) throws IOException, GeneralSecurityException {
+			this.rootUrl = rootUrl;
+			if (rootUrl != null) {
+				this.credential = null;
+				this.credentials = null;
+				return;
+			}
+			long start = Metrics.start();
+			GoogleCredential credential;
+			try (InputStream credentialsStream = new FileInputStream(credentialsFilePath)) {
+				credential = GoogleCredential.fromStream(credentialsStream, getTransport(), jsonFactory);
+			}
+			if (credential.createScopedRequired()) {
+				Collection<String> scopes = StorageScopes.all();
+				credential = credential.createScoped(scopes);
+			}
+			this.credential = credential;
+			try (InputStream credentialsStream = new FileInputStream(credentialsFilePath)) {
+				this.credentials = GoogleCredentials.fromStream(credentialsStream);
+			}
+			Metrics.stage(Stage.CREDENTIAL_LOAD, start);
+		}
+	}
 }
-// [END authentication_application_default_credentials]
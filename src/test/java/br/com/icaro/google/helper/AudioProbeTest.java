@@ -0,0 +1,124 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+import br.com.icaro.google.helper.AudioInfo.Container;
+
+/**
+ * Testes para a leitura de cabealhos da classe AudioProbe
+ */
+@RunWith(JUnit4.class)
+public class AudioProbeTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String name, byte[] content) throws Exception {
+		File file = folder.newFile(name);
+		Files.write(file.toPath(), content);
+		return file;
+	}
+
+	private File wav(String name, int rate, int channels, int millis) throws Exception {
+		int dataLength = rate * channels * 2 * millis / 1000;
+		ByteBuffer wav = ByteBuffer.allocate(44 + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes()).putInt(36 + dataLength).put("WAVE".getBytes())
+			.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels).putInt(rate).putInt(rate * channels * 2)
+			.putShort((short) (channels * 2)).putShort((short) 16)
+			.put("data".getBytes()).putInt(dataLength);
+		return write(name, wav.array());
+	}
+
+	/**
+	 * Quadros MPEG 1 layer III de 128 kbps, 44,1 kHz, estreo, precedidos por uma tag ID3v2 vazia.
+	 */
+	private static byte[] mp3(int frames, int xingFrames) {
+		int frameLength = 144 * 128000 / 44100;
+		ByteBuffer mp3 = ByteBuffer.allocate(10 + frames * frameLength);
+		mp3.put("ID3".getBytes()).put((byte) 3).put((byte) 0).put((byte) 0).putInt(0);
+		for (int i = 0; i < frames; i++) {
+			mp3.putInt(10 + i * frameLength, 0xFFFB9000);
+		}
+		if (xingFrames > 0) {
+			mp3.position(10 + 4 + 32);
+			mp3.put("Xing".getBytes()).putInt(1).putInt(xingFrames);
+		}
+		return mp3.array();
+	}
+
+	@Test
+	public void testWav() throws Exception {
+		AudioInfo info = AudioProbe.probe(wav("mono.wav", 16000, 1, 1500).getPath());
+		assertThat(info.getContainer()).isEqualTo(Container.WAV);
+		assertThat(info.getEncoding()).isEqualTo(AudioEncoding.LINEAR16);
+		assertThat(info.getSampleRateHertz()).isEqualTo(16000);
+		assertThat(info.getDurationMillis()).isEqualTo(1500L);
+		assertThat(info.isRecognizable()).isTrue();
+
+		AudioInfo stereo = AudioProbe.probe(wav("stereo.wav", 44100, 2, 500).getPath());
+		assertThat(stereo.getChannels()).isEqualTo(2);
+		assertThat(stereo.getDurationMillis()).isEqualTo(500L);
+		assertThat(stereo.isRecognizable()).isFalse();
+
+		ByteBuffer mulaw = ByteBuffer.allocate(44 + 8000).order(ByteOrder.LITTLE_ENDIAN);
+		mulaw.put("RIFF".getBytes()).putInt(36 + 8000).put("WAVE".getBytes())
+			.put("fmt ".getBytes()).putInt(16).putShort((short) 7).putShort((short) 1).putInt(8000).putInt(8000)
+			.putShort((short) 1).putShort((short) 8)
+			.put("data".getBytes()).putInt(8000);
+		AudioInfo phone = AudioProbe.probe(write("mulaw.wav", mulaw.array()).getPath());
+		assertThat(phone.getEncoding()).isEqualTo(AudioEncoding.MULAW);
+		assertThat(phone.getDurationMillis()).isEqualTo(1000L);
+	}
+
+	@Test
+	public void testFlacStreamInfo() throws Exception {
+		ByteBuffer flac = ByteBuffer.allocate(4 + 4 + 34);
+		flac.put("fLaC".getBytes()).put((byte) 0x80).put((byte) 0).put((byte) 0).put((byte) 34);
+		flac.putShort((short) 4096).putShort((short) 4096).put(new byte[6]);
+		long samples = 16000L * 90;
+		flac.putLong(16000L << 44 | 0L << 41 | 15L << 36 | samples);
+		AudioInfo info = AudioProbe.probe(write("audio.flac", flac.array()).getPath());
+		assertThat(info.getContainer()).isEqualTo(Container.FLAC);
+		assertThat(info.getEncoding()).isEqualTo(AudioEncoding.FLAC);
+		assertThat(info.getSampleRateHertz()).isEqualTo(16000);
+		assertThat(info.getChannels()).isEqualTo(1);
+		assertThat(info.getBitsPerSample()).isEqualTo(16);
+		assertThat(info.getDurationMillis()).isEqualTo(90000L);
+		assertThat(info.matches(ConversionSettings.flac(16000))).isTrue();
+		assertThat(info.matches(ConversionSettings.flac(44100))).isFalse();
+	}
+
+	@Test
+	public void testMp3() throws Exception {
+		AudioInfo cbr = AudioProbe.probe(write("cbr.mp3", mp3(10, 0)).getPath());
+		assertThat(cbr.getContainer()).isEqualTo(Container.MP3);
+		assertThat(cbr.getEncoding()).isNull();
+		assertThat(cbr.getSampleRateHertz()).isEqualTo(44100);
+		assertThat(cbr.getChannels()).isEqualTo(2);
+		assertThat(cbr.getDurationMillis()).isEqualTo(10L * 417 * 8 / 128);
+		assertThat(cbr.isRecognizable()).isFalse();
+
+		AudioInfo vbr = AudioProbe.probe(write("vbr.mp3", mp3(10, 100)).getPath());
+		assertThat(vbr.getDurationMillis()).isEqualTo(100L * 1152 * 1000 / 44100);
+	}
+
+	@Test
+	public void testUnknown() throws Exception {
+		AudioInfo info = AudioProbe.probe(write("notes.txt", "not audio at all".getBytes()).getPath());
+		assertThat(info.getContainer()).isEqualTo(Container.UNKNOWN);
+		assertThat(info.isRecognizable()).isFalse();
+	}
+}
@@ -0,0 +1,111 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Testes para a diviso de udio PCM em trechos da classe AudioSegmenter
+ */
+@RunWith(JUnit4.class)
+public class AudioSegmenterTest {
+
+	private static final int RATE = 16000;
+
+	/**
+	 * Gera um tom de 1 segundo por segundo de udio, com silncio entre {@code silenceFrom} e {@code silenceTo} (em ms).
+	 */
+	private static byte[] tone(int millis, int silenceFrom, int silenceTo) {
+		int samples = RATE * millis / 1000;
+		byte[] pcm = new byte[samples * 2];
+		for (int i = 0; i < samples; i++) {
+			int ms = i * 1000 / RATE;
+			short value = ms >= silenceFrom && ms < silenceTo ? 0 : (short) (Math.sin(i * 0.3) * 8000);
+			pcm[2 * i] = (byte) value;
+			pcm[2 * i + 1] = (byte) (value >> 8);
+		}
+		return pcm;
+	}
+
+	@Test
+	public void testShortAudioIsNotSplit() {
+		int[] points = AudioSegmenter.splitPoints(ByteString.copyFrom(tone(3000, 0, 0)), RATE, 5000, 1000);
+		assertThat(points).isEqualTo(new int[] {0});
+	}
+
+	@Test
+	public void testCutsInsideSilence() {
+		int[] points = AudioSegmenter.splitPoints(ByteString.copyFrom(tone(9000, 4300, 4500)), RATE, 5000, 1000);
+		assertThat(points.length).isEqualTo(2);
+		int cutMillis = points[1] / 2 * 1000 / RATE;
+		assertThat(cutMillis).isAtLeast(4300);
+		assertThat(cutMillis).isLessThan(4500);
+	}
+
+	@Test
+	public void testSegmentsNeverExceedLimit() {
+		byte[] pcm = tone(23000, 0, 0);
+		int[] points = AudioSegmenter.splitPoints(ByteString.copyFrom(pcm), RATE, 5000, 1000);
+		for (int i = 0; i < points.length; i++) {
+			int end = i + 1 < points.length ? points[i + 1] : pcm.length;
+			assertThat(end - points[i]).isAtMost(2 * RATE * 5);
+			assertThat(points[i] % 2).isEqualTo(0);
+		}
+	}
+
+	/**
+	 * Monta um WAV PCM 16 bits com o chunk "data" seguido de um chunk "LIST" de {@code trailer} bytes.
+	 */
+	private static byte[] wav(int channels, int rate, int dataBytes, int trailer) {
+		ByteBuffer buf = ByteBuffer.allocate(44 + dataBytes + (trailer > 0 ? 8 + trailer : 0)).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(0x46464952).putInt(buf.capacity() - 8).putInt(0x45564157);
+		buf.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) channels).putInt(rate)
+				.putInt(rate * channels * 2).putShort((short) (channels * 2)).putShort((short) 16);
+		buf.putInt(0x61746164).putInt(dataBytes);
+		buf.position(44 + dataBytes);
+		if (trailer > 0) {
+			buf.putInt(0x5453494c).putInt(trailer);
+		}
+		return buf.array();
+	}
+
+	@Test
+	public void testWavDataRespectsChunkLength() {
+		ByteString audio = ByteString.copyFrom(wav(1, RATE, 8, 20));
+		PcmFormat format = AudioSegmenter.pcmFormat(audio, RATE);
+		assertThat(format.getDataOffset()).isEqualTo(44);
+		assertThat(AudioSegmenter.pcmData(audio, RATE).size()).isEqualTo(8);
+		assertThat(AudioSegmenter.pcmData(ByteString.copyFrom(new byte[100]), RATE).size()).isEqualTo(100);
+	}
+
+	@Test
+	public void testWavChunkSizeIsUnsigned() {
+		byte[] wav = wav(1, RATE, 8, 0);
+		ByteBuffer buf = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(12, 0x6b6e756a).putInt(16, 0xFFFFFFF8); // chunk "junk" no lugar do "fmt "
+		try {
+			AudioSegmenter.pcmFormat(ByteString.copyFrom(wav), RATE);
+			fail("WAV without fmt chunk should be rejected");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void testWavMustBeMonoAtExpectedRate() {
+		for (byte[] wav : new byte[][] { wav(2, RATE, 8, 0), wav(1, 8000, 8, 0) }) {
+			try {
+				AudioSegmenter.pcmData(ByteString.copyFrom(wav), RATE);
+				fail("unexpected WAV format should be rejected");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+}
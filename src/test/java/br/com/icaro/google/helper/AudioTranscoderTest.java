@@ -0,0 +1,74 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Testes para a converso em streaming da classe AudioTranscoder
+ */
+@RunWith(JUnit4.class)
+public class AudioTranscoderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Cria um WAV 16 kHz mono a partir do audio.raw de teste.
+	 */
+	private File wav() throws Exception {
+		byte[] pcm = Files.readAllBytes(Paths.get(getClass().getClassLoader().getResource("audio.raw").getPath()));
+		ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+		header.put("RIFF".getBytes()).putInt(36 + pcm.length).put("WAVE".getBytes())
+			.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1).putInt(16000).putInt(32000)
+			.putShort((short) 2).putShort((short) 16)
+			.put("data".getBytes()).putInt(pcm.length);
+		File file = folder.newFile("audio.wav");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(header.array());
+		out.write(pcm);
+		Files.write(file.toPath(), out.toByteArray());
+		return file;
+	}
+
+	@Test
+	public void testStreamsLinear16WithoutTempFile() throws Exception {
+		File source = wav();
+		long pcmLength = source.length() - 44;
+		try (InputStream in = AudioTranscoder.open(source.getPath(), ConversionSettings.linear16(8000))) {
+			byte[] converted = Utils.getBytes(in);
+			// metade da taxa de amostragem: aproximadamente metade dos bytes
+			assertThat((double) converted.length).isWithin(pcmLength * 0.02).of(pcmLength / 2.0);
+		}
+		assertThat(folder.getRoot().list()).asList().containsExactly("audio.wav");
+	}
+
+	@Test
+	public void testStreamsFlacFromInputStream() throws Exception {
+		try (InputStream in = AudioTranscoder.open(Files.newInputStream(wav().toPath()), ConversionSettings.flac(16000))) {
+			byte[] converted = Utils.getBytes(in);
+			assertThat(new String(converted, 0, 4, "US-ASCII")).isEqualTo("fLaC");
+		}
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void testFailureIsReported() throws Exception {
+		File bogus = folder.newFile("bogus.mp3");
+		Files.write(bogus.toPath(), "not audio".getBytes());
+		try (InputStream in = AudioTranscoder.open(bogus.getPath(), ConversionSettings.linear16(16000))) {
+			Utils.getBytes(in);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Testes para o cache de converses ConversionCache
+ */
+@RunWith(JUnit4.class)
+public class ConversionCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final AtomicInteger encodes = new AtomicInteger();
+
+	private File source(String name, String content) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes());
+		return file;
+	}
+
+	/**
+	 * "Converso" que grava 100 bytes e conta as execues.
+	 */
+	private ConversionCache.Encoder encoder() {
+		return target -> {
+			encodes.incrementAndGet();
+			Files.write(target.toPath(), new byte[100]);
+		};
+	}
+
+	@Test
+	public void testSameContentIsConvertedOnce() throws Exception {
+		ConversionCache cache = new ConversionCache(folder.newFolder("cache"), 1000);
+		File first = cache.get(source("a.mp3", "audio"), ConversionSettings.flac(16000), encoder());
+		File second = cache.get(source("copy/b.wav", "audio"), ConversionSettings.flac(16000), encoder());
+		assertThat(second).isEqualTo(first);
+		assertThat(encodes.get()).isEqualTo(1);
+		assertThat(cache.getHits()).isEqualTo(1L);
+
+		cache.get(source("a.mp3", "audio"), ConversionSettings.flac(44100), encoder());
+		cache.get(source("other/a.mp3", "different audio"), ConversionSettings.flac(16000), encoder());
+		assertThat(encodes.get()).isEqualTo(3);
+		assertThat(cache.getMisses()).isEqualTo(3L);
+	}
+
+	@Test
+	public void testConcurrentRequestsShareOneEncode() throws Exception {
+		final ConversionCache cache = new ConversionCache(folder.newFolder("cache"), 1000);
+		final File source = source("a.mp3", "audio");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<File>> futures = new ArrayList<Future<File>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> cache.get(source, ConversionSettings.flac(16000), target -> {
+					encodes.incrementAndGet();
+					Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+					Files.write(target.toPath(), new byte[100]);
+				})));
+			}
+			for (Future<File> future : futures) {
+				assertThat(future.get(10, TimeUnit.SECONDS).length()).isEqualTo(100L);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(encodes.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		File directory = folder.newFolder("cache");
+		ConversionCache cache = new ConversionCache(directory, 250);
+		File a = cache.get(source("a.mp3", "a"), ConversionSettings.flac(16000), encoder());
+		Thread.sleep(20);
+		File b = cache.get(source("b.mp3", "b"), ConversionSettings.flac(16000), encoder());
+		Thread.sleep(20);
+		cache.get(source("a.mp3", "a"), ConversionSettings.flac(16000), encoder());
+		Thread.sleep(20);
+		File c = cache.get(source("c.mp3", "c"), ConversionSettings.flac(16000), encoder());
+		assertThat(a.isFile()).isTrue();
+		assertThat(b.exists()).isFalse();
+		assertThat(c.isFile()).isTrue();
+		assertThat(cache.getBytes()).isEqualTo(200L);
+
+		ConversionCache reopened = new ConversionCache(directory, 250);
+		assertThat(reopened.getBytes()).isEqualTo(200L);
+		reopened.get(source("c.mp3", "c"), ConversionSettings.flac(16000), encoder());
+		assertThat(encodes.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void testConversionServiceSkipsRepeatedWork() throws Exception {
+		ByteBuffer wav = ByteBuffer.allocate(44 + 32000).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes()).putInt(36 + 32000).put("WAVE".getBytes())
+			.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1).putInt(16000).putInt(32000)
+			.putShort((short) 2).putShort((short) 16)
+			.put("data".getBytes()).putInt(32000);
+		File input = folder.newFile("in.wav");
+		Files.write(input.toPath(), wav.array());
+		ConversionCache cache = new ConversionCache(folder.newFolder("cache"), 1 << 20);
+		try (ConversionService service = new ConversionService(1, 1, 1, TimeUnit.MINUTES)) {
+			service.setCache(cache);
+			for (int i = 0; i < 3; i++) {
+				File target = new File(folder.getRoot(), "out" + i + ".raw");
+				assertThat(service.submit(input.getPath(), target, ConversionSettings.linear16(8000)).get(1, TimeUnit.MINUTES).length())
+						.isEqualTo(16000L);
+				target.delete();
+			}
+		}
+		assertThat(cache.getMisses()).isEqualTo(1L);
+		assertThat(cache.getHits()).isEqualTo(2L);
+		assertThat(cache.getBytes()).isEqualTo(16000L);
+	}
+}
@@ -0,0 +1,108 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Testes para o servio de converso paralela ConversionService
+ */
+@RunWith(JUnit4.class)
+public class ConversionServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Cria um WAV 16 kHz mono de {@code seconds} segundos com um tom.
+	 */
+	private File wav(String name, int seconds) throws Exception {
+		int samples = 16000 * seconds;
+		ByteBuffer wav = ByteBuffer.allocate(44 + samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes()).putInt(36 + samples * 2).put("WAVE".getBytes())
+			.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1).putInt(16000).putInt(32000)
+			.putShort((short) 2).putShort((short) 16)
+			.put("data".getBytes()).putInt(samples * 2);
+		for (int i = 0; i < samples; i++) {
+			wav.putShort((short) (Math.sin(i * 0.1) * 5000));
+		}
+		File file = folder.newFile(name);
+		Files.write(file.toPath(), wav.array());
+		return file;
+	}
+
+	@Test
+	public void testConvertsInParallel() throws Exception {
+		try (ConversionService service = new ConversionService(2, 1, 1, TimeUnit.MINUTES)) {
+			List<CompletableFuture<File>> futures = new ArrayList<CompletableFuture<File>>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(service.submit(wav("a" + i + ".wav", 1).getPath(), ConversionSettings.flac(16000)));
+			}
+			for (CompletableFuture<File> future : futures) {
+				File converted = future.get(1, TimeUnit.MINUTES);
+				assertThat(converted.getName()).endsWith(".flac");
+				assertThat(converted.length()).isGreaterThan(0L);
+			}
+		}
+	}
+
+	@Test
+	public void testPcmWavIsResampledInJvm() throws Exception {
+		try (ConversionService service = new ConversionService(1, 1, 1, TimeUnit.MINUTES)) {
+			File converted = service.submit(wav("pcm.wav", 2).getPath(), ConversionSettings.linear16(8000)).get(1, TimeUnit.MINUTES);
+			assertThat(converted.getName()).endsWith(".raw");
+			assertThat(converted.length()).isEqualTo(2L * 8000 * 2);
+		}
+	}
+
+	@Test
+	public void testMissingInputIsTyped() throws Exception {
+		try (ConversionService service = new ConversionService(1, 1, 1, TimeUnit.MINUTES)) {
+			service.submit(new File(folder.getRoot(), "missing.mp3").getPath(), ConversionSettings.flac(16000)).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(((ConversionException) e.getCause()).getReason()).isEqualTo(ConversionException.Reason.INPUT_NOT_FOUND);
+		}
+	}
+
+	@Test
+	public void testTimeoutKillsEncoder() throws Exception {
+		File source = wav("long.wav", 60);
+		try (ConversionService service = new ConversionService(1, 1, 1, TimeUnit.MILLISECONDS)) {
+			service.submit(source.getPath(), ConversionSettings.flac(16000)).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(((ConversionException) e.getCause()).getReason()).isEqualTo(ConversionException.Reason.TIMEOUT);
+		}
+	}
+
+	@Test
+	public void testTargetNeverOverwritesSource() throws Exception {
+		File source = wav("same.flac", 1);
+		long length = source.length();
+		assertThat(ConversionService.defaultTarget(source, ConversionSettings.flac(16000))).isNotEqualTo(source.getAbsoluteFile());
+		assertThat(ConversionService.defaultTarget(new File(folder.getRoot(), "a.mp3"), ConversionSettings.flac(16000)))
+			.isNotEqualTo(ConversionService.defaultTarget(new File(folder.getRoot(), "a.wav"), ConversionSettings.flac(16000)));
+		try (ConversionService service = new ConversionService(1, 1, 1, TimeUnit.MINUTES)) {
+			service.submit(source.getPath(), new File(folder.getRoot(), "./same.flac"), ConversionSettings.flac(16000));
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertThat(source.length()).isEqualTo(length);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Testes para a converso de PCM na prpria JVM da classe PcmResampler
+ */
+@RunWith(JUnit4.class)
+public class PcmResamplerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Gera um seno de {@code frequency} Hz, 16 bits, repetido em todos os canais.
+	 */
+	private static byte[] sine(int rate, int channels, double frequency, int millis) {
+		int frames = rate * millis / 1000;
+		ByteBuffer pcm = ByteBuffer.allocate(frames * channels * 2).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < frames; i++) {
+			short value = (short) (Math.sin(2 * Math.PI * frequency * i / rate) * 10000);
+			for (int c = 0; c < channels; c++) {
+				pcm.putShort(value);
+			}
+		}
+		return pcm.array();
+	}
+
+	private static short[] convert(byte[] pcm, PcmFormat format, int rate) throws Exception {
+		byte[] out;
+		try (InputStream in = new PcmResampler(new ByteArrayInputStream(pcm), format, rate)) {
+			out = ByteStreams.toByteArray(in);
+		}
+		short[] samples = new short[out.length / 2];
+		ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+		return samples;
+	}
+
+	/**
+	 * Valor eficaz das amostras, ignorando as bordas onde o filtro ainda no est cheio.
+	 */
+	private static double rms(short[] samples) {
+		double sum = 0;
+		int from = samples.length / 10;
+		int to = samples.length - from;
+		for (int i = from; i < to; i++) {
+			sum += (double) samples[i] * samples[i];
+		}
+		return Math.sqrt(sum / (to - from));
+	}
+
+	@Test
+	public void testSameRateIsIdentity() throws Exception {
+		byte[] pcm = sine(16000, 1, 440, 500);
+		short[] out = convert(pcm, PcmFormat.linear16(16000, 1), 16000);
+		short[] expected = new short[pcm.length / 2];
+		ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(expected);
+		assertThat(out).isEqualTo(expected);
+	}
+
+	@Test
+	public void testStereoIsAveraged() throws Exception {
+		ByteBuffer pcm = ByteBuffer.allocate(4 * 100).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < 100; i++) {
+			pcm.putShort((short) 1000).putShort((short) 3000);
+		}
+		short[] out = convert(pcm.array(), PcmFormat.linear16(8000, 2), 8000);
+		assertThat(out.length).isEqualTo(100);
+		assertThat(out[50]).isEqualTo((short) 2000);
+	}
+
+	@Test
+	public void testDownsamplingKeepsSpeechBand() throws Exception {
+		short[] out = convert(sine(48000, 2, 440, 1000), PcmFormat.linear16(48000, 2), 16000);
+		assertThat(out.length).isEqualTo(16000);
+		assertThat(rms(out)).isWithin(10000 / Math.sqrt(2) * 0.05).of(10000 / Math.sqrt(2));
+	}
+
+	@Test
+	public void testDownsamplingRemovesAliases() throws Exception {
+		short[] out = convert(sine(44100, 1, 12000, 1000), PcmFormat.linear16(44100, 1), 16000);
+		assertThat(out.length).isEqualTo(16000);
+		assertThat(rms(out)).isLessThan(10000 / Math.sqrt(2) * 0.05);
+	}
+
+	@Test
+	public void testUpsampling() throws Exception {
+		short[] out = convert(sine(8000, 1, 440, 1000), PcmFormat.linear16(8000, 1), 16000);
+		assertThat(out.length).isEqualTo(16000);
+		assertThat(rms(out)).isWithin(10000 / Math.sqrt(2) * 0.05).of(10000 / Math.sqrt(2));
+	}
+
+	@Test
+	public void testReadsWavHeader() throws Exception {
+		byte[] pcm = new byte[300];
+		ByteBuffer wav = ByteBuffer.allocate(44 + 12 + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes()).putInt(wav.capacity() - 8).put("WAVE".getBytes())
+			.put("LIST".getBytes()).putInt(4).put("INFO".getBytes())
+			.put("fmt ".getBytes()).putInt(16).putShort((short) 3).putShort((short) 1).putInt(22050).putInt(22050 * 4)
+			.putShort((short) 4).putShort((short) 32)
+			.put("data".getBytes()).putInt(pcm.length).put(pcm);
+		File file = folder.newFile("float.wav");
+		Files.write(file.toPath(), wav.array());
+		PcmFormat format = PcmFormat.readWav(file.getPath());
+		assertThat(format.getSampleRateHertz()).isEqualTo(22050);
+		assertThat(format.isFloating()).isTrue();
+		assertThat(format.getDataOffset()).isEqualTo(56L);
+		assertThat(format.getDataLength()).isEqualTo(300L);
+		assertThat(PcmFormat.readWav(folder.newFile("empty.raw").getPath())).isNull();
+	}
+}
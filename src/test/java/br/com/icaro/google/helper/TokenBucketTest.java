@@ -0,0 +1,36 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Testes para o limitador de taxa TokenBucket
+ */
+@RunWith(JUnit4.class)
+public class TokenBucketTest {
+
+	@Test
+	public void testBurstIsLimitedToCapacity() {
+		TokenBucket bucket = new TokenBucket(1, 1, TimeUnit.HOURS, 3);
+		assertThat(bucket.tryAcquire()).isTrue();
+		assertThat(bucket.tryAcquire()).isTrue();
+		assertThat(bucket.tryAcquire()).isTrue();
+		assertThat(bucket.tryAcquire()).isFalse();
+	}
+
+	@Test
+	public void testAcquireWaitsForRefill() throws Exception {
+		TokenBucket bucket = new TokenBucket(20, 1, TimeUnit.SECONDS, 1);
+		bucket.acquire();
+		long start = System.nanoTime();
+		bucket.acquire();
+		bucket.acquire();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertThat(elapsedMillis).isAtLeast(80L);
+	}
+}
@@ -2,7 +2,12 @@
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -12,6 +17,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.junit.runners.MethodSorters;
 
+import com.google.protobuf.ByteString;
+
 import br.com.icaro.google.helper.Utils;
 
 /**
@@ -44,4 +51,21 @@ public class UtilsTest {
 	}
 	
 
+	@Test
+	public void test2GetBytesByteArray() throws Exception {
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		assertTrue(Arrays.equals(data, Utils.getBytes(new ByteArrayInputStream(data))));
+		assertTrue(Arrays.equals(data, Utils.getBytes(new BufferedInputStream(new ByteArrayInputStream(data)))));
+	}
+
+	@Test
+	public void test3ReadAudio() throws Exception {
+		String fileName = getClass().getClassLoader().getResource("audio.raw").getPath();
+		ByteString audio = Utils.readAudio(fileName);
+		assertTrue(Arrays.equals(Files.readAllBytes(Paths.get(fileName)), audio.toByteArray()));
+	}
+
 }
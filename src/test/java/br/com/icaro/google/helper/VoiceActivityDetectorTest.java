@@ -0,0 +1,123 @@
+package br.com.icaro.google.helper;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Duration;
+
+import br.com.icaro.google.speechtotext.Recognizer;
+
+/**
+ * Testes para a deteco de fala da classe VoiceActivityDetector
+ */
+@RunWith(JUnit4.class)
+public class VoiceActivityDetectorTest {
+
+	private static final int RATE = 16000;
+
+	/**
+	 * Gera udio com tom nos intervalos informados (pares incio/fim em ms) e silncio no resto.
+	 */
+	private static byte[] tone(int millis, int... toneRanges) {
+		int samples = RATE * millis / 1000;
+		byte[] pcm = new byte[samples * 2];
+		for (int i = 0; i < samples; i++) {
+			int ms = i * 1000 / RATE;
+			boolean on = false;
+			for (int r = 0; r < toneRanges.length; r += 2) {
+				on |= ms >= toneRanges[r] && ms < toneRanges[r + 1];
+			}
+			short value = on ? (short) (Math.sin(i * 0.3) * 8000) : (short) (i % 7 - 3);
+			pcm[2 * i] = (byte) value;
+			pcm[2 * i + 1] = (byte) (value >> 8);
+		}
+		return pcm;
+	}
+
+	@Test
+	public void testFindsSpeechBetweenSilences() {
+		ByteString pcm = ByteString.copyFrom(tone(6000, 1000, 2000, 4000, 5000));
+		SpeechMap map = new VoiceActivityDetector().detect(pcm, RATE);
+		assertThat(map.size()).isEqualTo(2);
+		int padding = 2 * RATE * VoiceActivityDetector.DEFAULT_PADDING_MILLIS / 1000;
+		assertThat(map.getStart(0)).isEqualTo(2 * RATE - padding);
+		assertThat(map.getEnd(1)).isEqualTo(2 * RATE * 5 + padding);
+		assertThat(map.getSpeechRatio()).isLessThan(0.5);
+		assertThat(map.trim(pcm).size()).isEqualTo(map.getSpeechBytes());
+	}
+
+	@Test
+	public void testShortPausesAreKept() {
+		SpeechMap map = new VoiceActivityDetector().detect(ByteString.copyFrom(tone(4000, 1000, 2000, 2200, 3000)), RATE);
+		assertThat(map.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void testHissIsNotSpeech() {
+		byte[] pcm = new byte[RATE * 2 * 2];
+		for (int i = 0; i < pcm.length / 2; i++) {
+			short value = (short) (i % 2 == 0 ? 6000 : -6000);
+			pcm[2 * i] = (byte) value;
+			pcm[2 * i + 1] = (byte) (value >> 8);
+		}
+		assertThat(new VoiceActivityDetector().detect(ByteString.copyFrom(pcm), RATE).size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testWordTimesMapBackToOriginal() {
+		SpeechMap map = new VoiceActivityDetector().setDurations(500, 100, 0)
+				.detect(ByteString.copyFrom(tone(6000, 1000, 2000, 4000, 5000)), RATE);
+		assertThat(map.toOriginalMillis(500)).isEqualTo(1500);
+		assertThat(map.toOriginalMillis(1500)).isEqualTo(4500);
+
+		SpeechRecognitionResult result = SpeechRecognitionResult.newBuilder()
+				.addAlternatives(SpeechRecognitionAlternative.newBuilder()
+						.setTranscript("hello")
+						.addWords(WordInfo.newBuilder()
+								.setWord("hello")
+								.setStartTime(Duration.newBuilder().setNanos(200000000))
+								.setEndTime(Duration.newBuilder().setNanos(600000000))))
+				.build();
+		List<SpeechRecognitionResult> remapped = Recognizer.toOriginalTimes(Arrays.asList(result), 1000000000L, map);
+		WordInfo word = remapped.get(0).getAlternatives(0).getWords(0);
+		assertThat(word.getStartTime().getSeconds()).isEqualTo(4);
+		assertThat(word.getStartTime().getNanos()).isEqualTo(200000000);
+		assertThat(word.getEndTime().getNanos()).isEqualTo(600000000);
+	}
+
+	@Test
+	public void testTrimFileRewritesWavHeader() throws Exception {
+		byte[] pcm = tone(6000, 1000, 2000);
+		ByteBuffer wav = ByteBuffer.allocate(44 + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes()).putInt(36 + pcm.length).put("WAVEfmt ".getBytes()).putInt(16)
+				.putShort((short) 1).putShort((short) 1).putInt(RATE).putInt(2 * RATE).putShort((short) 2).putShort((short) 16)
+				.put("data".getBytes()).putInt(pcm.length).put(pcm);
+		File input = File.createTempFile("vad", ".wav");
+		File output = File.createTempFile("vad-trimmed", ".wav");
+		try {
+			Files.write(input.toPath(), wav.array());
+			SpeechMap map = new VoiceActivityDetector().trimFile(input.getPath(), output.getPath(), RATE);
+			ByteBuffer trimmed = ByteBuffer.wrap(Files.readAllBytes(output.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+			assertThat(trimmed.limit()).isEqualTo(44 + map.getSpeechBytes());
+			assertThat(trimmed.getInt(4)).isEqualTo(36 + map.getSpeechBytes());
+			assertThat(trimmed.getInt(40)).isEqualTo(map.getSpeechBytes());
+		} finally {
+			input.delete();
+			output.delete();
+		}
+	}
+}
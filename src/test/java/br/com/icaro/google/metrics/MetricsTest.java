@@ -0,0 +1,143 @@
+package br.com.icaro.google.metrics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+import br.com.icaro.google.helper.Utils;
+import br.com.icaro.google.speechtotext.Recognizer;
+import br.com.icaro.google.testing.FakeSpeechService;
+import br.com.icaro.google.testing.FaultProfile;
+
+/**
+ * Testes para as medies por etapa e por mtodo de Metrics
+ */
+@RunWith(JUnit4.class)
+public class MetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File audio;
+
+	@Before
+	public void setUp() throws Exception {
+		Metrics.reset();
+		audio = folder.newFile("audio.raw");
+		Files.write(audio.toPath(), new byte[2 * 32000]);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Metrics.setEnabled(false);
+		Metrics.reset();
+		Metrics.unregisterMBean();
+	}
+
+	@Test
+	public void testDisabledRecordsNothing() throws Exception {
+		Metrics.setEnabled(false);
+		assertThat(Metrics.start()).isEqualTo(0L);
+		Utils.readAudio(audio.getPath());
+		Metrics.call("recognize", Metrics.start(), 10, false);
+		assertThat(Metrics.getHistogram(Stage.AUDIO_READ).getCount()).isEqualTo(0L);
+		assertThat(Metrics.getMethods()).isEmpty();
+	}
+
+	@Test
+	public void testRecordsStagesAndCalls() throws Exception {
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		MetricsSink sink = new MetricsSink() {
+			@Override
+			public void stage(Stage stage, long nanos) {
+				events.add(stage.name());
+			}
+
+			@Override
+			public void call(String method, long nanos, long bytes, boolean failed) {
+				events.add(method + ":" + bytes + ":" + failed);
+			}
+		};
+		Metrics.setEnabled(true);
+		Metrics.addSink(sink);
+		FakeSpeechService speech = new FakeSpeechService(FaultProfile.none(), 0);
+		try (Recognizer recognizer = Recognizer.createForEndpoint(speech.start())) {
+			String text = recognizer.syncRecognizeFile(audio.getPath(), "pt-BR", AudioEncoding.LINEAR16, 16000, false);
+			assertThat(text).isEqualTo("palavra0 palavra1");
+		} finally {
+			Metrics.removeSink(sink);
+			speech.close();
+		}
+
+		assertThat(Metrics.getHistogram(Stage.CLIENT_CREATION).getCount()).isEqualTo(1L);
+		assertThat(Metrics.getHistogram(Stage.AUDIO_READ).getCount()).isEqualTo(1L);
+		assertThat(Metrics.getHistogram(Stage.RECOGNIZE_RPC).getCount()).isEqualTo(1L);
+		assertThat(Metrics.getHistogram(Stage.RESULT_MAPPING).getCount()).isEqualTo(1L);
+		MethodStats recognize = Metrics.getMethodStats("recognize");
+		assertThat(recognize.getCalls()).isEqualTo(1L);
+		assertThat(recognize.getErrors()).isEqualTo(0L);
+		assertThat(recognize.getBytes()).isEqualTo(2 * 32000L);
+		assertThat(events).containsAllOf("AUDIO_READ", "RECOGNIZE_RPC", "recognize:64000:false");
+	}
+
+	@Test
+	public void testExposedOverJmx() throws Exception {
+		Metrics.setEnabled(true);
+		Metrics.stage(Stage.UPLOAD, Metrics.start());
+		Metrics.call("uploadFile", Metrics.start(), 100, false);
+		Metrics.call("uploadFile", Metrics.start(), 50, true);
+
+		ObjectName name = Metrics.registerMBean();
+		MetricsMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), name, MetricsMXBean.class);
+		assertThat(bean.isEnabled()).isTrue();
+		assertThat(bean.getStageCounts()).containsEntry("UPLOAD", 1L);
+		assertThat(bean.getCalls()).containsEntry("uploadFile", 2L);
+		assertThat(bean.getErrors()).containsEntry("uploadFile", 1L);
+		assertThat(bean.getBytes()).containsEntry("uploadFile", 150L);
+
+		bean.setEnabled(false);
+		assertThat(Metrics.isEnabled()).isFalse();
+		bean.reset();
+		assertThat(Metrics.getMethods()).isEmpty();
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000000L);
+		}
+		assertThat(histogram.getCount()).isEqualTo(1000L);
+		assertThat(histogram.getMax()).isEqualTo(1000000000L);
+		assertThat((double) histogram.getPercentile(50)).isWithin(0.25 * 500e6).of(500e6);
+		assertThat((double) histogram.getPercentile(99)).isWithin(0.25 * 990e6).of(990e6);
+		assertThat(histogram.getPercentile(100)).isEqualTo(1000000000L);
+		assertThat(histogram.getMeanMillis()).isWithin(0.001).of(500.5);
+
+		for (long value = 0; value < 100000; value++) {
+			int index = Histogram.indexOf(value);
+			assertThat(Histogram.upperBound(index)).isAtLeast(value);
+			if (index > 0) {
+				assertThat(Histogram.upperBound(index - 1)).isLessThan(value);
+			}
+		}
+	}
+}
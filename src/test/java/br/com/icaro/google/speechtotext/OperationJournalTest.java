@@ -0,0 +1,149 @@
+package br.com.icaro.google.speechtotext;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+import br.com.icaro.google.testing.FakeSpeechService;
+import br.com.icaro.google.testing.FaultProfile;
+
+/**
+ * Testes para o dirio de operaes OperationJournal
+ */
+@RunWith(JUnit4.class)
+public class OperationJournalTest {
+
+	private static final String URI = "gs://bucket/audio.flac";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final RecognitionConfig config = Recognizer.buildConfig("pt-BR", AudioEncoding.FLAC, 16000, false, true);
+
+	@Test
+	public void testReplaysOnlyPendingOperations() throws Exception {
+		File file = new File(folder.getRoot(), "operations.journal");
+		try (OperationJournal journal = new OperationJournal(file)) {
+			journal.submitted("k1", "operations/1", URI, config);
+			journal.submitted("k2", "operations/2", URI, config);
+			journal.submitted("k3", "operations/3", "content", config);
+			journal.completed("operations/1");
+			journal.failed("operations/3");
+		}
+		try (OperationJournal journal = new OperationJournal(file)) {
+			assertThat(journal.getPending()).hasSize(1);
+			OperationJournal.Entry entry = journal.findPending("k2");
+			assertThat(entry.getOperationName()).isEqualTo("operations/2");
+			assertThat(entry.getSource()).isEqualTo(URI);
+			assertThat(entry.getConfig()).isEqualTo(config);
+			assertThat(journal.findPending("k1")).isNull();
+		}
+	}
+
+	@Test
+	public void testIgnoresTornLastLine() throws Exception {
+		File file = new File(folder.getRoot(), "operations.journal");
+		try (OperationJournal journal = new OperationJournal(file)) {
+			journal.submitted("k1", "operations/1", URI, config);
+		}
+		Files.write(file.toPath(), "S k2 operations/2 12".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		try (OperationJournal journal = new OperationJournal(file)) {
+			assertThat(journal.getPending()).hasSize(1);
+			journal.submitted("k3", "operations/3", URI, config);
+		}
+		try (OperationJournal journal = new OperationJournal(file)) {
+			assertThat(journal.findPending("k1")).isNotNull();
+			assertThat(journal.findPending("k2")).isNull();
+			assertThat(journal.findPending("k3")).isNotNull();
+		}
+	}
+
+	@Test
+	public void testCompactKeepsPendingOperations() throws Exception {
+		File file = new File(folder.getRoot(), "operations.journal");
+		try (OperationJournal journal = new OperationJournal(file, false)) {
+			for (int i = 0; i < 100; i++) {
+				journal.submitted("k" + i, "operations/" + i, URI, config);
+				if (i != 42) {
+					journal.completed("operations/" + i);
+				}
+			}
+			long before = file.length();
+			journal.compact();
+			assertThat(file.length()).isLessThan(before / 50);
+			journal.submitted("k100", "operations/100", URI, config);
+		}
+		try (OperationJournal journal = new OperationJournal(file)) {
+			assertThat(journal.getPending()).hasSize(2);
+			assertThat(journal.findPending("k42").getOperationName()).isEqualTo("operations/42");
+		}
+	}
+
+	@Test
+	public void testResumesAfterRestartWithoutResubmitting() throws Exception {
+		File file = new File(folder.getRoot(), "operations.journal");
+		FakeSpeechService speech = new FakeSpeechService(FaultProfile.none(), 800);
+		String endpoint = speech.start();
+		try {
+			OperationJournal journal = new OperationJournal(file);
+			Recognizer first = Recognizer.createForEndpoint(endpoint);
+			first.setJournal(journal);
+			CompletableFuture<String> lost = first.asyncRecognizeGcsFuture(URI, "pt-BR", AudioEncoding.FLAC, 16000, false);
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (journal.getPending().isEmpty() && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			// simula a queda: o acompanhamento local termina, a operao continua no servidor
+			first.close();
+			journal.close();
+			assertThat(lost.handle((text, t) -> t).get(5, TimeUnit.SECONDS)).isNotNull();
+
+			try (OperationJournal reopened = new OperationJournal(file);
+					Recognizer second = Recognizer.createForEndpoint(endpoint)) {
+				second.setJournal(reopened);
+				Map<String, CompletableFuture<LongRunningRecognizeResponse>> resumed = second.resumeJournal();
+				assertThat(resumed).hasSize(1);
+				String again = second.asyncRecognizeGcsFuture(URI, "pt-BR", AudioEncoding.FLAC, 16000, false).get(10, TimeUnit.SECONDS);
+				assertThat(again).isEqualTo("palavra0 palavra1 palavra2");
+				assertThat(resumed.values().iterator().next().get(10, TimeUnit.SECONDS).getResultsCount()).isEqualTo(1);
+				assertThat(reopened.getPending()).isEmpty();
+			}
+			assertThat(speech.getCalls()).isEqualTo(1);
+		} finally {
+			speech.close();
+		}
+	}
+
+	@Test
+	public void testResubmitsWhenOperationIsGone() throws Exception {
+		File file = new File(folder.getRoot(), "operations.journal");
+		FakeSpeechService speech = new FakeSpeechService(FaultProfile.none(), 100);
+		try (OperationJournal journal = new OperationJournal(file);
+				Recognizer recognizer = Recognizer.createForEndpoint(speech.start())) {
+			journal.submitted(TranscriptCache.key(config, URI, ""), "operations/expired", URI, config);
+			recognizer.setJournal(journal);
+			String text = recognizer.asyncRecognizeGcsFuture(URI, "pt-BR", AudioEncoding.FLAC, 16000, false).get(10, TimeUnit.SECONDS);
+			assertThat(text).isEqualTo("palavra0 palavra1 palavra2");
+			assertThat(speech.getCalls()).isEqualTo(1);
+			assertThat(journal.getPending()).isEmpty();
+		} finally {
+			speech.close();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package br.com.icaro.google.speechtotext;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.LongRunningRecognizeRequest;
+import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+import com.google.longrunning.Operation;
+
+import br.com.icaro.google.testing.FakeSpeechService;
+import br.com.icaro.google.testing.FaultProfile;
+
+/**
+ * Testes para o agendador de consultas de operaes PollScheduler
+ */
+@RunWith(JUnit4.class)
+public class PollSchedulerTest {
+
+	private FakeSpeechService speech;
+	private Recognizer recognizer;
+	private PollScheduler scheduler;
+
+	private void start(long operationMillis, long minDelayMillis, int maxPollsPerSecond) throws Exception {
+		speech = new FakeSpeechService(FaultProfile.none(), operationMillis);
+		recognizer = Recognizer.createForEndpoint(speech.start());
+		scheduler = new PollScheduler(recognizer.getClient().getOperationsClient().getOperationCallable(),
+				minDelayMillis, 1000, maxPollsPerSecond);
+	}
+
+	private Operation launch() throws Exception {
+		return recognizer.getClient().longRunningRecognizeCallable().futureCall(LongRunningRecognizeRequest.newBuilder()
+				.setConfig(Recognizer.buildConfig("pt-BR", AudioEncoding.FLAC, 16000, false, true))
+				.setAudio(Recognizer.uriAudio("gs://bucket/audio.flac"))
+				.build()).get();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (scheduler != null) {
+			scheduler.close();
+		}
+		if (recognizer != null) {
+			recognizer.close();
+		}
+		if (speech != null) {
+			speech.close();
+		}
+	}
+
+	@Test
+	public void testTracksManyOperations() throws Exception {
+		start(300, 20, 10000);
+		List<CompletableFuture<LongRunningRecognizeResponse>> futures = new ArrayList<CompletableFuture<LongRunningRecognizeResponse>>();
+		for (int i = 0; i < 300; i++) {
+			futures.add(scheduler.track(launch(), 0));
+		}
+		assertThat(scheduler.getInFlight()).isGreaterThan(0);
+		for (CompletableFuture<LongRunningRecognizeResponse> future : futures) {
+			assertThat(future.get(30, TimeUnit.SECONDS).getResultsCount()).isEqualTo(1);
+		}
+		assertThat(scheduler.getInFlight()).isEqualTo(0);
+		// com previso pelo progresso, cada operao  consultada poucas vezes em vez de a cada 20 ms
+		assertThat(scheduler.getPolls()).isLessThan(300L * 8);
+	}
+
+	@Test
+	public void testPredictsCompletionFromProgress() throws Exception {
+		start(3000, 50, 100);
+		Operation operation = launch();
+		CompletableFuture<LongRunningRecognizeResponse> future = scheduler.track(operation, 0);
+		// o progresso  inteiro, ento a previso s fica estvel depois de alguns por cento
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (scheduler.getProgress(operation.getName()) < 20 && System.nanoTime() < deadline) {
+			Thread.sleep(20);
+		}
+		int progress = scheduler.getProgress(operation.getName());
+		assertThat(progress).isAtLeast(20);
+		long eta = scheduler.getEtaMillis(operation.getName());
+		assertThat((double) eta).isWithin(1000).of(3000 * (100 - progress) / 100.0);
+		assertThat(scheduler.getEtas()).containsKey(operation.getName());
+		future.get(10, TimeUnit.SECONDS);
+		assertThat(scheduler.getEtaMillis(operation.getName())).isEqualTo(-1L);
+	}
+
+	@Test
+	public void testCoalescesDuplicateOperations() throws Exception {
+		start(200, 20, 100);
+		Operation operation = launch();
+		CompletableFuture<LongRunningRecognizeResponse> first = scheduler.track(operation, 0);
+		CompletableFuture<LongRunningRecognizeResponse> second = scheduler.track(operation.getName(), 0);
+		assertThat(second).isNotSameAs(first);
+		assertThat(scheduler.getInFlight()).isEqualTo(1);
+		assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo(first.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCancelOnlyReachesServerAfterLastSubscriber() throws Exception {
+		start(60000, 50, 100);
+		scheduler.close();
+		scheduler = new PollScheduler(recognizer.getClient().getOperationsClient().getOperationCallable(),
+				recognizer.getClient().getOperationsClient().cancelOperationCallable(), 50, 1000, 100);
+		Operation operation = launch();
+		CompletableFuture<LongRunningRecognizeResponse> first = scheduler.track(operation, 0);
+		CompletableFuture<LongRunningRecognizeResponse> second = scheduler.track(operation.getName(), 0);
+		assertThat(first.cancel(true)).isTrue();
+		assertThat(second.isDone()).isFalse();
+		assertThat(scheduler.getInFlight()).isEqualTo(1);
+		assertThat(speech.getCancelled()).isEqualTo(0);
+		assertThat(second.cancel(true)).isTrue();
+		assertThat(scheduler.getInFlight()).isEqualTo(0);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (speech.getCancelled() == 0 && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertThat(speech.getCancelled()).isEqualTo(1);
+	}
+
+	@Test
+	public void testRespectsPollRate() throws Exception {
+		start(1000, 20, 20);
+		long started = System.nanoTime();
+		List<CompletableFuture<LongRunningRecognizeResponse>> futures = new ArrayList<CompletableFuture<LongRunningRecognizeResponse>>();
+		for (int i = 0; i < 40; i++) {
+			futures.add(scheduler.track(launch(), 0));
+		}
+		for (CompletableFuture<LongRunningRecognizeResponse> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		double seconds = (System.nanoTime() - started) / 1e9;
+		// rajada inicial de at 20 consultas, depois no mximo 20 por segundo
+		assertThat((double) scheduler.getPolls()).isAtMost(20 + 20 * seconds + 1);
+	}
+
+	@Test
+	public void testCancellationReachesServer() throws Exception {
+		start(60000, 50, 100);
+		CompletableFuture<String> future = recognizer.asyncRecognizeGcsFuture("gs://bucket/audio.flac", "pt-BR", AudioEncoding.FLAC, 16000, false);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (recognizer.getPollScheduler().getInFlight() == 0 && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertThat(recognizer.getPollScheduler().getInFlight()).isEqualTo(1);
+		assertThat(future.cancel(true)).isTrue();
+		assertThat(recognizer.getPollScheduler().getInFlight()).isEqualTo(0);
+		while (speech.getCancelled() == 0 && System.nanoTime() < deadline) {
+			Thread.yield();
+		}
+		assertThat(speech.getCancelled()).isEqualTo(1);
+	}
+}
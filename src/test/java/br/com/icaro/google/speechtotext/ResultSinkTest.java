@@ -0,0 +1,88 @@
+package br.com.icaro.google.speechtotext;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.protobuf.Duration;
+
+/**
+ * Testes para os destinos de resultados (texto puro, legendas e JSON Lines)
+ */
+@RunWith(JUnit4.class)
+public class ResultSinkTest {
+
+	private static Duration millis(long value) {
+		return Duration.newBuilder().setSeconds(value / 1000).setNanos((int) (value % 1000) * 1000000).build();
+	}
+
+	/**
+	 * Resultado com uma palavra a cada 400ms a partir de startMillis.
+	 */
+	private static SpeechRecognitionResult result(long startMillis, String... words) {
+		SpeechRecognitionAlternative.Builder alternative = SpeechRecognitionAlternative.newBuilder()
+				.setTranscript(" " + String.join(" ", words) + " ")
+				.setConfidence(0.5f);
+		for (int i = 0; i < words.length; i++) {
+			alternative.addWords(WordInfo.newBuilder()
+					.setWord(words[i])
+					.setStartTime(millis(startMillis + i * 400))
+					.setEndTime(millis(startMillis + i * 400 + 300)));
+		}
+		return SpeechRecognitionResult.newBuilder().addAlternatives(alternative).build();
+	}
+
+	@Test
+	public void testTranscriptKeepsEveryResult() {
+		assertThat(Recognizer.toTranscript(Arrays.asList(result(0, "how", "old"), result(2000, "is", "Brooklyn"))))
+				.isEqualTo("how old is Brooklyn");
+	}
+
+	@Test
+	public void testTextSink() throws Exception {
+		StringWriter out = new StringWriter();
+		ResultSink sink = new TextSink(out, "\n");
+		Recognizer.writeResults(Arrays.asList(result(0, "how", "old"), result(2000, "is", "Brooklyn")), 0, sink);
+		sink.finish();
+		assertThat(out.toString()).isEqualTo("how old\nis Brooklyn");
+	}
+
+	@Test
+	public void testSrtSplitsCuesAndAppliesOffset() throws Exception {
+		StringWriter out = new StringWriter();
+		ResultSink sink = SubtitleSink.srt(out).setLimits(1000, 84, 1000);
+		sink.write(result(0, "how", "old", "is"), 0);
+		sink.write(result(0, "Brooklyn"), 61500000000L);
+		sink.finish();
+		assertThat(out.toString()).isEqualTo(
+				"1\n00:00:00,000 --> 00:00:00,700\nhow old\n\n"
+				+ "2\n00:00:00,800 --> 00:00:01,100\nis\n\n"
+				+ "3\n00:01:01,500 --> 00:01:01,800\nBrooklyn\n\n");
+	}
+
+	@Test
+	public void testWebVtt() throws Exception {
+		StringWriter out = new StringWriter();
+		ResultSink sink = SubtitleSink.webVtt(out);
+		sink.write(result(1000, "how", "old"), 0);
+		sink.finish();
+		assertThat(out.toString()).isEqualTo("WEBVTT\n\n00:00:01.000 --> 00:00:01.700\nhow old\n\n");
+	}
+
+	@Test
+	public void testJsonLines() throws Exception {
+		StringWriter out = new StringWriter();
+		ResultSink sink = new JsonLinesSink(out);
+		sink.write(result(0, "say \"hi\""), 2000000000L);
+		sink.finish();
+		assertThat(out.toString()).isEqualTo("{\"word\":\"say \\\"hi\\\"\",\"start\":2,\"end\":2.3,\"confidence\":0.5}\n");
+	}
+}
@@ -0,0 +1,139 @@
+package br.com.icaro.google.speechtotext;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.RecognitionAudio;
+import com.google.cloud.speech.v1.RecognitionConfig;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+import com.google.cloud.speech.v1.RecognizeResponse;
+import com.google.cloud.speech.v1.SpeechContext;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.protobuf.ByteString;
+
+/**
+ * Testes para o cache de transcries TranscriptCache
+ */
+@RunWith(JUnit4.class)
+public class TranscriptCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final RecognitionConfig CONFIG = Recognizer.buildConfig("pt-BR", AudioEncoding.LINEAR16, 16000, true, true);
+
+	private static RecognitionAudio audio(String content) {
+		return RecognitionAudio.newBuilder().setContent(ByteString.copyFromUtf8(content)).build();
+	}
+
+	private static RecognizeResponse response(String transcript) {
+		return RecognizeResponse.newBuilder()
+				.addResults(SpeechRecognitionResult.newBuilder()
+						.addAlternatives(SpeechRecognitionAlternative.newBuilder().setTranscript(transcript)))
+				.build();
+	}
+
+	@Test
+	public void testKeyDependsOnAudioAndConfig() {
+		String key = TranscriptCache.key(CONFIG, audio("a"));
+		assertThat(TranscriptCache.key(CONFIG, audio("a"))).isEqualTo(key);
+		assertThat(TranscriptCache.key(CONFIG, audio("b"))).isNotEqualTo(key);
+		assertThat(TranscriptCache.key(CONFIG.toBuilder().setLanguageCode("en-US").build(), audio("a"))).isNotEqualTo(key);
+		assertThat(TranscriptCache.key(CONFIG, RecognitionAudio.newBuilder().setUri("gs://b/o").build())).isNull();
+		RecognitionConfig withPhrases = CONFIG.toBuilder()
+				.addSpeechContexts(SpeechContext.newBuilder().addPhrases("icaro")).build();
+		assertThat(TranscriptCache.key(withPhrases, audio("a"))).isNotEqualTo(key);
+		assertThat(TranscriptCache.key(withPhrases, "gs://b/o", "1"))
+				.isNotEqualTo(TranscriptCache.key(CONFIG, "gs://b/o", "1"));
+	}
+
+	@Test
+	public void testFailingAsyncLoaderIsReleased() throws Exception {
+		TranscriptCache cache = new TranscriptCache(10);
+		CompletableFuture<RecognizeResponse> failed = cache.getAsync("k", () -> {
+			throw new IllegalStateException("falhou");
+		});
+		assertThat(failed.isCompletedExceptionally()).isTrue();
+		RecognizeResponse response = cache.getAsync("k", () -> CompletableFuture.completedFuture(response("depois")))
+				.get(5, TimeUnit.SECONDS);
+		assertThat(response.getResults(0).getAlternatives(0).getTranscript()).isEqualTo("depois");
+	}
+
+	@Test
+	public void testDiskTierSurvivesNewInstance() throws Exception {
+		File dir = folder.newFolder();
+		new TranscriptCache(10, dir, 1 << 20).put("k", response("ola mundo"));
+		File leftover = File.createTempFile("entry-", ".tmp", dir);
+		TranscriptCache reopened = new TranscriptCache(10, dir, 1 << 20);
+		assertThat(reopened.get("k").getResults(0).getAlternatives(0).getTranscript()).isEqualTo("ola mundo");
+		assertThat(leftover.exists()).isFalse();
+	}
+
+	@Test
+	public void testLoaderErrorIsReleased() throws Exception {
+		TranscriptCache cache = new TranscriptCache(10);
+		try {
+			cache.get("k", () -> {
+				throw new AssertionError("falhou");
+			});
+			fail();
+		} catch (AssertionError e) {
+			assertThat(e).hasMessageThat().isEqualTo("falhou");
+		}
+		assertThat(cache.get("k", () -> response("depois")).getResultsCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testDiskTierEvictsBeyondLimit() throws Exception {
+		File dir = folder.newFolder();
+		long limit = response("x").getSerializedSize() * 3L;
+		TranscriptCache cache = new TranscriptCache(1, dir, limit);
+		for (int i = 0; i < 10; i++) {
+			cache.put("k" + i, response("x"));
+		}
+		assertThat(cache.getDiskBytes()).isAtMost(limit);
+		assertThat(cache.get("k9")).isNotNull();
+	}
+
+	@Test
+	public void testConcurrentRequestsAreCoalesced() throws Exception {
+		final TranscriptCache cache = new TranscriptCache(10);
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for (int i = 0; i < futures.length; i++) {
+				futures[i] = pool.submit(() -> cache.get("k", () -> {
+					calls.incrementAndGet();
+					release.await();
+					return response("uma vez");
+				}));
+			}
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<?> future : futures) {
+				assertThat(((RecognizeResponse) future.get(5, TimeUnit.SECONDS)).getResultsCount()).isEqualTo(1);
+			}
+			assertThat(calls.get()).isEqualTo(1);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package br.com.icaro.google.speechtotext;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.protobuf.Duration;
+
+/**
+ * Testes para a linha do tempo colunar WordTimeline
+ */
+@RunWith(JUnit4.class)
+public class WordTimelineTest {
+
+	private static WordTimeline sample() {
+		return new WordTimeline.Builder(1)
+				.add("how", 0, 300, 0.9f)
+				.add("old", 300, 600, 0.9f)
+				.add("is", 800, 1050, 0.9f)
+				.add("the", 1050, 1200, 0.9f)
+				.add("old", 1200, 1500, 0.9f)
+				.build();
+	}
+
+	@Test
+	public void testDictionaryEncoding() {
+		WordTimeline timeline = sample();
+		assertThat(timeline.size()).isEqualTo(5);
+		assertThat(timeline.dictionarySize()).isEqualTo(4);
+		assertThat(timeline.word(4)).isSameAs(timeline.word(1));
+		assertThat(timeline.text()).isEqualTo("how old is the old");
+	}
+
+	@Test
+	public void testIndexAt() {
+		WordTimeline timeline = sample();
+		assertThat(timeline.indexAt(0)).isEqualTo(0);
+		assertThat(timeline.indexAt(299)).isEqualTo(0);
+		assertThat(timeline.indexAt(300)).isEqualTo(1);
+		assertThat(timeline.indexAt(700)).isEqualTo(-1);
+		assertThat(timeline.indexAt(1499)).isEqualTo(4);
+		assertThat(timeline.indexAt(5000)).isEqualTo(-1);
+	}
+
+	@Test
+	public void testBetween() {
+		WordTimeline range = sample().between(500, 1100);
+		assertThat(range.size()).isEqualTo(3);
+		assertThat(range.word(0)).isEqualTo("old");
+		assertThat(range.startMillis(2)).isEqualTo(1050);
+		assertThat(range.indexAt(900)).isEqualTo(1);
+		assertThat(sample().between(650, 750).size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testMillisecondPrecisionFromResults() {
+		WordInfo word = WordInfo.newBuilder()
+				.setWord("bridge")
+				.setStartTime(Duration.newBuilder().setSeconds(1).setNanos(50000000))
+				.setEndTime(Duration.newBuilder().setSeconds(1).setNanos(420000000))
+				.build();
+		SpeechRecognitionResult result = SpeechRecognitionResult.newBuilder()
+				.addAlternatives(SpeechRecognitionAlternative.newBuilder().setConfidence(0.8f).addWords(word))
+				.build();
+		WordTimeline timeline = Recognizer.toTimeline(Arrays.asList(result));
+		assertThat(timeline.startMillis(0)).isEqualTo(1050);
+		assertThat(timeline.endMillis(0)).isEqualTo(1420);
+		assertThat(timeline.confidence(0)).isWithin(0.001f).of(0.8f);
+		assertThat(timeline.toItems().get(0).getInicio()).isEqualTo("1.0");
+	}
+}
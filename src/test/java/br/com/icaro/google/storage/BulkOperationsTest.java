@@ -0,0 +1,116 @@
+package br.com.icaro.google.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * Testes para as operaes em lote da Classe BulkOperations
+ */
+@RunWith(JUnit4.class)
+public class BulkOperationsTest {
+
+	private static final Pattern CALL = Pattern.compile("^(GET|DELETE|PATCH) \\S*/o/([^?\\s]+)", Pattern.MULTILINE);
+
+	/** Responde a cada lote; objetos com nome terminado em "x" no existem. */
+	private static class BatchTransport extends MockHttpTransport {
+		final AtomicInteger batches = new AtomicInteger();
+		final List<String> urls = new ArrayList<String>();
+
+		@Override
+		public LowLevelHttpRequest buildRequest(String method, final String url) {
+			synchronized (urls) {
+				urls.add(url);
+			}
+			return new MockLowLevelHttpRequest(url) {
+				@Override
+				public LowLevelHttpResponse execute() throws java.io.IOException {
+					batches.incrementAndGet();
+					String body = getContentAsString();
+					StringBuilder response = new StringBuilder();
+					Matcher matcher = CALL.matcher(body);
+					while (matcher.find()) {
+						String name = matcher.group(2);
+						response.append("--batch_b\r\nContent-Type: application/http\r\n\r\n");
+						if (name.endsWith("x")) {
+							String error = "{\"error\":{\"code\":404,\"message\":\"Not Found\"}}";
+							response.append("HTTP/1.1 404 Not Found\r\nContent-Type: application/json\r\nContent-Length: ")
+									.append(error.length()).append("\r\n\r\n").append(error).append("\r\n");
+						} else if (matcher.group(1).equals("DELETE")) {
+							response.append("HTTP/1.1 204 No Content\r\nContent-Length: 0\r\n\r\n");
+						} else {
+							String json = "{\"name\":\"" + name + "\",\"size\":\"10\"}";
+							response.append("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: ")
+									.append(json.length()).append("\r\n\r\n").append(json).append("\r\n");
+						}
+					}
+					response.append("--batch_b--\r\n");
+					return new MockLowLevelHttpResponse().setContentType("multipart/mixed; boundary=batch_b").setContent(response.toString());
+				}
+			};
+		}
+	}
+
+	private static Storage client(BatchTransport transport) {
+		return new Storage.Builder(transport, new JacksonFactory(), null).setApplicationName("test").build();
+	}
+
+	private static List<String> names(int count) {
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			names.add("obj" + i + (i % 50 == 7 ? "x" : ""));
+		}
+		return names;
+	}
+
+	@Test
+	public void testDeleteGroupsIntoBatches() throws Exception {
+		BatchTransport transport = new BatchTransport();
+		List<String> names = names(250);
+		List<BulkResult<Void>> results = new BulkOperations(client(transport), 3).delete("bucket", names);
+		assertThat(transport.batches.get()).isEqualTo(3);
+		assertThat(transport.urls.get(0)).endsWith("/batch/storage/v1");
+		assertThat(results).hasSize(250);
+		int failures = 0;
+		for (int i = 0; i < results.size(); i++) {
+			BulkResult<Void> result = results.get(i);
+			assertThat(result.getName()).isEqualTo(names.get(i));
+			if (!result.isSuccess()) {
+				failures++;
+				assertThat(result.getName()).endsWith("x");
+			}
+		}
+		assertThat(failures).isEqualTo(5);
+	}
+
+	@Test
+	public void testGetReturnsMetadata() throws Exception {
+		List<BulkResult<StorageObject>> results = new BulkOperations(client(new BatchTransport()), 2).get("bucket", names(10), "name,size");
+		assertThat(results.get(0).getValue().getName()).isEqualTo("obj0");
+		assertThat(results.get(0).getValue().getSize().longValue()).isEqualTo(10L);
+		assertThat(results.get(7).isSuccess()).isFalse();
+		assertThat(results.get(7).getValue()).isNull();
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertThat(new BulkOperations(client(new BatchTransport()), 2).delete("bucket", new ArrayList<String>())).isEmpty();
+	}
+}
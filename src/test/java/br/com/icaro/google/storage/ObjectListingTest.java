@@ -0,0 +1,103 @@
+package br.com.icaro.google.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+
+/**
+ * Testes para a listagem paginada da Classe ObjectListing
+ */
+@RunWith(JUnit4.class)
+public class ObjectListingTest {
+
+	/** Responde com trs pginas de dois objetos, usando o nmero da pgina como token. */
+	private static class PagedTransport extends MockHttpTransport {
+		final List<GenericUrl> requests = new CopyOnWriteArrayList<GenericUrl>();
+		/** Liberado quando a segunda pgina  pedida. */
+		final CountDownLatch secondPage = new CountDownLatch(1);
+
+		@Override
+		public LowLevelHttpRequest buildRequest(String method, final String url) {
+			return new MockLowLevelHttpRequest(url) {
+				@Override
+				public LowLevelHttpResponse execute() {
+					GenericUrl parsed = new GenericUrl(url);
+					requests.add(parsed);
+					Object token = parsed.getFirst("pageToken");
+					int pageNumber = token == null ? 0 : Integer.parseInt(token.toString());
+					if (pageNumber == 1) {
+						secondPage.countDown();
+					}
+					StringBuilder json = new StringBuilder("{");
+					if (pageNumber < 2) {
+						json.append("\"nextPageToken\":\"").append(pageNumber + 1).append("\",");
+					}
+					json.append("\"prefixes\":[\"dir").append(pageNumber).append("/\"],\"items\":[");
+					json.append("{\"name\":\"obj").append(pageNumber * 2).append("\"},");
+					json.append("{\"name\":\"obj").append(pageNumber * 2 + 1).append("\"}]}");
+					return new MockLowLevelHttpResponse().setContentType("application/json").setContent(json.toString());
+				}
+			};
+		}
+	}
+
+	private static Storage client(PagedTransport transport) {
+		return new Storage.Builder(transport, new JacksonFactory(), null).setApplicationName("test").build();
+	}
+
+	@Test
+	public void testIteratesAllPages() throws Exception {
+		PagedTransport transport = new PagedTransport();
+		ObjectListing listing = new ObjectListing(client(transport), "bucket", "rec/", "/", ObjectListing.DEFAULT_FIELDS, 2);
+		List<String> names = new ArrayList<String>();
+		while (listing.hasNext()) {
+			names.add(listing.next().getName());
+		}
+		assertThat(names).containsExactly("obj0", "obj1", "obj2", "obj3", "obj4", "obj5").inOrder();
+		assertThat(listing.getPrefixes()).containsExactly("dir0/", "dir1/", "dir2/").inOrder();
+		assertThat(transport.requests).hasSize(3);
+		GenericUrl first = transport.requests.get(0);
+		assertThat(first.getFirst("prefix")).isEqualTo("rec/");
+		assertThat(first.getFirst("delimiter")).isEqualTo("/");
+		assertThat(first.getFirst("fields")).isEqualTo(ObjectListing.DEFAULT_FIELDS);
+		assertThat(first.getFirst("maxResults")).isEqualTo("2");
+	}
+
+	@Test
+	public void testPrefetchesOnlyNextPage() throws Exception {
+		PagedTransport transport = new PagedTransport();
+		ObjectListing listing = new ObjectListing(client(transport), "bucket", null, null, null, 2);
+		assertThat(listing.next().getName()).isEqualTo("obj0");
+		assertThat(transport.secondPage.await(5, TimeUnit.SECONDS)).isTrue();
+		// pgina atual mais a seguinte, nunca a terceira
+		assertThat(transport.requests).hasSize(2);
+		listing.close();
+		assertThat(listing.hasNext()).isFalse();
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		ObjectListing listing = new ObjectListing(client(new PagedTransport()), "bucket", null, null, null, 2);
+		List<String> names = listing.stream().map(StorageObject::getName).limit(3).collect(Collectors.toList());
+		assertThat(names).containsExactly("obj0", "obj1", "obj2").inOrder();
+	}
+}
@@ -0,0 +1,281 @@
+package br.com.icaro.google.testing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+import br.com.icaro.google.speechtotext.BatchResult;
+import br.com.icaro.google.speechtotext.ItemAudio;
+import br.com.icaro.google.speechtotext.Recognize;
+import br.com.icaro.google.speechtotext.SpeechFactory;
+import br.com.icaro.google.speechtotext.StreamingListener;
+import br.com.icaro.google.speechtotext.TranscriptionPipeline;
+import br.com.icaro.google.storage.BulkResult;
+import br.com.icaro.google.storage.ObjectListing;
+import br.com.icaro.google.storage.StorageActions;
+import br.com.icaro.google.storage.StorageFactory;
+
+/**
+ * Testes da fachada pblica contra os servios falsos de Speech e Storage
+ */
+@RunWith(JUnit4.class)
+public class FakeBackendsTest {
+
+	private static final String KEYS = "keys.json";
+	private static final String APP_NAME = "fake-test";
+
+	private FakeSpeechService speech;
+	private FakeStorageServer storage;
+	private File audio;
+
+	@Before
+	public void setUp() throws Exception {
+		audio = File.createTempFile("fake-", ".raw");
+		Files.write(audio.toPath(), new byte[3 * 32000]);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		SpeechFactory.shutdown();
+		SpeechFactory.setEndpoint(null);
+		StorageFactory.shutdown();
+		StorageFactory.setRootUrl(null);
+		if (speech != null) {
+			speech.close();
+		}
+		if (storage != null) {
+			storage.close();
+		}
+		audio.delete();
+	}
+
+	private void startSpeech(FaultProfile faults) throws Exception {
+		speech = new FakeSpeechService(faults, 200);
+		SpeechFactory.setEndpoint(speech.start());
+	}
+
+	private void startStorage(FaultProfile faults) throws Exception {
+		storage = new FakeStorageServer(faults);
+		StorageFactory.setRootUrl(storage.start());
+	}
+
+	@Test
+	public void testSyncRecognize() throws Exception {
+		startSpeech(FaultProfile.none());
+		String text = Recognize.syncRecognizeFile(audio.getPath(), "pt-BR", AudioEncoding.LINEAR16, 16000, false, KEYS);
+		assertThat(text).isEqualTo("palavra0 palavra1 palavra2");
+		List<ItemAudio> words = Recognize.syncRecognizeFileWords(audio.getPath(), "pt-BR", AudioEncoding.LINEAR16, 16000, false, KEYS);
+		assertThat(words).hasSize(3);
+	}
+
+	@Test
+	public void testLongRunningRecognize() throws Exception {
+		startSpeech(FaultProfile.none());
+		String text = Recognize.asyncRecognizeGcsFuture("gs://bucket/audio.flac", "pt-BR", AudioEncoding.FLAC, 16000, false, KEYS)
+				.get(10, TimeUnit.SECONDS);
+		assertThat(text).isEqualTo("palavra0 palavra1 palavra2");
+		assertThat(speech.getPolls()).isGreaterThan(0);
+	}
+
+	@Test
+	public void testStreamingRecognize() throws Exception {
+		startSpeech(FaultProfile.none());
+		final List<String> finals = new ArrayList<String>();
+		final CountDownLatch completed = new CountDownLatch(1);
+		Recognize.streamingRecognize(new ByteArrayInputStream(new byte[2 * 32000]), "pt-BR", AudioEncoding.LINEAR16, 16000, false, false,
+				new StreamingListener() {
+					@Override
+					public void onInterim(String transcript, float stability) {
+					}
+
+					@Override
+					public void onWord(ItemAudio item) {
+					}
+
+					@Override
+					public void onFinal(String transcript) {
+						finals.add(transcript);
+					}
+
+					@Override
+					public void onError(Throwable t) {
+						completed.countDown();
+					}
+
+					@Override
+					public void onCompleted() {
+						completed.countDown();
+					}
+				}, KEYS);
+		assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(finals).containsExactly("palavra0 palavra1");
+	}
+
+	@Test
+	public void testStreamingErrorIsRethrown() throws Exception {
+		startSpeech(new FaultProfile(0, 0, 1, 0));
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		try {
+			Recognize.streamingRecognize(new ByteArrayInputStream(new byte[2 * 32000]), "pt-BR", AudioEncoding.LINEAR16, 16000, false, false,
+					new StreamingListener() {
+						@Override
+						public void onInterim(String transcript, float stability) {
+						}
+
+						@Override
+						public void onWord(ItemAudio item) {
+						}
+
+						@Override
+						public void onFinal(String transcript) {
+						}
+
+						@Override
+						public void onError(Throwable t) {
+							errors.add(t);
+						}
+
+						@Override
+						public void onCompleted() {
+						}
+					}, KEYS);
+			fail("stream error expected");
+		} catch (IOException e) {
+			assertThat(String.valueOf(e.getCause())).contains("UNAVAILABLE");
+		}
+		assertThat(errors).hasSize(1);
+	}
+
+	@Test
+	public void testInjectedFailures() throws Exception {
+		startSpeech(new FaultProfile(0, 0, 0, 1));
+		try {
+			Recognize.syncRecognizeFile(audio.getPath(), "pt-BR", AudioEncoding.LINEAR16, 16000, false, KEYS);
+			fail("quota rejection expected");
+		} catch (Exception e) {
+			assertThat(String.valueOf(e)).contains("RESOURCE_EXHAUSTED");
+		}
+	}
+
+	@Test
+	public void testStorageRoundTrip() throws Exception {
+		startStorage(FaultProfile.none());
+		assertThat(StorageActions.createBucket("project", "bucket", KEYS)).isTrue();
+		StorageActions.uploadFile(APP_NAME, "rec/a.raw", "audio/l16", audio, "bucket", true, KEYS);
+		StorageActions.uploadFile(APP_NAME, "rec/b.raw", "audio/l16", audio, "bucket", false, KEYS);
+		StorageActions.uploadFile(APP_NAME, "other/c.raw", "audio/l16", audio, "bucket", false, KEYS);
+		assertThat(storage.getContent("bucket", "rec/a.raw")).hasLength(3 * 32000);
+
+		assertThat(StorageActions.listBucket(APP_NAME, "bucket", KEYS)).hasSize(3);
+		try (ObjectListing listing = StorageActions.listObjects(APP_NAME, "bucket", null, "/", KEYS)) {
+			assertThat(listing.hasNext()).isFalse();
+			assertThat(listing.getPrefixes()).containsExactly("other/", "rec/").inOrder();
+		}
+
+		List<BulkResult<StorageObject>> metadata = StorageActions.getObjects(APP_NAME, Arrays.asList("rec/a.raw", "missing"), "bucket", KEYS);
+		assertThat(metadata.get(0).getValue().getSize().longValue()).isEqualTo(3 * 32000L);
+		assertThat(metadata.get(1).isSuccess()).isFalse();
+
+		List<BulkResult<Void>> deleted = StorageActions.deleteObjects(APP_NAME, Arrays.asList("rec/a.raw", "rec/b.raw"), "bucket", KEYS);
+		assertThat(deleted.get(0).isSuccess()).isTrue();
+		assertThat(deleted.get(1).isSuccess()).isTrue();
+		assertThat(storage.getObjectNames("bucket")).containsExactly("other/c.raw");
+
+		assertThat(StorageActions.deleteBucket("project", "bucket", KEYS)).isTrue();
+	}
+
+	@Test
+	public void testLargeUploads() throws Exception {
+		startStorage(FaultProfile.none());
+		storage.createBucket("bucket");
+		byte[] data = new byte[600 * 1024];
+		new Random(1).nextBytes(data);
+		Files.write(audio.toPath(), data);
+
+		StorageActions.uploadLargeFile(APP_NAME, "large.raw", "audio/l16", audio, "bucket", false, 4, KEYS);
+		assertThat(storage.getContent("bucket", "large.raw")).isEqualTo(data);
+		assertThat(storage.getObjectNames("bucket")).containsExactly("large.raw");
+
+		String session = StorageActions.startResumableUpload(APP_NAME, "resumed.raw", "audio/l16", audio, "bucket", false, KEYS);
+		StorageActions.resumeUpload(APP_NAME, session, audio, KEYS);
+		assertThat(storage.getContent("bucket", "resumed.raw")).isEqualTo(data);
+	}
+
+	@Test
+	public void testTranscriptionPipeline() throws Exception {
+		startSpeech(FaultProfile.none());
+		startStorage(FaultProfile.none());
+		storage.createBucket("bucket");
+		List<String> sources = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) {
+			sources.add(wav(1).getPath());
+		}
+		ConcurrentLinkedQueue<BatchResult> results = new ConcurrentLinkedQueue<BatchResult>();
+		try (TranscriptionPipeline pipeline = Recognize.transcriptionPipeline(APP_NAME, "bucket", "pt-BR", 16000, false, results::add, KEYS)) {
+			assertThat(pipeline.process(sources)).isEqualTo(3);
+			pipeline.awaitCompletion();
+		} finally {
+			for (String source : sources) {
+				new File(source).delete();
+			}
+		}
+		assertThat(results).hasSize(3);
+		for (BatchResult result : results) {
+			assertThat(result.getError()).isNull();
+			assertThat(result.getTranscript()).isEqualTo("palavra0 palavra1 palavra2");
+		}
+		// os objetos intermedirios so removidos ao final
+		assertThat(storage.getObjectNames("bucket")).isEmpty();
+	}
+
+	/**
+	 * Cria um WAV 16 kHz mono de {@code seconds} segundos com um tom.
+	 */
+	private File wav(int seconds) throws Exception {
+		int samples = 16000 * seconds;
+		ByteBuffer wav = ByteBuffer.allocate(44 + samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes()).putInt(36 + samples * 2).put("WAVE".getBytes())
+			.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1).putInt(16000).putInt(32000)
+			.putShort((short) 2).putShort((short) 16)
+			.put("data".getBytes()).putInt(samples * 2);
+		for (int i = 0; i < samples; i++) {
+			wav.putShort((short) (Math.sin(i * 0.1) * 5000));
+		}
+		File file = File.createTempFile("fake-", ".wav");
+		Files.write(file.toPath(), wav.array());
+		return file;
+	}
+
+	@Test
+	public void testLoadTestDriver() throws Exception {
+		startSpeech(new FaultProfile(5, 20, 0.1, 0));
+		LoadTestDriver.Report report = LoadTestDriver.run(4, 40,
+				() -> Recognize.syncRecognizeFile(audio.getPath(), "pt-BR", AudioEncoding.LINEAR16, 16000, false, KEYS));
+		assertThat(report.getRequests()).isEqualTo(40);
+		assertThat(report.getErrors()).isLessThan(40);
+		assertThat(report.getThroughput()).isGreaterThan(0.0);
+		assertThat(report.getLatencyMillis(99)).isAtLeast(report.getLatencyMillis(50));
+	}
+}
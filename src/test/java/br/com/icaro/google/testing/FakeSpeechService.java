@@ -0,0 +1,304 @@
+package br.com.icaro.google.testing;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.cloud.speech.v1.LongRunningRecognizeMetadata;
+import com.google.cloud.speech.v1.LongRunningRecognizeRequest;
+import com.google.cloud.speech.v1.LongRunningRecognizeResponse;
+import com.google.cloud.speech.v1.RecognitionAudio;
+import com.google.cloud.speech.v1.RecognizeRequest;
+import com.google.cloud.speech.v1.RecognizeResponse;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.SpeechRecognitionResult;
+import com.google.cloud.speech.v1.StreamingRecognitionResult;
+import com.google.cloud.speech.v1.StreamingRecognizeRequest;
+import com.google.cloud.speech.v1.StreamingRecognizeResponse;
+import com.google.cloud.speech.v1.WordInfo;
+import com.google.longrunning.CancelOperationRequest;
+import com.google.longrunning.GetOperationRequest;
+import com.google.longrunning.Operation;
+import com.google.protobuf.Any;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Empty;
+import com.google.protobuf.Message;
+
+import br.com.icaro.google.speechtotext.Recognizer;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * @author icaroafonso
+ *
+ *  Servio Speech falso, servido por gRPC no mesmo processo: Recognize, LongRunningRecognize (com consulta e
+ *  cancelamento pelo servio de operaes) e StreamingRecognize. A transcrio gerada tem uma palavra por segundo de
+ *  udio LINEAR16 a 16 kHz (32000 bytes), ou trs palavras para URIs gs://. Latncia, erros e rejeies por cota seguem o {@link FaultProfile}.
+ *
+ *  Para usar com {@link br.com.icaro.google.speechtotext.Recognize}, passe o endereo retornado por {@link #start()}
+ *  para {@link br.com.icaro.google.speechtotext.SpeechFactory#setEndpoint(String)}.
+ */
+public class FakeSpeechService implements AutoCloseable {
+
+	private static final String SPEECH = "google.cloud.speech.v1.Speech";
+	private static final String OPERATIONS = "google.longrunning.Operations";
+	private static final int BYTES_PER_WORD = 32000;
+
+	private final FaultProfile faults;
+	private final long operationMillis;
+	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, r -> {
+		Thread thread = new Thread(r, "fake-speech");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Map<String, PendingOperation> operations = new ConcurrentHashMap<String, PendingOperation>();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final AtomicInteger polls = new AtomicInteger();
+	private final AtomicInteger cancelled = new AtomicInteger();
+	private Server server;
+
+	private static class PendingOperation {
+		final long doneAtMillis;
+		final long startedAtMillis = System.currentTimeMillis();
+		final LongRunningRecognizeResponse response;
+
+		PendingOperation(long doneAtMillis, LongRunningRecognizeResponse response) {
+			this.doneAtMillis = doneAtMillis;
+			this.response = response;
+		}
+	}
+
+	/**
+	 * @param faults - latncia e falhas injetadas em cada chamada
+	 * @param operationMillis - tempo at uma operao de longa durao terminar
+	 */
+	public FakeSpeechService(FaultProfile faults, long operationMillis) {
+		this.faults = faults;
+		this.operationMillis = operationMillis;
+	}
+
+	/**
+	 * Inicia o servidor.
+	 *
+	 * @return o endereo para {@link Recognizer#createForEndpoint(String)}
+	 */
+	public String start() throws IOException {
+		String name = "fake-speech-" + UUID.randomUUID();
+		server = InProcessServerBuilder.forName(name)
+				.addService(speechService())
+				.addService(operationsService())
+				.build()
+				.start();
+		return Recognizer.IN_PROCESS_PREFIX + name;
+	}
+
+	/**
+	 * @return chamadas recebidas (exceto consultas de operaes)
+	 */
+	public int getCalls() {
+		return calls.get();
+	}
+
+	/**
+	 * @return consultas de operaes recebidas
+	 */
+	public int getPolls() {
+		return polls.get();
+	}
+
+	/**
+	 * @return operaes canceladas pelo cliente
+	 */
+	public int getCancelled() {
+		return cancelled.get();
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.shutdownNow();
+		}
+		scheduler.shutdownNow();
+	}
+
+	private ServerServiceDefinition speechService() {
+		return ServerServiceDefinition.builder(SPEECH)
+				.addMethod(unary(SPEECH, "Recognize", RecognizeRequest.getDefaultInstance(), RecognizeResponse.getDefaultInstance()),
+						ServerCalls.asyncUnaryCall((RecognizeRequest request, StreamObserver<RecognizeResponse> observer) ->
+								respond(observer, () -> RecognizeResponse.newBuilder().addResults(result(request.getAudio())).build())))
+				.addMethod(unary(SPEECH, "LongRunningRecognize", LongRunningRecognizeRequest.getDefaultInstance(), Operation.getDefaultInstance()),
+						ServerCalls.asyncUnaryCall((LongRunningRecognizeRequest request, StreamObserver<Operation> observer) ->
+								respond(observer, () -> startOperation(request))))
+				.addMethod(MethodDescriptor.<StreamingRecognizeRequest, StreamingRecognizeResponse>newBuilder()
+						.setType(MethodDescriptor.MethodType.BIDI_STREAMING)
+						.setFullMethodName(MethodDescriptor.generateFullMethodName(SPEECH, "StreamingRecognize"))
+						.setRequestMarshaller(ProtoUtils.marshaller(StreamingRecognizeRequest.getDefaultInstance()))
+						.setResponseMarshaller(ProtoUtils.marshaller(StreamingRecognizeResponse.getDefaultInstance()))
+						.build(),
+						ServerCalls.asyncBidiStreamingCall(this::streamingRecognize))
+				.build();
+	}
+
+	private ServerServiceDefinition operationsService() {
+		return ServerServiceDefinition.builder(OPERATIONS)
+				.addMethod(unary(OPERATIONS, "GetOperation", GetOperationRequest.getDefaultInstance(), Operation.getDefaultInstance()),
+						ServerCalls.asyncUnaryCall((GetOperationRequest request, StreamObserver<Operation> observer) -> {
+							polls.incrementAndGet();
+							PendingOperation pending = operations.get(request.getName());
+							if (pending == null) {
+								observer.onError(Status.NOT_FOUND.withDescription(request.getName()).asRuntimeException());
+								return;
+							}
+							observer.onNext(operation(request.getName(), pending));
+							observer.onCompleted();
+						}))
+				.addMethod(unary(OPERATIONS, "CancelOperation", CancelOperationRequest.getDefaultInstance(), Empty.getDefaultInstance()),
+						ServerCalls.asyncUnaryCall((CancelOperationRequest request, StreamObserver<Empty> observer) -> {
+							if (operations.remove(request.getName()) == null) {
+								observer.onError(Status.NOT_FOUND.withDescription(request.getName()).asRuntimeException());
+								return;
+							}
+							cancelled.incrementAndGet();
+							observer.onNext(Empty.getDefaultInstance());
+							observer.onCompleted();
+						}))
+				.build();
+	}
+
+	private static <Q extends Message, R extends Message> MethodDescriptor<Q, R> unary(String service, String method, Q request, R response) {
+		return MethodDescriptor.<Q, R>newBuilder()
+				.setType(MethodDescriptor.MethodType.UNARY)
+				.setFullMethodName(MethodDescriptor.generateFullMethodName(service, method))
+				.setRequestMarshaller(ProtoUtils.marshaller(request))
+				.setResponseMarshaller(ProtoUtils.marshaller(response))
+				.build();
+	}
+
+	private interface ResponseFactory<R> {
+		R create();
+	}
+
+	/**
+	 * Responde aps a latncia sorteada, ou falha conforme o perfil.
+	 */
+	private <R> void respond(final StreamObserver<R> observer, final ResponseFactory<R> factory) {
+		calls.incrementAndGet();
+		final FaultProfile.Outcome outcome = faults.sampleOutcome();
+		scheduler.schedule(() -> {
+			if (outcome == FaultProfile.Outcome.QUOTA) {
+				observer.onError(Status.RESOURCE_EXHAUSTED.withDescription("Quota exceeded (fake)").asRuntimeException());
+			} else if (outcome == FaultProfile.Outcome.ERROR) {
+				observer.onError(Status.UNAVAILABLE.withDescription("Service unavailable (fake)").asRuntimeException());
+			} else {
+				observer.onNext(factory.create());
+				observer.onCompleted();
+			}
+		}, faults.sampleLatencyMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	private Operation startOperation(LongRunningRecognizeRequest request) {
+		String name = "operations/" + UUID.randomUUID();
+		PendingOperation pending = new PendingOperation(System.currentTimeMillis() + operationMillis,
+				LongRunningRecognizeResponse.newBuilder().addResults(result(request.getAudio())).build());
+		operations.put(name, pending);
+		return operation(name, pending);
+	}
+
+	private static Operation operation(String name, PendingOperation pending) {
+		long now = System.currentTimeMillis();
+		long total = Math.max(1, pending.doneAtMillis - pending.startedAtMillis);
+		int progress = (int) Math.min(100, 100 * (now - pending.startedAtMillis) / total);
+		Operation.Builder operation = Operation.newBuilder()
+				.setName(name)
+				.setMetadata(Any.pack(LongRunningRecognizeMetadata.newBuilder().setProgressPercent(progress).build()));
+		if (now >= pending.doneAtMillis) {
+			operation.setDone(true).setResponse(Any.pack(pending.response));
+		}
+		return operation.build();
+	}
+
+	private StreamObserver<StreamingRecognizeRequest> streamingRecognize(final StreamObserver<StreamingRecognizeResponse> responses) {
+		calls.incrementAndGet();
+		final FaultProfile.Outcome outcome = faults.sampleOutcome();
+		return new StreamObserver<StreamingRecognizeRequest>() {
+			private boolean interim;
+			private long bytes;
+
+			@Override
+			public synchronized void onNext(StreamingRecognizeRequest request) {
+				if (request.getStreamingRequestCase() == StreamingRecognizeRequest.StreamingRequestCase.STREAMING_CONFIG) {
+					interim = request.getStreamingConfig().getInterimResults();
+					if (outcome == FaultProfile.Outcome.QUOTA) {
+						responses.onError(Status.RESOURCE_EXHAUSTED.withDescription("Quota exceeded (fake)").asRuntimeException());
+					} else if (outcome == FaultProfile.Outcome.ERROR) {
+						responses.onError(Status.UNAVAILABLE.withDescription("Service unavailable (fake)").asRuntimeException());
+					}
+					return;
+				}
+				bytes += request.getAudioContent().size();
+				if (interim && outcome == FaultProfile.Outcome.OK) {
+					responses.onNext(StreamingRecognizeResponse.newBuilder()
+							.addResults(StreamingRecognitionResult.newBuilder()
+									.setStability(0.5f)
+									.addAlternatives(alternative(words(bytes))))
+							.build());
+				}
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				// cliente cancelou
+			}
+
+			@Override
+			public synchronized void onCompleted() {
+				if (outcome != FaultProfile.Outcome.OK) {
+					return;
+				}
+				final long total = bytes;
+				scheduler.schedule(() -> {
+					responses.onNext(StreamingRecognizeResponse.newBuilder()
+							.addResults(StreamingRecognitionResult.newBuilder()
+									.setIsFinal(true)
+									.addAlternatives(alternative(words(total))))
+							.build());
+					responses.onCompleted();
+				}, faults.sampleLatencyMillis(), TimeUnit.MILLISECONDS);
+			}
+		};
+	}
+
+	private static SpeechRecognitionResult result(RecognitionAudio audio) {
+		int words = audio.getUri().isEmpty() ? words(audio.getContent().size()) : 3;
+		return SpeechRecognitionResult.newBuilder().addAlternatives(alternative(words)).build();
+	}
+
+	private static int words(long bytes) {
+		return (int) Math.max(1, bytes / BYTES_PER_WORD);
+	}
+
+	private static SpeechRecognitionAlternative alternative(int words) {
+		SpeechRecognitionAlternative.Builder alternative = SpeechRecognitionAlternative.newBuilder().setConfidence(0.9f);
+		StringBuilder transcript = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			String word = "palavra" + i;
+			transcript.append(i > 0 ? " " : "").append(word);
+			alternative.addWords(WordInfo.newBuilder()
+					.setWord(word)
+					.setStartTime(Duration.newBuilder().setSeconds(i))
+					.setEndTime(Duration.newBuilder().setSeconds(i + 1)));
+		}
+		return alternative.setTranscript(transcript.toString()).build();
+	}
+}
@@ -0,0 +1,554 @@
+package br.com.icaro.google.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.storage.model.Bucket;
+import com.google.api.services.storage.model.ComposeRequest;
+import com.google.api.services.storage.model.Objects;
+import com.google.api.services.storage.model.StorageObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author icaroafonso
+ *
+ *  Servidor HTTP local que imita o subconjunto da API JSON do Storage usado pela biblioteca: intervalos (criar, obter,
+ *  remover), objetos (upload simples, multipart e retomvel, obter, baixar, listar com prefixo/delimitador/pginas,
+ *  alterar, compor, remover) e requisies em lote. Os dados ficam em memria e a autenticao  ignorada.
+ *
+ *  Para usar com {@link br.com.icaro.google.storage.StorageActions}, passe o endereo retornado por {@link #start()}
+ *  para {@link br.com.icaro.google.storage.StorageFactory#setRootUrl(String)}. Latncia, erros e rejeies por cota
+ *  seguem o {@link FaultProfile} e so aplicados uma vez por requisio HTTP (um lote conta como uma requisio).
+ */
+public class FakeStorageServer implements AutoCloseable {
+
+	private static final String BATCH_BOUNDARY = "batch_fake";
+
+	private final FaultProfile faults;
+	private final JsonFactory json = new JacksonFactory();
+	private final Map<String, NavigableMap<String, StorageObject>> buckets = new ConcurrentHashMap<String, NavigableMap<String, StorageObject>>();
+	private final Map<String, byte[]> contents = new ConcurrentHashMap<String, byte[]>();
+	private final Map<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+	private final AtomicLong generations = new AtomicLong(1000);
+	private final AtomicInteger requests = new AtomicInteger();
+	private HttpServer server;
+	private ExecutorService executor;
+	private String rootUrl;
+
+	/** Sesso de upload retomvel. */
+	private static class Session {
+		final String bucket;
+		final StorageObject metadata;
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+		Session(String bucket, StorageObject metadata) {
+			this.bucket = bucket;
+			this.metadata = metadata;
+		}
+	}
+
+	/** Resposta montada por {@link #dispatch}. */
+	private static class Response {
+		final int status;
+		final String contentType;
+		final byte[] body;
+		final Map<String, String> headers = new HashMap<String, String>();
+
+		Response(int status, String contentType, byte[] body) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * @param faults - latncia e falhas injetadas em cada requisio
+	 */
+	public FakeStorageServer(FaultProfile faults) {
+		this.faults = faults;
+	}
+
+	/**
+	 * Inicia o servidor em uma porta livre.
+	 *
+	 * @return o endereo para {@link br.com.icaro.google.storage.StorageFactory#setRootUrl(String)}
+	 */
+	public String start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "fake-storage");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+		rootUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+		return rootUrl;
+	}
+
+	/**
+	 * Cria um intervalo diretamente, sem passar pela API.
+	 */
+	public void createBucket(String bucketName) {
+		buckets.putIfAbsent(bucketName, new ConcurrentSkipListMap<String, StorageObject>());
+	}
+
+	/**
+	 * @return o contedo de um objeto, ou null se no existir
+	 */
+	public byte[] getContent(String bucketName, String name) {
+		return contents.get(bucketName + "/" + name);
+	}
+
+	/**
+	 * @return os nomes dos objetos do intervalo
+	 */
+	public List<String> getObjectNames(String bucketName) {
+		NavigableMap<String, StorageObject> objects = buckets.get(bucketName);
+		return objects == null ? new ArrayList<String>() : new ArrayList<String>(objects.keySet());
+	}
+
+	/**
+	 * @return requisies HTTP recebidas
+	 */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		Response response;
+		try {
+			byte[] body = readAll(exchange.getRequestBody());
+			long latency = faults.sampleLatencyMillis();
+			if (latency > 0) {
+				Thread.sleep(latency);
+			}
+			FaultProfile.Outcome outcome = faults.sampleOutcome();
+			if (outcome == FaultProfile.Outcome.QUOTA) {
+				response = error(429, "Rate limit exceeded (fake)");
+			} else if (outcome == FaultProfile.Outcome.ERROR) {
+				response = error(503, "Backend error (fake)");
+			} else {
+				Map<String, String> headers = new HashMap<String, String>();
+				for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+					headers.put(header.getKey().toLowerCase(), header.getValue().get(0));
+				}
+				// o cliente comprime os corpos JSON por padro
+				if ("gzip".equals(headers.get("content-encoding"))) {
+					body = readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+				}
+				response = dispatch(exchange.getRequestMethod(), exchange.getRequestURI(), headers, body);
+			}
+		} catch (Exception e) {
+			response = error(500, String.valueOf(e));
+		}
+		if (response.contentType != null) {
+			exchange.getResponseHeaders().set("Content-Type", response.contentType);
+		}
+		for (Map.Entry<String, String> header : response.headers.entrySet()) {
+			exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+		}
+		if (response.body.length == 0) {
+			// sem corpo o servidor j fecha o fluxo; escrever nele derrubaria a conexo reaproveitada
+			exchange.sendResponseHeaders(response.status, -1);
+			exchange.close();
+			return;
+		}
+		exchange.sendResponseHeaders(response.status, response.body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(response.body);
+		}
+	}
+
+	private Response dispatch(String method, URI uri, Map<String, String> headers, byte[] body) throws IOException {
+		String[] path = segments(uri.getRawPath());
+		Map<String, String> query = query(uri.getRawQuery());
+		String override = headers.get("x-http-method-override");
+		if (override != null) {
+			method = override;
+		}
+		if (path.length >= 2 && path[0].equals("batch")) {
+			return batch(headers.get("content-type"), body);
+		}
+		if (path.length >= 6 && path[0].equals("upload") && path[5].equals("o")) {
+			return upload(method, uri, path[4], query, headers, body);
+		}
+		if (path.length < 3 || !path[0].equals("storage") || !path[2].equals("b")) {
+			return error(404, "Unknown path " + uri.getRawPath());
+		}
+		if (path.length == 3 && method.equals("POST")) {
+			Bucket bucket = json.fromString(new String(body, StandardCharsets.UTF_8), Bucket.class);
+			if (buckets.putIfAbsent(bucket.getName(), new ConcurrentSkipListMap<String, StorageObject>()) != null) {
+				return error(409, "Bucket already exists");
+			}
+			return json(bucket(bucket.getName()));
+		}
+		String bucketName = path[3];
+		NavigableMap<String, StorageObject> objects = buckets.get(bucketName);
+		if (objects == null) {
+			return error(404, "Bucket not found: " + bucketName);
+		}
+		if (path.length == 4) {
+			if (method.equals("DELETE")) {
+				buckets.remove(bucketName);
+				return new Response(204, null, new byte[0]);
+			}
+			return json(bucket(bucketName));
+		}
+		if (path.length == 5) {
+			return list(objects, query);
+		}
+		String name = path[5];
+		if (path.length == 7 && path[6].equals("compose") && method.equals("POST")) {
+			return compose(bucketName, name, json.fromString(new String(body, StandardCharsets.UTF_8), ComposeRequest.class));
+		}
+		StorageObject object = objects.get(name);
+		if (object == null) {
+			return error(404, "No such object: " + bucketName + "/" + name);
+		}
+		switch (method) {
+		case "DELETE":
+			objects.remove(name);
+			contents.remove(bucketName + "/" + name);
+			return new Response(204, null, new byte[0]);
+		case "PATCH":
+			StorageObject patch = json.fromString(new String(body, StandardCharsets.UTF_8), StorageObject.class);
+			if (patch.getAcl() != null) {
+				object.setAcl(patch.getAcl());
+			}
+			if (patch.getMetadata() != null) {
+				object.setMetadata(patch.getMetadata());
+			}
+			if (patch.getContentType() != null) {
+				object.setContentType(patch.getContentType());
+			}
+			object.setMetageneration(object.getMetageneration() + 1);
+			return json(object);
+		default:
+			if ("media".equals(query.get("alt"))) {
+				return new Response(200, object.getContentType(), contents.get(bucketName + "/" + name));
+			}
+			return json(object);
+		}
+	}
+
+	private Response list(NavigableMap<String, StorageObject> objects, Map<String, String> query) throws IOException {
+		String prefix = query.containsKey("prefix") ? query.get("prefix") : "";
+		String delimiter = query.get("delimiter");
+		int maxResults = query.containsKey("maxResults") ? Integer.parseInt(query.get("maxResults")) : 1000;
+		int start = query.containsKey("pageToken") ? Integer.parseInt(query.get("pageToken")) : 0;
+
+		// itens e prefixos em uma nica sequncia ordenada, paginada por ndice; true indica prefixo
+		TreeMap<String, Boolean> entries = new TreeMap<String, Boolean>();
+		for (String name : objects.tailMap(prefix, true).keySet()) {
+			if (!name.startsWith(prefix)) {
+				break;
+			}
+			int cut = delimiter == null ? -1 : name.indexOf(delimiter, prefix.length());
+			if (cut < 0) {
+				entries.put(name, false);
+			} else {
+				entries.putIfAbsent(name.substring(0, cut + delimiter.length()), true);
+			}
+		}
+		List<Map.Entry<String, Boolean>> all = new ArrayList<Map.Entry<String, Boolean>>(entries.entrySet());
+		List<StorageObject> items = new ArrayList<StorageObject>();
+		List<String> prefixes = new ArrayList<String>();
+		int end = Math.min(all.size(), start + maxResults);
+		for (Map.Entry<String, Boolean> entry : all.subList(Math.min(start, end), end)) {
+			if (entry.getValue()) {
+				prefixes.add(entry.getKey());
+			} else {
+				items.add(objects.get(entry.getKey()));
+			}
+		}
+		Objects page = new Objects().setKind("storage#objects");
+		if (!items.isEmpty()) {
+			page.setItems(items);
+		}
+		if (!prefixes.isEmpty()) {
+			page.setPrefixes(prefixes);
+		}
+		if (end < all.size()) {
+			page.setNextPageToken(String.valueOf(end));
+		}
+		return json(page);
+	}
+
+	private Response compose(String bucketName, String name, ComposeRequest request) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		for (ComposeRequest.SourceObjects source : request.getSourceObjects()) {
+			byte[] part = contents.get(bucketName + "/" + source.getName());
+			if (part == null) {
+				return error(404, "No such object: " + bucketName + "/" + source.getName());
+			}
+			data.write(part);
+		}
+		StorageObject metadata = request.getDestination() != null ? request.getDestination() : new StorageObject();
+		return json(store(bucketName, metadata.setName(name), data.toByteArray()));
+	}
+
+	private Response upload(String method, URI uri, String bucketName, Map<String, String> query, Map<String, String> headers, byte[] body) throws IOException {
+		if (!buckets.containsKey(bucketName)) {
+			return error(404, "Bucket not found: " + bucketName);
+		}
+		String uploadType = query.get("uploadType");
+		if ("resumable".equals(uploadType)) {
+			return resumable(method, bucketName, query, headers, body);
+		}
+		if ("multipart".equals(uploadType)) {
+			List<byte[]> parts = multipart(headers.get("content-type"), body);
+			StorageObject metadata = json.fromString(new String(parts.get(0), StandardCharsets.UTF_8), StorageObject.class);
+			if (metadata.getName() == null) {
+				metadata.setName(query.get("name"));
+			}
+			return json(store(bucketName, metadata, parts.get(1)));
+		}
+		StorageObject metadata = new StorageObject().setName(query.get("name")).setContentType(headers.get("content-type"));
+		return json(store(bucketName, metadata, body));
+	}
+
+	private Response resumable(String method, String bucketName, Map<String, String> query, Map<String, String> headers, byte[] body) throws IOException {
+		String uploadId = query.get("upload_id");
+		if (uploadId == null) {
+			StorageObject metadata = body.length == 0 ? new StorageObject()
+					: json.fromString(new String(body, StandardCharsets.UTF_8), StorageObject.class);
+			if (metadata.getName() == null) {
+				metadata.setName(query.get("name"));
+			}
+			if (metadata.getContentType() == null) {
+				metadata.setContentType(headers.get("x-upload-content-type"));
+			}
+			uploadId = UUID.randomUUID().toString();
+			sessions.put(uploadId, new Session(bucketName, metadata));
+			Response response = new Response(200, null, new byte[0]);
+			response.headers.put("Location", rootUrl + "upload/storage/v1/b/" + bucketName + "/o?uploadType=resumable&upload_id=" + uploadId);
+			return response;
+		}
+		Session session = sessions.get(uploadId);
+		if (session == null) {
+			return error(404, "No such upload session");
+		}
+		synchronized (session) {
+			// Content-Range: "bytes a-b/total", "bytes a-b/*" ou "bytes */total"
+			String range = headers.get("content-range");
+			long total = -1;
+			if (range != null) {
+				String spec = range.substring(range.indexOf(' ') + 1);
+				String size = spec.substring(spec.indexOf('/') + 1);
+				total = size.equals("*") ? -1 : Long.parseLong(size);
+				if (!spec.startsWith("*")) {
+					long first = Long.parseLong(spec.substring(0, spec.indexOf('-')));
+					if (first == session.data.size()) {
+						session.data.write(body);
+					}
+				}
+			} else {
+				session.data.write(body);
+				total = session.data.size();
+			}
+			if (total >= 0 && session.data.size() >= total) {
+				sessions.remove(uploadId);
+				return json(store(session.bucket, session.metadata, session.data.toByteArray()));
+			}
+			Response response = new Response(308, null, new byte[0]);
+			if (session.data.size() > 0) {
+				response.headers.put("Range", "bytes=0-" + (session.data.size() - 1));
+			}
+			return response;
+		}
+	}
+
+	private Response batch(String contentType, byte[] body) throws IOException {
+		StringBuilder out = new StringBuilder();
+		for (byte[] part : multipart(contentType, body)) {
+			String text = new String(part, StandardCharsets.ISO_8859_1);
+			// cabealhos da parte, depois a requisio HTTP embutida
+			int split = text.indexOf("\r\n\r\n");
+			String inner = split < 0 ? text : text.substring(split + 4);
+			int headerEnd = inner.indexOf("\r\n\r\n");
+			String head = headerEnd < 0 ? inner.trim() : inner.substring(0, headerEnd);
+			byte[] innerBody = headerEnd < 0 ? new byte[0] : inner.substring(headerEnd + 4).getBytes(StandardCharsets.ISO_8859_1);
+			String[] lines = head.split("\r\n");
+			String[] requestLine = lines[0].split(" ");
+			Map<String, String> headers = new HashMap<String, String>();
+			for (int i = 1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+				if (colon > 0) {
+					headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+				}
+			}
+			Response response = dispatch(requestLine[0], URI.create(requestLine[1]), headers, innerBody);
+			out.append("--").append(BATCH_BOUNDARY).append("\r\nContent-Type: application/http\r\n\r\n");
+			out.append("HTTP/1.1 ").append(response.status).append(response.status < 300 ? " OK" : " Error").append("\r\n");
+			if (response.contentType != null) {
+				out.append("Content-Type: ").append(response.contentType).append("\r\n");
+			}
+			out.append("Content-Length: ").append(response.body.length).append("\r\n\r\n");
+			out.append(new String(response.body, StandardCharsets.ISO_8859_1)).append("\r\n");
+		}
+		out.append("--").append(BATCH_BOUNDARY).append("--\r\n");
+		return new Response(200, "multipart/mixed; boundary=" + BATCH_BOUNDARY, out.toString().getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	private StorageObject store(String bucketName, StorageObject metadata, byte[] data) {
+		long generation = generations.incrementAndGet();
+		StorageObject object = new StorageObject()
+				.setBucket(bucketName)
+				.setName(metadata.getName())
+				.setId(bucketName + "/" + metadata.getName() + "/" + generation)
+				.setContentType(metadata.getContentType() != null ? metadata.getContentType() : "application/octet-stream")
+				.setAcl(metadata.getAcl())
+				.setMetadata(metadata.getMetadata())
+				.setGeneration(generation)
+				.setMetageneration(1L)
+				.setSize(BigInteger.valueOf(data.length))
+				.setMd5Hash(md5(data));
+		contents.put(bucketName + "/" + object.getName(), data);
+		buckets.get(bucketName).put(object.getName(), object);
+		return object;
+	}
+
+	private static Bucket bucket(String name) {
+		return new Bucket().setKind("storage#bucket").setId(name).setName(name);
+	}
+
+	private Response json(Object value) throws IOException {
+		return new Response(200, "application/json; charset=UTF-8", json.toByteArray(value));
+	}
+
+	private static Response error(int status, String message) {
+		String body = "{\"error\":{\"code\":" + status + ",\"message\":\"" + message.replace("\\", "/").replace("\"", "'").replace('\n', ' ').replace('\r', ' ') + "\"}}";
+		return new Response(status, "application/json; charset=UTF-8", body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Separa o corpo de uma mensagem multipart; o contedo de cada parte vem sem os cabealhos, exceto em lotes,
+	 * onde a requisio embutida precisa deles.
+	 */
+	private static List<byte[]> multipart(String contentType, byte[] body) {
+		String boundary = contentType.substring(contentType.indexOf("boundary=") + 9).replace("\"", "").trim();
+		boolean keepHeaders = contentType.startsWith("multipart/mixed");
+		String text = new String(body, StandardCharsets.ISO_8859_1);
+		String delimiter = "--" + boundary;
+		List<byte[]> parts = new ArrayList<byte[]>();
+		int start = text.indexOf(delimiter);
+		while (start >= 0) {
+			int contentStart = text.indexOf("\n", start) + 1;
+			int next = text.indexOf(delimiter, contentStart);
+			if (next < 0 || contentStart == 0) {
+				break;
+			}
+			String part = text.substring(contentStart, next);
+			if (part.endsWith("\r\n")) {
+				part = part.substring(0, part.length() - 2);
+			}
+			if (!keepHeaders) {
+				int headerEnd = part.indexOf("\r\n\r\n");
+				part = part.substring(headerEnd + 4);
+			}
+			parts.add(part.getBytes(StandardCharsets.ISO_8859_1));
+			start = next;
+			if (text.startsWith(delimiter + "--", next)) {
+				break;
+			}
+		}
+		return parts;
+	}
+
+	private static String[] segments(String rawPath) throws UnsupportedEncodingException {
+		String trimmed = rawPath.startsWith("/") ? rawPath.substring(1) : rawPath;
+		List<String> segments = new ArrayList<String>();
+		for (String segment : trimmed.split("/")) {
+			segments.add(decode(segment));
+		}
+		// "storage/v1/b/{bucket}/o/{nome}" - nomes codificados no contm "/", mas aceitamos sem codificao tambm
+		if (segments.size() > 7 && segments.get(0).equals("storage") && segments.get(4).equals("o")) {
+			boolean compose = segments.get(segments.size() - 1).equals("compose");
+			int end = compose ? segments.size() - 1 : segments.size();
+			String name = String.join("/", segments.subList(5, end));
+			List<String> joined = new ArrayList<String>(segments.subList(0, 5));
+			joined.add(name);
+			if (compose) {
+				joined.add("compose");
+			}
+			segments = joined;
+		}
+		return segments.toArray(new String[segments.size()]);
+	}
+
+	private static Map<String, String> query(String rawQuery) throws UnsupportedEncodingException {
+		Map<String, String> query = new HashMap<String, String>();
+		if (rawQuery != null) {
+			for (String pair : rawQuery.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+				}
+			}
+		}
+		return query;
+	}
+
+	private static String decode(String segment) throws UnsupportedEncodingException {
+		return URLDecoder.decode(segment.replace("+", "%2B"), "UTF-8");
+	}
+
+	private static String md5(byte[] data) {
+		try {
+			return Base64.getEncoder().encodeToString(MessageDigest.getInstance("MD5").digest(data));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,69 @@
+package br.com.icaro.google.testing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author icaroafonso
+ *
+ *  Comportamento injetado pelos servios falsos em cada chamada: latncia com distribuio log-normal (definida pela
+ *  mediana e pelo percentil 99), uma taxa de erros transitrios e uma taxa de rejeies por cota.
+ */
+public class FaultProfile {
+
+	/** Resultado sorteado para uma chamada. */
+	public enum Outcome {
+		OK, ERROR, QUOTA
+	}
+
+	/** z do percentil 99 da normal padro. */
+	private static final double Z99 = 2.326;
+
+	private final long medianMillis;
+	private final double sigma;
+	private final double errorRate;
+	private final double quotaRate;
+
+	/**
+	 * @param medianMillis - latncia mediana
+	 * @param p99Millis - latncia do percentil 99 (maior ou igual  mediana)
+	 * @param errorRate - frao das chamadas que falham com erro transitrio (gRPC UNAVAILABLE, HTTP 503)
+	 * @param quotaRate - frao das chamadas rejeitadas por cota (gRPC RESOURCE_EXHAUSTED, HTTP 429)
+	 */
+	public FaultProfile(long medianMillis, long p99Millis, double errorRate, double quotaRate) {
+		this.medianMillis = medianMillis;
+		this.sigma = medianMillis > 0 && p99Millis > medianMillis ? Math.log((double) p99Millis / medianMillis) / Z99 : 0;
+		this.errorRate = errorRate;
+		this.quotaRate = quotaRate;
+	}
+
+	/**
+	 * @return um perfil sem latncia nem falhas
+	 */
+	public static FaultProfile none() {
+		return new FaultProfile(0, 0, 0, 0);
+	}
+
+	/**
+	 * @return uma latncia sorteada, em milissegundos
+	 */
+	public long sampleLatencyMillis() {
+		if (medianMillis <= 0) {
+			return 0;
+		}
+		return Math.round(medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+	}
+
+	/**
+	 * @return o resultado sorteado para uma chamada
+	 */
+	public Outcome sampleOutcome() {
+		double draw = ThreadLocalRandom.current().nextDouble();
+		if (draw < quotaRate) {
+			return Outcome.QUOTA;
+		}
+		if (draw < quotaRate + errorRate) {
+			return Outcome.ERROR;
+		}
+		return Outcome.OK;
+	}
+}
@@ -0,0 +1,159 @@
+package br.com.icaro.google.testing;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.cloud.speech.v1.RecognitionConfig.AudioEncoding;
+
+import br.com.icaro.google.speechtotext.Recognize;
+import br.com.icaro.google.speechtotext.SpeechFactory;
+import br.com.icaro.google.storage.StorageActions;
+import br.com.icaro.google.storage.StorageFactory;
+
+/**
+ * @author icaroafonso
+ *
+ *  Executa uma operao muitas vezes com concorrncia fixa e relata a vazo e as latncias p50/p99. Junto dos servios
+ *  falsos ({@link FakeSpeechService}, {@link FakeStorageServer}) permite dimensionar pools de threads e limites de
+ *  concorrncia sem acessar o Google Cloud.
+ *
+ *  Uso: LoadTestDriver [concorrncia] [requisies] [mediana ms] [p99 ms] [taxa de erros] [taxa de cota]
+ */
+public class LoadTestDriver {
+
+	/**
+	 * Resultado de uma execuo.
+	 */
+	public static class Report {
+		private final int requests;
+		private final int errors;
+		private final long elapsedNanos;
+		private final long[] latenciesNanos;
+
+		Report(int requests, int errors, long elapsedNanos, long[] latenciesNanos) {
+			this.requests = requests;
+			this.errors = errors;
+			this.elapsedNanos = elapsedNanos;
+			this.latenciesNanos = latenciesNanos;
+		}
+
+		public int getRequests() {
+			return requests;
+		}
+
+		public int getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return operaes concludas (com sucesso ou no) por segundo
+		 */
+		public double getThroughput() {
+			return requests / (elapsedNanos / 1e9);
+		}
+
+		/**
+		 * @param percentile - entre 0 e 100
+		 * @return a latncia do percentil, em milissegundos
+		 */
+		public double getLatencyMillis(double percentile) {
+			if (latenciesNanos.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100.0 * latenciesNanos.length) - 1;
+			return latenciesNanos[Math.max(0, Math.min(latenciesNanos.length - 1, index))] / 1e6;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("requests=%d errors=%d throughput=%.1f/s p50=%.1fms p99=%.1fms",
+					requests, errors, getThroughput(), getLatencyMillis(50), getLatencyMillis(99));
+		}
+	}
+
+	/**
+	 * Executa {@code operation} {@code requests} vezes com {@code concurrency} threads.
+	 */
+	public static Report run(int concurrency, int requests, final Callable<?> operation) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		final long[] latencies = new long[requests];
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(requests);
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < requests; i++) {
+				final int index = i;
+				futures.add(executor.submit(() -> {
+					long began = System.nanoTime();
+					try {
+						operation.call();
+						return true;
+					} catch (Exception e) {
+						return false;
+					} finally {
+						latencies[index] = System.nanoTime() - began;
+					}
+				}));
+			}
+			int errors = 0;
+			for (Future<Boolean> future : futures) {
+				try {
+					if (!future.get()) {
+						errors++;
+					}
+				} catch (java.util.concurrent.ExecutionException e) {
+					errors++;
+				}
+			}
+			long elapsed = System.nanoTime() - start;
+			Arrays.sort(latencies);
+			return new Report(requests, errors, elapsed, latencies);
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Mede o reconhecimento sncrono e o upload pela fachada pblica, contra os servios falsos.
+	 */
+	public static void main(String[] args) throws Exception {
+		int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int requests = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		FaultProfile faults = new FaultProfile(
+				args.length > 2 ? Long.parseLong(args[2]) : 50,
+				args.length > 3 ? Long.parseLong(args[3]) : 400,
+				args.length > 4 ? Double.parseDouble(args[4]) : 0.01,
+				args.length > 5 ? Double.parseDouble(args[5]) : 0.01);
+
+		final File audio = File.createTempFile("load-test-", ".raw");
+		Files.write(audio.toPath(), new byte[5 * 32000]);
+		try (FakeSpeechService speech = new FakeSpeechService(faults, 1000);
+				FakeStorageServer storage = new FakeStorageServer(faults)) {
+			SpeechFactory.setEndpoint(speech.start());
+			StorageFactory.setRootUrl(storage.start());
+			storage.createBucket("load-test");
+			final String keys = "keys.json";
+
+			System.out.println("recognize: " + run(concurrency, requests,
+					() -> Recognize.syncRecognizeFile(audio.getPath(), "pt-BR", AudioEncoding.LINEAR16, 16000, false, keys)));
+			System.out.println("upload:    " + run(concurrency, requests, () -> {
+				StorageActions.uploadFile("load-test", "audio-" + Thread.currentThread().getId(), "audio/l16", audio, "load-test", false, keys);
+				return null;
+			}));
+		} finally {
+			SpeechFactory.shutdown();
+			SpeechFactory.setEndpoint(null);
+			StorageFactory.shutdown();
+			StorageFactory.setRootUrl(null);
+			audio.delete();
+		}
+	}
+}